@@ -9,6 +9,7 @@ import java.util.Arrays;
  * @deprecated
  * This is a program that automatically retrives latency test results from egress.
  * Also, this program reads from the old egress, which is not used anymore.
+ * Use LoadHarnessApp (mvn -P load-harness package) to measure the latency of the functions instead.
  */
 public class LatencyTest {
 
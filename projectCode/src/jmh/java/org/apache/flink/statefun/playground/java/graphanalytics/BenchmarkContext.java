@@ -0,0 +1,114 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.AddressScopedStorage;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+import org.apache.flink.statefun.sdk.java.message.EgressMessage;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.slice.Slice;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link Context} for benchmarking a single function instance without the StateFun runtime.
+ *
+ * Like the SDK, the storage keeps the state values serialized, so every get deserializes and every set serializes
+ * the value with the type of its spec. Sent messages are dropped, except for the segment compactions that the
+ * function schedules for itself, which are remembered so that the benchmark can run them like the runtime would.
+ */
+final class BenchmarkContext implements Context {
+
+  private final Address self;
+  private final Storage storage = new Storage();
+  private Message pendingCompaction;
+
+  BenchmarkContext(Address self) {
+    this.self = self;
+  }
+
+  /**
+   * @return the compaction the function has scheduled since the last call, or null
+   */
+  Message takePendingCompaction() {
+    Message compaction = pendingCompaction;
+    pendingCompaction = null;
+    return compaction;
+  }
+
+  /**
+   * @return a copy of the serialized state, to be restored with {@link #restore(Map)}
+   */
+  Map<String, Slice> snapshot() {
+    return new HashMap<>(storage.values);
+  }
+
+  void restore(Map<String, Slice> snapshot) {
+    storage.values.clear();
+    storage.values.putAll(snapshot);
+    pendingCompaction = null;
+  }
+
+  @Override
+  public Address self() {
+    return self;
+  }
+
+  @Override
+  public Optional<Address> caller() {
+    return Optional.empty();
+  }
+
+  @Override
+  public void send(Message message) {
+  }
+
+  @Override
+  public void sendAfter(Duration delay, Message message) {
+    if (message.is(Types.SEGMENT_COMPACTION_TYPE)) {
+      pendingCompaction = message;
+    }
+  }
+
+  @Override
+  public void sendAfter(Duration delay, String cancellationToken, Message message) {
+    sendAfter(delay, message);
+  }
+
+  @Override
+  public void cancelDelayedMessage(String cancellationToken) {
+  }
+
+  @Override
+  public void send(EgressMessage message) {
+  }
+
+  @Override
+  public AddressScopedStorage storage() {
+    return storage;
+  }
+
+  private static final class Storage implements AddressScopedStorage {
+    private final Map<String, Slice> values = new HashMap<>();
+
+    @Override
+    public <T> Optional<T> get(ValueSpec<T> spec) {
+      Slice bytes = values.get(spec.name());
+      return bytes == null ? Optional.empty() : Optional.of(spec.type().typeSerializer().deserialize(bytes));
+    }
+
+    @Override
+    public <T> void set(ValueSpec<T> spec, T value) {
+      values.put(spec.name(), spec.type().typeSerializer().serialize(value));
+    }
+
+    @Override
+    public <T> void remove(ValueSpec<T> spec) {
+      values.remove(spec.name());
+    }
+  }
+}
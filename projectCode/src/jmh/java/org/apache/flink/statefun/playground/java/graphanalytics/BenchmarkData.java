@@ -0,0 +1,77 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+
+import java.util.Random;
+
+/**
+ * Generates the graphs of the benchmarks. The data is generated from a fixed seed, so every run of a benchmark
+ * works on the same data.
+ */
+final class BenchmarkData {
+
+  /** Timestamps of the generated edges are spaced by this much, so out-of-order edges fit in between. */
+  static final long TIMESTAMP_STEP = 1000;
+
+  /** The generated neighbor ids are drawn from this many vertices. */
+  static final int VERTEX_COUNT = 10_000_000;
+
+  private BenchmarkData() {
+  }
+
+  static Random random() {
+    return new Random(42);
+  }
+
+  /**
+   * This method generates a neighbor list of the given size, sorted by timestamp
+   * @param random
+   * @param degree
+   * @return the neighbor list
+   */
+  static NeighborList neighborList(Random random, int degree) {
+    NeighborList neighbors = new NeighborList(degree);
+    for (int i = 0; i < degree; i++) {
+      neighbors.append(random.nextInt(VERTEX_COUNT), (i + 1) * TIMESTAMP_STEP);
+    }
+    return neighbors;
+  }
+
+  /**
+   * This method generates the timestamps of new edges for a vertex whose edges span [0, lastTimestamp]
+   * @param random
+   * @param count
+   * @param lastTimestamp
+   * @param inOrder whether the new edges are newer than all edges, or fall anywhere into the existing span
+   * @return the timestamps
+   */
+  static long[] newTimestamps(Random random, int count, long lastTimestamp, boolean inOrder) {
+    long[] timestamps = new long[count];
+    for (int i = 0; i < count; i++) {
+      timestamps[i] = inOrder
+          ? lastTimestamp + (i + 1) * TIMESTAMP_STEP
+          : (long) (random.nextDouble() * lastTimestamp);
+    }
+    return timestamps;
+  }
+
+  /**
+   * This method generates an ascending array of distinct ids, so that two arrays generated with the same
+   * universe share about size * size / universe ids
+   * @param random
+   * @param size
+   * @param universe
+   * @return sorted ids
+   */
+  static int[] sortedIds(Random random, int size, int universe) {
+    int[] ids = new int[size];
+    int count = 0;
+    // selection sampling keeps the ids sorted and distinct
+    for (int id = 0; id < universe && count < size; id++) {
+      if (random.nextInt(universe - id) < size - count) {
+        ids[count++] = id;
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,90 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.*;
+import org.apache.flink.statefun.sdk.java.slice.Slice;
+import org.apache.flink.statefun.sdk.java.slice.Slices;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The codecs of {@link Types}: the neighbor list state of a vertex of the given degree, in the current binary
+ * format and in the JSON format that older state is still read from, and the Execute and KHopQuery messages,
+ * which do not depend on the degree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({"10", "1000", "100000", "1000000"})
+  private int degree;
+
+  private NeighborList neighbors;
+  private Slice neighborBytes;
+  private Slice legacyNeighborJson;
+  private Execute execute;
+  private Slice executeBytes;
+  private KHopQuery kHopQuery;
+  private Slice kHopQueryBytes;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Random random = BenchmarkData.random();
+    neighbors = BenchmarkData.neighborList(random, degree);
+    neighborBytes = Types.IN_NEIGHBORS_TYPE.typeSerializer().serialize(neighbors);
+
+    List<CustomTuple2> tuples = new ArrayList<>(degree);
+    for (int i = 0; i < degree; i++) {
+      tuples.add(CustomTuple2.createTuple2(neighbors.idAt(i), neighbors.timestampAt(i)));
+    }
+    legacyNeighborJson = Slices.wrap(new ObjectMapper().writeValueAsBytes(tuples));
+
+    execute = Execute.create("ADD", 12, 34, 1254194656L, 0, 0);
+    executeBytes = Types.EXECUTE_TYPE.typeSerializer().serialize(execute);
+    kHopQuery = KHopQuery.create("query-1", 12, 3, KHopQuery.DIRECTION_OUT);
+    kHopQueryBytes = Types.K_HOP_QUERY_TYPE.typeSerializer().serialize(kHopQuery);
+  }
+
+  @Benchmark
+  public Slice serializeNeighbors() {
+    return Types.IN_NEIGHBORS_TYPE.typeSerializer().serialize(neighbors);
+  }
+
+  @Benchmark
+  public NeighborList deserializeNeighbors() {
+    return Types.IN_NEIGHBORS_TYPE.typeSerializer().deserialize(neighborBytes);
+  }
+
+  @Benchmark
+  public NeighborList deserializeLegacyJsonNeighbors() {
+    return Types.IN_NEIGHBORS_TYPE.typeSerializer().deserialize(legacyNeighborJson);
+  }
+
+  @Benchmark
+  public Slice serializeExecute() {
+    return Types.EXECUTE_TYPE.typeSerializer().serialize(execute);
+  }
+
+  @Benchmark
+  public Execute deserializeExecute() {
+    return Types.EXECUTE_TYPE.typeSerializer().deserialize(executeBytes);
+  }
+
+  @Benchmark
+  public Slice serializeKHopQuery() {
+    return Types.K_HOP_QUERY_TYPE.typeSerializer().serialize(kHopQuery);
+  }
+
+  @Benchmark
+  public KHopQuery deserializeKHopQuery() {
+    return Types.K_HOP_QUERY_TYPE.typeSerializer().deserialize(kHopQueryBytes);
+  }
+}
@@ -0,0 +1,16 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * The entry point of the benchmark jar built with the jmh profile, it takes the usual JMH command line options,
+ * e.g. a benchmark name pattern, -p degree=1000 or -f 1 -wi 2 -i 3
+ */
+public final class GraphAnalyticsBenchmarks {
+
+  private GraphAnalyticsBenchmarks() {}
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
@@ -0,0 +1,115 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Vertex;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.StatefulFunction;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+import org.apache.flink.statefun.sdk.java.slice.Slice;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding a single edge to a vertex of the given degree through InEdgesQueryFn and OutEdgesQueryFn, including the
+ * (de)serialization of the state and the message.
+ *
+ * The vertex is reset to its initial degree after every TAIL_CAPACITY adds, right after running the compaction
+ * that the adds have scheduled, so every measured add sees about the same degree and the compaction cost is
+ * amortized over the adds like in the runtime. Sharding is disabled, so the adds are always measured against the
+ * neighbor list store of the vertex itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-DGRAPH_SHARD_COUNT=1", "-DGRAPH_LOG_LEVEL=WARN"})
+public class NeighborUpdateBenchmark {
+
+  private static final String VERTEX_ID = "1";
+
+  @Param({"10", "1000", "100000", "1000000"})
+  private int degree;
+
+  @Param({"true", "false"})
+  private boolean inOrder;
+
+  private final InEdgesQueryFn inEdges = new InEdgesQueryFn();
+  private final OutEdgesQueryFn outEdges = new OutEdgesQueryFn();
+
+  private BenchmarkContext inContext;
+  private BenchmarkContext outContext;
+  private Map<String, Slice> inSnapshot;
+  private Map<String, Slice> outSnapshot;
+  private Message[] inAdds;
+  private Message[] outAdds;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Random random = BenchmarkData.random();
+    NeighborList existing = BenchmarkData.neighborList(random, degree);
+    long[] timestamps = BenchmarkData.newTimestamps(random, SegmentedNeighborStore.TAIL_CAPACITY,
+        degree * BenchmarkData.TIMESTAMP_STEP, inOrder);
+
+    inContext = new BenchmarkContext(new Address(InEdgesQueryFn.TYPE_NAME, VERTEX_ID));
+    load(inContext, new SegmentedNeighborStore("inNeighbors", Types.IN_NEIGHBORS_TYPE), existing);
+    inSnapshot = inContext.snapshot();
+
+    outContext = new BenchmarkContext(new Address(OutEdgesQueryFn.TYPE_NAME, VERTEX_ID));
+    load(outContext, new SegmentedNeighborStore("outNeighbors", Types.OUT_NEIGHBORS_TYPE), existing);
+    // the first add builds the recommendation sample of the vertex, which the later adds only update
+    outEdges.apply(outContext, MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, VERTEX_ID)
+        .withCustomType(Types.Add_OUT_EDGE_TYPE, new Vertex(1, random.nextInt(BenchmarkData.VERTEX_COUNT), 0))
+        .build());
+    outContext.takePendingCompaction();
+    outSnapshot = outContext.snapshot();
+
+    inAdds = new Message[timestamps.length];
+    outAdds = new Message[timestamps.length];
+    for (int i = 0; i < timestamps.length; i++) {
+      int neighbor = random.nextInt(BenchmarkData.VERTEX_COUNT);
+      inAdds[i] = MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, VERTEX_ID)
+          .withCustomType(Types.Add_IN_EDGE_TYPE, new Vertex(neighbor, 1, timestamps[i]))
+          .build();
+      outAdds[i] = MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, VERTEX_ID)
+          .withCustomType(Types.Add_OUT_EDGE_TYPE, new Vertex(1, neighbor, timestamps[i]))
+          .build();
+    }
+  }
+
+  @Benchmark
+  public void addInEdge() throws Throwable {
+    addEdge(inEdges, inContext, inAdds, inSnapshot);
+  }
+
+  @Benchmark
+  public void addOutEdge() throws Throwable {
+    addEdge(outEdges, outContext, outAdds, outSnapshot);
+  }
+
+  private void addEdge(StatefulFunction function, BenchmarkContext context, Message[] adds,
+      Map<String, Slice> snapshot) throws Throwable {
+    function.apply(context, adds[next]);
+    if (++next == adds.length) {
+      Message compaction = context.takePendingCompaction();
+      if (compaction != null) {
+        function.apply(context, compaction);
+      }
+      context.restore(snapshot);
+      next = 0;
+    }
+  }
+
+  private static void load(BenchmarkContext context, SegmentedNeighborStore store, NeighborList edges) {
+    // the initial edges end up in the sealed segments, the tail starts out empty
+    store.appendAll(context, edges);
+    store.compact(context);
+    context.takePendingCompaction();
+  }
+}
@@ -0,0 +1,66 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.slice.Slice;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding recommendation candidates to the top-k candidates of a vertex that has already been suggested the given number
+ * of candidates, one at a time and as a batch of 64, including the (de)serialization of the scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommendationBenchmark {
+
+  private static final int BATCH_SIZE = 64;
+
+  @Param({"10", "1000", "100000"})
+  private int degree;
+
+  private final RecommendationFn recommendation = new RecommendationFn();
+
+  private BenchmarkContext context;
+  private Map<String, Slice> snapshot;
+  private int[] candidates;
+  private NeighborList batch;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = BenchmarkData.random();
+    context = new BenchmarkContext(new Address(RecommendationFn.TYPE_NAME, "1"));
+    recommendation.updateRecommendSet(context, BenchmarkData.neighborList(random, degree));
+    snapshot = context.snapshot();
+
+    candidates = new int[BATCH_SIZE];
+    batch = new NeighborList(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      candidates[i] = random.nextInt(BenchmarkData.VERTEX_COUNT);
+      batch.append(candidates[i], i);
+    }
+  }
+
+  @Benchmark
+  public void addCandidate() {
+    recommendation.updateRecommendSet(context, candidates[next]);
+    if (++next == BATCH_SIZE) {
+      context.restore(snapshot);
+      next = 0;
+    }
+  }
+
+  @Benchmark
+  public void addCandidateBatch() {
+    recommendation.updateRecommendSet(context, batch);
+    context.restore(snapshot);
+  }
+}
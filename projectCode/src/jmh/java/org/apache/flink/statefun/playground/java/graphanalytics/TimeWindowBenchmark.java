@@ -0,0 +1,51 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The range lookup of the TIME_WINDOW query on the outgoing edges of a vertex of the given degree. The windows
+ * cover 1% of the time span of the edges, at random positions.
+ *
+ * OutEdgesQueryFn.getTimeWindowNodes delegates to {@link NeighborList#range(long, long)}, which is measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeWindowBenchmark {
+
+  private static final int WINDOWS = 1024;
+
+  @Param({"10", "1000", "100000", "1000000"})
+  private int degree;
+
+  private NeighborList neighbors;
+  private long[] windowStarts;
+  private long windowLength;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = BenchmarkData.random();
+    neighbors = BenchmarkData.neighborList(random, degree);
+    long span = degree * BenchmarkData.TIMESTAMP_STEP;
+    windowLength = Math.max(1, span / 100);
+    windowStarts = new long[WINDOWS];
+    for (int i = 0; i < WINDOWS; i++) {
+      windowStarts[i] = (long) (random.nextDouble() * (span - windowLength));
+    }
+  }
+
+  @Benchmark
+  public NeighborList timeWindow() {
+    long start = windowStarts[next];
+    next = (next + 1) % WINDOWS;
+    return neighbors.range(start, start + windowLength);
+  }
+}
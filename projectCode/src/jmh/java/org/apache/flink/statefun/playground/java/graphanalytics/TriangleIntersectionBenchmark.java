@@ -0,0 +1,55 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.DistinctNeighbors;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.SortedIntSets;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The intersection at the heart of a triangle pass: the trace of the root vertex against the distinct neighbors of
+ * a neighbor vertex. Both sides have the given degree (the same-size merge), or the trace is 100 times smaller (the
+ * galloping search that a low degree root vertex uses against a high degree neighbor).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangleIntersectionBenchmark {
+
+  @Param({"10", "1000", "100000", "1000000"})
+  private int degree;
+
+  private int[] trace;
+  private int[] smallTrace;
+  private DistinctNeighbors neighbors;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = BenchmarkData.random();
+    // a denser id space than the whole graph, so that the sets actually overlap
+    int universe = Math.max(degree * 4, 64);
+    trace = BenchmarkData.sortedIds(random, degree, universe);
+    smallTrace = BenchmarkData.sortedIds(random, Math.max(1, degree / 100), universe);
+    neighbors = DistinctNeighbors.of(BenchmarkData.sortedIds(random, degree, universe));
+  }
+
+  @Benchmark
+  public void intersectSameSize(Blackhole blackhole) {
+    neighbors.intersect(trace, blackhole::consume);
+  }
+
+  @Benchmark
+  public void intersectSmallTrace(Blackhole blackhole) {
+    neighbors.intersect(smallTrace, blackhole::consume);
+  }
+
+  @Benchmark
+  public void intersectSortedArrays(Blackhole blackhole) {
+    SortedIntSets.intersect(trace, neighbors.toSortedArray(), blackhole::consume);
+  }
+}
@@ -0,0 +1,146 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the events of all the {@link GraphLogger}s to stdout from a single background thread.
+ *
+ * The events are handed over through a bounded ring buffer of GRAPH_LOG_BUFFER_SIZE events (default 8192). A
+ * function thread never blocks on a full buffer, the event is dropped instead and the number of dropped events is
+ * reported with the next batch that gets written. The writer thread formats the events, writes them in batches and
+ * only flushes once the buffer is drained, and a shutdown hook writes the events that are still buffered.
+ */
+final class AsyncLogAppender {
+
+  static final AsyncLogAppender INSTANCE =
+      new AsyncLogAppender(Math.max(16, GraphAnalyticsConfig.getInt("GRAPH_LOG_BUFFER_SIZE", 8192)));
+
+  private static final int MAX_BATCH = 256;
+
+  static final class Event {
+    private final long timestamp;
+    private final GraphLogger.Level level;
+    private final String logger;
+    private final String format;
+    private final Object[] args;
+    private final Throwable error;
+    private final long suppressed;
+
+    Event(long timestamp, GraphLogger.Level level, String logger, String format, Object[] args, Throwable error,
+        long suppressed) {
+      this.timestamp = timestamp;
+      this.level = level;
+      this.logger = logger;
+      this.format = format;
+      this.args = args;
+      this.error = error;
+      this.suppressed = suppressed;
+    }
+  }
+
+  private final ArrayBlockingQueue<Event> buffer;
+  private final AtomicLong dropped = new AtomicLong();
+  private final PrintWriter out;
+
+  private AsyncLogAppender(int capacity) {
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    Writer stdout = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+    this.out = new PrintWriter(new BufferedWriter(stdout, 1 << 16), false);
+
+    Thread writer = new Thread(this::run, "graph-analytics-log-appender");
+    writer.setDaemon(true);
+    writer.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "graph-analytics-log-drain"));
+  }
+
+  /**
+   * This method hands an event over to the writer thread, or drops it if the buffer is full
+   * @param event
+   */
+  void append(Event event) {
+    if (!buffer.offer(event)) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  private void run() {
+    List<Event> batch = new ArrayList<>(MAX_BATCH);
+    while (true) {
+      try {
+        Event first = buffer.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        buffer.drainTo(batch, MAX_BATCH - 1);
+        write(batch);
+        batch.clear();
+        if (buffer.isEmpty()) {
+          out.flush();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private synchronized void write(List<Event> batch) {
+    long droppedEvents = dropped.getAndSet(0);
+    if (droppedEvents > 0) {
+      out.printf("%s WARN  AsyncLogAppender - dropped %d log events, the log buffer was full%n",
+          Instant.now(), droppedEvents);
+    }
+    for (Event event : batch) {
+      out.print(Instant.ofEpochMilli(event.timestamp));
+      out.print(' ');
+      out.print(String.format("%-5s", event.level));
+      out.print(' ');
+      out.print(event.logger);
+      out.print(" - ");
+      out.print(message(event));
+      if (event.suppressed > 0) {
+        out.print(" (");
+        out.print(event.suppressed);
+        out.print(" earlier events dropped by the rate limit)");
+      }
+      out.println();
+      if (event.error != null) {
+        event.error.printStackTrace(out);
+      }
+    }
+  }
+
+  private static String message(Event event) {
+    if (event.args == null || event.args.length == 0) {
+      return event.format;
+    }
+    try {
+      return String.format(event.format, event.args);
+    } catch (IllegalFormatException e) {
+      return event.format + " " + Arrays.toString(event.args);
+    }
+  }
+
+  private void drain() {
+    List<Event> rest = new ArrayList<>();
+    buffer.drainTo(rest);
+    write(rest);
+    out.flush();
+  }
+}
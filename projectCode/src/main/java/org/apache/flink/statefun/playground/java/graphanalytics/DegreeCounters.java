@@ -0,0 +1,143 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.ShardExpiry;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.VertexDegree;
+import org.apache.flink.statefun.sdk.java.AddressScopedStorage;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+
+/**
+ * This class keeps the degree counters of a vertex ({@link VertexDegree}) in a small state value of their own, which
+ * every edge add updates, so that the degree queries neither read the neighbor list nor ask the shards of the vertex.
+ *
+ * The counters are kept at the vertex address only, the edges of a sharded vertex pass through it on their way to
+ * the shards. The counters remember the number of edges added to the vertex, which does not go down when edges are
+ * dropped by the retention, and tells whether they cover all of its edges. Counters that do not, such as for state
+ * written before the counters existed, are rebuilt from the neighbor list once. A sharded vertex cannot do that, its
+ * counters start over with the edges added from then on, and report their distinct neighbors as inexact.
+ *
+ * When the retention drops edges of the vertex, the counters are rebuilt from the edges that are left, so that they
+ * only count those. The edges that the shards of a sharded vertex drop cannot be taken out of its counters, the
+ * distinct neighbors are reported as inexact from then on and the first timestamp moves up to the horizon.
+ */
+final class DegreeCounters {
+
+  private final SegmentedNeighborStore store;
+  private final VertexShards shards;
+  private final ValueSpec<VertexDegree> counters;
+
+  /**
+   * @param store the neighbor list whose edges are counted
+   * @param shards the shards of the neighbor list
+   */
+  DegreeCounters(SegmentedNeighborStore store, VertexShards shards) {
+    this.store = store;
+    this.shards = shards;
+    this.counters = EdgeRetention.vertexValue(store.name() + "Degree").withCustomType(Types.VERTEX_DEGREE_TYPE);
+  }
+
+  ValueSpec<?>[] valueSpecs() {
+    return new ValueSpec<?>[] {counters};
+  }
+
+  /**
+   * This method counts a new edge, it should be called after the edge was stored or routed to a shard
+   * @param context
+   * @param id
+   * @param timestamp
+   */
+  void add(Context context, int id, long timestamp) {
+    if (VertexShards.isShard(context)) {
+      return;
+    }
+    NeighborList edge = new NeighborList(1);
+    edge.append(id, timestamp);
+    addAll(context, edge);
+  }
+
+  /**
+   * This method counts a batch of new edges, it should be called after the edges were stored or routed to the shards
+   * @param context
+   * @param edges
+   */
+  void addAll(Context context, NeighborList edges) {
+    if (VertexShards.isShard(context) || edges.isEmpty()) {
+      return;
+    }
+    AddressScopedStorage storage = context.storage();
+    int addedEdges = shards.addedEdges(context);
+    VertexDegree degree = storage.get(counters).orElse(null);
+    if (degree == null && addedEdges == edges.size()) {
+      degree = new VertexDegree();
+      degree.addAll(edges);
+    } else if (degree != null && degree.getAddedEdges() + edges.size() == addedEdges) {
+      degree.addAll(edges);
+    } else {
+      // the new edges are already stored, so the rebuilt counters cover them
+      degree = rebuild(context, addedEdges, edges);
+    }
+    storage.set(counters, degree);
+  }
+
+  /**
+   * This method rebuilds the counters from the edges that are left once the neighbor list has dropped edges that fell
+   * behind the retention horizon
+   * @param context
+   * @param expiredEdges the number of edges that were just dropped, nothing is done if there are none
+   */
+  void expire(Context context, int expiredEdges) {
+    if (VertexShards.isShard(context) || expiredEdges == 0) {
+      return;
+    }
+    context.storage().set(counters, rebuild(context, shards.addedEdges(context), new NeighborList()));
+  }
+
+  /**
+   * This method accounts for the edges that a shard of the vertex has dropped
+   * @param context
+   * @param expiry
+   */
+  void expire(Context context, ShardExpiry expiry) {
+    VertexDegree degree = get(context);
+    degree.expire(expiry.getHorizon());
+    context.storage().set(counters, degree);
+  }
+
+  /**
+   * This method returns the counters of all the edges of the vertex, it only reads the neighbor list if the counters
+   * have to be rebuilt
+   * @param context
+   * @return the counters
+   */
+  VertexDegree get(Context context) {
+    AddressScopedStorage storage = context.storage();
+    int addedEdges = shards.addedEdges(context);
+    VertexDegree degree = storage.get(counters).orElse(null);
+    if (degree == null && addedEdges == 0) {
+      return new VertexDegree();
+    }
+    if (degree == null || degree.getAddedEdges() != addedEdges) {
+      degree = rebuild(context, addedEdges, new NeighborList());
+      storage.set(counters, degree);
+    }
+    return degree;
+  }
+
+  /**
+   * This method counts the edges in the neighbor list, or only the given new edges if the vertex is sharded
+   */
+  private VertexDegree rebuild(Context context, int addedEdges, NeighborList newEdges) {
+    if (shards.isSharded(context)) {
+      VertexDegree degree = new VertexDegree(addedEdges - newEdges.size());
+      degree.addAll(newEdges);
+      return degree;
+    }
+    // the added edges that are not in the neighbor list have been dropped by the retention
+    NeighborList edges = store.read(context);
+    VertexDegree degree = VertexDegree.afterExpiry(addedEdges - edges.size());
+    degree.addAll(edges);
+    return degree;
+  }
+}
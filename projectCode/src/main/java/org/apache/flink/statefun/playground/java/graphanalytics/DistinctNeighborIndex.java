@@ -0,0 +1,78 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.DistinctNeighbors;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.AddressScopedStorage;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+
+/**
+ * This class keeps the distinct neighbors of a vertex in state, so that triangle queries on a vertex with many
+ * neighbors do not need to read, sort and dedupe its whole neighbor list every time.
+ *
+ * The index is built lazily by the first triangle query, and remembers the version of the vertex when it was built.
+ * The version changes whenever an edge is added or falls behind the retention horizon, so the index is still current
+ * as long as the version is the same, and neither an edge add nor an expiry needs to touch the index.
+ */
+final class DistinctNeighborIndex {
+
+  // vertices with fewer distinct neighbors are cheap enough to dedupe on every query
+  private static final int MIN_INDEXED_SIZE = 256;
+
+  private final ValueSpec<DistinctNeighbors> index;
+  // version of the vertex when the index was built
+  private final ValueSpec<Long> indexedVersion;
+
+  /**
+   * @param store the neighbor list that is indexed
+   */
+  DistinctNeighborIndex(SegmentedNeighborStore store) {
+    this.index =
+        EdgeRetention.vertexValue(store.name() + "DistinctIndex").withCustomType(Types.DISTINCT_NEIGHBORS_TYPE);
+    this.indexedVersion = EdgeRetention.vertexValue(store.name() + "DistinctIndexVersion").withLongType();
+  }
+
+  ValueSpec<?>[] valueSpecs() {
+    return new ValueSpec<?>[] {index, indexedVersion};
+  }
+
+  /**
+   * @param context
+   * @param version the current version of the vertex, see {@link VertexShards#version}
+   * @return true if the stored index covers all the current edges
+   */
+  boolean isCurrent(Context context, long version) {
+    return context.storage().get(indexedVersion).orElse(-1L) == version;
+  }
+
+  /**
+   * This method returns the stored index, it should only be called when {@link #isCurrent} is true
+   * @param context
+   * @return the distinct neighbors of the vertex
+   */
+  DistinctNeighbors get(Context context) {
+    return context.storage().get(index).orElseThrow(() -> new IllegalStateException("no distinct neighbor index"));
+  }
+
+  /**
+   * This method returns the distinct neighbors of the given edges, and stores them as the new index if the vertex
+   * has enough neighbors
+   * @param context
+   * @param version the current version of the vertex, see {@link VertexShards#version}
+   * @param edges the current edges of the vertex
+   * @return the distinct neighbors of the vertex
+   */
+  DistinctNeighbors update(Context context, long version, NeighborList edges) {
+    if (isCurrent(context, version)) {
+      return get(context);
+    }
+    DistinctNeighbors neighbors = DistinctNeighbors.of(edges.distinctIds());
+    if (neighbors.size() >= MIN_INDEXED_SIZE) {
+      AddressScopedStorage storage = context.storage();
+      storage.set(index, neighbors);
+      storage.set(indexedVersion, version);
+    }
+    return neighbors;
+  }
+}
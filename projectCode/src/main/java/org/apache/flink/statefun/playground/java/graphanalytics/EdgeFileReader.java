@@ -0,0 +1,121 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads the edge files in data/, one "src dst timestamp" edge per line. The file is memory mapped in
+ * chunks and the numbers are parsed straight from its bytes, so reading does not allocate per line and is not what
+ * limits the programs that replay the files. Lines that do not start with three numbers are skipped.
+ */
+final class EdgeFileReader {
+
+  /**
+   * Is called for every edge of the file, in the order of the file.
+   */
+  @FunctionalInterface
+  interface EdgeVisitor {
+    /**
+     * @return false to stop reading
+     */
+    boolean onEdge(int src, int dst, long timestamp) throws Exception;
+  }
+
+  private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+  private EdgeFileReader() {
+  }
+
+  /**
+   * This method calls the visitor with every edge of the file, until it returns false
+   * @param file
+   * @param visitor
+   * @return the number of edges visited
+   * @throws Exception if the file could not be read, or the visitor failed
+   */
+  static long forEachEdge(Path file, EdgeVisitor visitor) throws Exception {
+    long edges = 0;
+    long[] fields = new long[3];
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        long length = Math.min(CHUNK_SIZE, size - position);
+        boolean lastChunk = position + length == size;
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+        int lineStart = 0;
+        int limit = chunk.limit();
+        for (int i = 0; i < limit; i++) {
+          if (chunk.get(i) == '\n') {
+            if (parseLine(chunk, lineStart, i, fields)) {
+              edges++;
+              if (!visitor.onEdge((int) fields[0], (int) fields[1], fields[2])) {
+                return edges;
+              }
+            }
+            lineStart = i + 1;
+          }
+        }
+        if (lastChunk) {
+          // the last line of the file may not end with a line break
+          if (lineStart < limit && parseLine(chunk, lineStart, limit, fields)) {
+            edges++;
+            visitor.onEdge((int) fields[0], (int) fields[1], fields[2]);
+          }
+          break;
+        }
+        if (lineStart == 0) {
+          throw new IOException(String.format("Line at offset %d of %s is longer than %d bytes",
+              position, file, CHUNK_SIZE));
+        }
+        // the incomplete line at the end of the chunk is read with the next chunk
+        position += lineStart;
+      }
+    }
+    return edges;
+  }
+
+  /**
+   * This method parses the first three whitespace separated integers of a line
+   * @param buffer
+   * @param from first byte of the line
+   * @param to end of the line, exclusive
+   * @param fields receives the three numbers
+   * @return whether the line starts with three numbers
+   */
+  private static boolean parseLine(MappedByteBuffer buffer, int from, int to, long[] fields) {
+    int i = from;
+    for (int field = 0; field < fields.length; field++) {
+      while (i < to && isSpace(buffer.get(i))) {
+        i++;
+      }
+      boolean negative = i < to && buffer.get(i) == '-';
+      if (negative) {
+        i++;
+      }
+      int digitsStart = i;
+      long value = 0;
+      while (i < to) {
+        byte b = buffer.get(i);
+        if (b < '0' || b > '9') {
+          break;
+        }
+        value = value * 10 + (b - '0');
+        i++;
+      }
+      if (i == digitsStart || (i < to && !isSpace(buffer.get(i)))) {
+        return false;
+      }
+      fields[field] = negative ? -value : value;
+    }
+    return true;
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+}
@@ -0,0 +1,74 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+
+import java.time.Duration;
+
+/**
+ * This class defines how long the state of a vertex is kept.
+ *
+ * The edges of a vertex are kept for a sliding retention horizon in event time: once the vertex has an edge with
+ * timestamp t, its edges older than t - horizon are dropped the next time its sealed segments are compacted, see
+ * {@link SegmentedNeighborStore}. Dropping is done in passes, a pass runs once the oldest edge is another eighth of
+ * the horizon older than the horizon, so that the segments are not rewritten on every compaction.
+ *
+ * Independently, all the state of a vertex expires once its functions have not been called for
+ * GRAPH_IDLE_VERTEX_EXPIRATION_DAYS days, which is done by the StateFun runtime.
+ */
+final class EdgeRetention {
+
+  private static final long SECONDS_PER_DAY = 24 * 3600;
+
+  // zero keeps the state of idle vertices forever
+  static final Duration IDLE_VERTEX_EXPIRATION =
+      Duration.ofDays(Math.max(0, GraphAnalyticsConfig.getLong("GRAPH_IDLE_VERTEX_EXPIRATION_DAYS", 0)));
+
+  static final EdgeRetention FOREVER = new EdgeRetention(0);
+
+  private final long horizonSeconds;
+
+  private EdgeRetention(long horizonSeconds) {
+    this.horizonSeconds = horizonSeconds;
+  }
+
+  /**
+   * @param setting name of the setting that holds the horizon in days, zero or less keeps the edges forever
+   * @return the retention
+   */
+  static EdgeRetention fromSetting(String setting) {
+    long days = GraphAnalyticsConfig.getLong(setting, 0);
+    return days <= 0 ? FOREVER : new EdgeRetention(days * SECONDS_PER_DAY);
+  }
+
+  boolean isEnabled() {
+    return horizonSeconds > 0;
+  }
+
+  /**
+   * @param newestTimestamp the timestamp of the newest edge of the vertex
+   * @return the edges with a smaller timestamp are no longer kept
+   */
+  long horizonOf(long newestTimestamp) {
+    return newestTimestamp - horizonSeconds;
+  }
+
+  /**
+   * @param oldestTimestamp the timestamp of the oldest edge that is kept
+   * @param newestTimestamp the timestamp of the newest edge of the vertex
+   * @return true if enough edges have fallen behind the horizon for a pass that drops them
+   */
+  boolean isDue(long oldestTimestamp, long newestTimestamp) {
+    return isEnabled() && oldestTimestamp < horizonOf(newestTimestamp) - horizonSeconds / 8;
+  }
+
+  /**
+   * This method starts the spec of a state value of a vertex, which expires together with the other values of the
+   * vertex once it is idle
+   * @param name
+   * @return the untyped value spec
+   */
+  static ValueSpec.Untyped vertexValue(String name) {
+    ValueSpec.Untyped value = ValueSpec.named(name);
+    return IDLE_VERTEX_EXPIRATION.isZero() ? value : value.thatExpiresAfterCall(IDLE_VERTEX_EXPIRATION);
+  }
+}
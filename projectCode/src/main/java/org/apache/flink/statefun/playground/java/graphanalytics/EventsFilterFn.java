@@ -10,7 +10,10 @@ import org.apache.flink.statefun.sdk.java.TypeName;
 import org.apache.flink.statefun.sdk.java.message.Message;
 import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * A function for handling incoming requests.
@@ -19,6 +22,8 @@ import java.util.ArrayList;
  * execute method.
  */
 final class EventsFilterFn implements StatefulFunction {
+  private static final GraphLogger LOG = GraphLogger.get(EventsFilterFn.class);
+
   static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "filter");
   static final StatefulFunctionSpec SPEC = StatefulFunctionSpec.builder(TYPE_NAME)
       .withSupplier(EventsFilterFn::new)
@@ -28,9 +33,10 @@ final class EventsFilterFn implements StatefulFunction {
   public CompletableFuture<Void> apply(Context context, Message message) {
     if (message.is(Types.EXECUTE_TYPE)) {
       final Execute request = message.as(Types.EXECUTE_TYPE);
-
       if (request.getTask().equals("ADD")) {
-        System.out.println("Adding Vertex");
+        if (LOG.isEnabled(GraphLogger.Level.DEBUG)) {
+          LOG.debug("adding edge (%d -> %d)", request.getSrc(), request.getDst());
+        }
         Vertex v = new Vertex(
             request.getSrc(),
             request.getDst(),
@@ -43,66 +49,54 @@ final class EventsFilterFn implements StatefulFunction {
             MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(v.getSrc()))
                 .withCustomType(Types.Add_OUT_EDGE_TYPE, v)
                 .build());
-        context.send(
-            MessageBuilder.forAddress(TimeWindowQueryFn.TYPE_NAME, String.valueOf(v.getSrc()))
-                .withCustomType(Types.Add_OUT_EDGE_TYPE, v)
-                .build());
-      } else if (request.getTask().equals("GET_IN_EDGES")) {
-        System.out.println("Fetching IN Edges");
+      } else if (request.getTask().equals("ADD_BATCH")) {
+        if (LOG.isEnabled(GraphLogger.Level.DEBUG)) {
+          LOG.debug("adding batch of %d edges", request.getEdges().size());
+        }
+        sendEdgeBatches(context, request.getEdges());
+      } else if (isPagedQuery(request.getTask())) {
+        sendPagedQuery(context, request);
+      } else if (request.getTask().equals("IN_DEGREE")) {
+        LOG.debug("fetching in-degree of vertex %d", request.getDst());
         InEdgesQuery inQuery = InEdgesQuery.create(request.getDst(), request.getTimestamp());
 
         context.send(
             MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, String.valueOf(inQuery.getVertexId()))
-                .withCustomType(Types.IN_EDGES_QUERY_TYPE, inQuery)
+                .withCustomType(Types.IN_DEGREE_QUERY_TYPE, inQuery)
                 .build());
-      } else if (request.getTask().equals("GET_OUT_EDGES")) {
-        System.out.println("Fetching OUT Edges");
+      } else if (request.getTask().equals("OUT_DEGREE")) {
+        LOG.debug("fetching out-degree of vertex %d", request.getSrc());
         OutEdgesQuery outQuery = OutEdgesQuery.create(request.getSrc(), request.getTimestamp());
 
         context.send(
             MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(outQuery.getVertexId()))
-                .withCustomType(Types.OUT_EDGES_QUERY_TYPE, outQuery)
+                .withCustomType(Types.OUT_DEGREE_QUERY_TYPE, outQuery)
                 .build());
-      } else if (request.getTask().equals("GET_TIME_WINDOW_EDGES")) {
-        System.out.println("Fetching TIME WINDOW edges");
+      } else if (request.getTask().equals("COUNT_TIME_WINDOW")) {
+        LOG.debug("counting time window edges of vertex %d", request.getSrc());
         TimeWindowQuery timeWindowQuery = TimeWindowQuery.create(request.getSrc(), request.getTimestamp(),
             request.getEndTime());
 
         context.send(
-            MessageBuilder.forAddress(TimeWindowQueryFn.TYPE_NAME, String.valueOf(timeWindowQuery.getSrc()))
-                .withCustomType(Types.TIME_WINDOW_QUERY_TYPE, timeWindowQuery)
+            MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(timeWindowQuery.getSrc()))
+                .withCustomType(Types.COUNT_TIME_WINDOW_QUERY_TYPE, timeWindowQuery)
                 .build());
       } else if (request.getTask().equals("IN_K_HOP")) {
-        System.out
-            .println("Attempting K-Hop (K = " + request.getK() + ") for Incoming Edges of Vertex " + request.getDst());
-        KHopQuery kHopQuery = KHopQuery.create(
-            request.getDst(),
-            request.getDst(),
-            request.getK(),
-            request.getK() - 1,
-            new ArrayList<Integer>(0));
-
-        context.send(
-            MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, String.valueOf(request.getDst()))
-                .withCustomType(Types.K_HOP_QUERY_TYPE, kHopQuery)
-                .build());
+        String runId = runIdOf(request);
+        LOG.debug("k-hop query %s (K = %d) for incoming edges of vertex %d", runId, request.getK(),
+            request.getDst());
+        KHopQuery kHopQuery = KHopQuery.create(runId, request.getDst(), request.getK(), KHopQuery.DIRECTION_IN);
+        sendKHopQuery(context, kHopQuery);
       } else if (request.getTask().equals("OUT_K_HOP")) {
-        System.out
-            .println("Attempting K-Hop (K = " + request.getK() + ") for Outgoing Edges of Vertex " + request.getSrc());
-        KHopQuery kHopQuery = KHopQuery.create(
-            request.getSrc(),
-            request.getSrc(),
-            request.getK(),
-            request.getK() - 1,
-            new ArrayList<Integer>(0));
-
-        context.send(
-            MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(request.getSrc()))
-                .withCustomType(Types.K_HOP_QUERY_TYPE, kHopQuery)
-                .build());
+        String runId = runIdOf(request);
+        LOG.debug("k-hop query %s (K = %d) for outgoing edges of vertex %d", runId, request.getK(),
+            request.getSrc());
+        KHopQuery kHopQuery = KHopQuery.create(runId, request.getSrc(), request.getK(), KHopQuery.DIRECTION_OUT);
+        sendKHopQuery(context, kHopQuery);
       } else if (request.getTask().equals("IN_TRIANGLES")) {
-        System.out.println("Searching Triangles for Incoming Edges of Vertex " + request.getDst());
+        LOG.debug("triangle query for incoming edges of vertex %d", request.getDst());
         TriangleQueryTrigger triangleQueryTrigger = TriangleQueryTrigger.create(
+            runIdOf(request),
             request.getDst());
 
         context.send(
@@ -110,8 +104,9 @@ final class EventsFilterFn implements StatefulFunction {
                 .withCustomType(Types.TRIANGLE_QUERY_TRIGGER_TYPE, triangleQueryTrigger)
                 .build());
       } else if (request.getTask().equals("OUT_TRIANGLES")) {
-        System.out.println("Searching Triangles for Outgoing Edges of Vertex " + request.getSrc());
+        LOG.debug("triangle query for outgoing edges of vertex %d", request.getSrc());
         TriangleQueryTrigger triangleQueryTrigger = TriangleQueryTrigger.create(
+            runIdOf(request),
             request.getSrc());
 
         context.send(
@@ -119,18 +114,147 @@ final class EventsFilterFn implements StatefulFunction {
                 .withCustomType(Types.TRIANGLE_QUERY_TRIGGER_TYPE, triangleQueryTrigger)
                 .build());
       } else if (request.getTask().equals("GET_RECOMMENDATION")) {
-
-        System.out.println("Getting Recommendations");
+        LOG.debug("recommendation query for vertex %d", request.getDst());
         RecommendQuery recommendQuery = RecommendQuery.create(request.getDst(), request.getTimestamp());
         context.send(
             MessageBuilder.forAddress(RecommendationFn.TYPE_NAME, String.valueOf(recommendQuery.getVertexId()))
                 .withCustomType(Types.RECOMMEND_QUERY_TYPE, recommendQuery)
                 .build());
       } else {
-        System.out.println("Unknown Query Type");
+        LOG.warn("unknown task %s", request.getTask());
       }
     }
 
     return context.done();
   }
+
+  /**
+   * This method sends a k-hop query to the queried vertex, which answers it from its query cache if it can, or
+   * directly to the coordinator of the query if the cache is off
+   *
+   * @param context
+   * @param kHopQuery
+   */
+  private static void sendKHopQuery(Context context, KHopQuery kHopQuery) {
+    if (QueryResultCache.ENABLED) {
+      TypeName edgesFn = KHopQuery.DIRECTION_IN.equals(kHopQuery.getDirection())
+          ? InEdgesQueryFn.TYPE_NAME
+          : OutEdgesQueryFn.TYPE_NAME;
+      context.send(
+          MessageBuilder.forAddress(edgesFn, String.valueOf(kHopQuery.getVertexId()))
+              .withCustomType(Types.K_HOP_QUERY_TYPE, kHopQuery)
+              .build());
+    } else {
+      // the coordinator of the query expands it level by level, so that every vertex is visited only once
+      context.send(
+          MessageBuilder.forAddress(KHopCoordinatorFn.TYPE_NAME, kHopQuery.getQueryId())
+              .withCustomType(Types.K_HOP_QUERY_TYPE, kHopQuery)
+              .build());
+    }
+  }
+
+  /**
+   * This method returns the id that a k-hop or triangle query is run with: a new run of the query id of the request,
+   * so that the query id can be used again, or a new random id if the request has none
+   *
+   * @param request
+   * @return run id
+   */
+  private static String runIdOf(Execute request) {
+    String queryId = request.getQueryId();
+    return queryId == null || queryId.isEmpty()
+        ? UUID.randomUUID().toString()
+        : QueryResultAggregatorFn.runIdOf(queryId);
+  }
+
+  /**
+   * This method sends a GET_IN_EDGES, GET_OUT_EDGES or GET_TIME_WINDOW_EDGES query, the queries that can ask for a
+   * page of the edges. A request with an invalid limit, cursor or order is dropped.
+   *
+   * @param context
+   * @param request
+   */
+  private static void sendPagedQuery(Context context, Execute request) {
+    final PageRequest page;
+    try {
+      page = pageOf(request);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("dropping %s request with invalid paging: %s", request.getTask(), e.getMessage());
+      return;
+    }
+
+    if (request.getTask().equals("GET_IN_EDGES")) {
+      LOG.debug("fetching incoming edges of vertex %d", request.getDst());
+      InEdgesQuery inQuery = InEdgesQuery.create(request.getDst(), request.getTimestamp(), page);
+
+      context.send(
+          MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, String.valueOf(inQuery.getVertexId()))
+              .withCustomType(Types.IN_EDGES_QUERY_TYPE, inQuery)
+              .build());
+    } else if (request.getTask().equals("GET_OUT_EDGES")) {
+      LOG.debug("fetching outgoing edges of vertex %d", request.getSrc());
+      OutEdgesQuery outQuery = OutEdgesQuery.create(request.getSrc(), request.getTimestamp(), page);
+
+      context.send(
+          MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(outQuery.getVertexId()))
+              .withCustomType(Types.OUT_EDGES_QUERY_TYPE, outQuery)
+              .build());
+    } else {
+      LOG.debug("fetching time window edges of vertex %d", request.getSrc());
+      TimeWindowQuery timeWindowQuery = TimeWindowQuery.create(request.getSrc(), request.getTimestamp(),
+          request.getEndTime(), page);
+
+      // the time window is answered from the same time-sorted outgoing edges that OutEdgesQueryFn stores
+      context.send(
+          MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(timeWindowQuery.getSrc()))
+              .withCustomType(Types.TIME_WINDOW_QUERY_TYPE, timeWindowQuery)
+              .build());
+    }
+  }
+
+  private static boolean isPagedQuery(String task) {
+    return task.equals("GET_IN_EDGES") || task.equals("GET_OUT_EDGES") || task.equals("GET_TIME_WINDOW_EDGES");
+  }
+
+  /**
+   * This method returns the page of the edges that the request asks for, see {@link PageRequest}
+   *
+   * @param request
+   * @return the page, or null if the request asks for all the edges
+   * @throws IllegalArgumentException if the limit, cursor or order of the request is invalid
+   */
+  private static PageRequest pageOf(Execute request) {
+    return request.isPaged() ? PageRequest.create(request.getLimit(), request.getCursor(), request.getOrder()) : null;
+  }
+
+  /**
+   * This method groups a batch of edges by their destination and by their source vertex, and sends a single
+   * message with all the new incoming edges to every InEdgesQueryFn instance and a single message with all
+   * the new outgoing edges to every OutEdgesQueryFn instance
+   *
+   * @param context
+   * @param edges
+   */
+  private void sendEdgeBatches(Context context, List<Vertex> edges) {
+    Map<Integer, NeighborList> inEdgesByDst = new HashMap<>();
+    Map<Integer, NeighborList> outEdgesBySrc = new HashMap<>();
+    for (Vertex v : edges) {
+      // insert keeps every group sorted by timestamp, so the receivers can merge it as one sorted run
+      inEdgesByDst.computeIfAbsent(v.getDst(), k -> new NeighborList()).insert(v.getSrc(), v.getTimestamp());
+      outEdgesBySrc.computeIfAbsent(v.getSrc(), k -> new NeighborList()).insert(v.getDst(), v.getTimestamp());
+    }
+
+    for (Map.Entry<Integer, NeighborList> group : inEdgesByDst.entrySet()) {
+      context.send(
+          MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, String.valueOf(group.getKey()))
+              .withCustomType(Types.Add_IN_EDGE_BATCH_TYPE, group.getValue())
+              .build());
+    }
+    for (Map.Entry<Integer, NeighborList> group : outEdgesBySrc.entrySet()) {
+      context.send(
+          MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(group.getKey()))
+              .withCustomType(Types.Add_OUT_EDGE_BATCH_TYPE, group.getValue())
+              .build());
+    }
+  }
 }
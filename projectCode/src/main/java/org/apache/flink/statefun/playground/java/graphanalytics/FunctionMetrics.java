@@ -0,0 +1,227 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Counter;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Histogram;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Metrics;
+import org.apache.flink.statefun.sdk.java.*;
+import org.apache.flink.statefun.sdk.java.message.EgressMessage;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.slice.Slice;
+import org.apache.flink.statefun.sdk.java.types.Type;
+import org.apache.flink.statefun.sdk.java.types.TypeCharacteristics;
+import org.apache.flink.statefun.sdk.java.types.TypeSerializer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class instruments the functions of the server, see {@link #instrument(StatefulFunctionSpec)}. Per function
+ * and message type it records the number of invocations, the time spent in apply() and the number of messages and
+ * egress records sent by an invocation (fan-out), and per function and state value the bytes read and written.
+ *
+ * The metrics of a message type are looked up once and then kept, so recording is a few striped counter adds.
+ */
+final class FunctionMetrics {
+
+  private static final double NANOS = 1e-9;
+
+  private final String function;
+  private final Map<TypeName, MessageTypeMetrics> messageTypes = new ConcurrentHashMap<>();
+  // functions run synchronously, so one context wrapper per thread is enough
+  private final ThreadLocal<MeteredContext> contexts = ThreadLocal.withInitial(MeteredContext::new);
+
+  private FunctionMetrics(TypeName functionType) {
+    this.function = functionType.asTypeNameString();
+  }
+
+  /**
+   * This method returns a spec of the same function whose invocations and state accesses are recorded. The state
+   * values are registered with a type that counts the bytes the SDK deserializes and serializes, so the state is
+   * not serialized again just to measure it.
+   * @param spec
+   * @return the instrumented spec
+   */
+  static StatefulFunctionSpec instrument(StatefulFunctionSpec spec) {
+    FunctionMetrics metrics = new FunctionMetrics(spec.typeName());
+    StatefulFunctionSpec.Builder builder = StatefulFunctionSpec.builder(spec.typeName());
+    for (ValueSpec<?> valueSpec : spec.knownValues().values()) {
+      builder.withValueSpec(metrics.countingValueSpec(valueSpec));
+    }
+    return builder
+        .withSupplier(() -> new MeteredFunction(spec.supplier().get(), metrics))
+        .build();
+  }
+
+  /**
+   * This method returns the histogram of the neighbor list sizes that a function reads to answer queries
+   * @param functionType
+   * @return Histogram
+   */
+  static Histogram neighborListSizes(TypeName functionType) {
+    return Metrics.histogram("graph_neighbor_list_size", "Size of the neighbor lists read to answer a query.",
+        Histogram.POWERS_OF_TWO, 1, "function", functionType.asTypeNameString());
+  }
+
+  private MessageTypeMetrics messageTypeMetrics(TypeName messageType) {
+    return messageTypes.computeIfAbsent(messageType, type -> new MessageTypeMetrics(function,
+        type.asTypeNameString()));
+  }
+
+  private <T> ValueSpec<T> countingValueSpec(ValueSpec<T> spec) {
+    ValueSpec.Untyped untyped = ValueSpec.named(spec.name());
+    Expiration expiration = spec.expiration();
+    if (expiration.mode() == Expiration.Mode.AFTER_WRITE) {
+      untyped = untyped.thatExpireAfterWrite(expiration.duration());
+    } else if (expiration.mode() == Expiration.Mode.AFTER_CALL) {
+      untyped = untyped.thatExpiresAfterCall(expiration.duration());
+    }
+    Counter read = Metrics.counter("graph_state_read_bytes_total", "Bytes of state values read by a function.",
+        "function", function, "state", spec.name());
+    Counter written = Metrics.counter("graph_state_written_bytes_total",
+        "Bytes of state values written by a function.", "function", function, "state", spec.name());
+    return untyped.withCustomType(new CountingType<>(spec.type(), read, written));
+  }
+
+  private static final class MessageTypeMetrics {
+    private final Histogram applyTime;
+    private final Histogram messagesSent;
+    private final Histogram egressSent;
+
+    private MessageTypeMetrics(String function, String messageType) {
+      applyTime = Metrics.histogram("graph_function_apply_seconds", "Time spent in apply() per invocation.",
+          Histogram.LATENCY_NANOS, NANOS, "function", function, "message_type", messageType);
+      messagesSent = Metrics.histogram("graph_function_messages_sent", "Messages sent by an invocation.",
+          Histogram.POWERS_OF_TWO, 1, "function", function, "message_type", messageType);
+      egressSent = Metrics.histogram("graph_function_egress_sent", "Egress records sent by an invocation.",
+          Histogram.POWERS_OF_TWO, 1, "function", function, "message_type", messageType);
+    }
+  }
+
+  private static final class MeteredFunction implements StatefulFunction {
+    private final StatefulFunction delegate;
+    private final FunctionMetrics metrics;
+
+    private MeteredFunction(StatefulFunction delegate, FunctionMetrics metrics) {
+      this.delegate = delegate;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public CompletableFuture<Void> apply(Context context, Message message) throws Throwable {
+      MessageTypeMetrics typeMetrics = metrics.messageTypeMetrics(message.valueTypeName());
+      MeteredContext metered = metrics.contexts.get().reset(context);
+      long start = System.nanoTime();
+      try {
+        return delegate.apply(metered, message);
+      } finally {
+        typeMetrics.applyTime.record(System.nanoTime() - start);
+        typeMetrics.messagesSent.record(metered.messages);
+        typeMetrics.egressSent.record(metered.egress);
+        metered.reset(null);
+      }
+    }
+  }
+
+  /**
+   * Counts the messages that a function sends, everything else is passed to the context of the invocation
+   */
+  private static final class MeteredContext implements Context {
+    private Context delegate;
+    private int messages;
+    private int egress;
+
+    private MeteredContext reset(Context context) {
+      delegate = context;
+      messages = 0;
+      egress = 0;
+      return this;
+    }
+
+    @Override
+    public Address self() {
+      return delegate.self();
+    }
+
+    @Override
+    public Optional<Address> caller() {
+      return delegate.caller();
+    }
+
+    @Override
+    public void send(Message message) {
+      messages++;
+      delegate.send(message);
+    }
+
+    @Override
+    public void sendAfter(Duration delay, Message message) {
+      messages++;
+      delegate.sendAfter(delay, message);
+    }
+
+    @Override
+    public void sendAfter(Duration delay, String cancellationToken, Message message) {
+      messages++;
+      delegate.sendAfter(delay, cancellationToken, message);
+    }
+
+    @Override
+    public void cancelDelayedMessage(String cancellationToken) {
+      delegate.cancelDelayedMessage(cancellationToken);
+    }
+
+    @Override
+    public void send(EgressMessage message) {
+      egress++;
+      delegate.send(message);
+    }
+
+    @Override
+    public AddressScopedStorage storage() {
+      return delegate.storage();
+    }
+  }
+
+  private static final class CountingType<T> implements Type<T> {
+    private final Type<T> delegate;
+    private final TypeSerializer<T> serializer;
+
+    private CountingType(Type<T> delegate, Counter read, Counter written) {
+      this.delegate = delegate;
+      TypeSerializer<T> delegateSerializer = delegate.typeSerializer();
+      this.serializer = new TypeSerializer<T>() {
+        @Override
+        public Slice serialize(T value) {
+          Slice bytes = delegateSerializer.serialize(value);
+          written.add(bytes.readableBytes());
+          return bytes;
+        }
+
+        @Override
+        public T deserialize(Slice bytes) {
+          read.add(bytes.readableBytes());
+          return delegateSerializer.deserialize(bytes);
+        }
+      };
+    }
+
+    @Override
+    public TypeName typeName() {
+      return delegate.typeName();
+    }
+
+    @Override
+    public TypeSerializer<T> typeSerializer() {
+      return serializer;
+    }
+
+    @Override
+    public Set<TypeCharacteristics> typeCharacteristics() {
+      return delegate.typeCharacteristics();
+    }
+  }
+}
@@ -19,8 +19,16 @@
 package org.apache.flink.statefun.playground.java.graphanalytics;
 
 import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.playground.java.graphanalytics.undertow.PrometheusHttpHandler;
+import org.apache.flink.statefun.playground.java.graphanalytics.undertow.RequestScheduler;
 import org.apache.flink.statefun.playground.java.graphanalytics.undertow.UndertowHttpHandler;
 import org.apache.flink.statefun.sdk.java.StatefulFunctions;
+import org.apache.flink.statefun.sdk.java.types.Type;
 import org.apache.flink.statefun.sdk.java.handler.RequestReplyHandler;
 
 /**
@@ -33,22 +41,90 @@ import org.apache.flink.statefun.sdk.java.handler.RequestReplyHandler;
  */
 public final class GraphAnalyticsAppServer {
 
+  private static final GraphLogger LOG = GraphLogger.get(GraphAnalyticsAppServer.class);
+
+  private static final int PORT = GraphAnalyticsConfig.getInt("GRAPH_SERVER_PORT", 1108);
+  // the metrics are served on their own listener, 0 disables them
+  private static final int METRICS_PORT = GraphAnalyticsConfig.getInt("GRAPH_METRICS_PORT", 9108);
+  // 0 keeps the Undertow default
+  private static final int IO_THREADS = GraphAnalyticsConfig.getInt("GRAPH_SERVER_IO_THREADS", 0);
+  private static final int WORKER_THREADS = GraphAnalyticsConfig.getInt("GRAPH_SERVER_WORKER_THREADS", 0);
+  private static final int BUFFER_SIZE = GraphAnalyticsConfig.getInt("GRAPH_SERVER_BUFFER_SIZE", 0);
+  private static final boolean HTTP2 = GraphAnalyticsConfig.getBoolean("GRAPH_SERVER_HTTP2", false);
+  static final long REQUEST_BUFFER_POOL_BYTES =
+      GraphAnalyticsConfig.getLong("GRAPH_REQUEST_BUFFER_POOL_MB", 64) << 20;
+
+  private static final String EXECUTOR = GraphAnalyticsConfig.getString("GRAPH_SERVER_EXECUTOR",
+      RequestScheduler.EXECUTOR_IO);
+  private static final int UPDATE_THREADS = GraphAnalyticsConfig.getInt("GRAPH_SERVER_THREADS",
+      Runtime.getRuntime().availableProcessors());
+  private static final int QUERY_THREADS = GraphAnalyticsConfig.getInt("GRAPH_SERVER_QUERY_THREADS",
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  private static final int QUEUE_LIMIT = GraphAnalyticsConfig.getInt("GRAPH_SERVER_QUEUE_LIMIT", 256);
+
   public static void main(String[] args) {
-    System.out.println("Starting Graph Analytics Web Server...");
-    final StatefulFunctions functions = new StatefulFunctions();
-    functions.withStatefulFunction(EventsFilterFn.SPEC);
-    functions.withStatefulFunction(InEdgesQueryFn.SPEC);
-    functions.withStatefulFunction(OutEdgesQueryFn.SPEC);
-    functions.withStatefulFunction(RecommendationFn.SPEC);
-    functions.withStatefulFunction(TimeWindowQueryFn.SPEC);
-
-    final RequestReplyHandler requestReplyHandler = functions.requestReplyHandler();
-    final Undertow httpServer =
+    LOG.info("Starting Graph Analytics Web Server...");
+    final RequestReplyHandler requestReplyHandler = functions().requestReplyHandler();
+    final Undertow.Builder builder =
         Undertow.builder()
-            .addHttpListener(1108, "0.0.0.0")
-            .setHandler(new UndertowHttpHandler(requestReplyHandler))
-            .build();
+            .addHttpListener(PORT, "0.0.0.0")
+            .setHandler(new UndertowHttpHandler(requestReplyHandler, REQUEST_BUFFER_POOL_BYTES, requestScheduler()))
+            .setServerOption(UndertowOptions.ENABLE_HTTP2, HTTP2);
+    if (IO_THREADS > 0) {
+      builder.setIoThreads(IO_THREADS);
+    }
+    if (WORKER_THREADS > 0) {
+      builder.setWorkerThreads(WORKER_THREADS);
+    }
+    if (BUFFER_SIZE > 0) {
+      builder.setBufferSize(BUFFER_SIZE);
+    }
+    final Undertow httpServer = builder.build();
     httpServer.start();
-    System.out.println("Web server started successfully!");
+
+    if (METRICS_PORT > 0) {
+      Undertow.builder()
+          .addHttpListener(METRICS_PORT, "0.0.0.0")
+          .setHandler(new PrometheusHttpHandler())
+          .build()
+          .start();
+      LOG.info("Serving metrics on port %d", METRICS_PORT);
+    }
+    LOG.info("Web server started successfully on port %d, handling requests with the %s executor", PORT, EXECUTOR);
+  }
+
+  /**
+   * This method creates the scheduler of the requests as configured. The batches with a message of one of these
+   * types are handled on the query lane, they read whole neighbor lists or take part in a multi-step query.
+   * @return the scheduler
+   */
+  static RequestScheduler requestScheduler() {
+    Set<String> queryTypeNames = new HashSet<>();
+    for (Type<?> type : Arrays.asList(
+        Types.IN_EDGES_QUERY_TYPE, Types.OUT_EDGES_QUERY_TYPE, Types.TIME_WINDOW_QUERY_TYPE,
+        Types.COUNT_TIME_WINDOW_QUERY_TYPE,
+        Types.TRIANGLE_QUERY_TRIGGER_TYPE, Types.TRIANGLE_QUERY_PASS_TYPE, Types.K_HOP_QUERY_TYPE,
+        Types.K_HOP_EXPAND_TYPE, Types.DISTINCT_NEIGHBORS_TYPE, Types.SHARD_SCAN_REQUEST_TYPE,
+        Types.SHARD_SCAN_RESULT_TYPE, Types.RECOMMEND_QUERY_TYPE, Types.QUERY_RESULT_PART_TYPE,
+        Types.K_HOP_NEIGHBORS_TYPE, Types.VERSION_CHECK_TYPE, Types.VERSION_CHECK_RESULT_TYPE,
+        Types.CACHED_QUERY_RESULT_TYPE)) {
+      queryTypeNames.add(type.typeName().asTypeNameString());
+    }
+    return RequestScheduler.create(EXECUTOR, UPDATE_THREADS, QUERY_THREADS, QUEUE_LIMIT, queryTypeNames);
+  }
+
+  /**
+   * This method registers all the functions of the application, instrumented with their metrics
+   * @return the functions
+   */
+  static StatefulFunctions functions() {
+    final StatefulFunctions functions = new StatefulFunctions();
+    functions.withStatefulFunction(FunctionMetrics.instrument(EventsFilterFn.SPEC));
+    functions.withStatefulFunction(FunctionMetrics.instrument(InEdgesQueryFn.SPEC));
+    functions.withStatefulFunction(FunctionMetrics.instrument(OutEdgesQueryFn.SPEC));
+    functions.withStatefulFunction(FunctionMetrics.instrument(RecommendationFn.SPEC));
+    functions.withStatefulFunction(FunctionMetrics.instrument(KHopCoordinatorFn.SPEC));
+    functions.withStatefulFunction(FunctionMetrics.instrument(QueryResultAggregatorFn.SPEC));
+    return functions;
   }
 }
@@ -0,0 +1,49 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+/**
+ * Configuration of the function server. Every setting is read from a JVM system property of the given name, or
+ * else from the environment variable of the same name (which is how the docker-compose setup passes settings
+ * into the containers), and falls back to the default value otherwise.
+ */
+final class GraphAnalyticsConfig {
+
+  private GraphAnalyticsConfig() {
+  }
+
+  static String getString(String name, String defaultValue) {
+    String value = System.getProperty(name);
+    if (value == null) {
+      value = System.getenv(name);
+    }
+    return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+  }
+
+  static int getInt(String name, int defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("%s must be an integer, but was '%s'", name, value), e);
+    }
+  }
+
+  static long getLong(String name, long defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("%s must be an integer, but was '%s'", name, value), e);
+    }
+  }
+
+  static boolean getBoolean(String name, boolean defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+}
@@ -0,0 +1,274 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+/**
+ * GraphBootstrapApp loads a historical graph without replaying every edge through the filter function.
+ *
+ * "build" is the offline step: it reads edge files (like the files in data/), groups the edges by vertex and sorts
+ * them by timestamp, and writes a {@link GraphSnapshot} with one block per vertex and function: the incoming
+ * neighbors for InEdgesQueryFn, the outgoing neighbors for OutEdgesQueryFn, and the recommendation candidates
+ * for RecommendationFn, which are picked from the outgoing edges the same way the edge adds pick them.
+ * Vertices with more than GRAPH_SNAPSHOT_BLOCK_EDGES edges get several consecutive blocks, so that every block fits
+ * into a Kafka record.
+ *
+ * "load" sends every block of a snapshot to the snapshot topic of its kind, from which the Kafka ingress routes it
+ * to the function instance of the vertex, which installs it with a single state write.
+ */
+public final class GraphBootstrapApp {
+
+  private static final int BLOCK_EDGES = GraphAnalyticsConfig.getInt("GRAPH_SNAPSHOT_BLOCK_EDGES", 65536);
+
+  private GraphBootstrapApp() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length >= 3 && "build".equals(args[0])) {
+      Path[] edgeFiles = new Path[args.length - 2];
+      for (int i = 2; i < args.length; i++) {
+        edgeFiles[i - 2] = Paths.get(args[i]);
+      }
+      build(Paths.get(args[1]), edgeFiles);
+    } else if (args.length == 2 && "load".equals(args[0])) {
+      load(Paths.get(args[1]));
+    } else {
+      throw new Exception("Usage: build <snapshot file> <edge file>... | load <snapshot file>");
+    }
+  }
+
+  /**
+   * This method builds a snapshot from edge files
+   * @param snapshot the snapshot file to write
+   * @param edgeFiles
+   * @throws Exception
+   */
+  static void build(Path snapshot, Path... edgeFiles) throws Exception {
+    long start = System.nanoTime();
+    Edges edges = new Edges();
+    for (Path edgeFile : edgeFiles) {
+      System.out.println(String.format("Reading %s", edgeFile));
+      EdgeFileReader.forEachEdge(edgeFile, (src, dst, timestamp) -> {
+        edges.add(src, dst, timestamp);
+        return true;
+      });
+    }
+
+    long[] blocks = new long[1];
+    try (GraphSnapshot.Writer writer = new GraphSnapshot.Writer(snapshot)) {
+      BlockSink sink = (kind, vertexId, neighbors) -> {
+        if (neighbors.size() <= BLOCK_EDGES) {
+          writer.write(kind, vertexId, neighbors);
+          blocks[0]++;
+          return;
+        }
+        for (int from = 0; from < neighbors.size(); from += BLOCK_EDGES) {
+          writer.write(kind, vertexId, neighbors.copyOfRange(from, Math.min(from + BLOCK_EDGES, neighbors.size())));
+          blocks[0]++;
+        }
+      };
+      groupByVertex(edges.dst, edges.src, edges.timestamps, edges.size,
+          (vertexId, neighbors) -> sink.write(GraphSnapshot.Kind.IN_NEIGHBORS, vertexId, neighbors));
+
+      // the candidates of every edge are picked from a sample of the older outgoing edges of its source vertex
+      Map<Integer, NeighborList> candidates = new HashMap<>();
+      groupByVertex(edges.src, edges.dst, edges.timestamps, edges.size, (vertexId, neighbors) -> {
+        pickRecommendCandidates(neighbors, candidates);
+        sink.write(GraphSnapshot.Kind.OUT_NEIGHBORS, vertexId, neighbors);
+      });
+      int[] targets = candidates.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+      for (int target : targets) {
+        sink.write(GraphSnapshot.Kind.RECOMMEND_CANDIDATES, target, candidates.get(target));
+      }
+    }
+    System.out.println(String.format("Wrote %d edges as %d blocks to %s in %.1f s",
+        edges.size, blocks[0], snapshot, (System.nanoTime() - start) / 1e9));
+  }
+
+  /**
+   * This method sends every block of a snapshot to the Kafka ingress
+   * @param snapshot
+   * @throws Exception
+   */
+  private static void load(Path snapshot) throws Exception {
+    Producer<String, byte[]> producer = new KafkaProducer<>(
+        KafkaProducerApp.producerProperties(), new StringSerializer(), new ByteArraySerializer());
+    Semaphore inFlight = new Semaphore(GraphAnalyticsConfig.getInt("GRAPH_PRODUCER_MAX_IN_FLIGHT", 10000));
+    AtomicLong failed = new AtomicLong();
+    long[] blocks = new long[1];
+
+    long start = System.nanoTime();
+    GraphSnapshot.forEachBlock(snapshot, (kind, vertexId, neighborList) -> {
+      inFlight.acquire();
+      producer.send(new ProducerRecord<>(kind.topic, String.valueOf(vertexId), neighborList), (metadata, e) -> {
+        inFlight.release();
+        if (e != null && failed.getAndIncrement() == 0) {
+          e.printStackTrace();
+        }
+      });
+      blocks[0]++;
+    });
+    producer.flush();
+    producer.close();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format("Sent %d blocks in %.1f s (%.0f blocks/s)", blocks[0], seconds,
+        blocks[0] / Math.max(seconds, 1e-9)));
+    if (failed.get() > 0) {
+      System.out.println(String.format("%d blocks could not be sent", failed.get()));
+    }
+  }
+
+  /**
+   * This method picks the recommendation candidates of the outgoing edges of a vertex, like OutEdgesQueryFn does
+   * when the edges are added one by one in the order of their timestamps
+   * @param outNeighbors sorted by timestamp
+   * @param candidates receives the candidates of every vertex the candidates are recommended to
+   */
+  private static void pickRecommendCandidates(NeighborList outNeighbors, Map<Integer, NeighborList> candidates) {
+    NeighborList sample = new NeighborList(OutEdgesQueryFn.RECOMMEND_SAMPLE_SIZE);
+    for (int i = 0; i < outNeighbors.size(); i++) {
+      int candidate = outNeighbors.idAt(i);
+      long timestamp = outNeighbors.timestampAt(i);
+      OutEdgesQueryFn.forEachRecommendTarget(sample, i, target ->
+          candidates.computeIfAbsent(target, k -> new NeighborList()).append(candidate, timestamp));
+      OutEdgesQueryFn.reservoirInsert(sample, i + 1, candidate, timestamp);
+    }
+  }
+
+  @FunctionalInterface
+  private interface BlockSink {
+    void write(GraphSnapshot.Kind kind, int vertexId, NeighborList neighbors) throws Exception;
+  }
+
+  @FunctionalInterface
+  private interface VertexBlockConsumer {
+    void accept(int vertexId, NeighborList neighbors) throws Exception;
+  }
+
+  /**
+   * This method groups the edges by vertex, in ascending order of the vertex ids, and sorts the neighbors of every
+   * vertex by timestamp. Edges with the same timestamp keep the order of the files, like they do when they are
+   * added one by one.
+   * @param vertexIds the vertex of every edge
+   * @param neighborIds the neighbor of every edge
+   * @param timestamps
+   * @param size number of edges
+   * @param consumer
+   * @throws Exception
+   */
+  private static void groupByVertex(int[] vertexIds, int[] neighborIds, long[] timestamps, int size,
+      VertexBlockConsumer consumer) throws Exception {
+    int[] vertices = Arrays.copyOf(vertexIds, size);
+    Arrays.sort(vertices);
+    int distinct = 0;
+    for (int i = 0; i < size; i++) {
+      if (i == 0 || vertices[i] != vertices[i - 1]) {
+        vertices[distinct++] = vertices[i];
+      }
+    }
+
+    // counting sort of the edges by vertex, which keeps the order of the files within a vertex
+    int[] offsets = new int[distinct + 1];
+    int[] vertexIndex = new int[size];
+    for (int i = 0; i < size; i++) {
+      vertexIndex[i] = Arrays.binarySearch(vertices, 0, distinct, vertexIds[i]);
+      offsets[vertexIndex[i] + 1]++;
+    }
+    for (int v = 0; v < distinct; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    int[] next = Arrays.copyOf(offsets, distinct);
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[next[vertexIndex[i]]++] = i;
+    }
+    vertexIndex = null;
+
+    int[] ids = new int[0];
+    long[] times = new long[0];
+    for (int v = 0; v < distinct; v++) {
+      int degree = offsets[v + 1] - offsets[v];
+      if (ids.length < degree) {
+        ids = new int[degree];
+        times = new long[degree];
+      }
+      boolean sorted = true;
+      for (int i = 0; i < degree; i++) {
+        int edge = order[offsets[v] + i];
+        ids[i] = neighborIds[edge];
+        times[i] = timestamps[edge];
+        sorted &= i == 0 || times[i - 1] <= times[i];
+      }
+      if (!sorted) {
+        sortByTimestamp(ids, times, degree);
+      }
+      NeighborList neighbors = new NeighborList(degree);
+      for (int i = 0; i < degree; i++) {
+        neighbors.append(ids[i], times[i]);
+      }
+      consumer.accept(vertices[v], neighbors);
+    }
+  }
+
+  /**
+   * This method sorts the first size edges by timestamp with a stable merge sort
+   */
+  private static void sortByTimestamp(int[] ids, long[] times, int size) {
+    int[] idBuffer = new int[size];
+    long[] timeBuffer = new long[size];
+    for (int width = 1; width < size; width *= 2) {
+      for (int from = 0; from < size; from += 2 * width) {
+        int middle = Math.min(from + width, size);
+        int to = Math.min(from + 2 * width, size);
+        int left = from;
+        int right = middle;
+        for (int k = from; k < to; k++) {
+          if (left < middle && (right >= to || times[left] <= times[right])) {
+            idBuffer[k] = ids[left];
+            timeBuffer[k] = times[left++];
+          } else {
+            idBuffer[k] = ids[right];
+            timeBuffer[k] = times[right++];
+          }
+        }
+      }
+      System.arraycopy(idBuffer, 0, ids, 0, size);
+      System.arraycopy(timeBuffer, 0, times, 0, size);
+    }
+  }
+
+  /**
+   * The edges of the files, as one growing column per field.
+   */
+  private static final class Edges {
+    int[] src = new int[1024];
+    int[] dst = new int[1024];
+    long[] timestamps = new long[1024];
+    int size;
+
+    void add(int source, int destination, long timestamp) {
+      if (size == src.length) {
+        int capacity = size * 2;
+        src = Arrays.copyOf(src, capacity);
+        dst = Arrays.copyOf(dst, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+      }
+      src[size] = source;
+      dst[size] = destination;
+      timestamps[size] = timestamp;
+      size++;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger of the function server. Log calls only capture the format and its arguments, the line is formatted and
+ * written by the {@link AsyncLogAppender} thread, so a function never waits for the console.
+ *
+ * Three settings keep the logging cheap, each read from a system property or environment variable:
+ * <ul>
+ *   <li>GRAPH_LOG_LEVEL: the lowest level that is logged, one of DEBUG, INFO (default), WARN, ERROR and OFF</li>
+ *   <li>GRAPH_LOG_VERTEX_SAMPLE: only 1 in this many vertices write their per-vertex events (default 1, every
+ *   vertex), the sample is picked by the hash of the function address id, so a sampled vertex logs all of its
+ *   events</li>
+ *   <li>GRAPH_LOG_RATE_LIMIT: the most events every logger writes per second (default 1000, 0 for no limit), the
+ *   number of events that were dropped is added to the next line that is written</li>
+ * </ul>
+ * Per-vertex events are only logged if {@link #isEnabled(Level, String)} is true for the vertex. Callers on the hot
+ * path check it (or {@link #isEnabled(Level)}) before building the arguments of a log call, in particular before
+ * reading any state for it.
+ */
+public final class GraphLogger {
+
+  public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+  }
+
+  private static final Level LEVEL = parseLevel(GraphAnalyticsConfig.getString("GRAPH_LOG_LEVEL", "INFO"));
+  private static final int VERTEX_SAMPLE = Math.max(1, GraphAnalyticsConfig.getInt("GRAPH_LOG_VERTEX_SAMPLE", 1));
+  private static final int RATE_LIMIT = GraphAnalyticsConfig.getInt("GRAPH_LOG_RATE_LIMIT", 1000);
+
+  private final String name;
+
+  // events written in the current second, and events dropped since the last written one
+  private final AtomicLong windowSecond = new AtomicLong();
+  private final AtomicInteger windowCount = new AtomicInteger();
+  private final AtomicLong suppressed = new AtomicLong();
+
+  private GraphLogger(String name) {
+    this.name = name;
+  }
+
+  /**
+   * This method creates the logger of a class
+   * @param owner
+   * @return GraphLogger
+   */
+  public static GraphLogger get(Class<?> owner) {
+    return new GraphLogger(owner.getSimpleName());
+  }
+
+  public boolean isEnabled(Level level) {
+    return level.compareTo(LEVEL) >= 0 && level != Level.OFF;
+  }
+
+  /**
+   * @param level
+   * @param vertexKey the id of the function address of the vertex
+   * @return true if events of the given level are logged for the vertex
+   */
+  public boolean isEnabled(Level level, String vertexKey) {
+    return isEnabled(level) && isSampled(vertexKey);
+  }
+
+  public void debug(String format, Object... args) {
+    log(Level.DEBUG, null, format, args);
+  }
+
+  public void info(String format, Object... args) {
+    log(Level.INFO, null, format, args);
+  }
+
+  public void warn(String format, Object... args) {
+    log(Level.WARN, null, format, args);
+  }
+
+  public void error(Throwable error, String format, Object... args) {
+    log(Level.ERROR, error, format, args);
+  }
+
+  private void log(Level level, Throwable error, String format, Object[] args) {
+    if (!isEnabled(level)) {
+      return;
+    }
+    // errors are never dropped
+    if (level != Level.ERROR && !tryAcquire()) {
+      suppressed.incrementAndGet();
+      return;
+    }
+    AsyncLogAppender.INSTANCE.append(
+        new AsyncLogAppender.Event(System.currentTimeMillis(), level, name, format, args, error,
+            suppressed.getAndSet(0)));
+  }
+
+  private boolean tryAcquire() {
+    if (RATE_LIMIT <= 0) {
+      return true;
+    }
+    long second = System.currentTimeMillis() / 1000;
+    long current = windowSecond.get();
+    if (second != current && windowSecond.compareAndSet(current, second)) {
+      windowCount.set(0);
+    }
+    return windowCount.incrementAndGet() <= RATE_LIMIT;
+  }
+
+  private static boolean isSampled(String vertexKey) {
+    // the same hash that spreads edges over shards spreads consecutive vertex ids over the sample
+    return VERTEX_SAMPLE == 1 || VertexShards.shardOf(vertexKey.hashCode(), VERTEX_SAMPLE) == 0;
+  }
+
+  private static Level parseLevel(String value) {
+    try {
+      return Level.valueOf(value.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          String.format("GRAPH_LOG_LEVEL must be one of DEBUG, INFO, WARN, ERROR or OFF, but was '%s'", value), e);
+    }
+  }
+}
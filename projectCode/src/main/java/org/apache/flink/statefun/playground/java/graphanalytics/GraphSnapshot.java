@@ -0,0 +1,127 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborListCodec;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.types.Type;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * This class reads and writes graph snapshot files, see GraphBootstrapApp. A snapshot is a sequence of blocks,
+ * each of which is the state one function instance installs with a single write: the incoming or outgoing
+ * neighbors of a vertex, or the recommendation candidates of a vertex, sorted by timestamp. A file is laid out as
+ * <pre>
+ *   [magic "GRAPHSNP"][version byte]([kind byte][int vertex_id][int length][neighbor list])*
+ * </pre>
+ * where the neighbor list is in the binary {@link NeighborListCodec} format that the functions keep in their state,
+ * so that the message holding a block can be sent as it is.
+ */
+final class GraphSnapshot {
+
+  /**
+   * The kinds of blocks, each of them is installed by a different function with a different message type.
+   */
+  enum Kind {
+    IN_NEIGHBORS(1, InEdgesQueryFn.TYPE_NAME, Types.LOAD_IN_NEIGHBORS_TYPE, "snapshot-in-neighbors"),
+    OUT_NEIGHBORS(2, OutEdgesQueryFn.TYPE_NAME, Types.LOAD_OUT_NEIGHBORS_TYPE, "snapshot-out-neighbors"),
+    RECOMMEND_CANDIDATES(3, RecommendationFn.TYPE_NAME, Types.RECOMMEND_CANDIDATE_BATCH_TYPE,
+        "snapshot-recommend-candidates");
+
+    final int id;
+    final TypeName function;
+    final Type<NeighborList> messageType;
+    // the Kafka topic that routes the blocks of this kind to their function, see module.yaml
+    final String topic;
+
+    Kind(int id, TypeName function, Type<NeighborList> messageType, String topic) {
+      this.id = id;
+      this.function = function;
+      this.messageType = messageType;
+      this.topic = topic;
+    }
+
+    static Kind of(int id) {
+      for (Kind kind : values()) {
+        if (kind.id == id) {
+          return kind;
+        }
+      }
+      throw new IllegalStateException("Unknown snapshot block kind " + id);
+    }
+  }
+
+  /**
+   * Is called for every block of a snapshot, in the order of the file.
+   */
+  @FunctionalInterface
+  interface BlockVisitor {
+    /**
+     * @param kind
+     * @param vertexId
+     * @param neighborList the encoded neighbor list of the block
+     */
+    void onBlock(Kind kind, int vertexId, byte[] neighborList) throws Exception;
+  }
+
+  private static final byte[] MAGIC = {'G', 'R', 'A', 'P', 'H', 'S', 'N', 'P'};
+  private static final int VERSION_1 = 1;
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private GraphSnapshot() {
+  }
+
+  /**
+   * Writes the blocks of a snapshot file.
+   */
+  static final class Writer implements Closeable {
+    private final DataOutputStream out;
+
+    Writer(Path file) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+      out.write(MAGIC);
+      out.writeByte(VERSION_1);
+    }
+
+    void write(Kind kind, int vertexId, NeighborList neighbors) throws IOException {
+      byte[] encoded = NeighborListCodec.serialize(neighbors);
+      out.writeByte(kind.id);
+      out.writeInt(vertexId);
+      out.writeInt(encoded.length);
+      out.write(encoded);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * This method calls the visitor with every block of the snapshot file
+   * @param file
+   * @param visitor
+   * @throws Exception if the file could not be read, or the visitor failed
+   */
+  static void forEachBlock(Path file, BlockVisitor visitor) throws Exception {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      int version = in.readUnsignedByte();
+      if (!Arrays.equals(magic, MAGIC) || version != VERSION_1) {
+        throw new IOException(file + " is not a graph snapshot of version " + VERSION_1);
+      }
+      int kind;
+      while ((kind = in.read()) != -1) {
+        int vertexId = in.readInt();
+        byte[] neighborList = new byte[in.readInt()];
+        in.readFully(neighborList);
+        visitor.onBlock(Kind.of(kind), vertexId, neighborList);
+      }
+    }
+  }
+}
@@ -1,14 +1,13 @@
 package org.apache.flink.statefun.playground.java.graphanalytics;
 
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Histogram;
 import org.apache.flink.statefun.playground.java.graphanalytics.types.*;
 import org.apache.flink.statefun.sdk.java.*;
-import org.apache.flink.statefun.sdk.java.io.KafkaEgressMessage;
 import org.apache.flink.statefun.sdk.java.message.EgressMessageBuilder;
 import org.apache.flink.statefun.sdk.java.message.Message;
 import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -23,43 +22,193 @@ import java.util.concurrent.CompletableFuture;
  */
 public class InEdgesQueryFn implements StatefulFunction {
 
-  private static final ValueSpec<List<CustomTuple2<Integer, Long>>> IN_NEIGHBORS =
-      ValueSpec.named("inNeighbors").withCustomType(Types.IN_NEIGHBORS_TYPE);
+  private static final GraphLogger LOG = GraphLogger.get(InEdgesQueryFn.class);
+
+  // the incoming edges are kept in time-sorted segments, so that adding an edge only rewrites the tail segment,
+  // for GRAPH_IN_EDGES_RETENTION_DAYS days of event time
+  private static final SegmentedNeighborStore IN_NEIGHBORS = new SegmentedNeighborStore("inNeighbors",
+      Types.IN_NEIGHBORS_TYPE, false, EdgeRetention.fromSetting("GRAPH_IN_EDGES_RETENTION_DAYS"));
+
+  static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "inEdges");
+
+  // once a vertex has many incoming edges, they are spread over several shards of this function
+  private static final VertexShards SHARDS =
+      new VertexShards(TYPE_NAME, IN_NEIGHBORS, Types.Add_IN_EDGE_BATCH_TYPE);
+
+  // the distinct incoming neighbors that the triangle and k-hop queries use, kept until the vertex gets a new edge
+  private static final DistinctNeighborIndex DISTINCT_NEIGHBORS = new DistinctNeighborIndex(IN_NEIGHBORS);
+
+  // the degree, distinct neighbors and first and last timestamp of the incoming edges, for the IN_DEGREE query
+  private static final DegreeCounters DEGREE = new DegreeCounters(IN_NEIGHBORS, SHARDS);
+
+  // the results of the IN_K_HOP and IN_TRIANGLES queries on the vertex, until a vertex they depend on gets a new edge
+  private static final QueryResultCache QUERY_CACHE =
+      new QueryResultCache(TYPE_NAME, KHopQuery.DIRECTION_IN, IN_NEIGHBORS, SHARDS);
+
 //  private static ValueSpec<Integer> Add_Edge_Count = ValueSpec.named("addEdgeCount").withIntType();
 //  private static ValueSpec<Integer> Query_Count = ValueSpec.named("queryCount").withIntType();
 
-  static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "inEdges");
   static final StatefulFunctionSpec SPEC =
       StatefulFunctionSpec.builder(TYPE_NAME)
           .withSupplier(InEdgesQueryFn::new)
-          .withValueSpecs(IN_NEIGHBORS)
+          .withValueSpecs(IN_NEIGHBORS.valueSpecs())
+          .withValueSpecs(SHARDS.valueSpecs())
+          .withValueSpecs(DISTINCT_NEIGHBORS.valueSpecs())
+          .withValueSpecs(DEGREE.valueSpecs())
+          .withValueSpecs(QUERY_CACHE.valueSpecs())
           .build();
 
-  static final TypeName EGRESS_TYPE = TypeName.typeNameOf("graph-analytics.io", "egress");
+  private static final Histogram NEIGHBOR_LIST_SIZES = FunctionMetrics.neighborListSizes(TYPE_NAME);
 
   @Override
   public CompletableFuture<Void> apply(Context context, Message message) throws Throwable {
     if (message.is(Types.Add_IN_EDGE_TYPE)) {
       Vertex vertex = message.as(Types.Add_IN_EDGE_TYPE);
-      List<CustomTuple2<Integer, Long>> currentInNeighbors = getCurrentInNeighbors(context);
-      updateInNeighbors(context, vertex, currentInNeighbors);
-      logInNeighbors(vertex.getDst(), context);
-    } else if (message.is(Types.IN_EDGES_QUERY_TYPE)) {
+      updateInNeighbors(context, vertex);
+      logInNeighbors(vertex, context);
+    } else if (message.is(Types.Add_IN_EDGE_BATCH_TYPE)) {
+      NeighborList newInNeighbors = message.as(Types.Add_IN_EDGE_BATCH_TYPE);
+      updateInNeighbors(context, newInNeighbors);
+      if (LOG.isEnabled(GraphLogger.Level.DEBUG, context.self().id())) {
+        LOG.debug("vertex %s added %d incoming neighbors and currently has %d incoming neighbors",
+            context.self().id(), newInNeighbors.size(), SHARDS.degree(context));
+      }
+    } else if (message.is(Types.LOAD_IN_NEIGHBORS_TYPE)) {
+      loadInNeighbors(context, message.as(Types.LOAD_IN_NEIGHBORS_TYPE));
+    } else if (message.is(Types.SEGMENT_COMPACTION_TYPE)) {
+      DEGREE.expire(context, SHARDS.compact(context));
+    } else if (message.is(Types.SHARD_EXPIRY_TYPE)) {
+      ShardExpiry expiry = message.as(Types.SHARD_EXPIRY_TYPE);
+      SHARDS.expire(context, expiry);
+      DEGREE.expire(context, expiry);
+    } else if (message.is(Types.SHARD_SCAN_REQUEST_TYPE)) {
+      SHARDS.answer(context, message.as(Types.SHARD_SCAN_REQUEST_TYPE));
+    } else if (message.is(Types.SHARD_SCAN_RESULT_TYPE)) {
+      SHARDS.collect(context, message.as(Types.SHARD_SCAN_RESULT_TYPE),
+          (query, inNeighbors, count) -> handleQuery(context, query, inNeighbors));
+    } else if (message.is(Types.IN_DEGREE_QUERY_TYPE)) {
+      // the degree is answered from its counters, without reading the edges or asking the shards
+      outputDegree(context, message.as(Types.IN_DEGREE_QUERY_TYPE).getVertexId());
+    } else if (message.is(Types.K_HOP_QUERY_TYPE)) {
+      handleKHopQuery(context, message.as(Types.K_HOP_QUERY_TYPE));
+    } else if (message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE)) {
+      handleTriangleQuery(context, message);
+    } else if (message.is(Types.VERSION_CHECK_TYPE)) {
+      QUERY_CACHE.answer(context, message.as(Types.VERSION_CHECK_TYPE));
+    } else if (message.is(Types.VERSION_CHECK_RESULT_TYPE)) {
+      QUERY_CACHE.collect(context, message.as(Types.VERSION_CHECK_RESULT_TYPE));
+    } else if (message.is(Types.CACHED_QUERY_RESULT_TYPE)) {
+      QUERY_CACHE.put(context, message.as(Types.CACHED_QUERY_RESULT_TYPE));
+    } else {
+      runQuery(context, message);
+    }
+    return context.done();
+  }
+
+  /**
+   * This method runs a query against the given incoming neighbors of the vertex
+   * @param context
+   * @param message
+   * @param currentInNeighbors
+   */
+  private void handleQuery(Context context, Message message, NeighborList currentInNeighbors) {
+    NEIGHBOR_LIST_SIZES.record(currentInNeighbors.size());
+    if (message.is(Types.IN_EDGES_QUERY_TYPE)) {
       InEdgesQuery query = message.as(Types.IN_EDGES_QUERY_TYPE);
       // the query we are implementing now is simple; it is only asking for all the incoming edges, so we can
       // just return the entire IN_NEIGHBORS list
-      outputResult(context, query.getVertexId());
-    } else if (message.is(Types.K_HOP_QUERY_TYPE)) {
-      KHopQuery kHopQuery = message.as(Types.K_HOP_QUERY_TYPE);
-      performKHop(context, kHopQuery);
-    } else if (message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE)) {
+      outputResult(context, query, currentInNeighbors);
+    } else if (usesDistinctNeighbors(message)) {
+      DistinctNeighbors distinctNeighbors =
+          DISTINCT_NEIGHBORS.update(context, SHARDS.version(context), currentInNeighbors);
+      handleDistinctNeighborsQuery(context, message, distinctNeighbors);
+    }
+  }
+
+  /**
+   * This method answers a k-hop query on the vertex from the query cache, or starts it at the coordinator of the
+   * query if the cached result is missing or out of date
+   * @param context
+   * @param query
+   */
+  private void handleKHopQuery(Context context, KHopQuery query) {
+    if (query.isLegacy()) {
+      LOG.warn("dropping k-hop query for vertex %d in the format before the coordinator existed", query.getVertexId());
+      return;
+    }
+    if (!QUERY_CACHE.lookup(context, query.getQueryId(), QueryResult.TASK_IN_K_HOP, query.getK())) {
+      QUERY_CACHE.recompute(context, query.getQueryId(), QueryResult.TASK_IN_K_HOP, query.getVertexId(),
+          query.getK());
+    }
+  }
+
+  /**
+   * This method answers a triangle query on the vertex from the query cache, or runs it if the cached result is
+   * missing or out of date
+   * @param context
+   * @param message
+   */
+  private void handleTriangleQuery(Context context, Message message) {
+    String queryId = message.as(Types.TRIANGLE_QUERY_TRIGGER_TYPE).getQueryId();
+    if (!QUERY_CACHE.lookup(context, queryId, QueryResult.TASK_IN_TRIANGLES, 0)) {
+      runQuery(context, message);
+    }
+  }
+
+  /**
+   * This method runs a query against the incoming edges of the vertex, which are read from the distinct neighbor
+   * index, the shards or the neighbor list of the vertex
+   * @param context
+   * @param message
+   */
+  private void runQuery(Context context, Message message) {
+    if (usesDistinctNeighbors(message) && DISTINCT_NEIGHBORS.isCurrent(context, SHARDS.version(context))) {
+      // the edges of the vertex have not changed since its distinct neighbors were indexed, so neither its edges nor
+      // its shards need to be read
+      handleDistinctNeighborsQuery(context, message, DISTINCT_NEIGHBORS.get(context));
+    } else if (SHARDS.isSharded(context)) {
+      // the incoming edges of a sharded vertex live in its shards, so they have to be collected first
+      if (message.is(Types.IN_EDGES_QUERY_TYPE)) {
+        ResultPages.scatter(context, SHARDS, message, message.as(Types.IN_EDGES_QUERY_TYPE).getPage(),
+            Long.MIN_VALUE, Long.MAX_VALUE);
+      } else {
+        SHARDS.scatter(context, message, ShardScanRequest.MODE_DISTINCT, 0, 0);
+      }
+    } else {
+      handleQuery(context, message, getCurrentInNeighbors(context));
+    }
+  }
+
+  private static boolean usesDistinctNeighbors(Message message) {
+    return message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE) || message.is(Types.TRIANGLE_QUERY_PASS_TYPE)
+        || message.is(Types.K_HOP_EXPAND_TYPE);
+  }
+
+  /**
+   * This method runs a triangle query or a k-hop expansion against the distinct incoming neighbors of the vertex
+   * @param context
+   * @param message
+   * @param distinctNeighbors
+   */
+  private void handleDistinctNeighborsQuery(Context context, Message message, DistinctNeighbors distinctNeighbors) {
+    if (message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE)) {
       TriangleQueryTrigger trigger = message.as(Types.TRIANGLE_QUERY_TRIGGER_TYPE);
-      triggerTriangleQuery(context, trigger);
+      triggerTriangleQuery(context, trigger, distinctNeighbors);
     } else if (message.is(Types.TRIANGLE_QUERY_PASS_TYPE)) {
       TriangleQueryPass pass = message.as(Types.TRIANGLE_QUERY_PASS_TYPE);
-      performTrianglePass(context, pass);
+      performTrianglePass(context, pass, distinctNeighbors);
+    } else {
+      KHopExpand expand = message.as(Types.K_HOP_EXPAND_TYPE);
+      // the coordinator of the query keeps track of the visited vertices, so it gets all the distinct neighbors,
+      // and the version of the vertex that the result of the query depends on
+      KHopNeighbors neighbors =
+          KHopNeighbors.of(Integer.parseInt(context.self().id()), SHARDS.version(context), distinctNeighbors);
+      context.send(
+          MessageBuilder.forAddress(KHopCoordinatorFn.TYPE_NAME, expand.getQueryId())
+              .withCustomType(Types.K_HOP_NEIGHBORS_TYPE, neighbors)
+              .build()
+      );
     }
-    return context.done();
   }
 
   /**
@@ -67,8 +216,8 @@ public class InEdgesQueryFn implements StatefulFunction {
    * @param context
    * @return IN_NEIGHBORS
    */
-  public List<CustomTuple2<Integer, Long>> getCurrentInNeighbors(Context context) {
-    return context.storage().get(IN_NEIGHBORS).orElse(new ArrayList<CustomTuple2<Integer, Long>>());
+  public NeighborList getCurrentInNeighbors(Context context) {
+    return IN_NEIGHBORS.read(context);
   }
 
   /**
@@ -77,34 +226,30 @@ public class InEdgesQueryFn implements StatefulFunction {
    *
    * @param context
    * @param trigger
+   * @param distinctNeighbors
    */
-  private void triggerTriangleQuery(Context context, TriangleQueryTrigger trigger) {
-    List<CustomTuple2<Integer, Long>> currentInNeighbors = getCurrentInNeighbors(context);
-    ArrayList<Integer> filteredNodes = new ArrayList<Integer>(0);
-
-    for (int i = 0; i < currentInNeighbors.size(); i++) {
-      CustomTuple2<Integer, Long> node = currentInNeighbors.get(i);
-      int nodeIndex = node.getField(0);
-
-      if (!filteredNodes.contains(nodeIndex)) {
-        filteredNodes.add(nodeIndex);
-      }
-    }
-    
-    for (int i = 0; i < filteredNodes.size(); i++) {
-      int nodeIndex = filteredNodes.get(i);
-
+  private void triggerTriangleQuery(Context context, TriangleQueryTrigger trigger,
+                                    DistinctNeighbors distinctNeighbors) {
+    // every neighbor gets the same sorted trace, so it is only built once
+    int[] trace = distinctNeighbors.toSortedArray();
+    // the aggregator of the query waits for the result of the pass on each neighbor
+    sendResultPart(context, trigger.getQueryId(),
+        QueryResultPart.root(QueryResult.TASK_IN_TRIANGLES, trigger.getVertexId(), 0, trace.length, new long[0],
+            QUERY_CACHE.versionOfSelf(context)));
+
+    for (int nodeIndex : trace) {
       TriangleQueryPass pass = TriangleQueryPass.create(
-        trigger.getVertexId(),
-        nodeIndex,
-        filteredNodes
+          trigger.getQueryId(),
+          trigger.getVertexId(),
+          nodeIndex,
+          trace
       );
 
       context.send(
           MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, String.valueOf(nodeIndex))
-            .withCustomType(Types.TRIANGLE_QUERY_PASS_TYPE, pass)
-            .build()
-        );
+              .withCustomType(Types.TRIANGLE_QUERY_PASS_TYPE, pass)
+              .build()
+      );
     }
   }
 
@@ -115,174 +260,137 @@ public class InEdgesQueryFn implements StatefulFunction {
    * then A -> B -> C | A -> C is a triangle.
    * @param context
    * @param pass
+   * @param distinctNeighbors
    */
-  private void performTrianglePass(Context context, TriangleQueryPass pass) {
-    List<CustomTuple2<Integer, Long>> currentInNeighbors = getCurrentInNeighbors(context);
-    ArrayList<Integer> filteredNodes = new ArrayList<Integer>(0);
-    ArrayList<Integer> prevTrace = pass.getTrace();
-
-    for (int i = 0; i < currentInNeighbors.size(); i++) {
-      CustomTuple2<Integer, Long> node = currentInNeighbors.get(i);
-      int nodeIndex = node.getField(0);
-
-      if (!filteredNodes.contains(nodeIndex)) {
-        filteredNodes.add(nodeIndex);
-      }
-    }
-
-    for (int i = 0; i < filteredNodes.size(); i++) {
-      int nodeIndex = filteredNodes.get(i);
-
-      if (prevTrace.contains(nodeIndex)) {
-        System.out.println(String.format("Found Incoming Triangle for Vertex %d: (%d -> %d) (%d -> %d -> %d)", 
-              pass.getVertexId(), nodeIndex, pass.getVertexId(), nodeIndex, pass.getCurrentId(), pass.getVertexId()));
-        
-        outputTriangleResult(context, pass.getVertexId(), pass.getCurrentId(), nodeIndex);
-      }
-    }
+  private void performTrianglePass(Context context, TriangleQueryPass pass, DistinctNeighbors distinctNeighbors) {
+    // the neighbors of the current vertex (B) that are also neighbors of the root vertex (A) close a triangle
+    List<Long> triangles = new ArrayList<>();
+    distinctNeighbors.intersect(pass.getTrace(),
+        nodeIndex -> triangles.add(QueryResultPart.triangle(pass.getCurrentId(), nodeIndex)));
+    LOG.debug("vertex %d found %d incoming triangles of vertex %d", pass.getCurrentId(), triangles.size(),
+        pass.getVertexId());
+    // a part is sent even if no triangle was found, so that the aggregator can count the pass as done
+    long[] results = triangles.stream().mapToLong(Long::longValue).toArray();
+    sendResultPart(context, pass.getQueryId(),
+        QueryResultPart.create(QueryResult.TASK_IN_TRIANGLES, pass.getVertexId(), results,
+            QUERY_CACHE.versionOfSelf(context)));
   }
 
   /**
-   * This method performs the k-hop query.
-   * The function performs the query by sending a message to the next logical instance of InEdgesQueryFn.performKHop.
-   *
+   * This method update the IN_NEIGHBORS list by adding a new incoming neighbor to the list
+   * while ensuring that all the neighbors in the list are sorted by timestamp value.
+   * Only the tail segment of the list is read and written.
    * @param context
-   * @param kHopQuery
+   * @param vertex
    */
-  private void performKHop(Context context, KHopQuery kHopQuery) {
-    List<CustomTuple2<Integer, Long>> currentInNeighbors = getCurrentInNeighbors(context);
-    List<Integer> filteredNodes = new ArrayList<Integer>(0);
-
-    for (int i = 0; i < currentInNeighbors.size(); i++) {
-      CustomTuple2<Integer, Long> node = currentInNeighbors.get(i);
-      int nodeIndex = node.getField(0);
-
-      if (!kHopQuery.getTrace().contains(nodeIndex) && !filteredNodes.contains(nodeIndex)) {
-        filteredNodes.add(nodeIndex);
-      }
+  public void updateInNeighbors(Context context, Vertex vertex) {
+    if (SHARDS.isSharded(context)) {
+      NeighborList newInNeighbor = new NeighborList(1);
+      newInNeighbor.append(vertex.getSrc(), vertex.getTimestamp());
+      SHARDS.route(context, newInNeighbor);
+    } else {
+      IN_NEIGHBORS.append(context, vertex.getSrc(), vertex.getTimestamp());
+      SHARDS.shardIfNeeded(context);
     }
+    DEGREE.add(context, vertex.getSrc(), vertex.getTimestamp());
+  }
 
-    if (kHopQuery.getN() > 0) {
-      ArrayList<Integer> trace = kHopQuery.getTrace();
-      trace.add(kHopQuery.getCurrentId());
-
-      for (int i = 0; i < filteredNodes.size(); i++) {
-        KHopQuery nextQuery = KHopQuery.create(
-                kHopQuery.getVertexId(),
-                filteredNodes.get(i),
-                kHopQuery.getK(),
-                kHopQuery.getN() - 1,
-                trace
-        );
-
-        context.send(
-          MessageBuilder.forAddress(InEdgesQueryFn.TYPE_NAME, String.valueOf(filteredNodes.get(i)))
-            .withCustomType(Types.K_HOP_QUERY_TYPE, nextQuery)
-            .build()
-        );
-      }
+  /**
+   * This method adds a batch of incoming neighbors, sorted by timestamp, to the IN_NEIGHBORS list
+   * with a single read and write of the tail segment
+   * @param context
+   * @param newInNeighbors
+   */
+  public void updateInNeighbors(Context context, NeighborList newInNeighbors) {
+    if (SHARDS.isSharded(context)) {
+      SHARDS.route(context, newInNeighbors);
     } else {
-      for (int i = 0; i < filteredNodes.size(); i++) {
-        System.out.println(String.format("Incoming K-Hop node for vertex %d (K = %d): %d", kHopQuery.getVertexId(), kHopQuery.getK(), filteredNodes.get(i)));
-        outputKHopResult(context, kHopQuery.getVertexId(), kHopQuery.getK(), filteredNodes.get(i));
-      }
+      IN_NEIGHBORS.appendAll(context, newInNeighbors);
+      SHARDS.shardIfNeeded(context);
     }
+    DEGREE.addAll(context, newInNeighbors);
   }
 
   /**
-   * This method update the IN_NEIGHBORS list by adding a new incoming neighbor to the list
-   * while ensuring that all the neighbors in the list are sorted by timestamp value
+   * This method installs a block of a graph snapshot, all the incoming neighbors of the vertex sorted by timestamp,
+   * with a single write of the neighbor list
    * @param context
-   * @param vertex
-   * @param currentInNeighbors
+   * @param block
    */
-  public void updateInNeighbors(Context context, Vertex vertex, List<CustomTuple2<Integer, Long>> currentInNeighbors) {
-    CustomTuple2<Integer, Long> newInNeighbor = CustomTuple2.createTuple2(vertex.getSrc(), vertex.getTimestamp());
-    // perform binary search to add incoming neighbor to the correct index, so that the IN_NEIGHBORS list remains
-    // sorted by timestamp
-    int left = 0, right = currentInNeighbors.size() - 1;
-    int insertIdx = 0;
-    while (left <= right) {
-      int mid = left + (right-left)/2;
-      Long t1 = currentInNeighbors.get(mid).getField(1);
-      Long t2 = newInNeighbor.getField(1);
-      int comparison = t1.compareTo(t2);
-      if (comparison == 0) {
-        insertIdx = mid;
-        break;
-      } else if (comparison < 0) {
-        left = mid + 1;
-        insertIdx = left;
-      } else {
-        right = mid - 1;
-      }
+  private void loadInNeighbors(Context context, NeighborList block) {
+    if (SHARDS.isSharded(context)) {
+      SHARDS.route(context, block);
+      DEGREE.addAll(context, block);
+      return;
+    }
+    int expired = IN_NEIGHBORS.install(context, block);
+    DEGREE.addAll(context, block);
+    DEGREE.expire(context, expired);
+    SHARDS.shardIfNeeded(context);
+    if (LOG.isEnabled(GraphLogger.Level.DEBUG, context.self().id())) {
+      LOG.debug("vertex %s loaded %d incoming neighbors", context.self().id(), block.size());
     }
-    currentInNeighbors.add(insertIdx, newInNeighbor);
-    context.storage().set(IN_NEIGHBORS, currentInNeighbors);
   }
 
-
   /**
-   * This method outputs Triangle query result to egress.
+   * This method sends a part of the result of a query to the aggregator of the query. Triangle passes that were
+   * sent before queries had ids have no aggregator, so their results are only logged.
+   *
    * @param context
-   * @param vertexId
-   * @param currentId
-   * @param sourceId
+   * @param queryId
+   * @param part
    */
-
-  private void outputTriangleResult(Context context, int vertexId, int currentId, int sourceId) {
+  private void sendResultPart(Context context, String queryId, QueryResultPart part) {
+    if (queryId == null) {
+      if (part.getResults().length > 0 && LOG.isEnabled(GraphLogger.Level.INFO, context.self().id())) {
+        LOG.info("%s query without a query id found the triangles %s", part.getTask(), part.trianglesToString());
+      }
+      return;
+    }
     context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("in-triangle-result")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("Found Incoming Triangle for Vertex %d: (%d -> %d) (%d -> %d -> %d)", 
-                vertexId, sourceId, vertexId, sourceId, currentId, vertexId))
+        MessageBuilder.forAddress(QueryResultAggregatorFn.TYPE_NAME, queryId)
+            .withCustomType(Types.QUERY_RESULT_PART_TYPE, part)
             .build()
     );
   }
 
   /**
-   * This method outputs k-hop query result to egress.
+   * This method outputs query result to egress, in chunks if the query asked for a page or the result is large.
+   * The rest of a page that does not fit into this invocation is sent by the query that this vertex sends itself.
    * @param context
-   * @param vertexId
+   * @param query
+   * @param currentInNeighbors
    */
-
-  private void outputKHopResult(Context context, int vertexId, int k, int currentId) {
-    context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("in-k-hop-result")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("Incoming K-Hop node for vertex %d (K = %d): %d", vertexId, k, currentId))
-            .build()
-    );
+  private void outputResult(Context context, InEdgesQuery query, NeighborList currentInNeighbors) {
+    LOG.debug("vertex %d has %d incoming edges", query.getVertexId(), currentInNeighbors.size());
+    ResultPages.send(context, "incoming-edges", currentInNeighbors, query.getPage(),
+        edges -> NeighborsResult.of(query.getVertexId(), edges),
+        rest -> context.send(
+            MessageBuilder.forAddress(context.self())
+                .withCustomType(Types.IN_EDGES_QUERY_TYPE,
+                    InEdgesQuery.create(query.getVertexId(), query.getTimestamp(), rest))
+                .build()));
   }
 
   /**
-   * This method outputs query result to egress.
+   * This method outputs the result of an IN_DEGREE query to egress
    * @param context
    * @param vertexId
    */
-  private void outputResult(Context context, int vertexId) {
-    List<CustomTuple2<Integer, Long>> currentInNeighbors =
-        context.storage().get(IN_NEIGHBORS).orElse(Collections.emptyList());
-    System.out.printf(String.format("the incoming edges of vertex %d are %s\n", vertexId, currentInNeighbors));
-    context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("incoming-edges")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("the incoming edges of vertex %d are %s\n", vertexId, currentInNeighbors))
-            .build()
-    );
+  private void outputDegree(Context context, int vertexId) {
+    ResultEgress.send(context, "in-degree", DegreeResult.of(vertexId, SHARDS.degree(context), DEGREE.get(context)));
   }
 
   /**
-   * This methods prints out the current incoming edges/neighbors of a vertex
+   * This methods logs the newly added incoming edge and the number of incoming edges of a vertex, for the sampled
+   * vertices at DEBUG level only, so that an edge add does not read the degree just to log it.
    * @param vertex
    * @param context
    */
-  private void logInNeighbors(int vertex, Context context) {
-    List<CustomTuple2<Integer, Long>> currentInNeighbors = context.storage().get(IN_NEIGHBORS).orElse(Collections.emptyList());
-
-    System.out.printf("vertex %d currently has these incoming neighbors: %s\n", vertex, currentInNeighbors);
+  private void logInNeighbors(Vertex vertex, Context context) {
+    if (LOG.isEnabled(GraphLogger.Level.DEBUG, context.self().id())) {
+      LOG.debug("vertex %d added incoming neighbor (%d,%d) and currently has %d incoming neighbors",
+          vertex.getDst(), vertex.getSrc(), vertex.getTimestamp(), SHARDS.degree(context));
+    }
   }
 }
@@ -0,0 +1,165 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.*;
+import org.apache.flink.statefun.sdk.java.*;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This function coordinates the k-hop queries. There is one logical instance per query, identified by the
+ * address (KHopCoordinatorFn.TYPE_NAME, run_id), which only lives until the query has completed. The run id is the
+ * query id of the request together with the id of the run, see {@link QueryResultAggregatorFn#runIdOf}.
+ *
+ * The query is expanded level by level (breadth first): the coordinator asks every vertex of the current frontier
+ * for its distinct neighbors with a {@link KHopExpand} message, and once all of them have answered, the neighbors
+ * that were not visited before form the next frontier. So every vertex is expanded at most once per query, and the
+ * result is the k-th frontier, the vertices whose shortest distance from the queried vertex is k, which is reported
+ * through the {@link QueryResultAggregatorFn} of the query.
+ * The expanded vertices also send their versions, which are reported with the result, so that the queried vertex can
+ * cache it until one of them changes (see {@link QueryResultCache}).
+ * To send a query message to this function, please build a message with the K_HOP_QUERY_TYPE in {@link Types} and
+ * send to the address described above
+ */
+public class KHopCoordinatorFn implements StatefulFunction {
+
+  private static final GraphLogger LOG = GraphLogger.get(KHopCoordinatorFn.class);
+
+  private static final ValueSpec<KHopProgress> PROGRESS =
+      ValueSpec.named("kHopProgress").withCustomType(Types.K_HOP_PROGRESS_TYPE);
+
+  static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "kHopCoordinator");
+  static final StatefulFunctionSpec SPEC =
+      StatefulFunctionSpec.builder(TYPE_NAME)
+          .withSupplier(KHopCoordinatorFn::new)
+          .withValueSpec(PROGRESS)
+          .build();
+
+  @Override
+  public CompletableFuture<Void> apply(Context context, Message message) throws Throwable {
+    if (message.is(Types.K_HOP_QUERY_TYPE)) {
+      KHopQuery query = message.as(Types.K_HOP_QUERY_TYPE);
+      if (query.isLegacy()) {
+        LOG.warn("dropping k-hop query for vertex %d in the format before the coordinator existed",
+            query.getVertexId());
+      } else {
+        startQuery(context, query);
+      }
+    } else if (message.is(Types.K_HOP_NEIGHBORS_TYPE)) {
+      // a vertex of the current frontier has sent its distinct neighbors and its version
+      KHopNeighbors neighbors = message.as(Types.K_HOP_NEIGHBORS_TYPE);
+      collectNeighbors(context, neighbors.getNeighbors(), neighbors.getVertexId(), neighbors.getVertexVersion());
+    } else if (message.is(Types.DISTINCT_NEIGHBORS_TYPE)) {
+      // a vertex of the current frontier has sent its distinct neighbors without its version, as vertices did before
+      // the versions existed
+      DistinctNeighbors neighbors = message.as(Types.DISTINCT_NEIGHBORS_TYPE);
+      collectNeighbors(context, neighbors.toSortedArray(), 0, -1);
+    }
+    return context.done();
+  }
+
+  /**
+   * This method starts the query by expanding the queried vertex
+   * @param context
+   * @param query
+   */
+  private void startQuery(Context context, KHopQuery query) {
+    KHopProgress progress = KHopProgress.create(query);
+    if (!QueryResultCache.ENABLED) {
+      progress.forgetVersions();
+    }
+    if (progress.getK() < 1) {
+      completeQuery(context, progress);
+      return;
+    }
+    expandFrontier(context, progress, new int[] {query.getVertexId()});
+    context.storage().set(PROGRESS, progress);
+  }
+
+  /**
+   * This method adds the neighbors of a frontier vertex to the next frontier. Once all the vertices of the frontier
+   * have answered, the next frontier is either expanded or, at level k, reported as the result.
+   * @param context
+   * @param neighbors sorted distinct neighbor ids
+   * @param expandedId the frontier vertex
+   * @param version the version of the frontier vertex, -1 if it is not known
+   */
+  private void collectNeighbors(Context context, int[] neighbors, int expandedId, long version) {
+    KHopProgress progress = context.storage().get(PROGRESS).orElse(null);
+    if (progress == null) {
+      return;
+    }
+    progress.addNeighbors(neighbors);
+    VertexVersions versions = progress.getVersions();
+    if (version < 0 || (versions != null && versions.size() >= QueryResultCache.MAX_VERTICES)) {
+      // the result could not be cached anyway, so the versions are not worth keeping
+      progress.forgetVersions();
+    } else {
+      progress.addVersion(expandedId, version);
+    }
+    if (!progress.isLevelComplete()) {
+      context.storage().set(PROGRESS, progress);
+      return;
+    }
+
+    int[] frontier = progress.getFrontier();
+    if (progress.getLevel() == progress.getK() || frontier.length == 0) {
+      completeQuery(context, progress);
+      context.storage().remove(PROGRESS);
+    } else {
+      expandFrontier(context, progress, frontier);
+      context.storage().set(PROGRESS, progress);
+    }
+  }
+
+  /**
+   * This method asks every vertex of the frontier for its distinct neighbors
+   * @param context
+   * @param progress
+   * @param frontier
+   */
+  private void expandFrontier(Context context, KHopProgress progress, int[] frontier) {
+    progress.expand(frontier);
+    TypeName edgesFn = KHopQuery.DIRECTION_IN.equals(progress.getDirection())
+        ? InEdgesQueryFn.TYPE_NAME
+        : OutEdgesQueryFn.TYPE_NAME;
+    KHopExpand expand = KHopExpand.create(context.self().id());
+    for (int vertex : frontier) {
+      context.send(
+          MessageBuilder.forAddress(edgesFn, String.valueOf(vertex))
+              .withCustomType(Types.K_HOP_EXPAND_TYPE, expand)
+              .build()
+      );
+    }
+  }
+
+  /**
+   * This method sends the vertices that are k hops away to the aggregator of the query, which reports them as a
+   * single record
+   * @param context
+   * @param progress
+   */
+  private void completeQuery(Context context, KHopProgress progress) {
+    boolean incoming = KHopQuery.DIRECTION_IN.equals(progress.getDirection());
+    // the query only got to level k if there are vertices that far away
+    int[] result = progress.getLevel() == progress.getK() ? progress.getFrontier() : SortedIntSets.EMPTY;
+    long[] results = new long[result.length];
+    for (int i = 0; i < result.length; i++) {
+      results[i] = result[i];
+    }
+    LOG.debug("%s K-Hop query %s for vertex %d (K = %d) completed with %d nodes",
+        incoming ? "Incoming" : "Outgoing", context.self().id(), progress.getVertexId(), progress.getK(),
+        result.length);
+
+    // the coordinator already knows that the query is complete, so its part does not announce any further parts
+    QueryResultPart part = QueryResultPart.root(
+        incoming ? QueryResult.TASK_IN_K_HOP : QueryResult.TASK_OUT_K_HOP,
+        progress.getVertexId(), progress.getK(), 0, results, progress.getVersions());
+    context.send(
+        MessageBuilder.forAddress(QueryResultAggregatorFn.TYPE_NAME, context.self().id())
+            .withCustomType(Types.QUERY_RESULT_PART_TYPE, part)
+            .build()
+    );
+  }
+}
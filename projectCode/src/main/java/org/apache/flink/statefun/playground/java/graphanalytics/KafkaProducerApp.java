@@ -1,20 +1,41 @@
 package org.apache.flink.statefun.playground.java.graphanalytics;
 
-import java.io.File;
-import java.util.Date;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Properties;
-import java.util.Scanner;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
 /**
- * KafkaProducerApp sends line by line of a textfile to Kafka
+ * KafkaProducerApp sends line by line of a textfile to Kafka, as one ADD event per edge.
+ *
+ * By default the events are pipelined: they are sent asynchronously, with up to GRAPH_PRODUCER_MAX_IN_FLIGHT events
+ * waiting for their acknowledgement, and batched by the producer according to GRAPH_PRODUCER_LINGER_MS,
+ * GRAPH_PRODUCER_BATCH_SIZE and GRAPH_PRODUCER_COMPRESSION. The producer is idempotent, so the events of a vertex
+ * still arrive in the order of the file. GRAPH_PRODUCER_MODE=sync waits for the acknowledgement of every event
+ * instead, and GRAPH_PRODUCER_RATE limits the events sent per second.
  */
 public class KafkaProducerApp {
+    private static final String TOPIC_NAME = "tasks";
+    private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private static final byte[] JSON_SRC = "{\"task\": \"ADD\", \"src\": ".getBytes();
+    private static final byte[] JSON_DST = ", \"dst\": ".getBytes();
+    private static final byte[] JSON_TIMESTAMP = ", \"t\": ".getBytes();
+    private static final byte[] JSON_END = ", \"endTime\": 0}".getBytes();
+
+    private static final AtomicLong acknowledged = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+
     public static void main(String[] args) throws Exception {
         System.out.println("Starting KafkaProducerApp...");
 
@@ -25,34 +46,146 @@ public class KafkaProducerApp {
             textFile += ".txt";
         }
         System.out.println(String.format("Reading %s file", textFile));
-        File fileName = new File("./data/" + textFile);
-        Scanner scFiles = new Scanner(fileName);
+        Path fileName = Paths.get("./data/" + textFile);
+
+        boolean pipelined = !"sync".equalsIgnoreCase(GraphAnalyticsConfig.getString("GRAPH_PRODUCER_MODE", "pipelined"));
+        int maxInFlight = GraphAnalyticsConfig.getInt("GRAPH_PRODUCER_MAX_IN_FLIGHT", 10000);
+        int rate = GraphAnalyticsConfig.getInt("GRAPH_PRODUCER_RATE", 0);
+
+        // Kafka Producer API
+        Producer<String, byte[]> producer =
+            new KafkaProducer<>(producerProperties(), new StringSerializer(), new ByteArraySerializer());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        long start = System.nanoTime();
+        long[] nextReport = {start + REPORT_INTERVAL_NANOS};
+        long[] dispatched = {0};
+        byte[] scratch = new byte[128];
+        long sent = EdgeFileReader.forEachEdge(fileName, (src, dst, timestamp) -> {
+            ProducerRecord<String, byte[]> record =
+                new ProducerRecord<>(TOPIC_NAME, String.valueOf(src), addEdgeJson(scratch, src, dst, timestamp));
+            if (pipelined) {
+                inFlight.acquire();
+                producer.send(record, (metadata, exception) -> {
+                    inFlight.release();
+                    onAcknowledged(exception);
+                });
+            } else {
+                try {
+                    producer.send(record).get();
+                    onAcknowledged(null);
+                } catch (Exception e) {
+                    onAcknowledged(e);
+                }
+            }
+
+            dispatched[0]++;
 
+            long now = System.nanoTime();
+            if (now - nextReport[0] >= 0) {
+                report("Sent", acknowledged.get(), now - start);
+                nextReport[0] = now + REPORT_INTERVAL_NANOS;
+            }
+            if (rate > 0) {
+                // paced against the start, so that short stalls are caught up on
+                long due = start + dispatched[0] * 1_000_000_000L / rate;
+                if (due - now > 0) {
+                    LockSupport.parkNanos(due - now);
+                }
+            }
+            return true;
+        });
+        producer.flush();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("Finished sending!");
+        report(String.format("Read %d events, sent", sent), acknowledged.get(), elapsed);
+        if (failed.get() > 0) {
+            System.out.println(String.format("%d events could not be sent", failed.get()));
+        }
+        producer.close();
+    }
+
+    /**
+     * This method returns the configuration of the producer, which the other programs that write to the ingress
+     * topics share
+     * @return the producer properties
+     */
+    static Properties producerProperties() {
         // environment variables
-        String kafkaAddress = System.getenv("BROKER_ADDRESS") == null ? "localhost" : System.getenv("BROKER_ADDRESS");
-        String kafkaPort = System.getenv("BROKER_ADDRESS_PORT") == null ? "9092" : System.getenv("BROKER_ADDRESS_PORT");
+        String kafkaAddress = GraphAnalyticsConfig.getString("BROKER_ADDRESS", "localhost");
+        String kafkaPort = GraphAnalyticsConfig.getString("BROKER_ADDRESS_PORT", "9092");
         System.out.println(String.format("%s:%s", kafkaAddress, kafkaPort));
-        // Kafka Producer API
+
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, String.format("%s:%s", kafkaAddress, kafkaPort));
         props.put(ProducerConfig.ACKS_CONFIG, "all");
         props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
-        Producer<String, String> producer = new KafkaProducer<>(props, new StringSerializer(), new StringSerializer());
-        final String topicName = "tasks";
-        while(scFiles.hasNextLine()) {
-            // create message
-            String[] inputStr = scFiles.nextLine().trim().split(" ");
-            String jsonString = String.format("{\"task\": \"ADD\", \"src\": \"%1$s\", \"dst\": \"%2$s\", \"t\": \"%3$s\", \"endTime\": \"0\"}", inputStr[0], inputStr[1], inputStr[2]);
-            System.out.println(jsonString);
-
-            try {
-                producer.send(new ProducerRecord<>(topicName, inputStr[0], jsonString)).get();
-            }catch(Exception e) {
-                e.printStackTrace();
-            }
+        props.put(ProducerConfig.LINGER_MS_CONFIG, GraphAnalyticsConfig.getInt("GRAPH_PRODUCER_LINGER_MS", 5));
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, GraphAnalyticsConfig.getInt("GRAPH_PRODUCER_BATCH_SIZE", 65536));
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, GraphAnalyticsConfig.getString("GRAPH_PRODUCER_COMPRESSION", "lz4"));
+        return props;
+    }
+
+    private static void onAcknowledged(Exception exception) {
+        if (exception == null) {
+            acknowledged.incrementAndGet();
+        } else if (failed.getAndIncrement() == 0) {
+            // the following failures usually have the same cause, only the count is reported for them
+            exception.printStackTrace();
         }
-        System.out.println("Finished sending!");
-        producer.close();
-        scFiles.close();
+    }
+
+    private static void report(String prefix, long events, long elapsedNanos) {
+        System.out.println(String.format("%s %d events in %.1f s (%.0f events/s)",
+            prefix, events, elapsedNanos / 1e9, events * 1e9 / Math.max(elapsedNanos, 1)));
+    }
+
+    /**
+     * This method writes the ADD event of an edge as JSON, without going through String.format
+     * @param scratch buffer that is large enough for any event
+     * @param src
+     * @param dst
+     * @param timestamp
+     * @return the JSON bytes
+     */
+    static byte[] addEdgeJson(byte[] scratch, int src, int dst, long timestamp) {
+        int length = put(scratch, 0, JSON_SRC);
+        length = putLong(scratch, length, src);
+        length = put(scratch, length, JSON_DST);
+        length = putLong(scratch, length, dst);
+        length = put(scratch, length, JSON_TIMESTAMP);
+        length = putLong(scratch, length, timestamp);
+        length = put(scratch, length, JSON_END);
+        return Arrays.copyOf(scratch, length);
+    }
+
+    private static int put(byte[] buffer, int offset, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+        return offset + bytes.length;
+    }
+
+    private static int putLong(byte[] buffer, int offset, long value) {
+        if (value == 0) {
+            buffer[offset] = '0';
+            return offset + 1;
+        }
+        if (value < 0) {
+            buffer[offset++] = '-';
+        }
+        int digitsStart = offset;
+        // negative values are written digit by digit from their negation, which also covers Long.MIN_VALUE
+        long rest = value < 0 ? value : -value;
+        while (rest != 0) {
+            buffer[offset++] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        }
+        // the digits were written from the least significant one, so reverse them
+        for (int i = digitsStart, j = offset - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+        return offset;
     }
 }
@@ -0,0 +1,252 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import io.undertow.Undertow;
+import org.apache.flink.statefun.playground.java.graphanalytics.harness.HttpTransport;
+import org.apache.flink.statefun.playground.java.graphanalytics.harness.InProcessRuntime;
+import org.apache.flink.statefun.playground.java.graphanalytics.harness.LatencyRecorder;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Execute;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.playground.java.graphanalytics.undertow.UndertowHttpHandler;
+import org.apache.flink.statefun.sdk.egress.generated.KafkaProducerRecord;
+import org.apache.flink.statefun.sdk.java.handler.RequestReplyHandler;
+import org.apache.flink.statefun.sdk.java.slice.Slice;
+import org.apache.flink.statefun.sdk.java.slice.SliceProtobufUtil;
+import org.apache.flink.statefun.sdk.java.slice.Slices;
+import org.apache.flink.statefun.sdk.reqreply.generated.Address;
+import org.apache.flink.statefun.sdk.reqreply.generated.TypedValue;
+import org.apache.flink.statefun.sdk.shaded.com.google.protobuf.ByteString;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LoadHarnessApp replays text files of edges (the files in data/) against the functions, without Kafka, Flink or
+ * Docker. It plays the part of the StateFun runtime with an {@link InProcessRuntime}, which calls the
+ * {@link RequestReplyHandler} of {@link GraphAnalyticsAppServer} directly, or over a loopback HTTP connection to an
+ * {@link UndertowHttpHandler} with GRAPH_HARNESS_TRANSPORT=http.
+ *
+ * Every line is sent to the filter function as an ADD event, and after every GRAPH_HARNESS_QUERY_EVERY edges one
+ * query is sent about the vertices of the last edge, cycling through the query tasks. The events are processed one
+ * at a time, the latency of an event is the time until the functions have handled all the messages it caused, so
+ * for a query until its result has been sent to the egress. At the end, the throughput and the latency percentiles
+ * are reported per task.
+ */
+public final class LoadHarnessApp {
+
+  private static final String[] QUERY_TASKS = {
+      "GET_IN_EDGES", "GET_OUT_EDGES", "IN_DEGREE", "OUT_DEGREE", "GET_TIME_WINDOW_EDGES", "COUNT_TIME_WINDOW",
+      "IN_K_HOP", "OUT_K_HOP", "IN_TRIANGLES", "OUT_TRIANGLES", "GET_RECOMMENDATION"
+  };
+  private static final long TIME_WINDOW_SECONDS = 7 * 24 * 3600;
+
+  private static final String TRANSPORT = GraphAnalyticsConfig.getString("GRAPH_HARNESS_TRANSPORT", "in-process");
+  private static final int QUERY_EVERY = GraphAnalyticsConfig.getInt("GRAPH_HARNESS_QUERY_EVERY", 100);
+  private static final int EDGE_LIMIT = GraphAnalyticsConfig.getInt("GRAPH_HARNESS_LIMIT", 0);
+  private static final int WARMUP_EVENTS = GraphAnalyticsConfig.getInt("GRAPH_HARNESS_WARMUP", 0);
+  private static final int K = GraphAnalyticsConfig.getInt("GRAPH_HARNESS_K", 2);
+  private static final String SNAPSHOT = GraphAnalyticsConfig.getString("GRAPH_HARNESS_SNAPSHOT", "");
+
+  private final InProcessRuntime runtime;
+  private final Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+  private final Map<String, Long> egressRecords = new TreeMap<>();
+  private int events;
+  private int nextQuery;
+
+  private LoadHarnessApp(InProcessRuntime.Transport transport) {
+    this.runtime = new InProcessRuntime(transport, this::countEgress);
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0 && SNAPSHOT.isEmpty()) {
+      throw new Exception("Name of at least one text file in ./data, or GRAPH_HARNESS_SNAPSHOT is required as input!");
+    }
+    RequestReplyHandler handler = GraphAnalyticsAppServer.functions().requestReplyHandler();
+
+    Undertow httpServer = null;
+    InProcessRuntime.Transport transport;
+    if ("http".equalsIgnoreCase(TRANSPORT)) {
+      httpServer = Undertow.builder()
+          .addHttpListener(0, "127.0.0.1")
+          .setHandler(new UndertowHttpHandler(handler, GraphAnalyticsAppServer.REQUEST_BUFFER_POOL_BYTES,
+              GraphAnalyticsAppServer.requestScheduler()))
+          .build();
+      httpServer.start();
+      InetSocketAddress address = (InetSocketAddress) httpServer.getListenerInfo().get(0).getAddress();
+      transport = new HttpTransport(new URL("http", "127.0.0.1", address.getPort(), "/graph-analytics.fns"));
+    } else if ("in-process".equalsIgnoreCase(TRANSPORT)) {
+      transport = request -> {
+        Slice response = handler.handle(Slices.wrap(request)).get();
+        return response.toByteArray();
+      };
+    } else {
+      throw new IllegalArgumentException(
+          String.format("GRAPH_HARNESS_TRANSPORT must be one of in-process or http, but was '%s'", TRANSPORT));
+    }
+
+    LoadHarnessApp harness = new LoadHarnessApp(transport);
+    try {
+      long start = System.nanoTime();
+      if (!SNAPSHOT.isEmpty()) {
+        harness.loadSnapshot(Paths.get(SNAPSHOT));
+      }
+      for (String arg : args) {
+        harness.replay(arg.trim());
+      }
+      harness.runtime.drain();
+      harness.report(System.nanoTime() - start);
+    } finally {
+      if (httpServer != null) {
+        httpServer.stop();
+      }
+    }
+  }
+
+  /**
+   * This method replays the edges of a text file, with the queries in between them
+   * @param textFile name of a file in ./data, ".txt" can be left out
+   * @throws Exception
+   */
+  private void replay(String textFile) throws Exception {
+    if (!textFile.endsWith(".txt")) {
+      textFile += ".txt";
+    }
+    System.out.println(String.format("Replaying %s file", textFile));
+    int[] edges = {0};
+    EdgeFileReader.forEachEdge(Paths.get("./data/" + textFile), (src, dst, timestamp) -> {
+      process(Execute.create("ADD", src, dst, timestamp, 0, 0));
+      edges[0]++;
+      if (QUERY_EVERY > 0 && edges[0] % QUERY_EVERY == 0) {
+        process(nextQuery(src, dst, timestamp));
+      }
+      return EDGE_LIMIT <= 0 || edges[0] < EDGE_LIMIT;
+    });
+  }
+
+  /**
+   * This method installs every block of a graph snapshot, like the Kafka ingress of the snapshot topics does
+   * @param snapshot
+   * @throws Exception
+   */
+  private void loadSnapshot(Path snapshot) throws Exception {
+    System.out.println(String.format("Loading %s snapshot", snapshot));
+    long start = System.nanoTime();
+    int[] blocks = {0};
+    GraphSnapshot.forEachBlock(snapshot, (kind, vertexId, neighborList) -> {
+      Address target = Address.newBuilder()
+          .setNamespace(kind.function.namespace())
+          .setType(kind.function.name())
+          .setId(String.valueOf(vertexId))
+          .build();
+      TypedValue argument = TypedValue.newBuilder()
+          .setTypename(kind.messageType.typeName().asTypeNameString())
+          .setHasValue(true)
+          .setValue(ByteString.copyFrom(neighborList))
+          .build();
+      process("LOAD_" + kind.name(), target, argument);
+      blocks[0]++;
+    });
+    runtime.drain();
+    System.out.println(String.format(Locale.ROOT, "Loaded %d blocks in %.2f s", blocks[0],
+        (System.nanoTime() - start) / 1e9));
+  }
+
+  private Execute nextQuery(int src, int dst, long timestamp) {
+    String task = QUERY_TASKS[nextQuery];
+    nextQuery = (nextQuery + 1) % QUERY_TASKS.length;
+    if ("GET_TIME_WINDOW_EDGES".equals(task)) {
+      // the window ends at the last edge, so it covers the recent edges of the vertex
+      return Execute.create(task, src, dst, timestamp - TIME_WINDOW_SECONDS, timestamp, K);
+    }
+    if ("COUNT_TIME_WINDOW".equals(task)) {
+      // the same window widened to whole hours, which is what dashboards ask for
+      long endTime = Math.floorDiv(timestamp, 3600) * 3600 + 3599;
+      return Execute.create(task, src, dst, endTime + 1 - TIME_WINDOW_SECONDS, endTime, K);
+    }
+    return Execute.create(task, src, dst, timestamp, 0, K);
+  }
+
+  /**
+   * This method sends an event to the filter function, like the ingress does, and waits until the functions have
+   * handled all the messages it caused
+   * @param event
+   * @throws Exception
+   */
+  private void process(Execute event) throws Exception {
+    // the ingress routes the events by the key of their Kafka record, the source vertex
+    Address target = Address.newBuilder()
+        .setNamespace(EventsFilterFn.TYPE_NAME.namespace())
+        .setType(EventsFilterFn.TYPE_NAME.name())
+        .setId(String.valueOf(event.getSrc()))
+        .build();
+    TypedValue argument = TypedValue.newBuilder()
+        .setTypename(Types.EXECUTE_TYPE.typeName().asTypeNameString())
+        .setHasValue(true)
+        .setValue(SliceProtobufUtil.asByteString(Types.EXECUTE_TYPE.typeSerializer().serialize(event)))
+        .build();
+    process(event.getTask(), target, argument);
+  }
+
+  /**
+   * This method sends a message from outside of the functions, and waits until the functions have handled all the
+   * messages it caused
+   * @param task the task the latency is recorded for
+   * @param target
+   * @param argument
+   * @throws Exception
+   */
+  private void process(String task, Address target, TypedValue argument) throws Exception {
+    // delayed messages that became due in between are handled before, and not counted against the event
+    if (runtime.hasDueMessages()) {
+      runtime.runUntilIdle();
+    }
+
+    long start = System.nanoTime();
+    runtime.send(target, argument);
+    runtime.runUntilIdle();
+    long latency = System.nanoTime() - start;
+
+    if (events++ >= WARMUP_EVENTS) {
+      latencies.computeIfAbsent(task, t -> new LatencyRecorder()).record(latency);
+    }
+  }
+
+  private void countEgress(String egressType, TypedValue record) {
+    String topic = egressType;
+    try {
+      topic = KafkaProducerRecord.parseFrom(record.getValue()).getTopic();
+    } catch (Exception e) {
+      // not a Kafka record, counted by its egress
+    }
+    egressRecords.merge(topic, 1L, Long::sum);
+  }
+
+  private void report(long elapsedNanos) {
+    System.out.println();
+    System.out.println(String.format(Locale.ROOT, "%d events in %.2f s (%.0f events/s) over %s transport",
+        events, elapsedNanos / 1e9, events * 1e9 / elapsedNanos, TRANSPORT));
+    System.out.println(String.format(Locale.ROOT,
+        "%d requests, %d invocations (%.2f per request), %d addresses with state, %d egress records",
+        runtime.requests(), runtime.invocations(), (double) runtime.invocations() / Math.max(runtime.requests(), 1),
+        runtime.addressesWithState(), runtime.egressRecords()));
+    System.out.println();
+    System.out.println(String.format(Locale.ROOT, "%-22s %9s %10s %10s %10s %10s %10s %10s",
+        "task", "count", "ops/s", "mean us", "p50 us", "p99 us", "p999 us", "max us"));
+    for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+      LatencyRecorder recorder = entry.getValue();
+      System.out.println(String.format(Locale.ROOT, "%-22s %9d %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f",
+          entry.getKey(), recorder.count(), recorder.count() * 1e9 / recorder.totalNanos(),
+          recorder.totalNanos() / 1e3 / recorder.count(), recorder.percentile(0.5) / 1e3,
+          recorder.percentile(0.99) / 1e3, recorder.percentile(0.999) / 1e3, recorder.percentile(1) / 1e3));
+    }
+    System.out.println();
+    for (Map.Entry<String, Long> entry : egressRecords.entrySet()) {
+      System.out.println(String.format(Locale.ROOT, "egress %-22s %9d records", entry.getKey(), entry.getValue()));
+    }
+  }
+}
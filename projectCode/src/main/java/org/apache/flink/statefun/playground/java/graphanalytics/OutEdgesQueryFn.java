@@ -1,20 +1,26 @@
 package org.apache.flink.statefun.playground.java.graphanalytics;
 
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Histogram;
 import org.apache.flink.statefun.playground.java.graphanalytics.types.*;
 import org.apache.flink.statefun.sdk.java.*;
-import org.apache.flink.statefun.sdk.java.io.KafkaEgressMessage;
 import org.apache.flink.statefun.sdk.java.message.EgressMessageBuilder;
 import org.apache.flink.statefun.sdk.java.message.Message;
 import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+import org.apache.flink.statefun.sdk.java.types.Type;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 /**
- * This function processes the query for counting the number of outgoing edges of a vertex
+ * This function processes the query for counting the number of outgoing edges of a vertex, and the queries for
+ * the outgoing edges of a vertex during a time window and for their number (see {@link TimeWindowQuery}).
  * In practice, there will be multiple logical instances of the OutEdgesQueryFn, and the number of logical
  * instances will be equal to the number of vertices in the graph. Each logical instance will be identified by the
  * address (OutEdgesQueryFn.TYPE_NAME, vertex_id). In this case, each logical instance only needs to store the incoming
@@ -24,42 +30,278 @@ import java.util.concurrent.CompletableFuture;
  */
 public class OutEdgesQueryFn implements StatefulFunction {
 
-  private static final ValueSpec<List<CustomTuple2<Integer, Long>>> OUT_NEIGHBORS =
-      ValueSpec.named("outNeighbors").withCustomType(Types.OUT_NEIGHBORS_TYPE);
+  private static final GraphLogger LOG = GraphLogger.get(OutEdgesQueryFn.class);
+
+  // the outgoing edges are kept in time-sorted segments, so that adding an edge only rewrites the tail segment,
+  // together with their number per time bucket for the COUNT_TIME_WINDOW query, for GRAPH_OUT_EDGES_RETENTION_DAYS
+  // days of event time
+  private static final SegmentedNeighborStore OUT_NEIGHBORS = new SegmentedNeighborStore("outNeighbors",
+      Types.OUT_NEIGHBORS_TYPE, true, EdgeRetention.fromSetting("GRAPH_OUT_EDGES_RETENTION_DAYS"));
+
+  // uniform random sample of the outgoing edges, the recommendation candidates are picked from it so that an
+  // edge add does not need to read the whole neighbor list
+  static final int RECOMMEND_SAMPLE_SIZE = 16;
+  private static final ValueSpec<NeighborList> RECOMMEND_SAMPLE =
+      EdgeRetention.vertexValue("recommendSample").withCustomType(Types.OUT_NEIGHBORS_TYPE);
 
   static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "outEdges");
+
+  // once a vertex has many outgoing edges, they are spread over several shards of this function
+  private static final VertexShards SHARDS =
+      new VertexShards(TYPE_NAME, OUT_NEIGHBORS, Types.Add_OUT_EDGE_BATCH_TYPE);
+
+  // the distinct outgoing neighbors that the triangle and k-hop queries use, kept until the vertex gets a new edge
+  private static final DistinctNeighborIndex DISTINCT_NEIGHBORS = new DistinctNeighborIndex(OUT_NEIGHBORS);
+
+  // the degree, distinct neighbors and first and last timestamp of the outgoing edges, for the OUT_DEGREE query
+  private static final DegreeCounters DEGREE = new DegreeCounters(OUT_NEIGHBORS, SHARDS);
+
+  // the results of the OUT_K_HOP and OUT_TRIANGLES queries on the vertex, until a vertex they depend on gets a new edge
+  private static final QueryResultCache QUERY_CACHE =
+      new QueryResultCache(TYPE_NAME, KHopQuery.DIRECTION_OUT, OUT_NEIGHBORS, SHARDS);
+
   static final StatefulFunctionSpec SPEC =
       StatefulFunctionSpec.builder(TYPE_NAME)
           .withSupplier(OutEdgesQueryFn::new)
-          .withValueSpecs(OUT_NEIGHBORS)
+          .withValueSpecs(OUT_NEIGHBORS.valueSpecs())
+          .withValueSpec(RECOMMEND_SAMPLE)
+          .withValueSpecs(SHARDS.valueSpecs())
+          .withValueSpecs(DISTINCT_NEIGHBORS.valueSpecs())
+          .withValueSpecs(DEGREE.valueSpecs())
+          .withValueSpecs(QUERY_CACHE.valueSpecs())
           .build();
 
-  static final TypeName EGRESS_TYPE = TypeName.typeNameOf("graph-analytics.io", "egress");
+  private static final Histogram NEIGHBOR_LIST_SIZES = FunctionMetrics.neighborListSizes(TYPE_NAME);
 
   @Override
   public CompletableFuture<Void> apply(Context context, Message message) throws Throwable {
     if (message.is(Types.Add_OUT_EDGE_TYPE)) {
       Vertex vertex = message.as(Types.Add_OUT_EDGE_TYPE);
-      List<CustomTuple2<Integer, Long>> currentOutNeighbors = getCurrentOutNeighbors(context);
-      sendRecommendCandidate(context, currentOutNeighbors, vertex.getDst());
-      updateOutNeighbors(context, vertex, currentOutNeighbors);
-      logOutNeighbors(vertex.getSrc(), context);
+      if (VertexShards.isShard(context)) {
+        // the vertex itself already took care of the recommendations
+        updateOutNeighbors(context, vertex);
+        return context.done();
+      }
+      int currentDegree = SHARDS.degree(context);
+      NeighborList sample = getRecommendSample(context, currentDegree);
+      sendRecommendCandidate(context, sample, currentDegree, vertex.getDst(), vertex.getTimestamp());
+      updateOutNeighbors(context, vertex);
+      updateRecommendSample(context, sample, currentDegree + 1, vertex);
+      logOutNeighbors(vertex, context);
+    } else if (message.is(Types.Add_OUT_EDGE_BATCH_TYPE)) {
+      NeighborList newOutNeighbors = message.as(Types.Add_OUT_EDGE_BATCH_TYPE);
+      if (VertexShards.isShard(context)) {
+        updateOutNeighbors(context, newOutNeighbors);
+      } else {
+        addOutNeighborBatch(context, newOutNeighbors);
+      }
+    } else if (message.is(Types.LOAD_OUT_NEIGHBORS_TYPE)) {
+      loadOutNeighbors(context, message.as(Types.LOAD_OUT_NEIGHBORS_TYPE));
+    } else if (message.is(Types.SEGMENT_COMPACTION_TYPE)) {
+      DEGREE.expire(context, SHARDS.compact(context));
+    } else if (message.is(Types.SHARD_EXPIRY_TYPE)) {
+      ShardExpiry expiry = message.as(Types.SHARD_EXPIRY_TYPE);
+      SHARDS.expire(context, expiry);
+      DEGREE.expire(context, expiry);
+    } else if (message.is(Types.SHARD_SCAN_REQUEST_TYPE)) {
+      SHARDS.answer(context, message.as(Types.SHARD_SCAN_REQUEST_TYPE));
+    } else if (message.is(Types.SHARD_SCAN_RESULT_TYPE)) {
+      SHARDS.collect(context, message.as(Types.SHARD_SCAN_RESULT_TYPE),
+          (query, outNeighbors, count) -> handleShardedQuery(context, query, outNeighbors, count));
+    } else if (message.is(Types.OUT_DEGREE_QUERY_TYPE)) {
+      // the degree is answered from its counters, without reading the edges or asking the shards
+      outputDegree(context, message.as(Types.OUT_DEGREE_QUERY_TYPE).getVertexId());
+    } else if (message.is(Types.K_HOP_QUERY_TYPE)) {
+      handleKHopQuery(context, message.as(Types.K_HOP_QUERY_TYPE));
+    } else if (message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE)) {
+      handleTriangleQuery(context, message);
+    } else if (message.is(Types.VERSION_CHECK_TYPE)) {
+      QUERY_CACHE.answer(context, message.as(Types.VERSION_CHECK_TYPE));
+    } else if (message.is(Types.VERSION_CHECK_RESULT_TYPE)) {
+      QUERY_CACHE.collect(context, message.as(Types.VERSION_CHECK_RESULT_TYPE));
+    } else if (message.is(Types.CACHED_QUERY_RESULT_TYPE)) {
+      QUERY_CACHE.put(context, message.as(Types.CACHED_QUERY_RESULT_TYPE));
+    } else if (message.is(Types.COUNT_TIME_WINDOW_QUERY_TYPE) && !SHARDS.isSharded(context)) {
+      // the count is answered from the time bucket counts and binary searches, without merging the edges
+      TimeWindowQuery query = message.as(Types.COUNT_TIME_WINDOW_QUERY_TYPE);
+      outputTimeWindowCount(context, query, OUT_NEIGHBORS.count(context, query.getStartTime(), query.getEndTime()));
+    } else {
+      runQuery(context, message);
+    }
+    return context.done();
+  }
+
+  /**
+   * This method runs a query against the given outgoing neighbors of the vertex
+   * @param context
+   * @param message
+   * @param currentOutNeighbors
+   */
+  private void handleQuery(Context context, Message message, NeighborList currentOutNeighbors) {
+    NEIGHBOR_LIST_SIZES.record(currentOutNeighbors.size());
+    if (message.is(Types.TIME_WINDOW_QUERY_TYPE)) {
+      TimeWindowQuery query = message.as(Types.TIME_WINDOW_QUERY_TYPE);
+      NeighborList result = getTimeWindowNodes(currentOutNeighbors, query.getStartTime(), query.getEndTime());
+      LOG.debug("(time-window) vertex %d has %d outgoing edges between [%d, %d]", query.getSrc(),
+          result.size(), query.getStartTime(), query.getEndTime());
+      outputResult(context, "time-window", result, query.getPage(),
+          edges -> NeighborsResult.ofTimeWindow(query.getSrc(), query.getStartTime(), query.getEndTime(), edges),
+          rest -> continueQuery(context, Types.TIME_WINDOW_QUERY_TYPE,
+              TimeWindowQuery.create(query.getSrc(), query.getStartTime(), query.getEndTime(), rest)));
     } else if (message.is(Types.OUT_EDGES_QUERY_TYPE)) {
       OutEdgesQuery query = message.as(Types.OUT_EDGES_QUERY_TYPE);
       // the query we are implementing now is simple; it is only asking for all the incoming edges, so we can
       // just return the entire IN_NEIGHBORS list
-      outputResult(context, query.getVertexId());
-    } else if (message.is(Types.K_HOP_QUERY_TYPE)) {
-      KHopQuery kHopQuery = message.as(Types.K_HOP_QUERY_TYPE);
-      performKHop(context, kHopQuery);
-    } else if (message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE)) {
+      LOG.debug("vertex %d has %d outgoing edges", query.getVertexId(), currentOutNeighbors.size());
+      outputResult(context, "outgoing-edges", currentOutNeighbors, query.getPage(),
+          edges -> NeighborsResult.of(query.getVertexId(), edges),
+          rest -> continueQuery(context, Types.OUT_EDGES_QUERY_TYPE,
+              OutEdgesQuery.create(query.getVertexId(), query.getTimestamp(), rest)));
+    } else if (usesDistinctNeighbors(message)) {
+      DistinctNeighbors distinctNeighbors =
+          DISTINCT_NEIGHBORS.update(context, SHARDS.version(context), currentOutNeighbors);
+      handleDistinctNeighborsQuery(context, message, distinctNeighbors);
+    }
+  }
+
+  /**
+   * This method runs a query of a sharded vertex once all of its shards have answered
+   * @param context
+   * @param message
+   * @param currentOutNeighbors the merged edges of the shards
+   * @param count the summed edge counts of the shards
+   */
+  private void handleShardedQuery(Context context, Message message, NeighborList currentOutNeighbors, long count) {
+    if (message.is(Types.COUNT_TIME_WINDOW_QUERY_TYPE)) {
+      outputTimeWindowCount(context, message.as(Types.COUNT_TIME_WINDOW_QUERY_TYPE), count);
+    } else {
+      handleQuery(context, message, currentOutNeighbors);
+    }
+  }
+
+  /**
+   * This method outputs the number of outgoing edges of a vertex during a time window to egress
+   * @param context
+   * @param query
+   * @param count
+   */
+  private void outputTimeWindowCount(Context context, TimeWindowQuery query, long count) {
+    LOG.debug("(time-window-count) vertex %d has %d outgoing edges between [%d, %d]", query.getSrc(), count,
+        query.getStartTime(), query.getEndTime());
+    ResultEgress.send(context, "time-window-count",
+        TimeWindowCountResult.of(query.getSrc(), query.getStartTime(), query.getEndTime(), count));
+  }
+
+  /**
+   * This method outputs the result of an OUT_DEGREE query to egress
+   * @param context
+   * @param vertexId
+   */
+  private void outputDegree(Context context, int vertexId) {
+    ResultEgress.send(context, "out-degree", DegreeResult.of(vertexId, SHARDS.degree(context), DEGREE.get(context)));
+  }
+
+  /**
+   * This method answers a k-hop query on the vertex from the query cache, or starts it at the coordinator of the
+   * query if the cached result is missing or out of date
+   * @param context
+   * @param query
+   */
+  private void handleKHopQuery(Context context, KHopQuery query) {
+    if (query.isLegacy()) {
+      LOG.warn("dropping k-hop query for vertex %d in the format before the coordinator existed", query.getVertexId());
+      return;
+    }
+    if (!QUERY_CACHE.lookup(context, query.getQueryId(), QueryResult.TASK_OUT_K_HOP, query.getK())) {
+      QUERY_CACHE.recompute(context, query.getQueryId(), QueryResult.TASK_OUT_K_HOP, query.getVertexId(),
+          query.getK());
+    }
+  }
+
+  /**
+   * This method answers a triangle query on the vertex from the query cache, or runs it if the cached result is
+   * missing or out of date
+   * @param context
+   * @param message
+   */
+  private void handleTriangleQuery(Context context, Message message) {
+    String queryId = message.as(Types.TRIANGLE_QUERY_TRIGGER_TYPE).getQueryId();
+    if (!QUERY_CACHE.lookup(context, queryId, QueryResult.TASK_OUT_TRIANGLES, 0)) {
+      runQuery(context, message);
+    }
+  }
+
+  /**
+   * This method runs a query against the outgoing edges of the vertex, which are read from the distinct neighbor
+   * index, the shards or the neighbor list of the vertex
+   * @param context
+   * @param message
+   */
+  private void runQuery(Context context, Message message) {
+    if (usesDistinctNeighbors(message) && DISTINCT_NEIGHBORS.isCurrent(context, SHARDS.version(context))) {
+      // the edges of the vertex have not changed since its distinct neighbors were indexed, so neither its edges nor
+      // its shards need to be read
+      handleDistinctNeighborsQuery(context, message, DISTINCT_NEIGHBORS.get(context));
+    } else if (SHARDS.isSharded(context)) {
+      // the outgoing edges of a sharded vertex live in its shards, so they have to be collected first
+      scatterQuery(context, message);
+    } else {
+      handleQuery(context, message, getCurrentOutNeighbors(context));
+    }
+  }
+
+  private static boolean usesDistinctNeighbors(Message message) {
+    return message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE) || message.is(Types.TRIANGLE_QUERY_PASS_TYPE)
+        || message.is(Types.K_HOP_EXPAND_TYPE);
+  }
+
+  /**
+   * This method runs a triangle query or a k-hop expansion against the distinct outgoing neighbors of the vertex
+   * @param context
+   * @param message
+   * @param distinctNeighbors
+   */
+  private void handleDistinctNeighborsQuery(Context context, Message message, DistinctNeighbors distinctNeighbors) {
+    if (message.is(Types.TRIANGLE_QUERY_TRIGGER_TYPE)) {
       TriangleQueryTrigger trigger = message.as(Types.TRIANGLE_QUERY_TRIGGER_TYPE);
-      triggerTriangleQuery(context, trigger);
+      triggerTriangleQuery(context, trigger, distinctNeighbors);
     } else if (message.is(Types.TRIANGLE_QUERY_PASS_TYPE)) {
       TriangleQueryPass pass = message.as(Types.TRIANGLE_QUERY_PASS_TYPE);
-      performTrianglePass(context, pass);
+      performTrianglePass(context, pass, distinctNeighbors);
+    } else {
+      KHopExpand expand = message.as(Types.K_HOP_EXPAND_TYPE);
+      // the coordinator of the query keeps track of the visited vertices, so it gets all the distinct neighbors,
+      // and the version of the vertex that the result of the query depends on
+      KHopNeighbors neighbors =
+          KHopNeighbors.of(Integer.parseInt(context.self().id()), SHARDS.version(context), distinctNeighbors);
+      context.send(
+          MessageBuilder.forAddress(KHopCoordinatorFn.TYPE_NAME, expand.getQueryId())
+              .withCustomType(Types.K_HOP_NEIGHBORS_TYPE, neighbors)
+              .build()
+      );
+    }
+  }
+
+  /**
+   * This method asks the shards of the vertex for the edges that the query needs
+   * @param context
+   * @param message
+   */
+  private void scatterQuery(Context context, Message message) {
+    if (message.is(Types.TIME_WINDOW_QUERY_TYPE)) {
+      // the shards only return the edges inside the window that are sent next
+      TimeWindowQuery query = message.as(Types.TIME_WINDOW_QUERY_TYPE);
+      ResultPages.scatter(context, SHARDS, message, query.getPage(), query.getStartTime(), query.getEndTime());
+    } else if (message.is(Types.COUNT_TIME_WINDOW_QUERY_TYPE)) {
+      // the shards only return the number of edges inside the window
+      TimeWindowQuery query = message.as(Types.COUNT_TIME_WINDOW_QUERY_TYPE);
+      SHARDS.scatter(context, message, ShardScanRequest.MODE_COUNT, query.getStartTime(), query.getEndTime());
+    } else if (message.is(Types.OUT_EDGES_QUERY_TYPE)) {
+      ResultPages.scatter(context, SHARDS, message, message.as(Types.OUT_EDGES_QUERY_TYPE).getPage(),
+          Long.MIN_VALUE, Long.MAX_VALUE);
+    } else {
+      SHARDS.scatter(context, message, ShardScanRequest.MODE_DISTINCT, 0, 0);
     }
-    return context.done();
   }
 
   /**
@@ -68,8 +310,23 @@ public class OutEdgesQueryFn implements StatefulFunction {
    * @param context
    * @return IN_NEIGHBORS
    */
-  public List<CustomTuple2<Integer, Long>> getCurrentOutNeighbors(Context context) {
-    return context.storage().get(OUT_NEIGHBORS).orElse(new ArrayList<CustomTuple2<Integer, Long>>());
+  public NeighborList getCurrentOutNeighbors(Context context) {
+    return OUT_NEIGHBORS.read(context);
+  }
+
+  /**
+   * This method uses window formed by the two time parameters to return nodes
+   * that were edges of the source node between that time window frame
+   *
+   * @param currentOutNeighbors outgoing edges of the source node
+   * @param startTime start time of the window
+   * @param endTime   end time of the window
+   * @return list of (id, timestamp) edges of nodes during that window
+   */
+  private NeighborList getTimeWindowNodes(NeighborList currentOutNeighbors, long startTime, long endTime) {
+    // the edges are sorted by timestamp, so the window is the range between the
+    // first edge >= startTime and the first edge > endTime
+    return currentOutNeighbors.range(startTime, endTime);
   }
 
   /**
@@ -78,27 +335,23 @@ public class OutEdgesQueryFn implements StatefulFunction {
    *
    * @param context
    * @param trigger
+   * @param distinctNeighbors
    */
-  private void triggerTriangleQuery(Context context, TriangleQueryTrigger trigger) {
-    List<CustomTuple2<Integer, Long>> currentOutNeighbors = getCurrentOutNeighbors(context);
-    ArrayList<Integer> filteredNodes = new ArrayList<Integer>(0);
-
-    for (int i = 0; i < currentOutNeighbors.size(); i++) {
-      CustomTuple2<Integer, Long> node = currentOutNeighbors.get(i);
-      int nodeIndex = node.getField(0);
-
-      if (!filteredNodes.contains(nodeIndex)) {
-        filteredNodes.add(nodeIndex);
-      }
-    }
-
-    for (int i = 0; i < filteredNodes.size(); i++) {
-      int nodeIndex = filteredNodes.get(i);
-
+  private void triggerTriangleQuery(Context context, TriangleQueryTrigger trigger,
+                                    DistinctNeighbors distinctNeighbors) {
+    // every neighbor gets the same sorted trace, so it is only built once
+    int[] trace = distinctNeighbors.toSortedArray();
+    // the aggregator of the query waits for the result of the pass on each neighbor
+    sendResultPart(context, trigger.getQueryId(),
+        QueryResultPart.root(QueryResult.TASK_OUT_TRIANGLES, trigger.getVertexId(), 0, trace.length, new long[0],
+            QUERY_CACHE.versionOfSelf(context)));
+
+    for (int nodeIndex : trace) {
       TriangleQueryPass pass = TriangleQueryPass.create(
+          trigger.getQueryId(),
           trigger.getVertexId(),
           nodeIndex,
-          filteredNodes
+          trace
       );
 
       context.send(
@@ -116,111 +369,108 @@ public class OutEdgesQueryFn implements StatefulFunction {
    * then A -> B -> C | A -> C is a triangle.
    * @param context
    * @param pass
+   * @param distinctNeighbors
    */
-  private void performTrianglePass(Context context, TriangleQueryPass pass) {
-    List<CustomTuple2<Integer, Long>> currentOutNeighbors = getCurrentOutNeighbors(context);
-    List<Integer> filteredNodes = new ArrayList<Integer>(0);
-    ArrayList<Integer> prevTrace = pass.getTrace();
-
-    for (int i = 0; i < currentOutNeighbors.size(); i++) {
-      CustomTuple2<Integer, Long> node = currentOutNeighbors.get(i);
-      int nodeIndex = node.getField(0);
-
-      if (!filteredNodes.contains(nodeIndex)) {
-        filteredNodes.add(nodeIndex);
-      }
-    }
-
-    for (int i = 0; i < filteredNodes.size(); i++) {
-      int nodeIndex = filteredNodes.get(i);
-
-      if (prevTrace.contains(nodeIndex)) {
-        System.out.println(String.format("Found Outgoing Triangle for Vertex %d: (%d -> %d) (%d -> %d -> %d)",
-            pass.getVertexId(), pass.getVertexId(), nodeIndex, pass.getVertexId(), pass.getCurrentId(), nodeIndex));
+  private void performTrianglePass(Context context, TriangleQueryPass pass, DistinctNeighbors distinctNeighbors) {
+    // the neighbors of the current vertex (B) that are also neighbors of the root vertex (A) close a triangle
+    List<Long> triangles = new ArrayList<>();
+    distinctNeighbors.intersect(pass.getTrace(),
+        nodeIndex -> triangles.add(QueryResultPart.triangle(pass.getCurrentId(), nodeIndex)));
+    LOG.debug("vertex %d found %d outgoing triangles of vertex %d", pass.getCurrentId(), triangles.size(),
+        pass.getVertexId());
+    // a part is sent even if no triangle was found, so that the aggregator can count the pass as done
+    long[] results = triangles.stream().mapToLong(Long::longValue).toArray();
+    sendResultPart(context, pass.getQueryId(),
+        QueryResultPart.create(QueryResult.TASK_OUT_TRIANGLES, pass.getVertexId(), results,
+            QUERY_CACHE.versionOfSelf(context)));
+  }
 
-        outputTriangleResult(context, pass.getVertexId(), pass.getCurrentId(), nodeIndex);
-      }
+  /**
+   * This method update the OUT_NEIGHBORS list by adding a new outgoing neighbor to the list
+   * while ensuring that all the neighbors in the list are sorted by timestamp value.
+   * Only the tail segment of the list is read and written.
+   *
+   * @param context
+   * @param vertex
+   */
+  public void updateOutNeighbors(Context context, Vertex vertex) {
+    if (SHARDS.isSharded(context)) {
+      NeighborList newOutNeighbor = new NeighborList(1);
+      newOutNeighbor.append(vertex.getDst(), vertex.getTimestamp());
+      SHARDS.route(context, newOutNeighbor);
+    } else {
+      OUT_NEIGHBORS.append(context, vertex.getDst(), vertex.getTimestamp());
+      SHARDS.shardIfNeeded(context);
     }
+    DEGREE.add(context, vertex.getDst(), vertex.getTimestamp());
   }
 
   /**
-   * This method performs the k-hop query.
-   * The function performs the query by sending a message to the next logical instance of OutEdgesQueryFn.performKHop.
+   * This method adds a batch of outgoing neighbors, sorted by timestamp, to the OUT_NEIGHBORS list
+   * with a single read and write of the tail segment
    *
    * @param context
-   * @param kHopQuery
+   * @param newOutNeighbors
    */
-  private void performKHop(Context context, KHopQuery kHopQuery) {
-    List<CustomTuple2<Integer, Long>> currentInNeighbors = getCurrentOutNeighbors(context);
-    List<Integer> filteredNodes = new ArrayList<Integer>(0);
-
-    for (int i = 0; i < currentInNeighbors.size(); i++) {
-      CustomTuple2<Integer, Long> node = currentInNeighbors.get(i);
-      int nodeIndex = node.getField(0);
-
-      if (!kHopQuery.getTrace().contains(nodeIndex) && !filteredNodes.contains(nodeIndex)) {
-        filteredNodes.add(nodeIndex);
-      }
+  public void updateOutNeighbors(Context context, NeighborList newOutNeighbors) {
+    if (SHARDS.isSharded(context)) {
+      SHARDS.route(context, newOutNeighbors);
+    } else {
+      OUT_NEIGHBORS.appendAll(context, newOutNeighbors);
+      SHARDS.shardIfNeeded(context);
     }
+    DEGREE.addAll(context, newOutNeighbors);
+  }
 
-    if (kHopQuery.getN() > 0) {
-      ArrayList<Integer> trace = kHopQuery.getTrace();
-      trace.add(kHopQuery.getCurrentId());
-
-      for (int i = 0; i < filteredNodes.size(); i++) {
-        KHopQuery nextQuery = KHopQuery.create(
-            kHopQuery.getVertexId(),
-            filteredNodes.get(i),
-            kHopQuery.getK(),
-            kHopQuery.getN() - 1,
-            trace
-        );
-
-        context.send(
-            MessageBuilder.forAddress(OutEdgesQueryFn.TYPE_NAME, String.valueOf(filteredNodes.get(i)))
-                .withCustomType(Types.K_HOP_QUERY_TYPE, nextQuery)
-                .build()
-        );
-      }
-    } else {
-      for (int i = 0; i < filteredNodes.size(); i++) {
-        System.out.println(String.format("Outgoing K-Hop node for vertex %d (K = %d): %d", kHopQuery.getVertexId(), kHopQuery.getK(), filteredNodes.get(i)));
-        outputKHopResult(context, kHopQuery.getVertexId(), kHopQuery.getK(), filteredNodes.get(i));
+  /**
+   * This method returns the random sample of outgoing edges, state written before the sample existed gets its
+   * sample drawn from the full neighbor list once
+   *
+   * @param context
+   * @param currentDegree
+   * @return the sample
+   */
+  private NeighborList getRecommendSample(Context context, int currentDegree) {
+    return context.storage().get(RECOMMEND_SAMPLE).orElseGet(() -> {
+      NeighborList sample = new NeighborList(RECOMMEND_SAMPLE_SIZE);
+      if (currentDegree > 0) {
+        NeighborList currentOutNeighbors = getCurrentOutNeighbors(context);
+        for (int i = 0; i < currentOutNeighbors.size(); i++) {
+          reservoirInsert(sample, i + 1, currentOutNeighbors.idAt(i), currentOutNeighbors.timestampAt(i));
+        }
+        context.storage().set(RECOMMEND_SAMPLE, sample);
       }
-    }
+      return sample;
+    });
   }
 
   /**
-   * This method update the OUT_NEIGHBORS list by adding a new outgoing neighbor to the list
-   * while ensuring that all the neighbors in the list are sorted by timestamp value
+   * This method adds the new outgoing edge to the sample with reservoir sampling, so the sample stays a uniform
+   * sample of all outgoing edges while only being written when it changes
    *
    * @param context
+   * @param sample
+   * @param degree number of outgoing edges including the new one
    * @param vertex
-   * @param currentOutNeighbors
    */
-  public void updateOutNeighbors(Context context, Vertex vertex, List<CustomTuple2<Integer, Long>> currentOutNeighbors) {
-    CustomTuple2<Integer, Long> newOutNeighbor = CustomTuple2.createTuple2(vertex.getDst(), vertex.getTimestamp());
-    // perform binary search to add incoming neighbor to the correct index, so that the IN_NEIGHBORS list remains
-    // sorted by timestamp
-    int left = 0, right = currentOutNeighbors.size() - 1;
-    int insertIdx = 0;
-    while (left <= right) {
-      int mid = left + (right - left) / 2;
-      Long t1 = currentOutNeighbors.get(mid).getField(1);
-      Long t2 = newOutNeighbor.getField(1);
-      int comparison = t1.compareTo(t2);
-      if (comparison == 0) {
-        insertIdx = mid;
-        break;
-      } else if (comparison < 0) {
-        left = mid + 1;
-        insertIdx = left;
-      } else {
-        right = mid - 1;
-      }
+  private void updateRecommendSample(Context context, NeighborList sample, int degree, Vertex vertex) {
+    if (reservoirInsert(sample, degree, vertex.getDst(), vertex.getTimestamp())) {
+      context.storage().set(RECOMMEND_SAMPLE, sample);
+    }
+  }
+
+  static boolean reservoirInsert(NeighborList sample, int seen, int id, long timestamp) {
+    if (sample.size() < RECOMMEND_SAMPLE_SIZE) {
+      sample.insert(id, timestamp);
+      return true;
+    }
+    int replaceIdx = ThreadLocalRandom.current().nextInt(seen);
+    if (replaceIdx >= RECOMMEND_SAMPLE_SIZE) {
+      return false;
     }
-    currentOutNeighbors.add(insertIdx, newOutNeighbor);
-    context.storage().set(OUT_NEIGHBORS, currentOutNeighbors);
+    sample.removeAt(replaceIdx);
+    sample.insert(id, timestamp);
+    return true;
   }
 
   /**
@@ -228,101 +478,177 @@ public class OutEdgesQueryFn implements StatefulFunction {
    * we only choose a maximum of 3 out neighbors to recommend the newly added vertex to
    *
    * @param context
-   * @param currentOutNeighbors
+   * @param sample random sample of the current out-neighbors
+   * @param currentDegree number of current out-neighbors
    * @param vertexId
+   * @param timestamp timestamp of the edge to vertexId, which the candidate is scored by
    */
-  public void sendRecommendCandidate(Context context, List<CustomTuple2<Integer, Long>> currentOutNeighbors, int vertexId) {
-    // if we have less than or equal to 3 out-neighbors, recommend the new vertex to all 3 of them
-    if (currentOutNeighbors.size() <= 3) {
-      for (CustomTuple2<Integer, Long> neighbor : currentOutNeighbors) {
-        int targetVertex = neighbor.getField(0);
-        context.send(
-            MessageBuilder.forAddress(RecommendationFn.TYPE_NAME, String.valueOf(targetVertex))
-                .withValue(vertexId)
-                .build()
-        );
+  public void sendRecommendCandidate(
+      Context context, NeighborList sample, int currentDegree, int vertexId, long timestamp) {
+    forEachRecommendTarget(sample, currentDegree, targetVertex -> {
+      NeighborList candidate = new NeighborList(1);
+      candidate.append(vertexId, timestamp);
+      context.send(
+          MessageBuilder.forAddress(RecommendationFn.TYPE_NAME, String.valueOf(targetVertex))
+              .withCustomType(Types.RECOMMEND_CANDIDATE_BATCH_TYPE, candidate)
+              .build()
+      );
+    });
+  }
+
+  /**
+   * This method chooses the out neighbors that a newly added vertex gets recommended to
+   *
+   * @param sample random sample of the current out-neighbors
+   * @param currentDegree number of current out-neighbors
+   * @param target receives the chosen out neighbors
+   */
+  static void forEachRecommendTarget(NeighborList sample, int currentDegree, IntConsumer target) {
+    if (sample.isEmpty()) {
+      return;
+    }
+    // if we have less than or equal to 3 out-neighbors, recommend the new vertex to all 3 of them,
+    // the sample holds all of them in that case
+    if (currentDegree <= 3) {
+      for (int i = 0; i < sample.size(); i++) {
+        target.accept(sample.idAt(i));
       }
     } else {
       // if we have more than 3 out-neighbors, randomly choose 3 vertices to recommend new vertex to
-      int range = currentOutNeighbors.size();
-      Random rand = new Random();
+      int range = sample.size();
+      Random rand = ThreadLocalRandom.current();
       for (int i = 0; i < 3; i++) {
         int chosenIdx = rand.nextInt(range);
-        int targetVertex = currentOutNeighbors.get(chosenIdx).getField(0);
-        context.send(
-            MessageBuilder.forAddress(RecommendationFn.TYPE_NAME, String.valueOf(targetVertex))
-                .withValue(vertexId)
-                .build()
-        );
+        target.accept(sample.idAt(chosenIdx));
       }
     }
   }
 
   /**
-   * This method outputs Triangle query result to egress.
+   * This method adds a batch of outgoing neighbors. The recommendation candidates of the whole batch are grouped
+   * by the vertex they are recommended to, so that every RecommendationFn instance gets a single message.
    *
    * @param context
-   * @param vertexId
-   * @param currentId
-   * @param destId
+   * @param newOutNeighbors sorted by timestamp
    */
+  private void addOutNeighborBatch(Context context, NeighborList newOutNeighbors) {
+    int currentDegree = SHARDS.degree(context);
+    NeighborList sample = getRecommendSample(context, currentDegree);
+    Map<Integer, NeighborList> candidatesByTarget = new HashMap<>();
+    boolean sampleChanged = false;
+    for (int i = 0; i < newOutNeighbors.size(); i++) {
+      int candidate = newOutNeighbors.idAt(i);
+      long timestamp = newOutNeighbors.timestampAt(i);
+      forEachRecommendTarget(sample, currentDegree + i, targetVertex ->
+          candidatesByTarget.computeIfAbsent(targetVertex, k -> new NeighborList()).append(candidate, timestamp));
+      sampleChanged |= reservoirInsert(sample, currentDegree + i + 1, candidate, timestamp);
+    }
+    updateOutNeighbors(context, newOutNeighbors);
+    if (sampleChanged) {
+      context.storage().set(RECOMMEND_SAMPLE, sample);
+    }
 
-  private void outputTriangleResult(Context context, int vertexId, int currentId, int destId) {
-    context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("out-triangle-result")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("Found Outgoing Triangle for Vertex %d: (%d -> %d) (%d -> %d -> %d)",
-                vertexId, vertexId, destId, vertexId, currentId, destId))
-            .build()
-    );
+    for (Map.Entry<Integer, NeighborList> candidates : candidatesByTarget.entrySet()) {
+      context.send(
+          MessageBuilder.forAddress(RecommendationFn.TYPE_NAME, String.valueOf(candidates.getKey()))
+              .withCustomType(Types.RECOMMEND_CANDIDATE_BATCH_TYPE, candidates.getValue())
+              .build()
+      );
+    }
+    if (LOG.isEnabled(GraphLogger.Level.DEBUG, context.self().id())) {
+      LOG.debug("vertex %s added %d outgoing neighbors and currently has %d outgoing neighbors",
+          context.self().id(), newOutNeighbors.size(), currentDegree + newOutNeighbors.size());
+    }
   }
 
   /**
-   * This method outputs k-hop query result to egress.
+   * This method installs a block of a graph snapshot, all the outgoing neighbors of the vertex sorted by
+   * timestamp, with a single write of the neighbor list. The recommendation candidates of the block were already
+   * worked out when the snapshot was built, so only the sample is updated.
    *
    * @param context
-   * @param vertexId
+   * @param block
    */
+  private void loadOutNeighbors(Context context, NeighborList block) {
+    int currentDegree = SHARDS.degree(context);
+    NeighborList sample = getRecommendSample(context, currentDegree);
+    for (int i = 0; i < block.size(); i++) {
+      reservoirInsert(sample, currentDegree + i + 1, block.idAt(i), block.timestampAt(i));
+    }
+    context.storage().set(RECOMMEND_SAMPLE, sample);
+    if (SHARDS.isSharded(context)) {
+      SHARDS.route(context, block);
+      DEGREE.addAll(context, block);
+      return;
+    }
+    int expired = OUT_NEIGHBORS.install(context, block);
+    DEGREE.addAll(context, block);
+    DEGREE.expire(context, expired);
+    SHARDS.shardIfNeeded(context);
+    if (LOG.isEnabled(GraphLogger.Level.DEBUG, context.self().id())) {
+      LOG.debug("vertex %s loaded %d outgoing neighbors", context.self().id(), block.size());
+    }
+  }
 
-  private void outputKHopResult(Context context, int vertexId, int k, int currentId) {
+  /**
+   * This method sends a part of the result of a query to the aggregator of the query. Triangle passes that were
+   * sent before queries had ids have no aggregator, so their results are only logged.
+   *
+   * @param context
+   * @param queryId
+   * @param part
+   */
+  private void sendResultPart(Context context, String queryId, QueryResultPart part) {
+    if (queryId == null) {
+      if (part.getResults().length > 0 && LOG.isEnabled(GraphLogger.Level.INFO, context.self().id())) {
+        LOG.info("%s query without a query id found the triangles %s", part.getTask(), part.trianglesToString());
+      }
+      return;
+    }
     context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("out-k-hop-result")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("Outgoing K-Hop node for vertex %d (K = %d): %d", vertexId, k, currentId))
+        MessageBuilder.forAddress(QueryResultAggregatorFn.TYPE_NAME, queryId)
+            .withCustomType(Types.QUERY_RESULT_PART_TYPE, part)
             .build()
     );
   }
 
   /**
-   * This method outputs query result to egress.
+   * This method outputs query result to egress, in chunks if the query asked for a page or the result is large.
    *
    * @param context
-   * @param vertexId
+   * @param topic
+   * @param edges the edges that match the query
+   * @param page the page of the edges to output, null for all of them
+   * @param result creates the result record of some of the edges
+   * @param continuation sends the query for the rest of the page
    */
-  private void outputResult(Context context, int vertexId) {
-    List<CustomTuple2<Integer, Long>> currentOutNeighbors =
-        context.storage().get(OUT_NEIGHBORS).orElse(Collections.emptyList());
+  private void outputResult(Context context, String topic, NeighborList edges, PageRequest page,
+                            Function<NeighborList, NeighborsResult> result, ResultPages.Continuation continuation) {
+    ResultPages.send(context, topic, edges, page, result, continuation);
+  }
 
-    System.out.printf(String.format("the outgoing edges of vertex %d are %s\n", vertexId, currentOutNeighbors));
-    context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("outgoing-edges")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("the outgoing edges of vertex %d are %s\n", vertexId, currentOutNeighbors))
-            .build()
-    );
+  /**
+   * This method sends the query for the rest of a page to this vertex, see {@link ResultPages}
+   *
+   * @param context
+   * @param type
+   * @param query
+   */
+  private <T> void continueQuery(Context context, Type<T> type, T query) {
+    context.send(MessageBuilder.forAddress(context.self()).withCustomType(type, query).build());
   }
 
   /**
-   * This methods prints out the current outgoing edges/neighbors of a vertex
+   * This methods logs the newly added outgoing edge and the number of outgoing edges of a vertex, for the sampled
+   * vertices at DEBUG level only, so that an edge add does not read the degree just to log it.
    *
    * @param vertex
    * @param context
    */
-  private void logOutNeighbors(int vertex, Context context) {
-    List<CustomTuple2<Integer, Long>> currentOutNeighbors = context.storage().get(OUT_NEIGHBORS).orElse(Collections.emptyList());
-    System.out.printf("vertex %d currently has these outgoing neighbors: %s\n", vertex, currentOutNeighbors);
+  private void logOutNeighbors(Vertex vertex, Context context) {
+    if (LOG.isEnabled(GraphLogger.Level.DEBUG, context.self().id())) {
+      LOG.debug("vertex %d added outgoing neighbor (%d,%d) and currently has %d outgoing neighbors",
+          vertex.getSrc(), vertex.getDst(), vertex.getTimestamp(), SHARDS.degree(context));
+    }
   }
 }
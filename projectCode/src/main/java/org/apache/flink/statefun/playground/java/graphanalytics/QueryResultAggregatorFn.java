@@ -0,0 +1,166 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.*;
+import org.apache.flink.statefun.sdk.java.*;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This function collects the results of a k-hop or triangle query, and sends them to the egress as a single
+ * {@link QueryResult} record once the query has completed. There is one logical instance per query, identified by
+ * the address (QueryResultAggregatorFn.TYPE_NAME, run_id), where the run id is the query id of the request followed by
+ * a random id of the run, see {@link #runIdOf}. A query id that is used again therefore gets a new aggregator, instead
+ * of having its parts dropped by the aggregator of its earlier run.
+ *
+ * The functions working on the query send it {@link QueryResultPart} messages. The root part announces how many
+ * further parts will follow, so the query is complete when the root part and all the announced parts have arrived
+ * (credit counting). A query that does not complete within GRAPH_QUERY_TIMEOUT_MS milliseconds is reported with the
+ * results found so far and complete set to false.
+ *
+ * If all the parts of a complete query have the versions of the vertices they were computed from, the result is
+ * also sent to the queried vertex, which caches it (see {@link QueryResultCache}).
+ */
+public class QueryResultAggregatorFn implements StatefulFunction {
+
+  private static final GraphLogger LOG = GraphLogger.get(QueryResultAggregatorFn.class);
+
+  static final Duration QUERY_TIMEOUT =
+      Duration.ofMillis(GraphAnalyticsConfig.getLong("GRAPH_QUERY_TIMEOUT_MS", 60000));
+
+  private static final ValueSpec<QueryAggregate> AGGREGATE =
+      ValueSpec.named("queryAggregate").withCustomType(Types.QUERY_AGGREGATE_TYPE);
+  // set once the query has been reported, so that parts of the run arriving after a timeout are dropped
+  private static final ValueSpec<Boolean> REPORTED =
+      ValueSpec.named("queryReported").thatExpireAfterWrite(QUERY_TIMEOUT.multipliedBy(2)).withBooleanType();
+
+  // separates the query id from the id of the run in the address of the aggregator
+  private static final char RUN_SEPARATOR = '@';
+
+  static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "queryResultAggregator");
+  static final StatefulFunctionSpec SPEC =
+      StatefulFunctionSpec.builder(TYPE_NAME)
+          .withSupplier(QueryResultAggregatorFn::new)
+          .withValueSpecs(AGGREGATE, REPORTED)
+          .build();
+
+  @Override
+  public CompletableFuture<Void> apply(Context context, Message message) throws Throwable {
+    if (message.is(Types.QUERY_RESULT_PART_TYPE)) {
+      QueryResultPart part = message.as(Types.QUERY_RESULT_PART_TYPE);
+      addPart(context, part);
+    } else if (message.is(Types.QUERY_TIMEOUT_TYPE)) {
+      context.storage().get(AGGREGATE).ifPresent(aggregate -> {
+        LOG.warn("query %s timed out, reporting %d results found so far",
+            context.self().id(), aggregate.getResults().length);
+        reportQuery(context, aggregate, false);
+      });
+    }
+    return context.done();
+  }
+
+  /**
+   * @param queryId the query id of the request
+   * @return the id of a new run of the query, which is the address of its aggregator and k-hop coordinator
+   */
+  static String runIdOf(String queryId) {
+    return queryId + RUN_SEPARATOR + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+  }
+
+  /**
+   * @param runId
+   * @return the query id of the request that started the run
+   */
+  static String queryIdOf(String runId) {
+    int separator = runId.lastIndexOf(RUN_SEPARATOR);
+    return separator < 0 ? runId : runId.substring(0, separator);
+  }
+
+  /**
+   * This method adds a part of the results, and reports the query once it is complete
+   * @param context
+   * @param part
+   */
+  private void addPart(Context context, QueryResultPart part) {
+    if (context.storage().get(REPORTED).orElse(false)) {
+      return;
+    }
+    QueryAggregate aggregate = context.storage().get(AGGREGATE).orElse(null);
+    if (aggregate == null) {
+      aggregate = QueryAggregate.create();
+      context.sendAfter(QUERY_TIMEOUT,
+          MessageBuilder.forAddress(context.self())
+              .withCustomType(Types.QUERY_TIMEOUT_TYPE, QueryTimeout.create(context.self().id()))
+              .build());
+    }
+    aggregate.add(part);
+    VertexVersions versions = aggregate.getVersions();
+    if (versions != null && versions.size() > QueryResultCache.MAX_VERTICES) {
+      // the result could not be cached anyway, so the versions are not worth keeping
+      aggregate.forgetVersions();
+    }
+    if (aggregate.isComplete()) {
+      reportQuery(context, aggregate, true);
+    } else {
+      context.storage().set(AGGREGATE, aggregate);
+    }
+  }
+
+  private void reportQuery(Context context, QueryAggregate aggregate, boolean complete) {
+    outputResult(context, aggregate, complete);
+    if (complete) {
+      cacheResult(context, aggregate);
+    }
+    context.storage().remove(AGGREGATE);
+    context.storage().set(REPORTED, true);
+  }
+
+  /**
+   * This method outputs the result record of the query to egress.
+   *
+   * @param context
+   * @param aggregate
+   * @param complete
+   */
+  private void outputResult(Context context, QueryAggregate aggregate, boolean complete) {
+    QueryResult result = QueryResult.of(queryIdOf(context.self().id()), aggregate, complete);
+    LOG.info("query %s (%s) for vertex %d reported %d results",
+        result.getQueryId(), result.getTask(), result.getVertexId(), result.getCount());
+    ResultEgress.send(context, topicOf(aggregate.getTask()), result);
+  }
+
+  /**
+   * This method sends the result of a complete query to the queried vertex for its query cache, if the versions of
+   * the vertices the result depends on are known and the result is small enough to be cached
+   * @param context
+   * @param aggregate
+   */
+  private void cacheResult(Context context, QueryAggregate aggregate) {
+    VertexVersions versions = aggregate.getVersions();
+    if (!QueryResultCache.ENABLED || versions == null || versions.size() == 0
+        || aggregate.getResults().length + versions.size() > QueryResultCache.MAX_VERTICES) {
+      return;
+    }
+    context.send(
+        MessageBuilder.forAddress(QueryResultCache.functionOf(aggregate.getTask()),
+                String.valueOf(aggregate.getVertexId()))
+            .withCustomType(Types.CACHED_QUERY_RESULT_TYPE, CachedQueryResult.of(aggregate))
+            .build());
+  }
+
+  private static String topicOf(String task) {
+    switch (task == null ? "" : task) {
+      case QueryResult.TASK_IN_K_HOP:
+        return "in-k-hop-result";
+      case QueryResult.TASK_OUT_K_HOP:
+        return "out-k-hop-result";
+      case QueryResult.TASK_IN_TRIANGLES:
+        return "in-triangle-result";
+      default:
+        return "out-triangle-result";
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.CacheValidations;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.CachedQueryResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.CachedQueryResults;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.KHopQuery;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.QueryResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.QueryResultPart;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.TriangleQueryTrigger;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.VersionCheck;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.VersionCheckResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.VertexVersions;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+
+/**
+ * This class keeps the results of the k-hop and triangle queries on a vertex in state, so that asking the same query
+ * again does not expand the graph again while the vertices the result depends on have not changed.
+ *
+ * The version of a vertex is the version of its edge store, like for the distinct neighbor index: it goes up with
+ * every edge that is added to the vertex or its shards and with every edge that falls behind the retention horizon,
+ * so both invalidate every cached result that depends on the vertex without touching the cached results. When the
+ * state of an idle vertex expires, the vertex starts a new epoch of versions once it gets edges again, so it does not
+ * confirm a version of its expired state either.
+ *
+ * The aggregator of a complete query sends the result with the versions of the vertices it was computed from (the
+ * expanded vertices of a k-hop query, the queried vertex and its neighbors for a triangle query) to the queried
+ * vertex. A repeated query is answered from the cached result if the queried vertex still has its version and the
+ * other vertices confirm theirs, otherwise the query is computed again.
+ *
+ * At most GRAPH_QUERY_CACHE_ENTRIES results are cached per vertex and direction, the least recently used ones are
+ * evicted first, and results with more than GRAPH_QUERY_CACHE_MAX_VERTICES results and versions together are not
+ * cached. A GRAPH_QUERY_CACHE_ENTRIES of 0 turns the cache off.
+ */
+final class QueryResultCache {
+
+  private static final GraphLogger LOG = GraphLogger.get(QueryResultCache.class);
+
+  static final int ENTRIES = Math.max(0, GraphAnalyticsConfig.getInt("GRAPH_QUERY_CACHE_ENTRIES", 4));
+  static final int MAX_VERTICES = Math.max(1, GraphAnalyticsConfig.getInt("GRAPH_QUERY_CACHE_MAX_VERTICES", 10000));
+  static final boolean ENABLED = ENTRIES > 0;
+
+  private final TypeName functionType;
+  private final String direction;
+  private final VertexShards shards;
+  private final ValueSpec<CachedQueryResults> cache;
+  // the queries waiting for version checks, apart from the results so that an answer does not read them
+  private final ValueSpec<CacheValidations> validations;
+
+  /**
+   * @param functionType the function that keeps the cache, which is also the function of the other vertices
+   * @param direction the direction of the queries, KHopQuery.DIRECTION_IN or KHopQuery.DIRECTION_OUT
+   * @param store the neighbor list that the queries read
+   * @param shards the shards of the neighbor list
+   */
+  QueryResultCache(TypeName functionType, String direction, SegmentedNeighborStore store, VertexShards shards) {
+    this.functionType = functionType;
+    this.direction = direction;
+    this.shards = shards;
+    this.cache =
+        EdgeRetention.vertexValue(store.name() + "QueryCache").withCustomType(Types.CACHED_QUERY_RESULTS_TYPE);
+    this.validations =
+        EdgeRetention.vertexValue(store.name() + "QueryCacheChecks").withCustomType(Types.CACHE_VALIDATIONS_TYPE);
+  }
+
+  ValueSpec<?>[] valueSpecs() {
+    return new ValueSpec<?>[] {cache, validations};
+  }
+
+  /**
+   * @param task
+   * @return the function that caches the results of the task
+   */
+  static TypeName functionOf(String task) {
+    return QueryResult.TASK_IN_K_HOP.equals(task) || QueryResult.TASK_IN_TRIANGLES.equals(task)
+        ? InEdgesQueryFn.TYPE_NAME
+        : OutEdgesQueryFn.TYPE_NAME;
+  }
+
+  /**
+   * @param context
+   * @return the current version of the vertex, null if the cache is off
+   */
+  VertexVersions versionOfSelf(Context context) {
+    return ENABLED ? VertexVersions.of(Integer.parseInt(context.self().id()), shards.version(context)) : null;
+  }
+
+  /**
+   * This method answers a query from its cached result, if there is one and the queried vertex has not changed
+   * since. If the result depends on other vertices as well, they are asked for their versions first, see
+   * {@link #collect}.
+   * @param context
+   * @param queryId
+   * @param task
+   * @param k
+   * @return true if the query is answered from the cache, false if it has to be computed
+   */
+  boolean lookup(Context context, String queryId, String task, int k) {
+    if (!ENABLED || queryId == null) {
+      return false;
+    }
+    CachedQueryResults results = context.storage().get(cache).orElse(null);
+    CachedQueryResult entry = results == null ? null : results.find(task, k);
+    if (entry == null) {
+      return false;
+    }
+    int vertexId = Integer.parseInt(context.self().id());
+    if (entry.getVersions().versionOf(vertexId) != shards.version(context)) {
+      // every cached result depends on the vertex itself, so none of them is current anymore
+      results.clear();
+      context.storage().remove(cache);
+      return false;
+    }
+    results.touch(entry);
+    context.storage().set(cache, results);
+    VertexVersions versions = entry.getVersions();
+    if (versions.size() == 1) {
+      report(context, queryId, entry);
+    } else {
+      CacheValidations pending = context.storage().get(validations).orElseGet(CacheValidations::new);
+      pending.add(queryId, task, k, versions.size() - 1);
+      context.storage().set(validations, pending);
+      for (int i = 0; i < versions.size(); i++) {
+        if (versions.idAt(i) != vertexId) {
+          context.send(
+              MessageBuilder.forAddress(functionType, String.valueOf(versions.idAt(i)))
+                  .withCustomType(Types.VERSION_CHECK_TYPE,
+                      VersionCheck.create(queryId, vertexId, versions.versionAt(i)))
+                  .build());
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method answers the version check of a vertex with a cached result that depends on this vertex
+   * @param context
+   * @param check
+   */
+  void answer(Context context, VersionCheck check) {
+    boolean fresh = shards.version(context) == check.getVersion();
+    context.send(
+        MessageBuilder.forAddress(functionType, String.valueOf(check.getVertexId()))
+            .withCustomType(Types.VERSION_CHECK_RESULT_TYPE, VersionCheckResult.create(check.getQueryId(), fresh))
+            .build());
+  }
+
+  /**
+   * This method collects the answer of a vertex to a version check. The query is answered from the cached result
+   * once all the vertices have confirmed their versions, and computed again as soon as one of them has changed.
+   * @param context
+   * @param result
+   */
+  void collect(Context context, VersionCheckResult result) {
+    CacheValidations pending = context.storage().get(validations).orElse(null);
+    CacheValidations.Validation validation = pending == null ? null : pending.find(result.getQueryId());
+    if (validation == null) {
+      // the query has already been computed again because of another vertex
+      return;
+    }
+    if (result.isFresh()) {
+      validation.confirm();
+      if (!validation.isComplete()) {
+        context.storage().set(validations, pending);
+        return;
+      }
+    }
+    pending.remove(validation);
+    if (pending.isEmpty()) {
+      context.storage().remove(validations);
+    } else {
+      context.storage().set(validations, pending);
+    }
+
+    int vertexId = Integer.parseInt(context.self().id());
+    CachedQueryResults results = context.storage().get(cache).orElseGet(CachedQueryResults::new);
+    CachedQueryResult entry = results.find(validation.getTask(), validation.getK());
+    if (entry != null && !result.isFresh()) {
+      results.remove(entry);
+      store(context, results);
+    } else if (entry != null && entry.getVersions().versionOf(vertexId) == shards.version(context)) {
+      report(context, validation.getQueryId(), entry);
+      return;
+    }
+    recompute(context, validation.getQueryId(), validation.getTask(), vertexId, validation.getK());
+  }
+
+  /**
+   * This method stores the result of a complete query, unless the vertex has changed since it was computed
+   * @param context
+   * @param cached
+   */
+  void put(Context context, CachedQueryResult cached) {
+    if (!ENABLED || cached.getVersions().versionOf(cached.getVertexId()) != shards.version(context)) {
+      return;
+    }
+    CachedQueryResults results = context.storage().get(cache).orElseGet(CachedQueryResults::new);
+    results.put(cached, ENTRIES);
+    store(context, results);
+  }
+
+  /**
+   * This method computes a query without its cached result: a k-hop query is started at its coordinator, a
+   * triangle query is triggered again at this vertex, which no longer finds the result in the cache
+   * @param context
+   * @param queryId
+   * @param task
+   * @param vertexId
+   * @param k
+   */
+  void recompute(Context context, String queryId, String task, int vertexId, int k) {
+    if (QueryResult.isKHop(task)) {
+      context.send(
+          MessageBuilder.forAddress(KHopCoordinatorFn.TYPE_NAME, queryId)
+              .withCustomType(Types.K_HOP_QUERY_TYPE, KHopQuery.create(queryId, vertexId, k, direction))
+              .build());
+    } else {
+      context.send(
+          MessageBuilder.forAddress(context.self())
+              .withCustomType(Types.TRIANGLE_QUERY_TRIGGER_TYPE, TriangleQueryTrigger.create(queryId, vertexId))
+              .build());
+    }
+  }
+
+  /**
+   * This method sends the cached result to the aggregator of the query, without versions, so that the aggregator
+   * does not cache it again
+   * @param context
+   * @param queryId
+   * @param entry
+   */
+  private void report(Context context, String queryId, CachedQueryResult entry) {
+    LOG.debug("query %s (%s) for vertex %d answered from the cache with %d results", queryId, entry.getTask(),
+        entry.getVertexId(), entry.getResults().length);
+    context.send(
+        MessageBuilder.forAddress(QueryResultAggregatorFn.TYPE_NAME, queryId)
+            .withCustomType(Types.QUERY_RESULT_PART_TYPE,
+                QueryResultPart.root(entry.getTask(), entry.getVertexId(), entry.getK(), 0, entry.getResults()))
+            .build());
+  }
+
+  private void store(Context context, CachedQueryResults results) {
+    if (results.isEmpty()) {
+      context.storage().remove(cache);
+    } else {
+      context.storage().set(cache, results);
+    }
+  }
+}
@@ -2,14 +2,9 @@ package org.apache.flink.statefun.playground.java.graphanalytics;
 
 import org.apache.flink.statefun.playground.java.graphanalytics.types.*;
 import org.apache.flink.statefun.sdk.java.*;
-import org.apache.flink.statefun.sdk.java.io.KafkaEgressMessage;
-import org.apache.flink.statefun.sdk.java.message.EgressMessageBuilder;
 import org.apache.flink.statefun.sdk.java.message.Message;
 
-import java.util.Collections;
-
-import java.util.HashSet;
-
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
@@ -21,67 +16,108 @@ import java.util.concurrent.CompletableFuture;
  * candidates of a specific vertex.
  * To send a query message to this function, please build a message with the RECOMMEND_QUERY_TYPE in {@link Types} and
  * send to the address described above, where the vertex_id is the vertex we want to query
+ *
+ * Each vertex keeps its GRAPH_RECOMMEND_TOP_K best candidates only, ranked by how often they were suggested, where a
+ * suggestion counts half after GRAPH_RECOMMEND_HALF_LIFE_DAYS days of event time, see {@link RecommendScores}.
  */
 public class RecommendationFn implements StatefulFunction {
 
+  private static final GraphLogger LOG = GraphLogger.get(RecommendationFn.class);
+
+  static final int TOP_K = Math.max(1, GraphAnalyticsConfig.getInt("GRAPH_RECOMMEND_TOP_K", 32));
+  // zero keeps the scores from decaying
+  static final long HALF_LIFE_SECONDS =
+      Math.max(0, GraphAnalyticsConfig.getLong("GRAPH_RECOMMEND_HALF_LIFE_DAYS", 30)) * 24 * 3600;
+
+  private static final ValueSpec<RecommendScores> RECOMMEND_SCORES =
+    EdgeRetention.vertexValue("recommendScores").withCustomType(Types.RECOMMEND_SCORES_TYPE);
+
+  // the unbounded candidate set of earlier versions, which is moved into the scores the next time the vertex is called
   private static final ValueSpec<Set<Integer>> RECOMMEND_SET =
-    ValueSpec.named("recommendSet").withCustomType(Types.RECOMMEND_SET_TYPE);
+    EdgeRetention.vertexValue("recommendSet").withCustomType(Types.RECOMMEND_SET_TYPE);
 
   static final TypeName TYPE_NAME = TypeName.typeNameOf("graph-analytics.fns", "recommendation");
 
   static final StatefulFunctionSpec SPEC =
       StatefulFunctionSpec.builder(TYPE_NAME)
           .withSupplier(RecommendationFn::new)
-          .withValueSpecs(RECOMMEND_SET)
+          .withValueSpecs(RECOMMEND_SCORES, RECOMMEND_SET)
           .build();
 
-
-
-  static final TypeName EGRESS_TYPE = TypeName.typeNameOf("graph-analytics.io", "egress");
-
-
-
   @Override
   public CompletableFuture<Void> apply(Context context, Message message) throws Throwable {
     if (message.is(Types.RECOMMEND_QUERY_TYPE)){
       RecommendQuery query = message.as(Types.RECOMMEND_QUERY_TYPE);
-      // since we've already stored a set of possible recommendation candidate, we can directly output the result
+      // the candidates are kept in rank order, so we can directly output the result
       outputResult(context, query.getVertexId());
     } else if (message.isInt()) {
-      // the OutEdgesQuery function has forwarded a potential recommendation candidate to the recommendation function
+      // the OutEdgesQuery function of an earlier version has forwarded a candidate without its timestamp
       int candidate = message.asInt();
       if (candidate != -1) {
         updateRecommendSet(context, candidate);
       }
-      System.out.println("received recommendation candidate");
+      LOG.debug("received recommendation candidate");
+    } else if (message.is(Types.RECOMMEND_CANDIDATE_BATCH_TYPE)) {
+      // the OutEdgesQuery function has forwarded one or more candidates, they are added with one state write
+      NeighborList candidates = message.as(Types.RECOMMEND_CANDIDATE_BATCH_TYPE);
+      updateRecommendSet(context, candidates);
+      if (LOG.isEnabled(GraphLogger.Level.DEBUG)) {
+        LOG.debug("received %d recommendation candidates", candidates.size());
+      }
     }
     return context.done();
   }
 
   /**
-   * This method retrieves the current set of recommendation candidates
+   * This method retrieves the current recommendation candidates with their scores
    * @param context
-   * @return
+   * @return the candidates in rank order
    */
-  public Set<Integer> getRecommendationSet(Context context) {
-    return context.storage().get(RECOMMEND_SET).orElse(Collections.emptySet());
+  public RecommendScores getRecommendationSet(Context context) {
+    Optional<RecommendScores> scores = context.storage().get(RECOMMEND_SCORES);
+    if (scores.isPresent()) {
+      return scores.get();
+    }
+    RecommendScores migrated = new RecommendScores();
+    Optional<Set<Integer>> legacySet = context.storage().get(RECOMMEND_SET);
+    if (legacySet.isPresent()) {
+      // the set was deserialized from JSON, which may give its numbers any Number type
+      for (Object candidate : legacySet.get()) {
+        migrated.add(((Number) candidate).intValue(), Long.MIN_VALUE, TOP_K, HALF_LIFE_SECONDS);
+      }
+      context.storage().remove(RECOMMEND_SET);
+      context.storage().set(RECOMMEND_SCORES, migrated);
+    }
+    return migrated;
   }
 
   /**
-   * This method updates the current recommendation set
+   * This method adds a candidate whose timestamp is not known, which counts as suggested at the time of the newest
+   * suggestion
    * @param context
    * @param candidate
    */
   public void updateRecommendSet(Context context, int candidate) {
-    Set<Integer> curRecommendSet = getRecommendationSet(context);
-    HashSet<Integer> newRecommendSet = new HashSet<>(curRecommendSet);
-    // check if candidate is already in the recommendation set
-    if (!curRecommendSet.contains(candidate)) {
-      newRecommendSet.add(candidate);
-      context.storage().set(RECOMMEND_SET, newRecommendSet);
-    }
+    RecommendScores scores = getRecommendationSet(context);
+    scores.add(candidate, Long.MIN_VALUE, TOP_K, HALF_LIFE_SECONDS);
+    context.storage().set(RECOMMEND_SCORES, scores);
   }
 
+  /**
+   * This method adds a batch of candidates to the current recommendation candidates
+   * @param context
+   * @param candidates the candidates with the timestamps of the edges that suggested them
+   */
+  public void updateRecommendSet(Context context, NeighborList candidates) {
+    if (candidates.isEmpty()) {
+      return;
+    }
+    RecommendScores scores = getRecommendationSet(context);
+    for (int i = 0; i < candidates.size(); i++) {
+      scores.add(candidates.idAt(i), candidates.timestampAt(i), TOP_K, HALF_LIFE_SECONDS);
+    }
+    context.storage().set(RECOMMEND_SCORES, scores);
+  }
 
   /**
    * This method outputs recommendation query results to egress
@@ -89,14 +125,8 @@ public class RecommendationFn implements StatefulFunction {
    * @param vertexId
    */
   private void outputResult(Context context, int vertexId) {
-    Set<Integer> recommendSet = getRecommendationSet(context);
-    System.out.printf(String.format("recommend %s to vertex %d\n", recommendSet, vertexId));
-    context.send(
-        KafkaEgressMessage.forEgress(EGRESS_TYPE)
-            .withTopic("recommendation")
-            .withUtf8Key(String.valueOf(vertexId))
-            .withUtf8Value(String.format("recommend %s to vertex %d\n", recommendSet, vertexId))
-            .build()
-    );
+    RecommendScores scores = getRecommendationSet(context);
+    LOG.info("recommend %d vertices to vertex %d", scores.size(), vertexId);
+    ResultEgress.send(context, "recommendation", RecommendationResult.of(vertexId, scores));
   }
 }
@@ -0,0 +1,69 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.ResultRecord;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.io.KafkaEgressMessage;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class sends the result records of all the functions to the Kafka egress, keyed by the vertex the record is
+ * about. The payload format is chosen per topic: GRAPH_EGRESS_FORMAT_&lt;TOPIC&gt; (the topic name in upper case with
+ * '-' replaced by '_', e.g. GRAPH_EGRESS_FORMAT_OUTGOING_EDGES) selects the format of a single topic, and
+ * GRAPH_EGRESS_FORMAT the format of all the other topics. The formats are "json" (the default) and "binary", see
+ * {@link ResultRecord} for the binary layout.
+ */
+final class ResultEgress {
+
+  enum Format {
+    JSON,
+    BINARY;
+
+    static Format parse(String name, String value) {
+      try {
+        return Format.valueOf(value.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            String.format("%s must be one of json or binary, but was '%s'", name, value), e);
+      }
+    }
+  }
+
+  static final TypeName EGRESS_TYPE = TypeName.typeNameOf("graph-analytics.io", "egress");
+
+  private static final String FORMAT_SETTING = "GRAPH_EGRESS_FORMAT";
+  private static final Format DEFAULT_FORMAT =
+      Format.parse(FORMAT_SETTING, GraphAnalyticsConfig.getString(FORMAT_SETTING, "json"));
+  private static final Map<String, Format> TOPIC_FORMATS = new ConcurrentHashMap<>();
+
+  private ResultEgress() {
+  }
+
+  /**
+   * This method sends a result record to the given topic of the egress
+   * @param context
+   * @param topic
+   * @param record
+   */
+  static void send(Context context, String topic, ResultRecord record) {
+    byte[] payload = formatOf(topic) == Format.BINARY ? record.toBinary() : record.toJsonBytes();
+    context.send(
+        KafkaEgressMessage.forEgress(EGRESS_TYPE)
+            .withTopic(topic)
+            .withUtf8Key(String.valueOf(record.getVertexId()))
+            .withValue(payload)
+            .build()
+    );
+  }
+
+  static Format formatOf(String topic) {
+    return TOPIC_FORMATS.computeIfAbsent(topic, t -> {
+      String name = FORMAT_SETTING + "_" + t.toUpperCase(Locale.ROOT).replace('-', '_');
+      String value = GraphAnalyticsConfig.getString(name, null);
+      return value == null ? DEFAULT_FORMAT : Format.parse(name, value);
+    });
+  }
+}
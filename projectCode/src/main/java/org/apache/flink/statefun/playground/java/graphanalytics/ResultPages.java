@@ -0,0 +1,110 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.EdgeCursor;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborPage;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborsResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.PageRequest;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.message.Message;
+
+import java.util.function.Function;
+
+/**
+ * This class sends the edges of the GET_IN_EDGES, GET_OUT_EDGES and GET_TIME_WINDOW_EDGES queries to the egress in
+ * chunks of at most GRAPH_RESULT_CHUNK_EDGES edges, so that the edges of a high-degree vertex never end up in a
+ * single record that is too large for the broker.
+ *
+ * A query for a page of the edges (see {@link PageRequest}) is always answered with chunks, a query for all the
+ * edges only if they do not fit into one record, otherwise it gets the single record it always got. Every chunk has
+ * the continuation token of the edges after it, and the last chunk of the page says so.
+ *
+ * An invocation sends at most GRAPH_RESULT_CHUNKS_PER_STEP chunks, the function sends itself the query for the rest
+ * of the page, so a large result does not hold up the other messages of the vertex while it is written. A sharded
+ * vertex only asks its shards for the edges that one invocation sends, starting at the cursor.
+ */
+final class ResultPages {
+
+  /**
+   * Sends the query for the rest of a page to the function
+   */
+  interface Continuation {
+    void send(PageRequest rest);
+  }
+
+  static final int CHUNK_EDGES = Math.max(1, GraphAnalyticsConfig.getInt("GRAPH_RESULT_CHUNK_EDGES", 10000));
+  static final int CHUNKS_PER_STEP = Math.max(1, GraphAnalyticsConfig.getInt("GRAPH_RESULT_CHUNKS_PER_STEP", 4));
+
+  private static final PageRequest ALL_EDGES = PageRequest.create(0, null, null);
+
+  private ResultPages() {
+  }
+
+  /**
+   * This method sends the edges that a query asked for
+   * @param context
+   * @param topic
+   * @param sortedEdges the edges that match the query, sorted by timestamp
+   * @param page the page of the edges to send, null for all edges
+   * @param result creates the result record of some of the edges
+   * @param continuation sends the query for the rest of the page, if it does not fit into this invocation
+   */
+  static void send(Context context, String topic, NeighborList sortedEdges, PageRequest page,
+                   Function<NeighborList, NeighborsResult> result, Continuation continuation) {
+    if (page == null && sortedEdges.size() <= CHUNK_EDGES) {
+      ResultEgress.send(context, topic, result.apply(sortedEdges));
+      return;
+    }
+    PageRequest rest = page == null ? ALL_EDGES : page;
+    long remaining = rest.getLimit() == 0 ? Long.MAX_VALUE : rest.getLimit();
+    EdgeCursor cursor = rest.getCursor();
+    int sent = 0;
+    for (int chunk = 1; ; chunk++) {
+      NeighborPage edges =
+          NeighborPage.of(sortedEdges, cursor, rest.isDescending(), (int) Math.min(CHUNK_EDGES, remaining - sent));
+      sent += edges.getEdges().size();
+      boolean lastChunk = edges.getNext() == null || sent == remaining;
+      ResultEgress.send(context, topic,
+          result.apply(edges.getEdges()).asChunk(rest.isDescending(), edges.getNext(), lastChunk));
+      if (lastChunk) {
+        return;
+      }
+      cursor = edges.getNext();
+      if (chunk == CHUNKS_PER_STEP) {
+        continuation.send(rest.continueAt(cursor, sent));
+        return;
+      }
+    }
+  }
+
+  /**
+   * This method asks the shards of a sharded vertex for the edges in a time range that one invocation sends
+   * @param context
+   * @param shards
+   * @param query the original query message
+   * @param page the page of the edges to send, null for all edges
+   * @param startTime start of the time range
+   * @param endTime end of the time range
+   */
+  static void scatter(Context context, VertexShards shards, Message query, PageRequest page, long startTime,
+                      long endTime) {
+    PageRequest rest = page == null ? ALL_EDGES : page;
+    EdgeCursor cursor = rest.getCursor();
+    long stepEdges = (long) CHUNK_EDGES * CHUNKS_PER_STEP;
+    if (rest.getLimit() > 0) {
+      stepEdges = Math.min(stepEdges, rest.getLimit());
+    }
+    if (cursor != null) {
+      // the page starts at the edges with the timestamp of the cursor, the ones already sent are skipped
+      stepEdges += cursor.getOffset();
+      if (rest.isDescending()) {
+        endTime = Math.min(endTime, cursor.getTimestamp());
+      } else {
+        startTime = Math.max(startTime, cursor.getTimestamp());
+      }
+    }
+    // one more edge than needed tells whether there are edges after the ones sent
+    int limit = (int) Math.min(Integer.MAX_VALUE, stepEdges + 1);
+    shards.scatterPage(context, query, startTime, endTime, limit, rest.isDescending());
+  }
+}
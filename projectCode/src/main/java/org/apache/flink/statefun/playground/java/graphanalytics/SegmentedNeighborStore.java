@@ -0,0 +1,489 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Counter;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Metrics;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.SegmentCompaction;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.TimeBucketCounts;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.AddressScopedStorage;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+import org.apache.flink.statefun.sdk.java.types.Type;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class stores the neighbor list of a vertex as several time-sorted segments, each in its own state value,
+ * instead of as one list that is rewritten on every edge add.
+ *
+ * New edges are only inserted into a small mutable tail segment. Once the tail is full, the function sends
+ * itself a {@link SegmentCompaction} message, and the compaction merges the tail into the sealed segments:
+ * sealed segment i holds at most TAIL_CAPACITY * LEVEL_FANOUT^(i + 1) edges and is merged into the next
+ * segment when it overflows, with the last (base) segment being unbounded. Sealed segments are never touched
+ * by an edge add, so an add only writes the tail, and a segment of size n is rewritten only once every
+ * n / TAIL_CAPACITY adds.
+ *
+ * The base segment uses the state name of the old single-list layout, so existing state is picked up as is.
+ * Every segment is sorted by timestamp, readers merge them into one sorted {@link NeighborList}.
+ *
+ * A store can also keep the number of edges per time bucket ({@link TimeBucketCounts}) of its sealed segments. The
+ * counts are updated when the tail is compacted, so an edge add does not write them, and a count over a window that
+ * starts and ends on bucket boundaries only reads the counts and the tail instead of every segment.
+ *
+ * With an {@link EdgeRetention} horizon, the edges that have fallen behind the horizon are dropped from the sealed
+ * segments when the tail is compacted. Their time bucket counts are kept as a summary of the dropped edges.
+ *
+ * The store keeps a version that goes up with every edge that is added or dropped, so that the state derived from
+ * the edges, such as the distinct neighbor index and the query cache, can tell whether the edges have changed.
+ * Once idle vertices expire, a vertex may come back without state, and other vertices may still hold versions of its
+ * earlier state. The store therefore counts the lifetimes of its state in an epoch value that never expires, and
+ * starts the versions of every lifetime EPOCH_VERSIONS above the start of the previous one, which is more than the
+ * changes that the int edge counters of one lifetime allow for.
+ */
+final class SegmentedNeighborStore {
+
+  static final int TAIL_CAPACITY = 64;
+  private static final int LEVEL_FANOUT = 8;
+  private static final int SEALED_LEVELS = 3;
+  private static final Duration COMPACTION_DELAY = Duration.ofMillis(100);
+  private static final int EPOCH_SHIFT = 40;
+  static final long EPOCH_VERSIONS = 1L << EPOCH_SHIFT;
+  static final int TIME_BUCKET_SECONDS = GraphAnalyticsConfig.getInt("GRAPH_TIME_BUCKET_SECONDS", 3600);
+
+  private final String name;
+  private final ValueSpec<NeighborList> tail;
+  private final List<ValueSpec<NeighborList>> levels;
+  private final ValueSpec<NeighborList> base;
+  private final ValueSpec<Integer> size;
+  private final ValueSpec<Boolean> compactionScheduled;
+  // edges per time bucket of the sealed segments, null if the store does not keep them
+  private final ValueSpec<TimeBucketCounts> timeBuckets;
+  // number of edges dropped because they fell behind the retention horizon
+  private final ValueSpec<Integer> expiredEdges;
+  // goes up with every edge that is added or dropped, never goes down
+  private final ValueSpec<Long> version;
+  // number of lifetimes of the state of the vertex, does not expire with the vertex
+  private final ValueSpec<Long> epoch;
+  // timestamps of the oldest sealed edge and of the newest edge, only kept with a retention horizon
+  private final ValueSpec<Long> oldestTimestamp;
+  private final ValueSpec<Long> newestTimestamp;
+  private final EdgeRetention retention;
+  private final Counter expiredEdgesCounter;
+
+  /**
+   * @param name state name of the neighbor list, the segments are stored under names derived from it
+   * @param type type used to serialize the segments
+   */
+  SegmentedNeighborStore(String name, Type<NeighborList> type) {
+    this(name, type, false, EdgeRetention.FOREVER);
+  }
+
+  /**
+   * @param name state name of the neighbor list, the segments are stored under names derived from it
+   * @param type type used to serialize the segments
+   * @param countTimeBuckets true if the store keeps the number of edges per time bucket for {@link #count}
+   * @param retention how long the edges are kept
+   */
+  SegmentedNeighborStore(String name, Type<NeighborList> type, boolean countTimeBuckets, EdgeRetention retention) {
+    this.name = name;
+    this.tail = EdgeRetention.vertexValue(name + "Tail").withCustomType(type);
+    List<ValueSpec<NeighborList>> sealedLevels = new ArrayList<>(SEALED_LEVELS);
+    for (int i = 0; i < SEALED_LEVELS; i++) {
+      sealedLevels.add(EdgeRetention.vertexValue(name + "Segment" + i).withCustomType(type));
+    }
+    this.levels = Collections.unmodifiableList(sealedLevels);
+    this.base = EdgeRetention.vertexValue(name).withCustomType(type);
+    this.size = EdgeRetention.vertexValue(name + "Size").withIntType();
+    this.compactionScheduled = EdgeRetention.vertexValue(name + "CompactionScheduled").withBooleanType();
+    this.timeBuckets = countTimeBuckets
+        ? EdgeRetention.vertexValue(name + "TimeBuckets").withCustomType(Types.TIME_BUCKET_COUNTS_TYPE)
+        : null;
+    this.expiredEdges = EdgeRetention.vertexValue(name + "ExpiredEdges").withIntType();
+    this.version = EdgeRetention.vertexValue(name + "Version").withLongType();
+    this.epoch = ValueSpec.named(name + "Epoch").withLongType();
+    this.oldestTimestamp = EdgeRetention.vertexValue(name + "OldestTimestamp").withLongType();
+    this.newestTimestamp = EdgeRetention.vertexValue(name + "NewestTimestamp").withLongType();
+    this.retention = retention;
+    this.expiredEdgesCounter = Metrics.counter("graph_edges_expired_total",
+        "Edges dropped because they fell behind the retention horizon.", "store", name);
+  }
+
+  String name() {
+    return name;
+  }
+
+  /**
+   * @return all the value specs of this store, these need to be registered with the function spec
+   */
+  ValueSpec<?>[] valueSpecs() {
+    List<ValueSpec<?>> specs = new ArrayList<>();
+    specs.add(tail);
+    specs.addAll(levels);
+    specs.addAll(Arrays.asList(base, size, compactionScheduled, expiredEdges, version, epoch, oldestTimestamp,
+        newestTimestamp));
+    if (timeBuckets != null) {
+      specs.add(timeBuckets);
+    }
+    return specs.toArray(new ValueSpec<?>[0]);
+  }
+
+  /**
+   * This method adds a new edge to the tail segment, and schedules a compaction once the tail is full
+   * @param context
+   * @param id
+   * @param timestamp
+   */
+  void append(Context context, int id, long timestamp) {
+    AddressScopedStorage storage = context.storage();
+    advanceVersion(context, 1);
+    int currentSize = size(context);
+    NeighborList currentTail = storage.get(tail).orElseGet(NeighborList::new);
+    currentTail.insert(id, timestamp);
+    storage.set(tail, currentTail);
+    storage.set(size, currentSize + 1);
+    scheduleCompactionIfFull(context, currentTail);
+  }
+
+  private void scheduleCompactionIfFull(Context context, NeighborList currentTail) {
+    AddressScopedStorage storage = context.storage();
+    if (currentTail.size() >= TAIL_CAPACITY && !storage.get(compactionScheduled).orElse(false)) {
+      storage.set(compactionScheduled, true);
+      context.sendAfter(
+          COMPACTION_DELAY,
+          MessageBuilder.forAddress(context.self())
+              .withCustomType(Types.SEGMENT_COMPACTION_TYPE, SegmentCompaction.create(name))
+              .build());
+    }
+  }
+
+  /**
+   * This method merges a run of edges, sorted by timestamp, into the tail segment with a single state write
+   * @param context
+   * @param sortedRun
+   */
+  void appendAll(Context context, NeighborList sortedRun) {
+    if (sortedRun.isEmpty()) {
+      return;
+    }
+    AddressScopedStorage storage = context.storage();
+    advanceVersion(context, sortedRun.size());
+    int currentSize = size(context);
+    NeighborList currentTail = mergeIfPresent(storage.get(tail).orElse(null), sortedRun);
+    storage.set(tail, currentTail);
+    storage.set(size, currentSize + sortedRun.size());
+    scheduleCompactionIfFull(context, currentTail);
+  }
+
+  /**
+   * This method installs a block of edges, sorted by timestamp, with a single write of the base segment, as long
+   * as the store holds nothing but a base segment. That is the case for the blocks of a snapshot, including the
+   * later blocks of a vertex whose edges were split into several blocks. Otherwise the block is merged into the
+   * tail like any other batch of edges.
+   * @param context
+   * @param sortedBlock
+   * @return the number of edges that were dropped because they fell behind the retention horizon
+   */
+  int install(Context context, NeighborList sortedBlock) {
+    AddressScopedStorage storage = context.storage();
+    boolean onlyBase = !storage.get(tail).isPresent();
+    for (ValueSpec<NeighborList> level : levels) {
+      onlyBase &= !storage.get(level).isPresent();
+    }
+    if (!onlyBase) {
+      appendAll(context, sortedBlock);
+      return 0;
+    }
+    advanceVersion(context, sortedBlock.size());
+    int currentSize = size(context);
+    addToTimeBuckets(context, currentSize, sortedBlock);
+    storage.set(base, mergeIfPresent(storage.get(base).orElse(null), sortedBlock));
+    storage.set(size, currentSize + sortedBlock.size());
+    return expireOldEdges(context, currentSize, sortedBlock);
+  }
+
+  /**
+   * This method returns all the edges of all segments as one list sorted by timestamp
+   * @param context
+   * @return the neighbor list
+   */
+  NeighborList read(Context context) {
+    AddressScopedStorage storage = context.storage();
+    NeighborList result = storage.get(base).orElseGet(NeighborList::new);
+    for (int i = SEALED_LEVELS - 1; i >= 0; i--) {
+      result = mergeIfPresent(result, storage.get(levels.get(i)).orElse(null));
+    }
+    return mergeIfPresent(result, storage.get(tail).orElse(null));
+  }
+
+  /**
+   * This method counts the edges with a timestamp in [startTime, endTime] without merging the segments. If the store
+   * keeps time bucket counts and the window starts and ends on bucket boundaries, only the counts and the tail are
+   * read, otherwise every segment is binary searched for the window.
+   * @param context
+   * @param startTime
+   * @param endTime
+   * @return the number of edges in the window
+   */
+  long count(Context context, long startTime, long endTime) {
+    if (startTime > endTime) {
+      return 0;
+    }
+    AddressScopedStorage storage = context.storage();
+    NeighborList currentTail = storage.get(tail).orElseGet(NeighborList::new);
+    long count = currentTail.countRange(startTime, endTime);
+    if (timeBuckets != null && TimeBucketCounts.isAligned(TIME_BUCKET_SECONDS, startTime, endTime)) {
+      return count + sealedTimeBuckets(context, size(context) - currentTail.size()).count(startTime, endTime);
+    }
+    for (ValueSpec<NeighborList> level : levels) {
+      count += storage.get(level).map(segment -> segment.countRange(startTime, endTime)).orElse(0);
+    }
+    return count + storage.get(base).map(segment -> segment.countRange(startTime, endTime)).orElse(0);
+  }
+
+  /**
+   * This method returns the time bucket counts of the sealed segments and of the expired edges. Counts that do not
+   * cover all the sealed edges, such as for state written before the store kept them, are rebuilt from the segments
+   * once, which loses the counts of the expired edges.
+   */
+  private TimeBucketCounts sealedTimeBuckets(Context context, int sealedEdges) {
+    AddressScopedStorage storage = context.storage();
+    TimeBucketCounts counts = storage.get(timeBuckets).orElse(null);
+    int expired = expiredEdges(context);
+    if (isCurrent(counts, sealedEdges + expired)) {
+      return counts;
+    }
+    counts = new TimeBucketCounts(TIME_BUCKET_SECONDS, expired);
+    for (ValueSpec<NeighborList> level : levels) {
+      storage.get(level).ifPresent(counts::addAll);
+    }
+    storage.get(base).ifPresent(counts::addAll);
+    storage.set(timeBuckets, counts);
+    return counts;
+  }
+
+  /**
+   * This method adds edges that are about to be sealed to the time bucket counts, as long as the counts cover all
+   * the edges sealed so far. Otherwise they are left to be rebuilt by the next count.
+   */
+  private void addToTimeBuckets(Context context, int sealedEdges, NeighborList sealedRun) {
+    if (timeBuckets == null) {
+      return;
+    }
+    AddressScopedStorage storage = context.storage();
+    TimeBucketCounts counts = storage.get(timeBuckets).orElse(null);
+    int expired = expiredEdges(context);
+    if (sealedEdges == 0 && counts == null) {
+      counts = new TimeBucketCounts(TIME_BUCKET_SECONDS, expired);
+    }
+    if (isCurrent(counts, sealedEdges + expired)) {
+      counts.addAll(sealedRun);
+      storage.set(timeBuckets, counts);
+    }
+  }
+
+  private static boolean isCurrent(TimeBucketCounts counts, long coveredEdges) {
+    return counts != null && counts.getBucketSeconds() == TIME_BUCKET_SECONDS
+        && counts.getCoveredEdges() == coveredEdges;
+  }
+
+  /**
+   * This method drops the sealed edges that have fallen behind the retention horizon, once a pass is due
+   * @param context
+   * @param sealedEdges number of sealed edges before the run was sealed
+   * @param sealedRun the edges that were just sealed, sorted by timestamp
+   * @return the number of edges that were dropped
+   */
+  private int expireOldEdges(Context context, int sealedEdges, NeighborList sealedRun) {
+    if (!retention.isEnabled() || sealedRun.isEmpty()) {
+      return 0;
+    }
+    AddressScopedStorage storage = context.storage();
+    long newest = Math.max(storage.get(newestTimestamp).orElse(Long.MIN_VALUE),
+        sealedRun.timestampAt(sealedRun.size() - 1));
+    storage.set(newestTimestamp, newest);
+    // the oldest timestamp is not known for state written before the retention existed, a pass finds it out
+    Long oldest = storage.get(oldestTimestamp).orElse(null);
+    if (oldest != null || sealedEdges == 0) {
+      oldest = oldest == null ? sealedRun.timestampAt(0) : Math.min(oldest, sealedRun.timestampAt(0));
+      if (!retention.isDue(oldest, newest)) {
+        storage.set(oldestTimestamp, oldest);
+        return 0;
+      }
+    }
+
+    long horizon = retention.horizonOf(newest);
+    int dropped = 0;
+    long oldestKept = Long.MAX_VALUE;
+    List<ValueSpec<NeighborList>> sealedSegments = new ArrayList<>(levels);
+    sealedSegments.add(base);
+    for (ValueSpec<NeighborList> segment : sealedSegments) {
+      NeighborList edges = storage.get(segment).orElse(null);
+      if (edges == null) {
+        continue;
+      }
+      int keptFrom = edges.lowerBound(horizon);
+      dropped += keptFrom;
+      if (keptFrom == edges.size()) {
+        storage.remove(segment);
+        continue;
+      }
+      if (keptFrom > 0) {
+        storage.set(segment, edges.copyOfRange(keptFrom, edges.size()));
+      }
+      oldestKept = Math.min(oldestKept, edges.timestampAt(keptFrom));
+    }
+    if (oldestKept == Long.MAX_VALUE) {
+      storage.remove(oldestTimestamp);
+    } else {
+      storage.set(oldestTimestamp, oldestKept);
+    }
+    if (dropped > 0) {
+      advanceVersion(context, dropped);
+      storage.set(size, size(context) - dropped);
+      storage.set(expiredEdges, expiredEdges(context) + dropped);
+      expiredEdgesCounter.add(dropped);
+    }
+    return dropped;
+  }
+
+  /**
+   * @param context
+   * @return the number of edges that were dropped because they fell behind the retention horizon
+   */
+  int expiredEdges(Context context) {
+    return context.storage().get(expiredEdges).orElse(0);
+  }
+
+  /**
+   * @param context
+   * @return the timestamp before which the edges have been dropped by the last retention pass, Long.MIN_VALUE if
+   * there was none
+   */
+  long horizon(Context context) {
+    Long newest = context.storage().get(newestTimestamp).orElse(null);
+    return newest == null || expiredEdges(context) == 0 ? Long.MIN_VALUE : retention.horizonOf(newest);
+  }
+
+  /**
+   * @param context
+   * @return the version of the store, which is different from every earlier version once an edge has been added or
+   * dropped since
+   */
+  long version(Context context) {
+    Long current = context.storage().get(version).orElse(null);
+    return current != null ? current : initialVersion(context, nextEpoch(context));
+  }
+
+  /**
+   * This method moves the version of the store forward, for changes to the edges that are kept elsewhere, such as
+   * in the shards of a vertex
+   * @param context
+   * @param changes number of edges that were added or dropped
+   */
+  void advanceVersion(Context context, long changes) {
+    AddressScopedStorage storage = context.storage();
+    Long current = storage.get(version).orElse(null);
+    if (current == null) {
+      // a new lifetime of the state starts, its epoch is stored before any of its versions can be seen
+      long nextEpoch = nextEpoch(context);
+      if (nextEpoch > 0) {
+        storage.set(epoch, nextEpoch);
+      }
+      current = initialVersion(context, nextEpoch);
+    }
+    storage.set(version, current + changes);
+  }
+
+  /**
+   * @return the epoch of the next lifetime of the state, always 0 if the state of idle vertices does not expire
+   */
+  private long nextEpoch(Context context) {
+    return EdgeRetention.IDLE_VERTEX_EXPIRATION.isZero() ? 0 : context.storage().get(epoch).orElse(0L) + 1;
+  }
+
+  private long initialVersion(Context context, long epoch) {
+    // state written before the store kept a version counts its added edges
+    return epoch * EPOCH_VERSIONS + size(context) + expiredEdges(context);
+  }
+
+  /**
+   * @param context
+   * @return the number of edges in the store, without reading the segments
+   */
+  int size(Context context) {
+    // state written before the segmented layout existed has no size yet
+    return context.storage().get(size).orElseGet(() -> read(context).size());
+  }
+
+  /**
+   * This method removes all the edges of the store
+   * @param context
+   */
+  void clear(Context context) {
+    AddressScopedStorage storage = context.storage();
+    // the version must not go back with the size
+    advanceVersion(context, 0);
+    storage.remove(tail);
+    for (ValueSpec<NeighborList> level : levels) {
+      storage.remove(level);
+    }
+    storage.remove(base);
+    if (timeBuckets != null) {
+      storage.remove(timeBuckets);
+    }
+    storage.remove(oldestTimestamp);
+    storage.set(size, 0);
+  }
+
+  /**
+   * This method merges the tail segment into the sealed segments, cascading into the next segment whenever
+   * a sealed segment would exceed its capacity
+   * @param context
+   * @return the number of edges that were dropped because they fell behind the retention horizon
+   */
+  int compact(Context context) {
+    AddressScopedStorage storage = context.storage();
+    storage.remove(compactionScheduled);
+    NeighborList carry = storage.get(tail).orElse(null);
+    if (carry == null || carry.isEmpty()) {
+      return 0;
+    }
+    storage.remove(tail);
+    int sealedEdges = size(context) - carry.size();
+    addToTimeBuckets(context, sealedEdges, carry);
+    seal(storage, carry);
+    return expireOldEdges(context, sealedEdges, carry);
+  }
+
+  private void seal(AddressScopedStorage storage, NeighborList carry) {
+    int capacity = TAIL_CAPACITY;
+    for (int i = 0; i < SEALED_LEVELS; i++) {
+      capacity *= LEVEL_FANOUT;
+      // the segments closer to the base hold older edges, so they go first when merging
+      NeighborList merged = mergeIfPresent(storage.get(levels.get(i)).orElse(null), carry);
+      if (merged.size() <= capacity) {
+        storage.set(levels.get(i), merged);
+        return;
+      }
+      storage.remove(levels.get(i));
+      carry = merged;
+    }
+    storage.set(base, mergeIfPresent(storage.get(base).orElse(null), carry));
+  }
+
+  private static NeighborList mergeIfPresent(NeighborList older, NeighborList newer) {
+    if (older == null || older.isEmpty()) {
+      return newer == null ? new NeighborList() : newer;
+    }
+    if (newer == null || newer.isEmpty()) {
+      return older;
+    }
+    return NeighborList.merge(older, newer);
+  }
+}
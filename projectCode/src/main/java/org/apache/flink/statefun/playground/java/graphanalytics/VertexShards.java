@@ -0,0 +1,349 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.PendingShardScans;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.ShardScanRequest;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.ShardExpiry;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.ShardScanResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.AddressScopedStorage;
+import org.apache.flink.statefun.sdk.java.Context;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+import org.apache.flink.statefun.sdk.java.types.SimpleType;
+import org.apache.flink.statefun.sdk.java.types.Type;
+
+import java.util.function.LongFunction;
+
+/**
+ * This class spreads the edges of a high-degree vertex over several shards of the same function.
+ *
+ * A vertex keeps its edges at its own address (function type, vertex_id) until it reaches
+ * GRAPH_SHARD_DEGREE_THRESHOLD edges. At that point its edges are moved to GRAPH_SHARD_COUNT shard addresses
+ * (function type, vertex_id#shard), where the shard of an edge is picked by the hash of the neighbor id, so all the
+ * edges to one neighbor live in the same shard. From then on the vertex address only routes new edges to the shards.
+ *
+ * Queries still go to the vertex address. A sharded vertex scatters a {@link ShardScanRequest} to its shards,
+ * collects their edges in its state, and runs the original query on the merged edges once every shard has answered,
+ * so the query code does not need to know whether a vertex is sharded.
+ *
+ * The shards drop their old edges with the retention of the store on their own, and report the number of dropped
+ * edges to the vertex with a {@link ShardExpiry}, so that the degree and the version of the vertex follow them.
+ */
+final class VertexShards {
+
+  /**
+   * A query that is run once all the shards of a vertex have answered
+   */
+  interface ShardedQuery {
+    /**
+     * @param query the original query message
+     * @param edges the merged edges of all shards
+     * @param count the sum of the edge counts of all shards, only set for ShardScanRequest.MODE_COUNT
+     */
+    void run(Message query, NeighborList edges, long count);
+  }
+
+  static final int DEGREE_THRESHOLD = GraphAnalyticsConfig.getInt("GRAPH_SHARD_DEGREE_THRESHOLD", 50000);
+  static final int SHARD_COUNT = GraphAnalyticsConfig.getInt("GRAPH_SHARD_COUNT", 8);
+
+  private static final GraphLogger LOG = GraphLogger.get(VertexShards.class);
+
+  private static final char SHARD_SEPARATOR = '#';
+
+  private final TypeName functionType;
+  private final SegmentedNeighborStore store;
+  private final Type<NeighborList> edgeBatchType;
+  // number of shards of the vertex, not set while the vertex is not sharded
+  private final ValueSpec<Integer> shardCount;
+  // number of edges that the vertex has moved or routed to its shards
+  private final ValueSpec<Integer> shardedEdges;
+  // number of the sharded edges that the shards have dropped since
+  private final ValueSpec<Integer> expiredShardEdges;
+  private final ValueSpec<PendingShardScans> pendingScans;
+
+  /**
+   * @param functionType type of the function that owns the vertex
+   * @param store the edge store of the function
+   * @param edgeBatchType message type that the function accepts for adding a batch of edges
+   */
+  VertexShards(TypeName functionType, SegmentedNeighborStore store, Type<NeighborList> edgeBatchType) {
+    this.functionType = functionType;
+    this.store = store;
+    this.edgeBatchType = edgeBatchType;
+    this.shardCount = EdgeRetention.vertexValue(store.name() + "ShardCount").withIntType();
+    this.shardedEdges = EdgeRetention.vertexValue(store.name() + "ShardedEdges").withIntType();
+    this.expiredShardEdges = EdgeRetention.vertexValue(store.name() + "ExpiredShardEdges").withIntType();
+    this.pendingScans =
+        EdgeRetention.vertexValue(store.name() + "PendingShardScans").withCustomType(Types.PENDING_SHARD_SCANS_TYPE);
+  }
+
+  ValueSpec<?>[] valueSpecs() {
+    return new ValueSpec<?>[] {shardCount, shardedEdges, expiredShardEdges, pendingScans};
+  }
+
+  /**
+   * @param context
+   * @return true if the function instance is a shard of a vertex, rather than the vertex itself
+   */
+  static boolean isShard(Context context) {
+    return context.self().id().indexOf(SHARD_SEPARATOR) >= 0;
+  }
+
+  /**
+   * @param context
+   * @return the id of the vertex, also when called from one of its shards
+   */
+  static String vertexIdOf(Context context) {
+    String id = context.self().id();
+    int separator = id.indexOf(SHARD_SEPARATOR);
+    return separator < 0 ? id : id.substring(0, separator);
+  }
+
+  /**
+   * @param context
+   * @return true if the vertex has moved its edges to shards
+   */
+  boolean isSharded(Context context) {
+    return !isShard(context) && context.storage().get(shardCount).orElse(0) > 0;
+  }
+
+  /**
+   * @param context
+   * @return the number of edges of the vertex, including the edges stored in its shards
+   */
+  int degree(Context context) {
+    AddressScopedStorage storage = context.storage();
+    return store.size(context) + storage.get(shardedEdges).orElse(0) - storage.get(expiredShardEdges).orElse(0);
+  }
+
+  /**
+   * @param context
+   * @return the number of edges that were ever added to the vertex, which unlike the degree does not go down when
+   * edges fall behind the retention horizon
+   */
+  int addedEdges(Context context) {
+    return store.size(context) + context.storage().get(shardedEdges).orElse(0) + store.expiredEdges(context);
+  }
+
+  /**
+   * @param context
+   * @return the version of the edges of the vertex, which changes with every edge that is added to the vertex or
+   * dropped by the retention, also in its shards
+   */
+  long version(Context context) {
+    return store.version(context);
+  }
+
+  /**
+   * This method sends new edges of a sharded vertex to the shards responsible for them
+   * @param context
+   * @param sortedRun new edges, sorted by timestamp
+   */
+  void route(Context context, NeighborList sortedRun) {
+    int shards = context.storage().get(shardCount).orElse(SHARD_COUNT);
+    sendToShards(context, sortedRun, shards);
+    context.storage().set(shardedEdges, context.storage().get(shardedEdges).orElse(0) + sortedRun.size());
+    store.advanceVersion(context, sortedRun.size());
+  }
+
+  /**
+   * This method compacts the store, and lets the vertex know when a shard has dropped edges that fell behind the
+   * retention horizon
+   * @param context
+   * @return the number of edges that were dropped
+   */
+  int compact(Context context) {
+    int expired = store.compact(context);
+    if (expired > 0 && isShard(context)) {
+      context.send(
+          MessageBuilder.forAddress(functionType, vertexIdOf(context))
+              .withCustomType(Types.SHARD_EXPIRY_TYPE, ShardExpiry.create(expired, store.horizon(context)))
+              .build());
+    }
+    return expired;
+  }
+
+  /**
+   * This method counts the edges that a shard of the vertex has dropped
+   * @param context
+   * @param expiry
+   */
+  void expire(Context context, ShardExpiry expiry) {
+    AddressScopedStorage storage = context.storage();
+    storage.set(expiredShardEdges, storage.get(expiredShardEdges).orElse(0) + expiry.getExpiredEdges());
+    store.advanceVersion(context, expiry.getExpiredEdges());
+  }
+
+  /**
+   * This method moves the edges of the vertex to its shards, once the vertex has reached the degree threshold
+   * @param context
+   */
+  void shardIfNeeded(Context context) {
+    if (isShard(context) || isSharded(context) || SHARD_COUNT < 2 || store.size(context) < DEGREE_THRESHOLD) {
+      return;
+    }
+    NeighborList edges = store.read(context);
+    sendToShards(context, edges, SHARD_COUNT);
+    store.clear(context);
+    AddressScopedStorage storage = context.storage();
+    storage.set(shardCount, SHARD_COUNT);
+    storage.set(shardedEdges, storage.get(shardedEdges).orElse(0) + edges.size());
+    LOG.info("vertex %s of %s has %d edges and is now spread over %d shards",
+        context.self().id(), functionType.name(), edges.size(), SHARD_COUNT);
+  }
+
+  /**
+   * This method sends a query to every shard of the vertex. The query is run by {@link #collect} once the edges of
+   * all shards have arrived.
+   * @param context
+   * @param query the original query message
+   * @param mode which edges the shards need to return, see {@link ShardScanRequest}
+   * @param startTime start of the time range for ShardScanRequest.MODE_RANGE and MODE_COUNT
+   * @param endTime end of the time range for ShardScanRequest.MODE_RANGE and MODE_COUNT
+   */
+  void scatter(Context context, Message query, String mode, long startTime, long endTime) {
+    scatter(context, query, requestId -> ShardScanRequest.create(requestId, mode, startTime, endTime));
+  }
+
+  /**
+   * This method asks every shard of the vertex for a page of its edges in a time range, see
+   * {@link ShardScanRequest#createPage}. Since every shard returns at least limit edges if it has them, the first
+   * limit of the merged edges are the first limit edges of the vertex.
+   * @param context
+   * @param query the original query message
+   * @param startTime start of the time range
+   * @param endTime end of the time range
+   * @param limit the most edges every shard returns, apart from edges with an equal timestamp
+   * @param descending true to return the newest edges of the range
+   */
+  void scatterPage(Context context, Message query, long startTime, long endTime, int limit, boolean descending) {
+    scatter(context, query,
+        requestId -> ShardScanRequest.createPage(requestId, startTime, endTime, limit, descending));
+  }
+
+  private void scatter(Context context, Message query, LongFunction<ShardScanRequest> requestOf) {
+    AddressScopedStorage storage = context.storage();
+    int shards = storage.get(shardCount).orElse(SHARD_COUNT);
+    PendingShardScans pending = storage.get(pendingScans).orElseGet(PendingShardScans::new);
+    long requestId =
+        pending.add(query.valueTypeName().asTypeNameString(), query.rawValue().toByteArray(), shards);
+    storage.set(pendingScans, pending);
+
+    ShardScanRequest request = requestOf.apply(requestId);
+    for (int shard = 0; shard < shards; shard++) {
+      context.send(
+          MessageBuilder.forAddress(functionType, shardId(context.self().id(), shard))
+              .withCustomType(Types.SHARD_SCAN_REQUEST_TYPE, request)
+              .build());
+    }
+  }
+
+  /**
+   * This method answers a scan request of the vertex with the edges stored in this shard
+   * @param context
+   * @param request
+   */
+  void answer(Context context, ShardScanRequest request) {
+    if (ShardScanRequest.MODE_COUNT.equals(request.getMode())) {
+      long count = store.count(context, request.getStartTime(), request.getEndTime());
+      context.send(
+          MessageBuilder.forAddress(functionType, vertexIdOf(context))
+              .withCustomType(Types.SHARD_SCAN_RESULT_TYPE, ShardScanResult.ofCount(request.getRequestId(), count))
+              .build());
+      return;
+    }
+    NeighborList edges = store.read(context);
+    if (ShardScanRequest.MODE_RANGE.equals(request.getMode())) {
+      edges = edges.range(request.getStartTime(), request.getEndTime());
+      if (request.getLimit() > 0) {
+        edges = request.isDescending() ? edges.tail(request.getLimit()) : edges.head(request.getLimit());
+      }
+    } else if (ShardScanRequest.MODE_DISTINCT.equals(request.getMode())) {
+      int[] distinctIds = edges.distinctIds();
+      edges = new NeighborList(distinctIds.length);
+      for (int id : distinctIds) {
+        edges.append(id, 0L);
+      }
+    }
+    context.send(
+        MessageBuilder.forAddress(functionType, vertexIdOf(context))
+            .withCustomType(Types.SHARD_SCAN_RESULT_TYPE, ShardScanResult.create(request.getRequestId(), edges))
+            .build());
+  }
+
+  /**
+   * This method collects the answer of a shard, and runs the original query once all shards have answered
+   * @param context
+   * @param result
+   * @param query called with the original query message and the merged answers of all shards
+   */
+  void collect(Context context, ShardScanResult result, ShardedQuery query) {
+    AddressScopedStorage storage = context.storage();
+    PendingShardScans pending = storage.get(pendingScans).orElseGet(PendingShardScans::new);
+    PendingShardScans.Entry entry = pending.find(result.getRequestId());
+    if (entry == null) {
+      return;
+    }
+    entry.addShardResult(result);
+    if (!entry.isComplete()) {
+      storage.set(pendingScans, pending);
+      return;
+    }
+    pending.remove(entry);
+    if (pending.isEmpty()) {
+      storage.remove(pendingScans);
+    } else {
+      storage.set(pendingScans, pending);
+    }
+    query.run(rebuildQuery(context.self(), entry), entry.getEdges(), entry.getCount());
+  }
+
+  private void sendToShards(Context context, NeighborList edges, int shards) {
+    NeighborList[] edgesByShard = new NeighborList[shards];
+    for (int i = 0; i < edges.size(); i++) {
+      int shard = shardOf(edges.idAt(i), shards);
+      if (edgesByShard[shard] == null) {
+        edgesByShard[shard] = new NeighborList();
+      }
+      edgesByShard[shard].append(edges.idAt(i), edges.timestampAt(i));
+    }
+    String vertexId = vertexIdOf(context);
+    for (int shard = 0; shard < shards; shard++) {
+      if (edgesByShard[shard] != null) {
+        context.send(
+            MessageBuilder.forAddress(functionType, shardId(vertexId, shard))
+                .withCustomType(edgeBatchType, edgesByShard[shard])
+                .build());
+      }
+    }
+  }
+
+  static int shardOf(int neighborId, int shards) {
+    // spread consecutive ids, which are common in our data sets, evenly over the shards
+    int hash = neighborId;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    hash ^= hash >>> 16;
+    return Math.floorMod(hash, shards);
+  }
+
+  private static String shardId(String vertexId, int shard) {
+    return vertexId + SHARD_SEPARATOR + shard;
+  }
+
+  /**
+   * This method turns the stored query back into a message, the message has the type name of the original
+   * query, so it can be read with the original type
+   */
+  private static Message rebuildQuery(Address self, PendingShardScans.Entry entry) {
+    Type<byte[]> rawType =
+        SimpleType.simpleImmutableTypeFrom(TypeName.typeNameFromString(entry.getTypeName()), b -> b, b -> b);
+    return MessageBuilder.forAddress(self).withCustomType(rawType, entry.getPayload()).build();
+  }
+}
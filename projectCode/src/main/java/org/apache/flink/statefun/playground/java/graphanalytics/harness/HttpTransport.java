@@ -0,0 +1,48 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Delivers the requests of the {@link InProcessRuntime} over HTTP, like the runtime calls a remote function endpoint.
+ * The connections are kept alive between the requests.
+ */
+public final class HttpTransport implements InProcessRuntime.Transport {
+
+  private final URL endpoint;
+
+  public HttpTransport(URL endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  @Override
+  public byte[] call(byte[] request) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(request.length);
+    connection.setRequestProperty("Content-Type", "application/octet-stream");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(request);
+    }
+    int status = connection.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      connection.disconnect();
+      throw new IOException("Function endpoint " + endpoint + " answered with status " + status);
+    }
+    // reading the response to its end returns the connection to the keep-alive cache
+    try (InputStream in = connection.getInputStream()) {
+      ByteArrayOutputStream response = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 32));
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        response.write(buffer, 0, read);
+      }
+      return response.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.harness;
+
+import org.apache.flink.statefun.sdk.reqreply.generated.Address;
+import org.apache.flink.statefun.sdk.reqreply.generated.FromFunction;
+import org.apache.flink.statefun.sdk.reqreply.generated.ToFunction;
+import org.apache.flink.statefun.sdk.reqreply.generated.TypedValue;
+
+import java.util.*;
+
+/**
+ * A minimal stand-in for the StateFun runtime, which drives the functions through the same request-reply protocol
+ * as the runtime does, but in the same process and on a single thread.
+ *
+ * It keeps the state of every address, and sends it along with every batch of invocations to that address. The
+ * state values a function needs are learned the way the runtime learns them: the first invocation of a function
+ * type is answered with the missing values, which are then registered and the invocation retried. The messages
+ * the functions send are queued and delivered in order per address, all the queued messages to an address going
+ * in one batch. Delayed messages are delivered once they are due, or right away by {@link #drain()}.
+ *
+ * State expiration is not simulated, expiring values are kept like any other value.
+ */
+public final class InProcessRuntime {
+
+  /**
+   * Delivers an encoded ToFunction request to the functions and returns their encoded FromFunction response.
+   */
+  @FunctionalInterface
+  public interface Transport {
+    byte[] call(byte[] request) throws Exception;
+  }
+
+  /**
+   * Is called for every record a function sends to an egress.
+   */
+  @FunctionalInterface
+  public interface EgressListener {
+    void onEgress(String egressType, TypedValue record);
+  }
+
+  private final Transport transport;
+  private final EgressListener egressListener;
+
+  // "namespace/type" of a function -> the state values it declared, in the order they were registered
+  private final Map<String, List<String>> registeredValues = new HashMap<>();
+  private final Map<String, Map<String, TypedValue>> emptyValues = new HashMap<>();
+  private final Map<Address, Map<String, TypedValue>> state = new HashMap<>();
+
+  private final ArrayDeque<Envelope> pending = new ArrayDeque<>();
+  private final PriorityQueue<DelayedEnvelope> delayed = new PriorityQueue<>();
+  private long delayedSequence;
+
+  private long requests;
+  private long invocations;
+  private long egressRecords;
+
+  public InProcessRuntime(Transport transport, EgressListener egressListener) {
+    this.transport = Objects.requireNonNull(transport);
+    this.egressListener = Objects.requireNonNull(egressListener);
+  }
+
+  /**
+   * This method queues a message from outside of the functions, like an ingress record
+   * @param target
+   * @param argument
+   */
+  public void send(Address target, TypedValue argument) {
+    pending.add(new Envelope(target, null, argument));
+  }
+
+  /**
+   * This method delivers the queued messages, and all the messages they cause, until there are none left. Delayed
+   * messages are only delivered if they are already due.
+   * @throws Exception if the functions failed
+   */
+  public void runUntilIdle() throws Exception {
+    while (true) {
+      releaseDueMessages(false);
+      Envelope next = pending.poll();
+      if (next == null) {
+        return;
+      }
+      invoke(next);
+    }
+  }
+
+  /**
+   * This method delivers the queued messages, and all the delayed messages, without waiting until they are due
+   * @throws Exception if the functions failed
+   */
+  public void drain() throws Exception {
+    do {
+      releaseDueMessages(true);
+      runUntilIdle();
+    } while (!delayed.isEmpty());
+  }
+
+  /**
+   * @return whether there are delayed messages that are due
+   */
+  public boolean hasDueMessages() {
+    DelayedEnvelope first = delayed.peek();
+    return first != null && first.dueNanos - System.nanoTime() <= 0;
+  }
+
+  public long requests() {
+    return requests;
+  }
+
+  public long invocations() {
+    return invocations;
+  }
+
+  public long egressRecords() {
+    return egressRecords;
+  }
+
+  /**
+   * @return the number of addresses that have state
+   */
+  public int addressesWithState() {
+    return state.size();
+  }
+
+  private void releaseDueMessages(boolean all) {
+    long now = System.nanoTime();
+    while (!delayed.isEmpty() && (all || delayed.peek().dueNanos - now <= 0)) {
+      pending.add(delayed.poll().envelope);
+    }
+  }
+
+  /**
+   * This method sends one batch to the address of the given message, with all the other queued messages to that
+   * address, and applies the response
+   * @param first
+   * @throws Exception
+   */
+  private void invoke(Envelope first) throws Exception {
+    Address target = first.target;
+    List<Envelope> batch = new ArrayList<>();
+    batch.add(first);
+    for (Iterator<Envelope> it = pending.iterator(); it.hasNext(); ) {
+      Envelope envelope = it.next();
+      if (envelope.target.equals(target)) {
+        batch.add(envelope);
+        it.remove();
+      }
+    }
+
+    String functionType = target.getNamespace() + "/" + target.getType();
+    while (true) {
+      ToFunction.InvocationBatchRequest.Builder request = ToFunction.InvocationBatchRequest.newBuilder()
+          .setTarget(target);
+      Map<String, TypedValue> values = state.getOrDefault(target, Collections.emptyMap());
+      Map<String, TypedValue> empty = emptyValues.getOrDefault(functionType, Collections.emptyMap());
+      for (String name : registeredValues.getOrDefault(functionType, Collections.emptyList())) {
+        request.addState(ToFunction.PersistedValue.newBuilder()
+            .setStateName(name)
+            .setStateValue(values.getOrDefault(name, empty.get(name))));
+      }
+      for (Envelope envelope : batch) {
+        ToFunction.Invocation.Builder invocation = ToFunction.Invocation.newBuilder().setArgument(envelope.argument);
+        if (envelope.caller != null) {
+          invocation.setCaller(envelope.caller);
+        }
+        request.addInvocations(invocation);
+      }
+
+      requests++;
+      byte[] responseBytes = transport.call(ToFunction.newBuilder().setInvocation(request).build().toByteArray());
+      FromFunction response = FromFunction.parseFrom(responseBytes);
+      if (response.hasIncompleteInvocationContext()) {
+        // like the runtime, register the values the function declared and retry the batch with them
+        for (FromFunction.PersistedValueSpec spec : response.getIncompleteInvocationContext().getMissingValuesList()) {
+          registerValue(functionType, spec);
+        }
+        continue;
+      }
+      invocations += batch.size();
+      apply(target, response.getInvocationResult());
+      return;
+    }
+  }
+
+  private void registerValue(String functionType, FromFunction.PersistedValueSpec spec) {
+    List<String> names = registeredValues.computeIfAbsent(functionType, type -> new ArrayList<>());
+    if (!names.contains(spec.getStateName())) {
+      names.add(spec.getStateName());
+    }
+    emptyValues.computeIfAbsent(functionType, type -> new HashMap<>()).put(spec.getStateName(),
+        TypedValue.newBuilder().setTypename(spec.getTypeTypename()).setHasValue(false).build());
+  }
+
+  private void apply(Address self, FromFunction.InvocationResponse result) {
+    for (FromFunction.PersistedValueMutation mutation : result.getStateMutationsList()) {
+      if (mutation.getMutationType() == FromFunction.PersistedValueMutation.MutationType.MODIFY) {
+        state.computeIfAbsent(self, address -> new HashMap<>()).put(mutation.getStateName(), mutation.getStateValue());
+      } else {
+        Map<String, TypedValue> values = state.get(self);
+        if (values != null) {
+          values.remove(mutation.getStateName());
+          if (values.isEmpty()) {
+            state.remove(self);
+          }
+        }
+      }
+    }
+    for (FromFunction.Invocation message : result.getOutgoingMessagesList()) {
+      pending.add(new Envelope(message.getTarget(), self, message.getArgument()));
+    }
+    for (FromFunction.DelayedInvocation message : result.getDelayedInvocationsList()) {
+      if (message.getIsCancellationRequest()) {
+        delayed.removeIf(d -> message.getCancellationToken().equals(d.cancellationToken));
+      } else {
+        long due = System.nanoTime() + message.getDelayInMs() * 1_000_000L;
+        delayed.add(new DelayedEnvelope(due, delayedSequence++, message.getCancellationToken(),
+            new Envelope(message.getTarget(), self, message.getArgument())));
+      }
+    }
+    for (FromFunction.EgressMessage egress : result.getOutgoingEgressesList()) {
+      egressRecords++;
+      egressListener.onEgress(egress.getEgressNamespace() + "/" + egress.getEgressType(), egress.getArgument());
+    }
+  }
+
+  private static final class Envelope {
+    final Address target;
+    final Address caller;
+    final TypedValue argument;
+
+    Envelope(Address target, Address caller, TypedValue argument) {
+      this.target = target;
+      this.caller = caller;
+      this.argument = argument;
+    }
+  }
+
+  private static final class DelayedEnvelope implements Comparable<DelayedEnvelope> {
+    final long dueNanos;
+    final long sequence;
+    final String cancellationToken;
+    final Envelope envelope;
+
+    DelayedEnvelope(long dueNanos, long sequence, String cancellationToken, Envelope envelope) {
+      this.dueNanos = dueNanos;
+      this.sequence = sequence;
+      this.cancellationToken = cancellationToken.isEmpty() ? null : cancellationToken;
+      this.envelope = envelope;
+    }
+
+    @Override
+    public int compareTo(DelayedEnvelope other) {
+      // nanoTime values are only comparable by their difference, ties go in the order the messages were sent
+      int byDue = Long.signum(dueNanos - other.dueNanos);
+      return byDue != 0 ? byDue : Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.harness;
+
+import java.util.Arrays;
+
+/**
+ * Records every latency of one kind of event, so that the exact percentiles can be reported at the end of a run.
+ * It is not thread safe.
+ */
+public final class LatencyRecorder {
+
+  private long[] latencies = new long[1024];
+  private int count;
+  private long totalNanos;
+
+  public void record(long nanos) {
+    if (count == latencies.length) {
+      latencies = Arrays.copyOf(latencies, count * 2);
+    }
+    latencies[count++] = nanos;
+    totalNanos += nanos;
+  }
+
+  public int count() {
+    return count;
+  }
+
+  public long totalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * This method returns the latency below which the given fraction of the recorded latencies fall (nearest rank)
+   * @param quantile between 0 and 1
+   * @return the latency in nanoseconds, 0 if nothing was recorded
+   */
+  public long percentile(double quantile) {
+    if (count == 0) {
+      return 0;
+    }
+    // sorting in place keeps the recorded values, only their order is lost
+    Arrays.sort(latencies, 0, count);
+    int rank = (int) Math.ceil(quantile * count);
+    return latencies[Math.min(Math.max(rank, 1), count) - 1];
+  }
+}
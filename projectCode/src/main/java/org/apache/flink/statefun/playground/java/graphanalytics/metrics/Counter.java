@@ -0,0 +1,27 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. It is striped ({@link LongAdder}), so that the functions running on different
+ * threads do not contend when they record.
+ */
+public final class Counter {
+
+  private final LongAdder value = new LongAdder();
+
+  Counter() {
+  }
+
+  public void increment() {
+    value.increment();
+  }
+
+  public void add(long amount) {
+    value.add(amount);
+  }
+
+  public long get() {
+    return value.sum();
+  }
+}
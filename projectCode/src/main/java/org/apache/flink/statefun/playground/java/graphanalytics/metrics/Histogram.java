@@ -0,0 +1,83 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed bucket bounds. Every bucket is a striped counter, so recording a value is a binary search
+ * over the bounds and an add, without any allocation or lock. The buckets are only summed up to cumulative counts
+ * when the metrics are scraped.
+ */
+public final class Histogram {
+
+  /**
+   * Bounds for durations in nanoseconds, from 1 microsecond to 10 seconds, which are reported in seconds.
+   */
+  public static final long[] LATENCY_NANOS = {
+      1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+      1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L,
+      500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+  };
+
+  /**
+   * Bounds for sizes and counts, the powers of two up to 2^20.
+   */
+  public static final long[] POWERS_OF_TWO = powersOfTwo(20);
+
+  private final long[] bounds;
+  private final double unit;
+  // buckets[i] counts the values in (bounds[i - 1], bounds[i]], the last bucket the values above all the bounds
+  private final LongAdder[] buckets;
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * @param bounds the inclusive upper bounds of the buckets, in ascending order
+   * @param unit the size of the recorded unit in the reported unit, e.g. 1e-9 to report nanoseconds as seconds
+   */
+  Histogram(long[] bounds, double unit) {
+    this.bounds = bounds.clone();
+    this.unit = unit;
+    this.buckets = new LongAdder[bounds.length + 1];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(long value) {
+    int bucket = Arrays.binarySearch(bounds, value);
+    buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+    sum.add(value);
+  }
+
+  int bucketCount() {
+    return bounds.length;
+  }
+
+  double upperBound(int bucket) {
+    return bounds[bucket] * unit;
+  }
+
+  /**
+   * @return the number of recorded values per bucket, the last one counting the values above all the bounds
+   */
+  long[] bucketCounts() {
+    long[] counts = new long[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+
+  double sum() {
+    return sum.sum() * unit;
+  }
+
+  private static long[] powersOfTwo(int maxExponent) {
+    long[] bounds = new long[maxExponent + 2];
+    bounds[0] = 0;
+    for (int i = 0; i <= maxExponent; i++) {
+      bounds[i + 1] = 1L << i;
+    }
+    return bounds;
+  }
+}
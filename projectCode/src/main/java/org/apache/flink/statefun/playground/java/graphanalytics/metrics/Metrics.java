@@ -0,0 +1,135 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The registry of all the metrics of the function server, which renders them in the Prometheus text format.
+ *
+ * A metric is identified by its name and its labels, which are given as name/value pairs. Looking a metric up
+ * builds its key, so callers look their metrics up once and keep them, and only record on the hot path.
+ */
+public final class Metrics {
+
+  private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+  private Metrics() {
+  }
+
+  /**
+   * This method returns the counter of the given name and labels, creating it on first use
+   * @param name
+   * @param help
+   * @param labels label names and values, alternating
+   * @return Counter
+   */
+  public static Counter counter(String name, String help, String... labels) {
+    return (Counter) family(name, help, "counter").children.computeIfAbsent(labelsOf(labels), l -> new Counter());
+  }
+
+  /**
+   * This method returns the histogram of the given name and labels, creating it on first use
+   * @param name
+   * @param help
+   * @param bounds the inclusive upper bounds of the buckets, in ascending order
+   * @param unit the size of the recorded unit in the reported unit
+   * @param labels label names and values, alternating
+   * @return Histogram
+   */
+  public static Histogram histogram(String name, String help, long[] bounds, double unit, String... labels) {
+    return (Histogram) family(name, help, "histogram").children.computeIfAbsent(labelsOf(labels),
+        l -> new Histogram(bounds, unit));
+  }
+
+  /**
+   * This method writes all the metrics in the Prometheus text exposition format
+   * @param out
+   */
+  public static void writePrometheus(StringBuilder out) {
+    for (Map.Entry<String, Family> entry : FAMILIES.entrySet()) {
+      String name = entry.getKey();
+      Family family = entry.getValue();
+      out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+      out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+      for (Map.Entry<String, Object> child : new TreeMap<>(family.children).entrySet()) {
+        String labels = child.getKey();
+        if (child.getValue() instanceof Counter) {
+          writeSample(out, name, labels, null, ((Counter) child.getValue()).get());
+        } else {
+          writeHistogram(out, name, labels, (Histogram) child.getValue());
+        }
+      }
+    }
+  }
+
+  private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+    long[] counts = histogram.bucketCounts();
+    long cumulative = 0;
+    for (int i = 0; i < histogram.bucketCount(); i++) {
+      cumulative += counts[i];
+      writeSample(out, name + "_bucket", labels, "le=\"" + histogram.upperBound(i) + "\"", cumulative);
+    }
+    cumulative += counts[counts.length - 1];
+    writeSample(out, name + "_bucket", labels, "le=\"+Inf\"", cumulative);
+    out.append(name).append("_sum");
+    appendLabels(out, labels, null);
+    out.append(' ').append(histogram.sum()).append('\n');
+    writeSample(out, name + "_count", labels, null, cumulative);
+  }
+
+  private static void writeSample(StringBuilder out, String name, String labels, String extraLabel, long value) {
+    out.append(name);
+    appendLabels(out, labels, extraLabel);
+    out.append(' ').append(value).append('\n');
+  }
+
+  private static void appendLabels(StringBuilder out, String labels, String extraLabel) {
+    if (labels.isEmpty() && extraLabel == null) {
+      return;
+    }
+    out.append('{').append(labels);
+    if (extraLabel != null) {
+      out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+    }
+    out.append('}');
+  }
+
+  private static Family family(String name, String help, String type) {
+    Family family = FAMILIES.computeIfAbsent(name, n -> new Family(help, type));
+    if (!family.type.equals(type)) {
+      throw new IllegalArgumentException(String.format("metric %s is a %s, not a %s", name, family.type, type));
+    }
+    return family;
+  }
+
+  private static String labelsOf(String[] labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("labels must be given as name/value pairs");
+    }
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        key.append(',');
+      }
+      key.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+    }
+    return key.toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static final class Family {
+    private final String help;
+    private final String type;
+    private final Map<String, Object> children = new ConcurrentHashMap<>();
+
+    private Family(String help, String type) {
+      this.help = help;
+      this.type = type;
+    }
+  }
+}
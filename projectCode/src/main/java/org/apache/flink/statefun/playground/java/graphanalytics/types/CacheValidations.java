@@ -0,0 +1,118 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the queries on a vertex that are waiting for the other vertices of a cached result (see
+ * {@link CachedQueryResult}) to confirm that they have not changed. It is kept apart from the cached results, so that
+ * collecting the answers does not read and write the results every time.
+ */
+public class CacheValidations {
+
+  private static final int VERSION_1 = 1;
+
+  /**
+   * A query that waits for the version checks of the vertices its cached result depends on
+   */
+  public static final class Validation {
+    private final String queryId;
+    private final String task;
+    private final int k;
+    private int remaining;
+
+    private Validation(String queryId, String task, int k, int remaining) {
+      this.queryId = queryId;
+      this.task = task;
+      this.k = k;
+      this.remaining = remaining;
+    }
+
+    public String getQueryId() { return queryId; }
+
+    public String getTask() { return task; }
+
+    public int getK() { return k; }
+
+    public boolean isComplete() { return remaining <= 0; }
+
+    /**
+     * This method counts a vertex that has confirmed its version
+     */
+    public void confirm() {
+      remaining--;
+    }
+  }
+
+  private final List<Validation> validations;
+
+  public CacheValidations() {
+    this(new ArrayList<>());
+  }
+
+  private CacheValidations(List<Validation> validations) {
+    this.validations = validations;
+  }
+
+  /**
+   * This method registers a query that waits for the given number of version checks
+   * @param queryId
+   * @param task
+   * @param k
+   * @param remaining
+   */
+  public void add(String queryId, String task, int k, int remaining) {
+    validations.add(new Validation(queryId, task, k, remaining));
+  }
+
+  /**
+   * @param queryId
+   * @return the validation of the query, or null if the query is not waiting for version checks
+   */
+  public Validation find(String queryId) {
+    for (Validation validation : validations) {
+      if (validation.queryId.equals(queryId)) {
+        return validation;
+      }
+    }
+    return null;
+  }
+
+  public void remove(Validation validation) {
+    validations.remove(validation);
+  }
+
+  public boolean isEmpty() {
+    return validations.isEmpty();
+  }
+
+  static byte[] serialize(CacheValidations pending) {
+    VarIntWriter writer = new VarIntWriter(64);
+    writer.writeByte(VERSION_1);
+    writer.writeVarInt(pending.validations.size());
+    for (Validation validation : pending.validations) {
+      writer.writeUtf8(validation.queryId);
+      writer.writeUtf8(validation.task);
+      writer.writeVarInt(validation.k);
+      writer.writeVarInt(validation.remaining);
+    }
+    return writer.toByteArray();
+  }
+
+  static CacheValidations deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unsupported cache validations format version " + version);
+    }
+    int size = reader.readVarInt();
+    List<Validation> validations = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String queryId = reader.readUtf8();
+      String task = reader.readUtf8();
+      int k = reader.readVarInt();
+      validations.add(new Validation(queryId, task, k, reader.readVarInt()));
+    }
+    return new CacheValidations(validations);
+  }
+}
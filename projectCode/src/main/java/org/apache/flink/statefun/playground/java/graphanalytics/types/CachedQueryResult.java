@@ -0,0 +1,118 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class holds the complete result of a k-hop or triangle query together with the versions of the vertices it
+ * was computed from (see {@link VertexVersions}). The QueryResultAggregatorFn sends it to the queried vertex, which
+ * keeps it in its query cache and answers the same query from it as long as none of those vertices has changed.
+ *
+ * The results are encoded as in {@link QueryResultPart}, and kept sorted.
+ */
+public final class CachedQueryResult {
+
+  private static final int VERSION_1 = 1;
+
+  private final String task;
+  private final int vertexId;
+  private final int k;
+  private final long[] results;
+  private final VertexVersions versions;
+  // use counter of the cache when the result was last stored or used
+  private long lastUsed;
+
+  private CachedQueryResult(String task, int vertexId, int k, long[] results, VertexVersions versions,
+                            long lastUsed) {
+    this.task = task;
+    this.vertexId = vertexId;
+    this.k = k;
+    this.results = results;
+    this.versions = versions;
+    this.lastUsed = lastUsed;
+  }
+
+  /**
+   * This method creates the cached result of a complete query, please only call it if the aggregate knows its
+   * versions
+   * @param aggregate
+   * @return CachedQueryResult
+   */
+  public static CachedQueryResult of(QueryAggregate aggregate) {
+    return new CachedQueryResult(aggregate.getTask(), aggregate.getVertexId(), aggregate.getK(),
+        aggregate.getResults(), aggregate.getVersions(), 0);
+  }
+
+  public String getTask() { return task; }
+
+  public int getVertexId() { return vertexId; }
+
+  public int getK() { return k; }
+
+  public long[] getResults() { return results; }
+
+  public VertexVersions getVersions() { return versions; }
+
+  public long getLastUsed() { return lastUsed; }
+
+  void setLastUsed(long lastUsed) {
+    this.lastUsed = lastUsed;
+  }
+
+  /**
+   * @param task
+   * @param k
+   * @return true if this is the result of the given query
+   */
+  public boolean isResultOf(String task, int k) {
+    return this.task.equals(task) && this.k == k;
+  }
+
+  /**
+   * @return the number of results and vertex versions, which is what the cached result costs in state
+   */
+  public int size() {
+    return results.length + versions.size();
+  }
+
+  static void writeTo(VarIntWriter writer, CachedQueryResult cached) {
+    writer.writeUtf8(cached.task);
+    writer.writeZigZagInt(cached.vertexId);
+    writer.writeVarInt(cached.k);
+    writer.writeVarLong(cached.lastUsed);
+    writer.writeVarInt(cached.results.length);
+    long previous = 0;
+    for (long result : cached.results) {
+      writer.writeZigZagLong(result - previous);
+      previous = result;
+    }
+    VertexVersions.writeTo(writer, cached.versions);
+  }
+
+  static CachedQueryResult readFrom(VarIntReader reader) {
+    String task = reader.readUtf8();
+    int vertexId = reader.readZigZagInt();
+    int k = reader.readVarInt();
+    long lastUsed = reader.readVarLong();
+    long[] results = new long[reader.readVarInt()];
+    long previous = 0;
+    for (int i = 0; i < results.length; i++) {
+      previous += reader.readZigZagLong();
+      results[i] = previous;
+    }
+    return new CachedQueryResult(task, vertexId, k, results, VertexVersions.readFrom(reader), lastUsed);
+  }
+
+  static byte[] serialize(CachedQueryResult cached) {
+    VarIntWriter writer = new VarIntWriter(32 + cached.results.length * 4);
+    writer.writeByte(VERSION_1);
+    writeTo(writer, cached);
+    return writer.toByteArray();
+  }
+
+  static CachedQueryResult deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unsupported cached query result format version " + version);
+    }
+    return readFrom(reader);
+  }
+}
@@ -0,0 +1,113 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the query cache of a vertex, the cached results of the k-hop and triangle queries on the vertex
+ * (see {@link CachedQueryResult}). At most a given number of results are kept, the least recently used ones are
+ * evicted first.
+ */
+public class CachedQueryResults {
+
+  private static final int VERSION_1 = 1;
+
+  private long useCounter;
+  private final List<CachedQueryResult> entries;
+
+  public CachedQueryResults() {
+    this(0, new ArrayList<>());
+  }
+
+  private CachedQueryResults(long useCounter, List<CachedQueryResult> entries) {
+    this.useCounter = useCounter;
+    this.entries = entries;
+  }
+
+  /**
+   * @param task
+   * @param k
+   * @return the cached result of the query, or null if there is none
+   */
+  public CachedQueryResult find(String task, int k) {
+    for (CachedQueryResult entry : entries) {
+      if (entry.isResultOf(task, k)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * This method marks a cached result as the most recently used one
+   * @param entry
+   */
+  public void touch(CachedQueryResult entry) {
+    entry.setLastUsed(++useCounter);
+  }
+
+  /**
+   * This method stores a result in place of the cached result of the same query, and evicts the least recently used
+   * results beyond the given number
+   * @param entry
+   * @param maxEntries
+   */
+  public void put(CachedQueryResult entry, int maxEntries) {
+    CachedQueryResult previous = find(entry.getTask(), entry.getK());
+    if (previous != null) {
+      entries.remove(previous);
+    }
+    touch(entry);
+    entries.add(entry);
+    while (entries.size() > maxEntries) {
+      CachedQueryResult leastRecentlyUsed = entries.get(0);
+      for (CachedQueryResult candidate : entries) {
+        if (candidate.getLastUsed() < leastRecentlyUsed.getLastUsed()) {
+          leastRecentlyUsed = candidate;
+        }
+      }
+      entries.remove(leastRecentlyUsed);
+    }
+  }
+
+  public void remove(CachedQueryResult entry) {
+    entries.remove(entry);
+  }
+
+  /**
+   * This method drops all cached results
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  static byte[] serialize(CachedQueryResults cache) {
+    VarIntWriter writer = new VarIntWriter(64);
+    writer.writeByte(VERSION_1);
+    writer.writeVarLong(cache.useCounter);
+    writer.writeVarInt(cache.entries.size());
+    for (CachedQueryResult entry : cache.entries) {
+      CachedQueryResult.writeTo(writer, entry);
+    }
+    return writer.toByteArray();
+  }
+
+  static CachedQueryResults deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unsupported query cache format version " + version);
+    }
+    long useCounter = reader.readVarLong();
+    int entryCount = reader.readVarInt();
+    List<CachedQueryResult> entries = new ArrayList<>(entryCount);
+    for (int i = 0; i < entryCount; i++) {
+      entries.add(CachedQueryResult.readFrom(reader));
+    }
+    return new CachedQueryResults(useCounter, entries);
+  }
+}
@@ -0,0 +1,115 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class defines the result record of the IN_DEGREE and OUT_DEGREE queries: the number of edges of a vertex, the
+ * number of its distinct neighbors, which is estimated for vertices with many neighbors, and the first and last
+ * timestamp of its edges. The timestamps are left out for a vertex without edges.
+ *
+ * The binary layout after the {@link ResultRecord} header is
+ * <pre>
+ *   [zig-zag varint vertex_id][varlong degree][varlong distinct_neighbors][flags byte]
+ *   [zig-zag varlong first_timestamp][zig-zag varlong last_timestamp]
+ * </pre>
+ * where flag 1 is set if distinct_neighbors is exact and flag 2 if the timestamps follow.
+ */
+@JsonPropertyOrder({"vertex_id", "degree", "distinct_neighbors", "distinct_exact", "first_timestamp", "last_timestamp"})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DegreeResult implements ResultRecord {
+
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+  private static final int FLAG_DISTINCT_EXACT = 1;
+  private static final int FLAG_TIMESTAMPS = 2;
+
+  @JsonProperty("vertex_id")
+  private int vertexId;
+
+  @JsonProperty("degree")
+  private long degree;
+
+  @JsonProperty("distinct_neighbors")
+  private long distinctNeighbors;
+
+  @JsonProperty("distinct_exact")
+  private boolean distinctExact;
+
+  @JsonProperty("first_timestamp")
+  private Long firstTimestamp;
+
+  @JsonProperty("last_timestamp")
+  private Long lastTimestamp;
+
+  public DegreeResult() {}
+
+  /**
+   * overloaded constructor
+   * @param vertexId
+   * @param degree
+   * @param distinctNeighbors
+   * @param distinctExact
+   * @param firstTimestamp
+   * @param lastTimestamp
+   */
+  private DegreeResult(int vertexId, long degree, long distinctNeighbors, boolean distinctExact, Long firstTimestamp,
+                       Long lastTimestamp) {
+    this.vertexId = vertexId;
+    this.degree = degree;
+    this.distinctNeighbors = distinctNeighbors;
+    this.distinctExact = distinctExact;
+    this.firstTimestamp = firstTimestamp;
+    this.lastTimestamp = lastTimestamp;
+  }
+
+  /**
+   * This method creates the result record of a degree query
+   *
+   * @param vertexId
+   * @param degree the number of edges the vertex currently has
+   * @param counters the counters of the edges that were added to the vertex
+   * @return DegreeResult
+   */
+  public static DegreeResult of(int vertexId, long degree, VertexDegree counters) {
+    if (counters.isEmpty()) {
+      return new DegreeResult(vertexId, degree, 0, counters.isDistinctExact(), null, null);
+    }
+    return new DegreeResult(vertexId, degree, counters.distinctNeighbors(), counters.isDistinctExact(),
+        counters.getFirstTimestamp(), counters.getLastTimestamp());
+  }
+
+  @Override
+  public int getVertexId() { return vertexId; }
+
+  public long getDegree() { return degree; }
+
+  public long getDistinctNeighbors() { return distinctNeighbors; }
+
+  @Override
+  public byte[] toJsonBytes() {
+    try {
+      return JSON_MAPPER.writeValueAsBytes(this);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize the degree of vertex " + vertexId, e);
+    }
+  }
+
+  @Override
+  public byte[] toBinary() {
+    VarIntWriter writer = new VarIntWriter(48);
+    writer.writeByte(BINARY_VERSION_1);
+    writer.writeByte(KIND_DEGREE);
+    writer.writeZigZagInt(vertexId);
+    writer.writeVarLong(degree);
+    writer.writeVarLong(distinctNeighbors);
+    writer.writeByte((distinctExact ? FLAG_DISTINCT_EXACT : 0) | (firstTimestamp != null ? FLAG_TIMESTAMPS : 0));
+    if (firstTimestamp != null) {
+      writer.writeZigZagLong(firstTimestamp);
+      writer.writeZigZagLong(lastTimestamp);
+    }
+    return writer.toByteArray();
+  }
+}
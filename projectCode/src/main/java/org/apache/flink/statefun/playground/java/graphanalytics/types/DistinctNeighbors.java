@@ -0,0 +1,142 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.function.IntConsumer;
+
+/**
+ * This class holds the distinct neighbor ids of a vertex, which is what the triangle query compares.
+ * Small or sparse sets are kept as a sorted id array. Large sets whose ids are close together, as for the high-degree
+ * vertices of our data sets, are kept as a bitmap, so that looking up an id does not depend on the degree.
+ * Both are stored in the compressed id set layout of {@link SortedIntSets#writeCompressedTo}, and the form is picked
+ * again when the set is read.
+ */
+public final class DistinctNeighbors {
+
+  private static final int VERSION_1 = 1;
+  // writes the ids in containers, whatever the form of the set
+  private static final int VERSION_2 = 2;
+  // the forms of version 1, which wrote them as they were kept
+  private static final int KIND_SORTED = 0;
+  private static final int KIND_BITMAP = 1;
+
+  // a bitmap is only used for sets of at least this many ids
+  private static final int BITMAP_MIN_SIZE = 1024;
+  // and only when it takes at most this many bits per id
+  private static final int BITMAP_MAX_BITS_PER_ID = 16;
+
+  private final int size;
+  // sorted ids, null for a bitmap
+  private final int[] sortedIds;
+  // id of the first bit of the bitmap
+  private final int bitmapBase;
+  private final long[] bitmap;
+
+  private DistinctNeighbors(int size, int[] sortedIds, int bitmapBase, long[] bitmap) {
+    this.size = size;
+    this.sortedIds = sortedIds;
+    this.bitmapBase = bitmapBase;
+    this.bitmap = bitmap;
+  }
+
+  /**
+   * This method creates the set, picking the sorted array or the bitmap depending on the number and spread of the ids
+   * @param sortedIds sorted ids without duplicates
+   * @return DistinctNeighbors
+   */
+  public static DistinctNeighbors of(int[] sortedIds) {
+    if (sortedIds.length < BITMAP_MIN_SIZE) {
+      return new DistinctNeighbors(sortedIds.length, sortedIds, 0, null);
+    }
+    long span = (long) sortedIds[sortedIds.length - 1] - sortedIds[0] + 1;
+    if (span > (long) sortedIds.length * BITMAP_MAX_BITS_PER_ID) {
+      return new DistinctNeighbors(sortedIds.length, sortedIds, 0, null);
+    }
+    int base = sortedIds[0];
+    long[] bitmap = new long[(int) ((span + 63) >>> 6)];
+    for (int id : sortedIds) {
+      int bit = id - base;
+      bitmap[bit >>> 6] |= 1L << bit;
+    }
+    return new DistinctNeighbors(sortedIds.length, null, base, bitmap);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(int id) {
+    if (sortedIds != null) {
+      return SortedIntSets.contains(sortedIds, id);
+    }
+    long bit = (long) id - bitmapBase;
+    return bit >= 0 && bit < ((long) bitmap.length << 6) && (bitmap[(int) (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  /**
+   * This method passes the ids that are in both this set and the given ids to the consumer, in ascending order
+   * @param otherSortedIds sorted ids without duplicates
+   * @param consumer
+   */
+  public void intersect(int[] otherSortedIds, IntConsumer consumer) {
+    if (sortedIds != null) {
+      SortedIntSets.intersect(sortedIds, otherSortedIds, consumer);
+      return;
+    }
+    for (int id : otherSortedIds) {
+      if (contains(id)) {
+        consumer.accept(id);
+      }
+    }
+  }
+
+  /**
+   * @return the ids in ascending order
+   */
+  public int[] toSortedArray() {
+    if (sortedIds != null) {
+      return sortedIds;
+    }
+    int[] ids = new int[size];
+    int next = 0;
+    for (int word = 0; word < bitmap.length; word++) {
+      long bits = bitmap[word];
+      while (bits != 0) {
+        ids[next++] = bitmapBase + (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+      }
+    }
+    return ids;
+  }
+
+  static byte[] serialize(DistinctNeighbors neighbors) {
+    VarIntWriter writer = new VarIntWriter(8 + neighbors.size);
+    writer.writeByte(VERSION_2);
+    SortedIntSets.writeCompressedTo(writer, neighbors.toSortedArray());
+    return writer.toByteArray();
+  }
+
+  static DistinctNeighbors deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version == VERSION_2) {
+      return of(SortedIntSets.readCompressedFrom(reader));
+    }
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unknown distinct neighbors format version " + version);
+    }
+    if (reader.readByte() == KIND_SORTED) {
+      int[] sortedIds = SortedIntSets.readFrom(reader);
+      return new DistinctNeighbors(sortedIds.length, sortedIds, 0, null);
+    }
+    int size = reader.readVarInt();
+    int base = reader.readZigZagInt();
+    long[] bitmap = new long[reader.readVarInt()];
+    for (int word = 0; word < bitmap.length; word++) {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 8) {
+        value |= (long) reader.readByte() << shift;
+      }
+      bitmap[word] = value;
+    }
+    return new DistinctNeighbors(size, null, base, bitmap);
+  }
+}
@@ -0,0 +1,67 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class defines the position in a paged edge result that the next page starts after: the timestamp of the last
+ * edge returned so far, and how many of the edges with that timestamp have been returned.
+ *
+ * Unlike an index into the neighbor list, the position stays valid while new edges are added and old edges fall
+ * behind the retention horizon. Edges with an equal timestamp are paged in the order of their neighbor ids, see
+ * {@link NeighborList#sortTiesById}.
+ *
+ * Clients see the cursor as the continuation token "timestamp:offset", e.g. "1254192988:2".
+ */
+public final class EdgeCursor {
+
+  private static final char SEPARATOR = ':';
+
+  private final long timestamp;
+  private final int offset;
+
+  /**
+   * @param timestamp the timestamp of the last edge returned so far
+   * @param offset how many edges with that timestamp have been returned
+   */
+  public EdgeCursor(long timestamp, int offset) {
+    this.timestamp = timestamp;
+    this.offset = offset;
+  }
+
+  public long getTimestamp() { return timestamp; }
+
+  public int getOffset() { return offset; }
+
+  /**
+   * @return the continuation token of the cursor
+   */
+  public String toToken() {
+    return Long.toString(timestamp) + SEPARATOR + offset;
+  }
+
+  /**
+   * This method reads a continuation token written by {@link #toToken}
+   * @param token
+   * @return the cursor
+   * @throws IllegalArgumentException if the token is malformed
+   */
+  public static EdgeCursor parse(String token) {
+    int separator = token.lastIndexOf(SEPARATOR);
+    try {
+      if (separator > 0) {
+        long timestamp = Long.parseLong(token.substring(0, separator));
+        int offset = Integer.parseInt(token.substring(separator + 1));
+        if (offset >= 0) {
+          return new EdgeCursor(timestamp, offset);
+        }
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException(
+        String.format("cursor must be a continuation token timestamp:offset, but was '%s'", token));
+  }
+
+  @Override
+  public String toString() {
+    return toToken();
+  }
+}
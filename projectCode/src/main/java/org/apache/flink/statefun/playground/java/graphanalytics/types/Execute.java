@@ -1,8 +1,12 @@
 package org.apache.flink.statefun.playground.java.graphanalytics.types;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Simple class for unified command type.
  * All commands to stateful fucntions are encapsulated as an Execute Object
@@ -11,6 +15,11 @@ public class Execute {
     @JsonProperty("task")
     private String task;
 
+    // optional id of a query, that the results of the query are reported with,
+    // a random id is used if the request has none
+    @JsonProperty("query_id")
+    private String queryId;
+
     @JsonProperty("src")
     private int src;
 
@@ -29,6 +38,22 @@ public class Execute {
     @JsonProperty("k")
     private int k;
 
+    // these properties are for GET_IN_EDGES, GET_OUT_EDGES and GET_TIME_WINDOW_EDGES,
+    // to return a page of the edges rather than all of them, see PageRequest
+    @JsonProperty("limit")
+    private int limit;
+
+    @JsonProperty("cursor")
+    private String cursor;
+
+    @JsonProperty("order")
+    private String order;
+
+    // this property is for ADD_BATCH,
+    // every element is one edge to add
+    @JsonProperty("edges")
+    private List<Vertex> edges;
+
     public Execute() {
     }
 
@@ -45,6 +70,10 @@ public class Execute {
         return task;
     }
 
+    public String getQueryId() {
+        return queryId;
+    }
+
     public int getSrc() {
         return src;
     }
@@ -65,7 +94,43 @@ public class Execute {
         return k;
     }
 
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    /**
+     * @return true if the request asks for a page of the edges
+     */
+    @JsonIgnore
+    public boolean isPaged() {
+        return limit != 0 || (cursor != null && !cursor.isEmpty()) || (order != null && !order.isEmpty());
+    }
+
+    public List<Vertex> getEdges() {
+        return edges == null ? Collections.emptyList() : edges;
+    }
+
     public static Execute create(String task, int src, int dst, long timestamp, long endTime, int k) {
         return new Execute(task, src, dst, timestamp, endTime, k);
     }
+
+    /**
+     * This method creates an ADD_BATCH command that adds all the given edges
+     *
+     * @param edges
+     * @return Execute
+     */
+    public static Execute createBatch(List<Vertex> edges) {
+        Execute execute = new Execute("ADD_BATCH", 0, 0, 0, 0, 0);
+        execute.edges = edges;
+        return execute;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the request of the KHopCoordinatorFn to a vertex of the current frontier of a k-hop query.
+ * The InEdgesQueryFn/OutEdgesQueryFn answers it by sending its distinct neighbors to the coordinator of the query.
+ */
+public class KHopExpand {
+
+    @JsonProperty("query_id")
+    private String queryId;
+
+    public KHopExpand() {}
+
+    /**
+     * overloaded constructor
+     * @param queryId
+     */
+    private KHopExpand(String queryId) {
+        this.queryId = queryId;
+    }
+
+    public String getQueryId() { return queryId; }
+
+    /**
+     * This method is used for creating a new KHopExpand, please call KHopExpand.create(query_id)
+     * to create an object of this class
+     *
+     * @param queryId
+     * @return KHopExpand
+     */
+    public static KHopExpand create(String queryId) {
+        return new KHopExpand(queryId);
+    }
+}
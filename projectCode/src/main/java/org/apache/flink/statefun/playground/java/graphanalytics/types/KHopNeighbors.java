@@ -0,0 +1,70 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class defines the answer of a frontier vertex to a {@link KHopExpand}: its distinct neighbors, together with
+ * its id and version, so that the KHopCoordinatorFn knows which vertices the result of the query depends on.
+ *
+ * The binary layout is
+ * <pre>
+ *   [version byte][zig-zag varint vertex id][varlong vertex version][neighbors, see SortedIntSets#writeCompressedTo]
+ * </pre>
+ */
+public final class KHopNeighbors {
+
+  private static final int VERSION_1 = 1;
+
+  private final int vertexId;
+  private final long vertexVersion;
+  private final int[] neighbors;
+
+  private KHopNeighbors(int vertexId, long vertexVersion, int[] neighbors) {
+    this.vertexId = vertexId;
+    this.vertexVersion = vertexVersion;
+    this.neighbors = neighbors;
+  }
+
+  public int getVertexId() { return vertexId; }
+
+  /**
+   * @return the version of the vertex when it sent its neighbors
+   */
+  public long getVertexVersion() { return vertexVersion; }
+
+  /**
+   * @return the sorted distinct neighbor ids
+   */
+  public int[] getNeighbors() { return neighbors; }
+
+  /**
+   * This method is used for creating a new KHopNeighbors, please call KHopNeighbors.of(vertexId, version, neighbors)
+   * to create an object of this class
+   *
+   * @param vertexId the expanded vertex
+   * @param vertexVersion the version of the expanded vertex
+   * @param neighbors the distinct neighbors of the expanded vertex
+   * @return KHopNeighbors
+   */
+  public static KHopNeighbors of(int vertexId, long vertexVersion, DistinctNeighbors neighbors) {
+    return new KHopNeighbors(vertexId, vertexVersion, neighbors.toSortedArray());
+  }
+
+  static byte[] serialize(KHopNeighbors neighbors) {
+    VarIntWriter writer = new VarIntWriter(16 + neighbors.neighbors.length);
+    writer.writeByte(VERSION_1);
+    writer.writeZigZagInt(neighbors.vertexId);
+    writer.writeVarLong(neighbors.vertexVersion);
+    SortedIntSets.writeCompressedTo(writer, neighbors.neighbors);
+    return writer.toByteArray();
+  }
+
+  static KHopNeighbors deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unsupported k-hop neighbors format version " + version);
+    }
+    int vertexId = reader.readZigZagInt();
+    long vertexVersion = reader.readVarLong();
+    return new KHopNeighbors(vertexId, vertexVersion, SortedIntSets.readCompressedFrom(reader));
+  }
+}
@@ -0,0 +1,145 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class holds the progress of a k-hop query in the state of its KHopCoordinatorFn instance.
+ * The visited vertices and the next frontier are kept as sorted id arrays, so that they can be updated with merges,
+ * and stored in the compressed id set layout of {@link SortedIntSets#writeCompressedTo}, since the visited set of a
+ * query with a high k covers large ranges of the vertex ids.
+ *
+ * The versions of the expanded vertices are collected as well, since they are what the result depends on, see
+ * {@link VertexVersions}.
+ */
+public class KHopProgress {
+
+  private static final int VERSION_1 = 1;
+  // writes the id sets in containers
+  private static final int VERSION_2 = 2;
+  // adds the versions of the expanded vertices
+  private static final int VERSION_3 = 3;
+
+  private final int vertexId;
+  private final int k;
+  private final String direction;
+  // number of hops of the frontier that is being collected
+  private int level;
+  // number of frontier vertices that have not sent their neighbors yet
+  private int pending;
+  // vertices that have been expanded, or are being expanded
+  private int[] visited;
+  // vertices found at the current level that have not been visited before
+  private int[] frontier;
+  // versions of the expanded vertices that have answered, null if they are not known
+  private VertexVersions versions;
+
+  private KHopProgress(int vertexId, int k, String direction, int level, int pending, int[] visited,
+                       int[] frontier, VertexVersions versions) {
+    this.vertexId = vertexId;
+    this.k = k;
+    this.direction = direction;
+    this.level = level;
+    this.pending = pending;
+    this.visited = visited;
+    this.frontier = frontier;
+    this.versions = versions;
+  }
+
+  /**
+   * This method creates the progress of a new query, nothing has been visited yet
+   * @param query
+   * @return KHopProgress
+   */
+  public static KHopProgress create(KHopQuery query) {
+    return new KHopProgress(query.getVertexId(), query.getK(), query.getDirection(), 0, 0, SortedIntSets.EMPTY,
+        SortedIntSets.EMPTY, new VertexVersions());
+  }
+
+  public int getVertexId() { return vertexId; }
+
+  public int getK() { return k; }
+
+  public String getDirection() { return direction; }
+
+  public int getLevel() { return level; }
+
+  public int[] getFrontier() { return frontier; }
+
+  public boolean isLevelComplete() { return pending == 0; }
+
+  /**
+   * @return the versions of the expanded vertices, null if they are not known
+   */
+  public VertexVersions getVersions() { return versions; }
+
+  /**
+   * This method adds the version that an expanded vertex had when it sent its neighbors
+   * @param expandedId
+   * @param version
+   */
+  public void addVersion(int expandedId, long version) {
+    if (versions != null) {
+      versions.add(expandedId, version);
+    }
+  }
+
+  /**
+   * This method drops the versions, e.g. because a vertex has sent its neighbors without its version
+   */
+  public void forgetVersions() {
+    versions = null;
+  }
+
+  /**
+   * This method starts collecting the next level, whose vertices are the neighbors of the given vertices
+   * @param expanded the sorted vertices that are being asked for their neighbors
+   */
+  public void expand(int[] expanded) {
+    visited = SortedIntSets.union(visited, expanded);
+    frontier = SortedIntSets.EMPTY;
+    pending = expanded.length;
+    level++;
+  }
+
+  /**
+   * This method adds the neighbors of one expanded vertex, the ones that were visited before are skipped
+   * @param neighbors sorted distinct neighbor ids
+   */
+  public void addNeighbors(int[] neighbors) {
+    frontier = SortedIntSets.union(frontier, SortedIntSets.difference(neighbors, visited));
+    pending--;
+  }
+
+  static byte[] serialize(KHopProgress progress) {
+    VarIntWriter writer = new VarIntWriter(32 + (progress.visited.length + progress.frontier.length) * 2);
+    writer.writeByte(VERSION_3);
+    writer.writeZigZagInt(progress.vertexId);
+    writer.writeVarInt(progress.k);
+    writer.writeUtf8(progress.direction);
+    writer.writeVarInt(progress.level);
+    writer.writeVarInt(progress.pending);
+    SortedIntSets.writeCompressedTo(writer, progress.visited);
+    SortedIntSets.writeCompressedTo(writer, progress.frontier);
+    writer.writeByte(progress.versions == null ? 0 : 1);
+    if (progress.versions != null) {
+      VertexVersions.writeTo(writer, progress.versions);
+    }
+    return writer.toByteArray();
+  }
+
+  static KHopProgress deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1 && version != VERSION_2 && version != VERSION_3) {
+      throw new IllegalStateException("Unsupported k-hop progress format version " + version);
+    }
+    int vertexId = reader.readZigZagInt();
+    int k = reader.readVarInt();
+    String direction = reader.readUtf8();
+    int level = reader.readVarInt();
+    int pending = reader.readVarInt();
+    int[] visited = version == VERSION_1 ? SortedIntSets.readFrom(reader) : SortedIntSets.readCompressedFrom(reader);
+    int[] frontier = version == VERSION_1 ? SortedIntSets.readFrom(reader) : SortedIntSets.readCompressedFrom(reader);
+    // a query that was started before the versions existed does not know them
+    VertexVersions versions = version == VERSION_3 && reader.readByte() == 1 ? VertexVersions.readFrom(reader) : null;
+    return new KHopProgress(vertexId, k, direction, level, pending, visited, frontier, versions);
+  }
+}
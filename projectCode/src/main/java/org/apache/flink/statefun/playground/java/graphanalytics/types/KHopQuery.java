@@ -1,69 +1,79 @@
 package org.apache.flink.statefun.playground.java.graphanalytics.types;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.ArrayList;
 
 /**
- * This class defines the type of the query for counting the number of incoming edges of a vertex.
- * The function that is responsible for dispatching queries should send a message of this type to the InEdgesQueryFn/OutEdgesQueryFn.
+ * This class defines the type of the k-hop query, which retrieves the vertices that are k hops away from a vertex.
+ * The function that is responsible for dispatching queries should send a message of this type to the
+ * KHopCoordinatorFn instance of the query id.
+ *
+ * Queries of the format before the coordinator existed (vertex_id, current_id, k, n, trace) are still read, with the
+ * unknown fields ignored, so that the receivers can drop them, see {@link #isLegacy()}.
  */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class KHopQuery {
 
+    public static final String DIRECTION_IN = "IN";
+    public static final String DIRECTION_OUT = "OUT";
+
+    @JsonProperty("query_id")
+    private String queryId;
+
     @JsonProperty("vertex_id")
     private int vertexId;
 
-    @JsonProperty("current_id")
-    private int currentId;
-
     @JsonProperty("k")
     private int k;
 
-    @JsonProperty("n")
-    private int n;
-
-    @JsonProperty("trace")
-    private ArrayList<Integer> trace;
+    // DIRECTION_IN to traverse incoming edges, DIRECTION_OUT to traverse outgoing edges
+    @JsonProperty("direction")
+    private String direction;
 
 
     public KHopQuery() {}
 
     /**
      * overloaded constructor
+     * @param queryId
      * @param vertexId
-     * @param currentId
      * @param k
-     * @param n
-     * @param trace
+     * @param direction
      */
-    private KHopQuery(int vertexId, int currentId, int k, int n, ArrayList<Integer> trace) {
+    private KHopQuery(String queryId, int vertexId, int k, String direction) {
+        this.queryId = queryId;
         this.vertexId = vertexId;
-        this.currentId = currentId;
         this.k = k;
-        this.n = n;
-        this.trace = trace;
+        this.direction = direction;
     }
 
-    public int getVertexId() { return vertexId; }
+    public String getQueryId() { return queryId; }
 
-    public int getCurrentId() { return currentId; }
+    public int getVertexId() { return vertexId; }
 
     public int getK() { return k; }
 
-    public int getN() { return n; }
+    public String getDirection() { return direction; }
 
-    public ArrayList<Integer> getTrace() { return trace; }
+    /**
+     * @return true if the query was sent in the format before the coordinator existed, which has neither a query id
+     * nor a direction and cannot be run anymore
+     */
+    public boolean isLegacy() {
+        return queryId == null || direction == null;
+    }
 
     /**
-     * This method is used for creating a new KHopQuery, please call KHopQuery.create(vertex_id, timestamp)
+     * This method is used for creating a new KHopQuery, please call KHopQuery.create(query_id, vertex_id, k, direction)
      * to create an object of this class
      *
+     * @param queryId
      * @param vertexId
      * @param k
-     * @param n
-     * @param trace
+     * @param direction
      * @return KHopQuery
      */
-    public static KHopQuery create(int vertexId, int currentId, int k, int n, ArrayList<Integer> trace) {
-        return new KHopQuery(vertexId, currentId, k, n, trace);
+    public static KHopQuery create(String queryId, int vertexId, int k, String direction) {
+        return new KHopQuery(queryId, vertexId, k, direction);
     }
 }
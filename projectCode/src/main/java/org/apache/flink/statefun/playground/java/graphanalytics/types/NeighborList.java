@@ -0,0 +1,292 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.Arrays;
+
+/**
+ * A list of (neighbor id, timestamp) edges kept sorted by timestamp.
+ * The ids and timestamps live in two parallel primitive arrays, so inserting, searching and iterating the
+ * neighbors of a vertex does not box any values or allocate a tuple per edge.
+ */
+public final class NeighborList {
+
+  private static final int[] EMPTY_IDS = new int[0];
+  private static final long[] EMPTY_TIMESTAMPS = new long[0];
+
+  private int[] ids;
+  private long[] timestamps;
+  private int size;
+
+  public NeighborList() {
+    this.ids = EMPTY_IDS;
+    this.timestamps = EMPTY_TIMESTAMPS;
+  }
+
+  public NeighborList(int initialCapacity) {
+    this.ids = new int[initialCapacity];
+    this.timestamps = new long[initialCapacity];
+  }
+
+  /**
+   * Callback used for iterating the edges without exposing the backing arrays
+   */
+  @FunctionalInterface
+  public interface EdgeConsumer {
+    void accept(int id, long timestamp);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int idAt(int index) {
+    checkIndex(index);
+    return ids[index];
+  }
+
+  public long timestampAt(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /**
+   * This method inserts a new edge while keeping the list sorted by timestamp.
+   * Edges with an equal timestamp keep their arrival order, so in-order arrivals are a plain append.
+   * @param id
+   * @param timestamp
+   * @return the index the edge was inserted at
+   */
+  public int insert(int id, long timestamp) {
+    int insertIdx = (size == 0 || timestamps[size - 1] <= timestamp) ? size : upperBound(timestamp);
+    ensureCapacity(size + 1);
+    if (insertIdx < size) {
+      System.arraycopy(ids, insertIdx, ids, insertIdx + 1, size - insertIdx);
+      System.arraycopy(timestamps, insertIdx, timestamps, insertIdx + 1, size - insertIdx);
+    }
+    ids[insertIdx] = id;
+    timestamps[insertIdx] = timestamp;
+    size++;
+    return insertIdx;
+  }
+
+  /**
+   * This method appends an edge without checking the order, the caller must guarantee that the timestamp is
+   * not smaller than the last timestamp in the list
+   * @param id
+   * @param timestamp
+   */
+  public void append(int id, long timestamp) {
+    ensureCapacity(size + 1);
+    ids[size] = id;
+    timestamps[size] = timestamp;
+    size++;
+  }
+
+  /**
+   * This method removes the edge at the given index
+   * @param index
+   */
+  public void removeAt(int index) {
+    checkIndex(index);
+    System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+    System.arraycopy(timestamps, index + 1, timestamps, index, size - index - 1);
+    size--;
+  }
+
+  /**
+   * @param timestamp
+   * @return the index of the first edge with a timestamp >= the given timestamp, or size if there is none
+   */
+  public int lowerBound(long timestamp) {
+    int left = 0, right = size;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (timestamps[mid] < timestamp) {
+        left = mid + 1;
+      } else {
+        right = mid;
+      }
+    }
+    return left;
+  }
+
+  /**
+   * @param timestamp
+   * @return the index of the first edge with a timestamp > the given timestamp, or size if there is none
+   */
+  public int upperBound(long timestamp) {
+    int left = 0, right = size;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (timestamps[mid] <= timestamp) {
+        left = mid + 1;
+      } else {
+        right = mid;
+      }
+    }
+    return left;
+  }
+
+  /**
+   * This method returns the edges with a timestamp in [startTime, endTime]
+   * @param startTime
+   * @param endTime
+   * @return a new list holding the edges of the window
+   */
+  public NeighborList range(long startTime, long endTime) {
+    int from = lowerBound(startTime);
+    int to = Math.max(from, upperBound(endTime));
+    return copyOfRange(from, to);
+  }
+
+  /**
+   * @param startTime
+   * @param endTime
+   * @return the number of edges with a timestamp in [startTime, endTime], without copying them
+   */
+  public int countRange(long startTime, long endTime) {
+    int from = lowerBound(startTime);
+    return Math.max(0, upperBound(endTime) - from);
+  }
+
+  /**
+   * @param from inclusive
+   * @param to exclusive
+   * @return a new list holding the edges in [from, to)
+   */
+  public NeighborList copyOfRange(int from, int to) {
+    if (from < 0 || to > size || from > to) {
+      throw new IndexOutOfBoundsException(String.format("[%d, %d) of %d", from, to, size));
+    }
+    NeighborList copy = new NeighborList();
+    copy.ids = Arrays.copyOfRange(ids, from, to);
+    copy.timestamps = Arrays.copyOfRange(timestamps, from, to);
+    copy.size = to - from;
+    return copy;
+  }
+
+  /**
+   * @param count
+   * @return a new list holding the first count edges, and the edges that have the same timestamp as the last of
+   * them, so that edges with an equal timestamp are never split
+   */
+  public NeighborList head(int count) {
+    if (count <= 0) {
+      return new NeighborList();
+    }
+    return copyOfRange(0, count >= size ? size : upperBound(timestamps[count - 1]));
+  }
+
+  /**
+   * @param count
+   * @return a new list holding the last count edges, and the edges that have the same timestamp as the first of
+   * them, so that edges with an equal timestamp are never split
+   */
+  public NeighborList tail(int count) {
+    if (count <= 0) {
+      return new NeighborList();
+    }
+    return copyOfRange(count >= size ? 0 : lowerBound(timestamps[size - count]), size);
+  }
+
+  /**
+   * This method sorts the edges with an equal timestamp by neighbor id, which orders the list the same way no
+   * matter in which order the edges arrived
+   */
+  public void sortTiesById() {
+    int runStart = 0;
+    for (int i = 1; i <= size; i++) {
+      if (i == size || timestamps[i] != timestamps[runStart]) {
+        if (i - runStart > 1) {
+          // the timestamps of the run are all equal, so only the ids move
+          Arrays.sort(ids, runStart, i);
+        }
+        runStart = i;
+      }
+    }
+  }
+
+  /**
+   * This method merges two lists that are each sorted by timestamp into a new sorted list.
+   * For equal timestamps the edges of the first list come first.
+   * @param first
+   * @param second
+   * @return the merged list
+   */
+  public static NeighborList merge(NeighborList first, NeighborList second) {
+    NeighborList merged = new NeighborList(first.size + second.size);
+    int i = 0, j = 0;
+    while (i < first.size && j < second.size) {
+      if (first.timestamps[i] <= second.timestamps[j]) {
+        merged.append(first.ids[i], first.timestamps[i++]);
+      } else {
+        merged.append(second.ids[j], second.timestamps[j++]);
+      }
+    }
+    while (i < first.size) {
+      merged.append(first.ids[i], first.timestamps[i++]);
+    }
+    while (j < second.size) {
+      merged.append(second.ids[j], second.timestamps[j++]);
+    }
+    return merged;
+  }
+
+  public void forEach(EdgeConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      consumer.accept(ids[i], timestamps[i]);
+    }
+  }
+
+  /**
+   * @return the ids of all the distinct neighbors in the list, in ascending id order
+   */
+  public int[] distinctIds() {
+    if (size == 0) {
+      return EMPTY_IDS;
+    }
+    int[] sorted = Arrays.copyOf(ids, size);
+    Arrays.sort(sorted);
+    int distinct = 1;
+    for (int i = 1; i < sorted.length; i++) {
+      if (sorted[i] != sorted[distinct - 1]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+    return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+  }
+
+  /**
+   * This method creates a string representation of the list in the form [(id,timestamp), ...], which is the same
+   * representation the list of CustomTuple2 used to have
+   * @return
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size * 16 + 2).append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append('(').append(ids[i]).append(',').append(timestamps[i]).append(')');
+    }
+    return builder.append(']').toString();
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > ids.length) {
+      int newCapacity = Math.max(capacity, Math.max(8, ids.length + (ids.length >> 1)));
+      ids = Arrays.copyOf(ids, newCapacity);
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Versioned binary codec for the neighbor lists kept in the IN_NEIGHBORS and OUT_NEIGHBORS state.
+ *
+ * The lists are sorted by timestamp, so instead of writing every (id, timestamp) pair as a JSON object we write
+ * the difference to the previous pair. Format version 1 is laid out as
+ * <pre>
+ *   [version byte][varint size]([zig-zag varint id delta][zig-zag varint timestamp delta])*
+ * </pre>
+ * The timestamp deltas are zig-zag encoded as well, so a list that is not perfectly sorted still round-trips.
+ *
+ * State that was written by the previous Jackson based type starts with a JSON array and is still readable,
+ * the next write of that state value then migrates it to the binary format.
+ */
+public final class NeighborListCodec {
+
+  static final int VERSION_1 = 1;
+
+  private static final ObjectMapper LEGACY_JSON_MAPPER = new ObjectMapper();
+
+  private NeighborListCodec() {
+  }
+
+  /**
+   * This method serializes a neighbor list into the current binary format
+   * @param neighbors
+   * @return encoded bytes
+   */
+  public static byte[] serialize(NeighborList neighbors) {
+    VarIntWriter writer = new VarIntWriter(2 + neighbors.size() * 4);
+    writer.writeByte(VERSION_1);
+    writeTo(writer, neighbors);
+    return writer.toByteArray();
+  }
+
+  /**
+   * This method deserializes a neighbor list, accepting both the binary format and the legacy JSON format
+   * @param bytes
+   * @return the neighbor list
+   * @throws IOException if the legacy JSON payload can not be parsed
+   */
+  public static NeighborList deserialize(byte[] bytes) throws IOException {
+    if (isLegacyJson(bytes)) {
+      return fromLegacyJson(bytes);
+    }
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unsupported neighbor list format version " + version);
+    }
+    return readFrom(reader);
+  }
+
+  /**
+   * This method writes the size and the delta encoded edges of a neighbor list, without a version byte, so that
+   * other binary types can embed neighbor lists
+   * @param writer
+   * @param neighbors
+   */
+  public static void writeTo(VarIntWriter writer, NeighborList neighbors) {
+    writer.writeVarInt(neighbors.size());
+    int prevId = 0;
+    long prevTimestamp = 0;
+    for (int i = 0; i < neighbors.size(); i++) {
+      int id = neighbors.idAt(i);
+      long timestamp = neighbors.timestampAt(i);
+      writer.writeZigZagInt(id - prevId);
+      writer.writeZigZagLong(timestamp - prevTimestamp);
+      prevId = id;
+      prevTimestamp = timestamp;
+    }
+  }
+
+  /**
+   * This method reads a neighbor list written by {@link #writeTo(VarIntWriter, NeighborList)}
+   * @param reader
+   * @return the neighbor list
+   */
+  public static NeighborList readFrom(VarIntReader reader) {
+    int size = reader.readVarInt();
+    NeighborList neighbors = new NeighborList(size);
+    int id = 0;
+    long timestamp = 0;
+    for (int i = 0; i < size; i++) {
+      id += reader.readZigZagInt();
+      timestamp += reader.readZigZagLong();
+      neighbors.append(id, timestamp);
+    }
+    return neighbors;
+  }
+
+  private static NeighborList fromLegacyJson(byte[] bytes) throws IOException {
+    List<CustomTuple2<Integer, Long>> tuples =
+        LEGACY_JSON_MAPPER.readValue(bytes, new TypeReference<List<CustomTuple2<Integer, Long>>>() {});
+    NeighborList neighbors = new NeighborList(tuples.size());
+    for (CustomTuple2<Integer, Long> tuple : tuples) {
+      int id = tuple.getField(0);
+      long timestamp = tuple.getField(1);
+      neighbors.append(id, timestamp);
+    }
+    return neighbors;
+  }
+
+  /**
+   * The binary format starts with a small version number, whereas Jackson wrote the list as a JSON array
+   * @param bytes
+   * @return true if the bytes hold a JSON encoded list
+   */
+  static boolean isLegacyJson(byte[] bytes) {
+    for (byte b : bytes) {
+      if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+        continue;
+      }
+      return b == '[';
+    }
+    return false;
+  }
+}
@@ -0,0 +1,93 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class cuts one page out of the edges of a vertex, see {@link PageRequest}. The edges of the page are kept
+ * sorted by timestamp, with equal timestamps sorted by neighbor id, also for a page in descending order, which is
+ * reversed when it is written.
+ *
+ * Only the edges of the page and the edges with the same timestamp as its ends are copied, so cutting a page out of
+ * a large neighbor list costs a binary search and the size of the page.
+ */
+public final class NeighborPage {
+
+  private final NeighborList edges;
+  private final EdgeCursor next;
+
+  private NeighborPage(NeighborList edges, EdgeCursor next) {
+    this.edges = edges;
+    this.next = next;
+  }
+
+  /**
+   * @return the edges of the page, in ascending timestamp order
+   */
+  public NeighborList getEdges() { return edges; }
+
+  /**
+   * @return the position after the page, null if there are no edges after it
+   */
+  public EdgeCursor getNext() { return next; }
+
+  /**
+   * This method cuts a page out of the edges
+   * @param sortedEdges the edges sorted by timestamp, in the order of the neighbor list
+   * @param cursor the page starts after this position, null to start from the first edge
+   * @param descending true to page from the newest edge to the oldest
+   * @param limit the most edges of the page, at least 1
+   * @return the page
+   */
+  public static NeighborPage of(NeighborList sortedEdges, EdgeCursor cursor, boolean descending, int limit) {
+    int offset = cursor == null ? 0 : cursor.getOffset();
+    if (descending) {
+      int end = cursor == null ? sortedEdges.size() : sortedEdges.upperBound(cursor.getTimestamp());
+      int start = (int) Math.max(0, (long) end - offset - limit);
+      if (start > 0) {
+        start = sortedEdges.lowerBound(sortedEdges.timestampAt(start));
+      }
+      NeighborList candidates = sortedEdges.copyOfRange(start, end);
+      candidates.sortTiesById();
+      int skip = cursor == null ? 0 : skipped(candidates, cursor, candidates.size() - 1, -1);
+      int pageEnd = candidates.size() - skip;
+      int pageStart = Math.max(0, pageEnd - limit);
+      NeighborList page = candidates.copyOfRange(pageStart, pageEnd);
+      boolean more = start + pageStart > 0;
+      return new NeighborPage(page, more ? nextCursor(page, 0, cursor, skip) : null);
+    }
+    int from = cursor == null ? 0 : sortedEdges.lowerBound(cursor.getTimestamp());
+    int to = (int) Math.min(sortedEdges.size(), (long) from + offset + limit);
+    if (to > from && to < sortedEdges.size()) {
+      to = sortedEdges.upperBound(sortedEdges.timestampAt(to - 1));
+    }
+    NeighborList candidates = sortedEdges.copyOfRange(from, to);
+    candidates.sortTiesById();
+    int skip = cursor == null ? 0 : skipped(candidates, cursor, 0, 1);
+    NeighborList page = candidates.copyOfRange(skip, Math.min(candidates.size(), skip + limit));
+    boolean more = from + skip + page.size() < sortedEdges.size();
+    return new NeighborPage(page, more ? nextCursor(page, page.size() - 1, cursor, skip) : null);
+  }
+
+  /**
+   * @return how many edges at the cursor end of the candidates were already returned, the edges with the timestamp
+   * of the cursor that have expired since are not counted
+   */
+  private static int skipped(NeighborList candidates, EdgeCursor cursor, int first, int step) {
+    int skip = 0;
+    for (int i = first; skip < cursor.getOffset() && i >= 0 && i < candidates.size()
+        && candidates.timestampAt(i) == cursor.getTimestamp(); i += step) {
+      skip++;
+    }
+    return skip;
+  }
+
+  /**
+   * @return the position after the last edge of the page, which is at index last
+   */
+  private static EdgeCursor nextCursor(NeighborList page, int last, EdgeCursor cursor, int skip) {
+    long timestamp = page.timestampAt(last);
+    int offset = page.countRange(timestamp, timestamp);
+    if (cursor != null && cursor.getTimestamp() == timestamp) {
+      offset += skip;
+    }
+    return new EdgeCursor(timestamp, offset);
+  }
+}
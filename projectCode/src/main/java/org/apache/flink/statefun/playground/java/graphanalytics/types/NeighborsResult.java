@@ -0,0 +1,202 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class defines the result record of the IN_EDGES, OUT_EDGES and TIME_WINDOW queries: the edges of a vertex as
+ * parallel arrays of neighbor ids and timestamps, in the order of the neighbor list (by timestamp).
+ * start_time and end_time are only set for the TIME_WINDOW query.
+ *
+ * A result that is paged or too large for one record is sent as a chunk of a page (see {@link PageRequest}), which
+ * also has the order of its edges, next_cursor, the continuation token of the edges after the chunk if there are
+ * any, and last_chunk, which is true for the last chunk of the page.
+ *
+ * The binary layout after the {@link ResultRecord} header is
+ * <pre>
+ *   [zig-zag varint vertex_id]([zig-zag varint start_time][zig-zag varint end_time])?[neighbor list]
+ * </pre>
+ * where the times are only present for the KIND_TIME_WINDOW kind, and the neighbor list is written like the neighbor
+ * list state, see {@link NeighborListCodec#writeTo}. A chunk has the KIND_NEIGHBORS_PAGE kind and the layout
+ * <pre>
+ *   [zig-zag varint vertex_id][flags byte]([zig-zag varint start_time][zig-zag varint end_time])?
+ *   ([zig-zag varint next_cursor timestamp][varint next_cursor offset])?[neighbor list]
+ * </pre>
+ * with the flags FLAG_TIME_WINDOW, FLAG_DESCENDING, FLAG_LAST_CHUNK and FLAG_NEXT_CURSOR. The neighbor list of a
+ * chunk is always in ascending order, FLAG_DESCENDING tells that it was sent newest first.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"vertex_id", "start_time", "end_time", "order", "count", "neighbors", "timestamps", "next_cursor",
+    "last_chunk"})
+public class NeighborsResult implements ResultRecord {
+
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+  private static final int FLAG_TIME_WINDOW = 1;
+  private static final int FLAG_DESCENDING = 2;
+  private static final int FLAG_LAST_CHUNK = 4;
+  private static final int FLAG_NEXT_CURSOR = 8;
+
+  @JsonProperty("vertex_id")
+  private int vertexId;
+
+  @JsonProperty("start_time")
+  private Long startTime;
+
+  @JsonProperty("end_time")
+  private Long endTime;
+
+  @JsonIgnore
+  private NeighborList neighbors;
+
+  // the fields of a chunk, not set for a result that is sent as a single record
+  @JsonProperty("order")
+  private String order;
+
+  @JsonIgnore
+  private EdgeCursor nextCursor;
+
+  @JsonProperty("last_chunk")
+  private Boolean lastChunk;
+
+  public NeighborsResult() {}
+
+  /**
+   * overloaded constructor
+   * @param vertexId
+   * @param startTime
+   * @param endTime
+   * @param neighbors
+   */
+  private NeighborsResult(int vertexId, Long startTime, Long endTime, NeighborList neighbors) {
+    this.vertexId = vertexId;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.neighbors = neighbors;
+  }
+
+  /**
+   * This method creates the result record of an IN_EDGES or OUT_EDGES query
+   *
+   * @param vertexId
+   * @param neighbors
+   * @return NeighborsResult
+   */
+  public static NeighborsResult of(int vertexId, NeighborList neighbors) {
+    return new NeighborsResult(vertexId, null, null, neighbors);
+  }
+
+  /**
+   * This method creates the result record of a TIME_WINDOW query
+   *
+   * @param vertexId
+   * @param startTime
+   * @param endTime
+   * @param neighbors the edges within the time window
+   * @return NeighborsResult
+   */
+  public static NeighborsResult ofTimeWindow(int vertexId, long startTime, long endTime, NeighborList neighbors) {
+    return new NeighborsResult(vertexId, startTime, endTime, neighbors);
+  }
+
+  /**
+   * This method turns the result into a chunk of a page
+   *
+   * @param descending true if the edges are sent newest first
+   * @param nextCursor the position after the edges of the chunk, null if there are no edges after them
+   * @param lastChunk true if no more chunks of the page follow
+   * @return NeighborsResult
+   */
+  public NeighborsResult asChunk(boolean descending, EdgeCursor nextCursor, boolean lastChunk) {
+    NeighborsResult chunk = new NeighborsResult(vertexId, startTime, endTime, neighbors);
+    chunk.order = descending ? PageRequest.ORDER_DESC : PageRequest.ORDER_ASC;
+    chunk.nextCursor = nextCursor;
+    chunk.lastChunk = lastChunk;
+    return chunk;
+  }
+
+  @Override
+  public int getVertexId() { return vertexId; }
+
+  @JsonProperty("count")
+  public int getCount() { return neighbors.size(); }
+
+  @JsonProperty("neighbors")
+  public int[] getNeighbors() {
+    int[] ids = new int[neighbors.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = neighbors.idAt(indexAt(i));
+    }
+    return ids;
+  }
+
+  @JsonProperty("timestamps")
+  public long[] getTimestamps() {
+    long[] timestamps = new long[neighbors.size()];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = neighbors.timestampAt(indexAt(i));
+    }
+    return timestamps;
+  }
+
+  @JsonProperty("next_cursor")
+  public String getNextCursor() {
+    return nextCursor == null ? null : nextCursor.toToken();
+  }
+
+  private boolean isDescending() {
+    return PageRequest.ORDER_DESC.equals(order);
+  }
+
+  private int indexAt(int position) {
+    return isDescending() ? neighbors.size() - 1 - position : position;
+  }
+
+  @Override
+  public byte[] toJsonBytes() {
+    try {
+      return JSON_MAPPER.writeValueAsBytes(this);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize the edges of vertex " + vertexId, e);
+    }
+  }
+
+  @Override
+  public byte[] toBinary() {
+    if (lastChunk != null) {
+      return chunkToBinary();
+    }
+    VarIntWriter writer = new VarIntWriter(24 + neighbors.size() * 4);
+    writer.writeByte(BINARY_VERSION_1);
+    writer.writeByte(startTime == null ? KIND_NEIGHBORS : KIND_TIME_WINDOW);
+    writer.writeZigZagInt(vertexId);
+    if (startTime != null) {
+      writer.writeZigZagLong(startTime);
+      writer.writeZigZagLong(endTime);
+    }
+    NeighborListCodec.writeTo(writer, neighbors);
+    return writer.toByteArray();
+  }
+
+  private byte[] chunkToBinary() {
+    VarIntWriter writer = new VarIntWriter(40 + neighbors.size() * 4);
+    writer.writeByte(BINARY_VERSION_1);
+    writer.writeByte(KIND_NEIGHBORS_PAGE);
+    writer.writeZigZagInt(vertexId);
+    writer.writeByte((startTime != null ? FLAG_TIME_WINDOW : 0) | (isDescending() ? FLAG_DESCENDING : 0)
+        | (lastChunk ? FLAG_LAST_CHUNK : 0) | (nextCursor != null ? FLAG_NEXT_CURSOR : 0));
+    if (startTime != null) {
+      writer.writeZigZagLong(startTime);
+      writer.writeZigZagLong(endTime);
+    }
+    if (nextCursor != null) {
+      writer.writeZigZagLong(nextCursor.getTimestamp());
+      writer.writeVarInt(nextCursor.getOffset());
+    }
+    NeighborListCodec.writeTo(writer, neighbors);
+    return writer.toByteArray();
+  }
+}
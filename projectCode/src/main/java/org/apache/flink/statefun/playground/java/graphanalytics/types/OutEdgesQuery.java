@@ -1,5 +1,6 @@
 package org.apache.flink.statefun.playground.java.graphanalytics.types;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -14,6 +15,11 @@ public class OutEdgesQuery {
     @JsonProperty("t")
     private long timestamp;
 
+    // only set for a GET_OUT_EDGES query that asks for a page of the edges
+    @JsonProperty("page")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PageRequest page;
+
     public OutEdgesQuery() {}
 
     /**
@@ -30,6 +36,11 @@ public class OutEdgesQuery {
 
     public long getTimestamp() { return timestamp; }
 
+    /**
+     * @return the page of the edges to return, null for all edges
+     */
+    public PageRequest getPage() { return page; }
+
 
     /**
      * This method is used for creating a new InEdgesQuery, please call InEdgesQuery.create(vertex_id, timestamp)
@@ -42,4 +53,18 @@ public class OutEdgesQuery {
     public static OutEdgesQuery create(int vertexId, long timestamp) {
         return new OutEdgesQuery(vertexId, timestamp);
     }
+
+    /**
+     * This method creates a new OutEdgesQuery for a page of the edges
+     *
+     * @param vertexId
+     * @param timestamp
+     * @param page null for all edges
+     * @return OutEdgesQuery
+     */
+    public static OutEdgesQuery create(int vertexId, long timestamp, PageRequest page) {
+        OutEdgesQuery query = new OutEdgesQuery(vertexId, timestamp);
+        query.page = page;
+        return query;
+    }
 }
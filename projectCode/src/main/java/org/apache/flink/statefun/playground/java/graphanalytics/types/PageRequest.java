@@ -0,0 +1,98 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Locale;
+
+/**
+ * This class defines which page of the edges the GET_IN_EDGES, GET_OUT_EDGES and GET_TIME_WINDOW_EDGES queries
+ * return: at most limit edges (all of them if the limit is 0), starting after the cursor (from the first edge if
+ * there is none), in ascending or descending timestamp order.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PageRequest {
+
+  public static final String ORDER_ASC = "asc";
+  public static final String ORDER_DESC = "desc";
+
+  @JsonProperty("limit")
+  private int limit;
+
+  // continuation token of an EdgeCursor
+  @JsonProperty("cursor")
+  private String cursor;
+
+  @JsonProperty("order")
+  private String order;
+
+  public PageRequest() {}
+
+  /**
+   * overloaded constructor
+   * @param limit
+   * @param cursor
+   * @param order
+   */
+  private PageRequest(int limit, String cursor, String order) {
+    this.limit = limit;
+    this.cursor = cursor;
+    this.order = order;
+  }
+
+  /**
+   * @return the most edges of the page, 0 for all edges
+   */
+  public int getLimit() { return limit; }
+
+  /**
+   * @return the position the page starts after, null to start from the first edge
+   */
+  @JsonIgnore
+  public EdgeCursor getCursor() {
+    return cursor == null ? null : EdgeCursor.parse(cursor);
+  }
+
+  @JsonIgnore
+  public boolean isDescending() {
+    return ORDER_DESC.equals(order);
+  }
+
+  /**
+   * This method returns the request for the rest of this page, once a part of it has been sent
+   * @param next the position after the edges that were sent
+   * @param sentEdges the number of edges that were sent
+   * @return PageRequest
+   */
+  public PageRequest continueAt(EdgeCursor next, int sentEdges) {
+    return new PageRequest(limit == 0 ? 0 : limit - sentEdges, next.toToken(), order);
+  }
+
+  /**
+   * This method is used for creating a new PageRequest, please call PageRequest.create(limit, cursor, order)
+   * to create an object of this class
+   *
+   * @param limit the most edges of the page, 0 for all edges
+   * @param cursor continuation token of a previous page, null or empty to start from the first edge
+   * @param order asc or desc, null or empty for asc
+   * @return PageRequest
+   * @throws IllegalArgumentException if a parameter is invalid
+   */
+  public static PageRequest create(int limit, String cursor, String order) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit must not be negative, but was " + limit);
+    }
+    if (cursor != null && cursor.isEmpty()) {
+      cursor = null;
+    }
+    if (cursor != null) {
+      EdgeCursor.parse(cursor);
+    }
+    String normalizedOrder = order == null || order.isEmpty() ? ORDER_ASC : order.toLowerCase(Locale.ROOT);
+    if (!ORDER_ASC.equals(normalizedOrder) && !ORDER_DESC.equals(normalizedOrder)) {
+      throw new IllegalArgumentException(String.format("order must be one of asc or desc, but was '%s'", order));
+    }
+    return new PageRequest(limit, cursor, normalizedOrder);
+  }
+}
@@ -0,0 +1,146 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the queries a sharded vertex has scattered to its shards and is still collecting edges for.
+ * Every entry keeps the original query message, so that the query can be run once all shards have answered.
+ *
+ * The edge counts of the entries are written after all the entries, so that state written before the counts existed
+ * can still be read.
+ */
+public class PendingShardScans {
+
+  /**
+   * A query that waits for the answers of the shards
+   */
+  public static final class Entry {
+    private final long requestId;
+    private final String typeName;
+    private final byte[] payload;
+    private int remaining;
+    private NeighborList edges;
+    private long count;
+
+    private Entry(long requestId, String typeName, byte[] payload, int remaining, NeighborList edges) {
+      this.requestId = requestId;
+      this.typeName = typeName;
+      this.payload = payload;
+      this.remaining = remaining;
+      this.edges = edges;
+    }
+
+    public long getRequestId() { return requestId; }
+
+    /**
+     * @return type name of the original query message
+     */
+    public String getTypeName() { return typeName; }
+
+    /**
+     * @return serialized value of the original query message
+     */
+    public byte[] getPayload() { return payload; }
+
+    public NeighborList getEdges() { return edges; }
+
+    /**
+     * @return the sum of the edge counts of the shards that have answered
+     */
+    public long getCount() { return count; }
+
+    public boolean isComplete() { return remaining <= 0; }
+
+    /**
+     * This method merges the edges of one shard into the collected edges, and adds its count to the collected count
+     * @param result
+     */
+    public void addShardResult(ShardScanResult result) {
+      edges = NeighborList.merge(edges, result.getEdges());
+      count += result.getCount();
+      remaining--;
+    }
+  }
+
+  private long nextRequestId;
+  private final List<Entry> entries;
+
+  public PendingShardScans() {
+    this(0, new ArrayList<>());
+  }
+
+  private PendingShardScans(long nextRequestId, List<Entry> entries) {
+    this.nextRequestId = nextRequestId;
+    this.entries = entries;
+  }
+
+  /**
+   * This method registers a new query that waits for the given number of shards
+   * @param typeName
+   * @param payload
+   * @param shards
+   * @return the request id of the query
+   */
+  public long add(String typeName, byte[] payload, int shards) {
+    long requestId = nextRequestId++;
+    entries.add(new Entry(requestId, typeName, payload, shards, new NeighborList()));
+    return requestId;
+  }
+
+  /**
+   * @param requestId
+   * @return the entry of the request, or null if there is no such request
+   */
+  public Entry find(long requestId) {
+    for (Entry entry : entries) {
+      if (entry.requestId == requestId) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  public void remove(Entry entry) {
+    entries.remove(entry);
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  static byte[] serialize(PendingShardScans pending) {
+    VarIntWriter writer = new VarIntWriter(64);
+    writer.writeVarLong(pending.nextRequestId);
+    writer.writeVarInt(pending.entries.size());
+    for (Entry entry : pending.entries) {
+      writer.writeVarLong(entry.requestId);
+      writer.writeUtf8(entry.typeName);
+      writer.writeBytes(entry.payload);
+      writer.writeVarInt(entry.remaining);
+      NeighborListCodec.writeTo(writer, entry.edges);
+    }
+    for (Entry entry : pending.entries) {
+      writer.writeVarLong(entry.count);
+    }
+    return writer.toByteArray();
+  }
+
+  static PendingShardScans deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    long nextRequestId = reader.readVarLong();
+    int size = reader.readVarInt();
+    List<Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      long requestId = reader.readVarLong();
+      String typeName = reader.readUtf8();
+      byte[] payload = reader.readBytes();
+      int remaining = reader.readVarInt();
+      entries.add(new Entry(requestId, typeName, payload, remaining, NeighborListCodec.readFrom(reader)));
+    }
+    for (int i = 0; i < size && reader.hasRemaining(); i++) {
+      entries.get(i).count = reader.readVarLong();
+    }
+    return new PendingShardScans(nextRequestId, entries);
+  }
+}
@@ -0,0 +1,165 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the results that a QueryResultAggregatorFn instance has collected for its query so far, together
+ * with the number of parts that are still outstanding. The results are kept sorted and without duplicates.
+ *
+ * It also collects the versions of the vertices that the parts were computed from, as long as every part has them,
+ * so that the complete result can be cached, see {@link VertexVersions}.
+ */
+public class QueryAggregate {
+
+  private static final int VERSION_1 = 1;
+  // adds the vertex versions
+  private static final int VERSION_2 = 2;
+
+  private String task;
+  private int vertexId;
+  private int k;
+  private boolean rootReceived;
+  // parts announced by the root part minus the other parts received, negative while the root part is missing
+  private int outstanding;
+  private long[] results;
+  // null once a part without versions was added
+  private VertexVersions versions;
+
+  private QueryAggregate(String task, int vertexId, int k, boolean rootReceived, int outstanding, long[] results,
+                         VertexVersions versions) {
+    this.task = task;
+    this.vertexId = vertexId;
+    this.k = k;
+    this.rootReceived = rootReceived;
+    this.outstanding = outstanding;
+    this.results = results;
+    this.versions = versions;
+  }
+
+  /**
+   * This method creates an empty aggregate, the query is described by the first part that gets added
+   * @return QueryAggregate
+   */
+  public static QueryAggregate create() {
+    return new QueryAggregate(null, 0, 0, false, 0, new long[0], new VertexVersions());
+  }
+
+  public String getTask() { return task; }
+
+  public int getVertexId() { return vertexId; }
+
+  public int getK() { return k; }
+
+  /**
+   * @return the results in ascending order without duplicates
+   */
+  public long[] getResults() { return results; }
+
+  /**
+   * @return the versions of the vertices the results were computed from, null if they are not known
+   */
+  public VertexVersions getVersions() { return versions; }
+
+  /**
+   * This method drops the versions, e.g. once there are too many of them to be worth keeping
+   */
+  public void forgetVersions() {
+    versions = null;
+  }
+
+  /**
+   * @return true once the root part and all the parts it has announced have been added
+   */
+  public boolean isComplete() {
+    return rootReceived && outstanding == 0;
+  }
+
+  /**
+   * This method adds a part, duplicate results are only kept once
+   * @param part
+   */
+  public void add(QueryResultPart part) {
+    if (task == null || part.isRoot()) {
+      task = part.getTask();
+      vertexId = part.getVertexId();
+      k = part.getK();
+    }
+    if (part.isRoot()) {
+      rootReceived = true;
+      outstanding += part.getCredits();
+    } else {
+      outstanding--;
+    }
+    long[] added = part.getResults().clone();
+    Arrays.sort(added);
+    results = union(results, added);
+    if (part.getVersions() == null) {
+      versions = null;
+    } else if (versions != null) {
+      versions.addAll(part.getVersions());
+    }
+  }
+
+  private static long[] union(long[] first, long[] second) {
+    long[] union = new long[first.length + second.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length || j < second.length) {
+      long next;
+      if (j == second.length || (i < first.length && first[i] <= second[j])) {
+        next = first[i++];
+      } else {
+        next = second[j++];
+      }
+      if (size == 0 || union[size - 1] != next) {
+        union[size++] = next;
+      }
+    }
+    return size == union.length ? union : Arrays.copyOf(union, size);
+  }
+
+  static byte[] serialize(QueryAggregate aggregate) {
+    VarIntWriter writer = new VarIntWriter(32 + aggregate.results.length * 4);
+    writer.writeByte(VERSION_2);
+    writer.writeUtf8(aggregate.task == null ? "" : aggregate.task);
+    writer.writeZigZagInt(aggregate.vertexId);
+    writer.writeVarInt(aggregate.k);
+    writer.writeByte(aggregate.rootReceived ? 1 : 0);
+    writer.writeZigZagInt(aggregate.outstanding);
+    writer.writeVarInt(aggregate.results.length);
+    long previous = 0;
+    for (long result : aggregate.results) {
+      writer.writeZigZagLong(result - previous);
+      previous = result;
+    }
+    writer.writeByte(aggregate.versions == null ? 0 : 1);
+    if (aggregate.versions != null) {
+      VertexVersions.writeTo(writer, aggregate.versions);
+    }
+    return writer.toByteArray();
+  }
+
+  static QueryAggregate deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1 && version != VERSION_2) {
+      throw new IllegalStateException("Unsupported query aggregate format version " + version);
+    }
+    String task = reader.readUtf8();
+    int vertexId = reader.readZigZagInt();
+    int k = reader.readVarInt();
+    boolean rootReceived = reader.readByte() == 1;
+    int outstanding = reader.readZigZagInt();
+    long[] results = new long[reader.readVarInt()];
+    long previous = 0;
+    for (int i = 0; i < results.length; i++) {
+      previous += reader.readZigZagLong();
+      results[i] = previous;
+    }
+    // an aggregate written before the versions existed does not know them
+    VertexVersions versions = version == VERSION_2 && reader.readByte() == 1 ? VertexVersions.readFrom(reader) : null;
+    return new QueryAggregate(task.isEmpty() ? null : task, vertexId, k, rootReceived, outstanding, results,
+        versions);
+  }
+}
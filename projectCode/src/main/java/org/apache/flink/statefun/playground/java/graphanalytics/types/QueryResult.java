@@ -0,0 +1,140 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class defines the single result record that is sent to the egress for a k-hop or triangle query.
+ * K-hop results are listed in nodes, triangle results in triangles as [vertex_id, second, third], which is the
+ * triangle (vertex_id -> second -> third, vertex_id -> third) for OUT_TRIANGLES and
+ * (third -> second -> vertex_id, third -> vertex_id) for IN_TRIANGLES.
+ * complete is false if the query timed out before all of its parts arrived, the record then holds the results
+ * found so far.
+ *
+ * The binary layout after the {@link ResultRecord} header is
+ * <pre>
+ *   [utf8 query_id][utf8 task][zig-zag varint vertex_id][varint k][complete byte]
+ *   ([sorted id list] | [varint count]([zig-zag varint second][zig-zag varint third])*)
+ * </pre>
+ * with the nodes of a k-hop query as a delta encoded sorted id list, see {@link SortedIntSets#writeTo}, and k set to
+ * 0 for the triangle queries.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryResult implements ResultRecord {
+
+  public static final String TASK_IN_K_HOP = "IN_K_HOP";
+  public static final String TASK_OUT_K_HOP = "OUT_K_HOP";
+  public static final String TASK_IN_TRIANGLES = "IN_TRIANGLES";
+  public static final String TASK_OUT_TRIANGLES = "OUT_TRIANGLES";
+
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+  @JsonProperty("query_id")
+  private String queryId;
+
+  @JsonProperty("task")
+  private String task;
+
+  @JsonProperty("vertex_id")
+  private int vertexId;
+
+  @JsonProperty("k")
+  private Integer k;
+
+  @JsonProperty("complete")
+  private boolean complete;
+
+  @JsonProperty("count")
+  private int count;
+
+  @JsonProperty("nodes")
+  private int[] nodes;
+
+  @JsonProperty("triangles")
+  private int[][] triangles;
+
+  public QueryResult() {}
+
+  public String getQueryId() { return queryId; }
+
+  public String getTask() { return task; }
+
+  @Override
+  public int getVertexId() { return vertexId; }
+
+  public boolean isComplete() { return complete; }
+
+  public int getCount() { return count; }
+
+  public static boolean isKHop(String task) {
+    return TASK_IN_K_HOP.equals(task) || TASK_OUT_K_HOP.equals(task);
+  }
+
+  /**
+   * This method creates the result record of a query from the results collected for it
+   *
+   * @param queryId
+   * @param aggregate
+   * @param complete
+   * @return QueryResult
+   */
+  public static QueryResult of(String queryId, QueryAggregate aggregate, boolean complete) {
+    QueryResult result = new QueryResult();
+    result.queryId = queryId;
+    result.task = aggregate.getTask();
+    result.vertexId = aggregate.getVertexId();
+    result.complete = complete;
+    long[] results = aggregate.getResults();
+    result.count = results.length;
+    if (isKHop(aggregate.getTask())) {
+      result.k = aggregate.getK();
+      result.nodes = new int[results.length];
+      for (int i = 0; i < results.length; i++) {
+        result.nodes[i] = (int) results[i];
+      }
+    } else {
+      result.triangles = new int[results.length][];
+      for (int i = 0; i < results.length; i++) {
+        result.triangles[i] = new int[] {
+            aggregate.getVertexId(),
+            QueryResultPart.triangleSecondId(results[i]),
+            QueryResultPart.triangleThirdId(results[i])
+        };
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public byte[] toJsonBytes() {
+    try {
+      return JSON_MAPPER.writeValueAsBytes(this);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize the result of query " + queryId, e);
+    }
+  }
+
+  @Override
+  public byte[] toBinary() {
+    VarIntWriter writer = new VarIntWriter(32 + count * 4);
+    writer.writeByte(BINARY_VERSION_1);
+    writer.writeByte(KIND_QUERY_RESULT);
+    writer.writeUtf8(queryId == null ? "" : queryId);
+    writer.writeUtf8(task == null ? "" : task);
+    writer.writeZigZagInt(vertexId);
+    writer.writeVarInt(k == null ? 0 : k);
+    writer.writeByte(complete ? 1 : 0);
+    if (nodes != null) {
+      SortedIntSets.writeTo(writer, nodes);
+    } else {
+      writer.writeVarInt(triangles.length);
+      for (int[] triangle : triangles) {
+        writer.writeZigZagInt(triangle[1]);
+        writer.writeZigZagInt(triangle[2]);
+      }
+    }
+    return writer.toByteArray();
+  }
+}
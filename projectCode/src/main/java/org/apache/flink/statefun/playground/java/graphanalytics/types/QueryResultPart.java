@@ -0,0 +1,183 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class defines a part of the result of a query, which the functions working on the query send to the
+ * QueryResultAggregatorFn instance of the query id.
+ *
+ * The first function of a query sends the root part, which announces how many further parts are going to follow
+ * (its credits). Every other part is one of those, so the aggregator knows that the query is complete once it has
+ * the root part and as many further parts as the root has announced, no matter in which order they arrive.
+ *
+ * The results are encoded as longs: a k-hop result is the node id, a triangle result holds the id of the second
+ * vertex of the triangle in the high and the id of the third vertex in the low 32 bits, see {@link #triangle}.
+ *
+ * A part can carry the versions of the vertices its results were computed from (see {@link VertexVersions}), so that
+ * the complete result can be cached by the queried vertex until one of them changes.
+ */
+public class QueryResultPart {
+
+  private static final int VERSION_1 = 1;
+  // adds the vertex versions
+  private static final int VERSION_2 = 2;
+  private static final long[] NO_RESULTS = new long[0];
+
+  private final String task;
+  private final int vertexId;
+  private final int k;
+  private final boolean root;
+  private final int credits;
+  private final long[] results;
+  // null if the part does not know which vertices its results depend on
+  private final VertexVersions versions;
+
+  private QueryResultPart(String task, int vertexId, int k, boolean root, int credits, long[] results,
+                          VertexVersions versions) {
+    this.task = task;
+    this.vertexId = vertexId;
+    this.k = k;
+    this.root = root;
+    this.credits = credits;
+    this.results = results;
+    this.versions = versions;
+  }
+
+  public String getTask() { return task; }
+
+  public int getVertexId() { return vertexId; }
+
+  public int getK() { return k; }
+
+  public boolean isRoot() { return root; }
+
+  public int getCredits() { return credits; }
+
+  public long[] getResults() { return results; }
+
+  /**
+   * @return the versions of the vertices the results were computed from, null if they are not known
+   */
+  public VertexVersions getVersions() { return versions; }
+
+  /**
+   * This method creates the root part of a query
+   *
+   * @param task the execute task of the query, e.g. OUT_TRIANGLES
+   * @param vertexId the queried vertex
+   * @param k number of hops of a k-hop query, 0 for other queries
+   * @param credits number of further parts that are going to be sent for the query
+   * @param results
+   * @return QueryResultPart
+   */
+  public static QueryResultPart root(String task, int vertexId, int k, int credits, long[] results) {
+    return root(task, vertexId, k, credits, results, null);
+  }
+
+  /**
+   * This method creates the root part of a query, whose results were computed from the given vertex versions
+   *
+   * @param task the execute task of the query, e.g. OUT_TRIANGLES
+   * @param vertexId the queried vertex
+   * @param k number of hops of a k-hop query, 0 for other queries
+   * @param credits number of further parts that are going to be sent for the query
+   * @param results
+   * @param versions the versions of the vertices the results were computed from, null if they are not known
+   * @return QueryResultPart
+   */
+  public static QueryResultPart root(String task, int vertexId, int k, int credits, long[] results,
+                                     VertexVersions versions) {
+    return new QueryResultPart(task, vertexId, k, true, credits, results, versions);
+  }
+
+  /**
+   * This method creates one of the parts that the root part has announced
+   *
+   * @param task the execute task of the query, e.g. OUT_TRIANGLES
+   * @param vertexId the queried vertex
+   * @param results
+   * @return QueryResultPart
+   */
+  public static QueryResultPart create(String task, int vertexId, long[] results) {
+    return create(task, vertexId, results, null);
+  }
+
+  /**
+   * This method creates one of the parts that the root part has announced, whose results were computed from the
+   * given vertex versions
+   *
+   * @param task the execute task of the query, e.g. OUT_TRIANGLES
+   * @param vertexId the queried vertex
+   * @param results
+   * @param versions the versions of the vertices the results were computed from, null if they are not known
+   * @return QueryResultPart
+   */
+  public static QueryResultPart create(String task, int vertexId, long[] results, VertexVersions versions) {
+    return new QueryResultPart(task, vertexId, 0, false, 0, results == null ? NO_RESULTS : results, versions);
+  }
+
+  /**
+   * @param secondId the vertex that the triangle pass was performed on
+   * @param thirdId the vertex that closes the triangle
+   * @return the triangle encoded as a result
+   */
+  public static long triangle(int secondId, int thirdId) {
+    return ((long) secondId << 32) | (thirdId & 0xFFFFFFFFL);
+  }
+
+  public static int triangleSecondId(long result) {
+    return (int) (result >>> 32);
+  }
+
+  public static int triangleThirdId(long result) {
+    return (int) result;
+  }
+
+  /**
+   * @return the triangles of a triangle query part as [vertex_id, second, third], for logging
+   */
+  public String trianglesToString() {
+    StringBuilder triangles = new StringBuilder("[");
+    for (int i = 0; i < results.length; i++) {
+      triangles.append(i == 0 ? "[" : ", [").append(vertexId).append(", ").append(triangleSecondId(results[i]))
+          .append(", ").append(triangleThirdId(results[i])).append(']');
+    }
+    return triangles.append(']').toString();
+  }
+
+  static byte[] serialize(QueryResultPart part) {
+    VarIntWriter writer = new VarIntWriter(32 + part.results.length * 4);
+    writer.writeByte(VERSION_2);
+    writer.writeUtf8(part.task);
+    writer.writeZigZagInt(part.vertexId);
+    writer.writeVarInt(part.k);
+    writer.writeByte(part.root ? 1 : 0);
+    writer.writeVarInt(part.credits);
+    writer.writeVarInt(part.results.length);
+    for (long result : part.results) {
+      writer.writeZigZagLong(result);
+    }
+    writer.writeByte(part.versions == null ? 0 : 1);
+    if (part.versions != null) {
+      VertexVersions.writeTo(writer, part.versions);
+    }
+    return writer.toByteArray();
+  }
+
+  static QueryResultPart deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1 && version != VERSION_2) {
+      throw new IllegalStateException("Unsupported query result part format version " + version);
+    }
+    String task = reader.readUtf8();
+    int vertexId = reader.readZigZagInt();
+    int k = reader.readVarInt();
+    boolean root = reader.readByte() == 1;
+    int credits = reader.readVarInt();
+    long[] results = new long[reader.readVarInt()];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = reader.readZigZagLong();
+    }
+    VertexVersions versions = version == VERSION_2 && reader.readByte() == 1 ? VertexVersions.readFrom(reader) : null;
+    return new QueryResultPart(task, vertexId, k, root, credits, results, versions);
+  }
+}
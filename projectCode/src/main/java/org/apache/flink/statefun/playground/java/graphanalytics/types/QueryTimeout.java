@@ -0,0 +1,36 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the message a QueryResultAggregatorFn instance sends to itself when it starts collecting a
+ * query, to report the results found so far if the query does not complete in time.
+ */
+public class QueryTimeout {
+
+  @JsonProperty("query_id")
+  private String queryId;
+
+  public QueryTimeout() {}
+
+  /**
+   * overloaded constructor
+   * @param queryId
+   */
+  private QueryTimeout(String queryId) {
+    this.queryId = queryId;
+  }
+
+  public String getQueryId() { return queryId; }
+
+  /**
+   * This method is used for creating a new QueryTimeout, please call QueryTimeout.create(query_id)
+   * to create an object of this class
+   *
+   * @param queryId
+   * @return QueryTimeout
+   */
+  public static QueryTimeout create(String queryId) {
+    return new QueryTimeout(queryId);
+  }
+}
@@ -0,0 +1,176 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class keeps the best recommendation candidates of a vertex, at most a given number of them, ranked by a score
+ * that counts how often a candidate was suggested, with older suggestions counting less.
+ *
+ * A suggestion adds 1 to the score of its candidate, and all scores decay by half every halfLifeSeconds of event time.
+ * The scores are kept as of the newest suggestion (the reference time), so that they can be compared without
+ * decaying them first. Once the candidates are full, a new candidate takes the place of the lowest ranked one and
+ * starts from its score (space saving), so a candidate that keeps being suggested gets in even if the others have
+ * been suggested more often in total.
+ *
+ * The candidates are kept in parallel arrays in rank order, so a query reads them as they are. Updating a candidate
+ * scans and shifts at most capacity entries.
+ *
+ * The binary layout is
+ * <pre>
+ *   [zig-zag varlong reference_time][varint size]([zig-zag varint id][varint score float bits])*
+ * </pre>
+ */
+public final class RecommendScores {
+
+  private long referenceTime;
+  private int size;
+  private int[] ids;
+  // in descending order
+  private float[] scores;
+
+  public RecommendScores() {
+    this(Long.MIN_VALUE, 0, new int[8], new float[8]);
+  }
+
+  private RecommendScores(long referenceTime, int size, int[] ids, float[] scores) {
+    this.referenceTime = referenceTime;
+    this.size = size;
+    this.ids = ids;
+    this.scores = scores;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param rank
+   * @return the candidate of the given rank, 0 being the best
+   */
+  public int idAt(int rank) {
+    return ids[rank];
+  }
+
+  /**
+   * @param rank
+   * @return the score of the candidate of the given rank as of the newest suggestion
+   */
+  public float scoreAt(int rank) {
+    return scores[rank];
+  }
+
+  /**
+   * This method adds a suggestion of a candidate
+   * @param candidate
+   * @param timestamp event time of the suggestion, Long.MIN_VALUE if it is not known
+   * @param capacity the most candidates that are kept
+   * @param halfLifeSeconds the time after which a suggestion counts half, 0 for no decay
+   */
+  public void add(int candidate, long timestamp, int capacity, long halfLifeSeconds) {
+    float weight = 1f;
+    if (timestamp != Long.MIN_VALUE) {
+      if (timestamp > referenceTime) {
+        if (referenceTime != Long.MIN_VALUE) {
+          decay(decayFactor(timestamp - referenceTime, halfLifeSeconds));
+        }
+        referenceTime = timestamp;
+      } else {
+        // a late suggestion counts as much as if it had been decayed since
+        weight = decayFactor(referenceTime - timestamp, halfLifeSeconds);
+      }
+    }
+    // the capacity may have been lowered since the scores were stored
+    size = Math.max(0, Math.min(size, capacity));
+
+    int rank = indexOf(candidate);
+    if (rank < 0) {
+      if (size < capacity) {
+        ensureCapacity(size + 1);
+        rank = size++;
+        ids[rank] = candidate;
+        scores[rank] = 0f;
+      } else if (capacity > 0) {
+        // the lowest ranked candidate makes room, its score is an upper bound of what the new one could have had
+        rank = size - 1;
+        ids[rank] = candidate;
+      } else {
+        return;
+      }
+    }
+    scores[rank] += weight;
+    moveUp(rank);
+  }
+
+  private static float decayFactor(long elapsedSeconds, long halfLifeSeconds) {
+    return halfLifeSeconds <= 0 ? 1f : (float) Math.pow(0.5, (double) elapsedSeconds / halfLifeSeconds);
+  }
+
+  private void decay(float factor) {
+    if (factor == 1f) {
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      scores[i] *= factor;
+    }
+  }
+
+  private int indexOf(int candidate) {
+    for (int i = 0; i < size; i++) {
+      if (ids[i] == candidate) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // a score only grows, so its candidate can only move to a better rank
+  private void moveUp(int rank) {
+    int id = ids[rank];
+    float score = scores[rank];
+    while (rank > 0 && scores[rank - 1] < score) {
+      ids[rank] = ids[rank - 1];
+      scores[rank] = scores[rank - 1];
+      rank--;
+    }
+    ids[rank] = id;
+    scores[rank] = score;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (ids.length < capacity) {
+      int newLength = Math.max(capacity, ids.length * 2);
+      int[] newIds = new int[newLength];
+      float[] newScores = new float[newLength];
+      System.arraycopy(ids, 0, newIds, 0, size);
+      System.arraycopy(scores, 0, newScores, 0, size);
+      ids = newIds;
+      scores = newScores;
+    }
+  }
+
+  static byte[] serialize(RecommendScores recommendScores) {
+    VarIntWriter writer = new VarIntWriter(16 + recommendScores.size * 8);
+    writer.writeZigZagLong(recommendScores.referenceTime);
+    writer.writeVarInt(recommendScores.size);
+    for (int i = 0; i < recommendScores.size; i++) {
+      writer.writeZigZagInt(recommendScores.ids[i]);
+      writer.writeVarInt(Float.floatToIntBits(recommendScores.scores[i]));
+    }
+    return writer.toByteArray();
+  }
+
+  static RecommendScores deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    long referenceTime = reader.readZigZagLong();
+    int size = reader.readVarInt();
+    int[] ids = new int[Math.max(size, 8)];
+    float[] scores = new float[ids.length];
+    for (int i = 0; i < size; i++) {
+      ids[i] = reader.readZigZagInt();
+      scores[i] = Float.intBitsToFloat(reader.readVarInt());
+    }
+    return new RecommendScores(referenceTime, size, ids, scores);
+  }
+}
@@ -0,0 +1,100 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class defines the result record of the RECOMMEND query: the recommendation candidates of a vertex, best first,
+ * with their scores.
+ *
+ * The binary layout after the {@link ResultRecord} header is
+ * <pre>
+ *   [zig-zag varint vertex_id][varint count]([zig-zag varint id][varint score float bits])*
+ * </pre>
+ */
+@JsonPropertyOrder({"vertex_id", "count", "recommendations", "scores"})
+public class RecommendationResult implements ResultRecord {
+
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+  @JsonProperty("vertex_id")
+  private int vertexId;
+
+  @JsonProperty("recommendations")
+  private int[] recommendations;
+
+  @JsonProperty("scores")
+  private float[] scores;
+
+  public RecommendationResult() {}
+
+  /**
+   * overloaded constructor
+   * @param vertexId
+   * @param recommendations
+   * @param scores
+   */
+  private RecommendationResult(int vertexId, int[] recommendations, float[] scores) {
+    this.vertexId = vertexId;
+    this.recommendations = recommendations;
+    this.scores = scores;
+  }
+
+  /**
+   * This method creates the result record of a RECOMMEND query
+   *
+   * @param vertexId
+   * @param candidates
+   * @return RecommendationResult
+   */
+  public static RecommendationResult of(int vertexId, RecommendScores candidates) {
+    int[] recommendations = new int[candidates.size()];
+    float[] scores = new float[candidates.size()];
+    for (int i = 0; i < recommendations.length; i++) {
+      recommendations[i] = candidates.idAt(i);
+      scores[i] = candidates.scoreAt(i);
+    }
+    return new RecommendationResult(vertexId, recommendations, scores);
+  }
+
+  @Override
+  public int getVertexId() { return vertexId; }
+
+  /**
+   * @return the recommendation candidates, best first
+   */
+  public int[] getRecommendations() { return recommendations; }
+
+  /**
+   * @return the scores of the recommendation candidates as of the newest suggestion, in the same order
+   */
+  public float[] getScores() { return scores; }
+
+  @JsonProperty("count")
+  public int getCount() { return recommendations.length; }
+
+  @Override
+  public byte[] toJsonBytes() {
+    try {
+      return JSON_MAPPER.writeValueAsBytes(this);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize the recommendations of vertex " + vertexId, e);
+    }
+  }
+
+  @Override
+  public byte[] toBinary() {
+    VarIntWriter writer = new VarIntWriter(16 + recommendations.length * 8);
+    writer.writeByte(BINARY_VERSION_1);
+    writer.writeByte(KIND_RANKED_RECOMMENDATION);
+    writer.writeZigZagInt(vertexId);
+    writer.writeVarInt(recommendations.length);
+    for (int i = 0; i < recommendations.length; i++) {
+      writer.writeZigZagInt(recommendations[i]);
+      writer.writeVarInt(Float.floatToIntBits(scores[i]));
+    }
+    return writer.toByteArray();
+  }
+}
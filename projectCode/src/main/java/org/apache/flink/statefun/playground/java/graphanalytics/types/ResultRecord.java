@@ -0,0 +1,36 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * A result record that is sent to the egress. Every record can be written as JSON or in a compact binary layout, the
+ * format is chosen per topic when the record is sent.
+ *
+ * The binary layout of every record starts with the same header
+ * <pre>
+ *   [version byte][kind byte]
+ * </pre>
+ * followed by the fields of the record kind, ids and timestamps are written as zig-zag varints and sorted id lists
+ * with the same delta encoding as the neighbor list state.
+ */
+public interface ResultRecord {
+
+  int BINARY_VERSION_1 = 1;
+
+  int KIND_NEIGHBORS = 1;
+  int KIND_TIME_WINDOW = 2;
+  // the candidates in ascending order, written by earlier versions
+  int KIND_RECOMMENDATION = 3;
+  int KIND_QUERY_RESULT = 4;
+  int KIND_TIME_WINDOW_COUNT = 5;
+  int KIND_RANKED_RECOMMENDATION = 6;
+  int KIND_DEGREE = 7;
+  int KIND_NEIGHBORS_PAGE = 8;
+
+  /**
+   * @return the vertex the record is about, which is used as the key of the egress record
+   */
+  int getVertexId();
+
+  byte[] toJsonBytes();
+
+  byte[] toBinary();
+}
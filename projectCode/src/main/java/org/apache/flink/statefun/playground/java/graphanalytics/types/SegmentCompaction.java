@@ -0,0 +1,36 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the message a function sends to itself to compact the sealed segments of a segmented
+ * neighbor list once its tail segment has filled up.
+ */
+public class SegmentCompaction {
+
+  @JsonProperty("store")
+  private String store;
+
+  public SegmentCompaction() {}
+
+  /**
+   * overloaded constructor
+   * @param store
+   */
+  private SegmentCompaction(String store) {
+    this.store = store;
+  }
+
+  public String getStore() { return store; }
+
+  /**
+   * This method is used for creating a new SegmentCompaction, please call SegmentCompaction.create(store)
+   * to create an object of this class
+   *
+   * @param store name of the neighbor store that should be compacted
+   * @return SegmentCompaction
+   */
+  public static SegmentCompaction create(String store) {
+    return new SegmentCompaction(store);
+  }
+}
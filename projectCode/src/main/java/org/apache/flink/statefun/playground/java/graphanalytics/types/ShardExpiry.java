@@ -0,0 +1,47 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the message a shard of a vertex sends to the vertex once it has dropped edges that fell behind
+ * the retention horizon, so that the vertex keeps its degree, degree counters and version up to date.
+ */
+public class ShardExpiry {
+
+  @JsonProperty("expired_edges")
+  private int expiredEdges;
+
+  @JsonProperty("horizon")
+  private long horizon;
+
+  public ShardExpiry() {}
+
+  /**
+   * overloaded constructor
+   * @param expiredEdges
+   * @param horizon
+   */
+  private ShardExpiry(int expiredEdges, long horizon) {
+    this.expiredEdges = expiredEdges;
+    this.horizon = horizon;
+  }
+
+  public int getExpiredEdges() { return expiredEdges; }
+
+  /**
+   * @return the shard has dropped its edges with a smaller timestamp
+   */
+  public long getHorizon() { return horizon; }
+
+  /**
+   * This method is used for creating a new ShardExpiry, please call ShardExpiry.create(expiredEdges, horizon)
+   * to create an object of this class
+   *
+   * @param expiredEdges number of edges the shard has dropped
+   * @param horizon the shard has dropped its edges with a smaller timestamp
+   * @return ShardExpiry
+   */
+  public static ShardExpiry create(int expiredEdges, long horizon) {
+    return new ShardExpiry(expiredEdges, horizon);
+  }
+}
@@ -0,0 +1,113 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the message a sharded vertex sends to each of its shards to collect the edges that the shard
+ * stores. Every shard answers with a {@link ShardScanResult} carrying the same request id.
+ */
+public class ShardScanRequest {
+
+  /**
+   * the shard returns all of its edges
+   */
+  public static final String MODE_ALL = "ALL";
+
+  /**
+   * the shard returns the ids of its distinct neighbors, the timestamps are not needed
+   */
+  public static final String MODE_DISTINCT = "DISTINCT";
+
+  /**
+   * the shard returns the edges between startTime and endTime
+   */
+  public static final String MODE_RANGE = "RANGE";
+
+  /**
+   * the shard returns only the number of its edges between startTime and endTime
+   */
+  public static final String MODE_COUNT = "COUNT";
+
+  @JsonProperty("request_id")
+  private long requestId;
+
+  @JsonProperty("mode")
+  private String mode;
+
+  @JsonProperty("startTime")
+  private long startTime;
+
+  @JsonProperty("endTime")
+  private long endTime;
+
+  // for MODE_RANGE, the shard returns only the first limit edges of the range, or the last ones if descending is
+  // set, together with the edges that have the same timestamp as the last edge returned; 0 for all edges
+  @JsonProperty("limit")
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  private int limit;
+
+  @JsonProperty("descending")
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  private boolean descending;
+
+  public ShardScanRequest() {}
+
+  /**
+   * overloaded constructor
+   * @param requestId
+   * @param mode
+   * @param startTime
+   * @param endTime
+   */
+  private ShardScanRequest(long requestId, String mode, long startTime, long endTime) {
+    this.requestId = requestId;
+    this.mode = mode;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  public long getRequestId() { return requestId; }
+
+  public String getMode() { return mode; }
+
+  public long getStartTime() { return startTime; }
+
+  public long getEndTime() { return endTime; }
+
+  public int getLimit() { return limit; }
+
+  public boolean isDescending() { return descending; }
+
+  /**
+   * This method is used for creating a new ShardScanRequest, please call
+   * ShardScanRequest.create(request_id, mode, startTime, endTime) to create an object of this class
+   *
+   * @param requestId
+   * @param mode one of MODE_ALL, MODE_DISTINCT, MODE_RANGE or MODE_COUNT
+   * @param startTime only used by MODE_RANGE and MODE_COUNT
+   * @param endTime only used by MODE_RANGE and MODE_COUNT
+   * @return ShardScanRequest
+   */
+  public static ShardScanRequest create(long requestId, String mode, long startTime, long endTime) {
+    return new ShardScanRequest(requestId, mode, startTime, endTime);
+  }
+
+  /**
+   * This method creates a MODE_RANGE request for a page of the edges in the range
+   *
+   * @param requestId
+   * @param startTime
+   * @param endTime
+   * @param limit the most edges the shard returns, apart from edges with an equal timestamp, 0 for all edges
+   * @param descending true if the page starts from the newest edge
+   * @return ShardScanRequest
+   */
+  public static ShardScanRequest createPage(long requestId, long startTime, long endTime, int limit,
+                                            boolean descending) {
+    ShardScanRequest request = new ShardScanRequest(requestId, MODE_RANGE, startTime, endTime);
+    request.limit = limit;
+    request.descending = descending;
+    return request;
+  }
+}
@@ -0,0 +1,75 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+/**
+ * This class defines the answer of a shard to a {@link ShardScanRequest}. It is serialized with the binary neighbor
+ * list format, since a shard of a high-degree vertex may return many edges. A ShardScanRequest.MODE_COUNT request is
+ * answered with the count only and no edges, the count follows the edges so that results without it can still be
+ * read.
+ */
+public class ShardScanResult {
+
+  private final long requestId;
+  private final NeighborList edges;
+  private final long count;
+
+  /**
+   * overloaded constructor
+   * @param requestId
+   * @param edges
+   * @param count
+   */
+  private ShardScanResult(long requestId, NeighborList edges, long count) {
+    this.requestId = requestId;
+    this.edges = edges;
+    this.count = count;
+  }
+
+  public long getRequestId() { return requestId; }
+
+  public NeighborList getEdges() { return edges; }
+
+  /**
+   * @return the number of edges counted by a ShardScanRequest.MODE_COUNT request, 0 for the other modes
+   */
+  public long getCount() { return count; }
+
+  /**
+   * This method is used for creating a new ShardScanResult, please call ShardScanResult.create(request_id, edges)
+   * to create an object of this class
+   *
+   * @param requestId
+   * @param edges
+   * @return ShardScanResult
+   */
+  public static ShardScanResult create(long requestId, NeighborList edges) {
+    return new ShardScanResult(requestId, edges, 0);
+  }
+
+  /**
+   * This method is used for creating the answer to a ShardScanRequest.MODE_COUNT request, please call
+   * ShardScanResult.ofCount(request_id, count) to create an object of this class
+   *
+   * @param requestId
+   * @param count
+   * @return ShardScanResult
+   */
+  public static ShardScanResult ofCount(long requestId, long count) {
+    return new ShardScanResult(requestId, new NeighborList(), count);
+  }
+
+  static byte[] serialize(ShardScanResult result) {
+    VarIntWriter writer = new VarIntWriter(16 + result.edges.size() * 4);
+    writer.writeVarLong(result.requestId);
+    NeighborListCodec.writeTo(writer, result.edges);
+    writer.writeVarLong(result.count);
+    return writer.toByteArray();
+  }
+
+  static ShardScanResult deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    long requestId = reader.readVarLong();
+    NeighborList edges = NeighborListCodec.readFrom(reader);
+    long count = reader.hasRemaining() ? reader.readVarLong() : 0;
+    return new ShardScanResult(requestId, edges, count);
+  }
+}
@@ -0,0 +1,360 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class contains the operations on sets of ids that are stored as sorted int arrays without duplicates,
+ * such as the neighbor ids that a triangle query compares.
+ *
+ * Sets that are kept in state or sent between functions are written with {@link #writeCompressedTo}, which splits
+ * the ids into containers of 65536 ids by their upper 16 bits, as roaring bitmaps do, and writes every container in
+ * whichever of three forms is smallest:
+ * <pre>
+ *   [varint size]([zig-zag varint high delta][varint count][kind byte][container])*
+ *   array:  ([varint gap to the previous id minus one])*
+ *   runs:   [varint runs]([varint gap to the end of the previous run][varint length minus one])*
+ *   bitmap: 1024 little-endian 64 bit words
+ * </pre>
+ * The runs form takes a few bytes for a whole range of consecutive ids, which is common for the dense vertex ids of
+ * our data sets.
+ */
+public final class SortedIntSets {
+
+  public static final int[] EMPTY = new int[0];
+
+  private static final int CONTAINER_ARRAY = 0;
+  private static final int CONTAINER_RUNS = 1;
+  private static final int CONTAINER_BITMAP = 2;
+  private static final int CONTAINER_BITMAP_WORDS = 1024;
+
+  // once one set is this many times larger than the other, looking up each id of the smaller set in the larger one
+  // is cheaper than walking through both sets
+  private static final int GALLOP_RATIO = 32;
+
+  private SortedIntSets() {}
+
+  /**
+   * This method passes the ids that are in both sets to the consumer, in ascending order
+   * @param first sorted ids without duplicates
+   * @param second sorted ids without duplicates
+   * @param consumer
+   */
+  public static void intersect(int[] first, int[] second, IntConsumer consumer) {
+    int[] smaller = first.length <= second.length ? first : second;
+    int[] larger = smaller == first ? second : first;
+    if (smaller.length == 0) {
+      return;
+    }
+    if ((long) smaller.length * GALLOP_RATIO < larger.length) {
+      gallopIntersect(smaller, larger, consumer);
+    } else {
+      mergeIntersect(smaller, larger, consumer);
+    }
+  }
+
+  /**
+   * @param first sorted ids without duplicates
+   * @param second sorted ids without duplicates
+   * @return the sorted ids that are in either set
+   */
+  public static int[] union(int[] first, int[] second) {
+    if (first.length == 0) {
+      return second;
+    }
+    if (second.length == 0) {
+      return first;
+    }
+    int[] union = new int[first.length + second.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length && j < second.length) {
+      if (first[i] < second[j]) {
+        union[size++] = first[i++];
+      } else if (first[i] > second[j]) {
+        union[size++] = second[j++];
+      } else {
+        union[size++] = first[i++];
+        j++;
+      }
+    }
+    while (i < first.length) {
+      union[size++] = first[i++];
+    }
+    while (j < second.length) {
+      union[size++] = second[j++];
+    }
+    return size == union.length ? union : Arrays.copyOf(union, size);
+  }
+
+  /**
+   * @param sortedIds sorted ids without duplicates
+   * @param excludedIds sorted ids without duplicates
+   * @return the sorted ids of the first set that are not in the excluded set
+   */
+  public static int[] difference(int[] sortedIds, int[] excludedIds) {
+    if (sortedIds.length == 0 || excludedIds.length == 0) {
+      return sortedIds;
+    }
+    int[] difference = new int[sortedIds.length];
+    int size = 0;
+    int from = 0;
+    for (int id : sortedIds) {
+      from = gallop(excludedIds, from, id);
+      if (from == excludedIds.length || excludedIds[from] != id) {
+        difference[size++] = id;
+      }
+    }
+    return size == difference.length ? difference : Arrays.copyOf(difference, size);
+  }
+
+  /**
+   * @param sortedIds sorted ids without duplicates
+   * @param id
+   * @return true if the id is in the set
+   */
+  public static boolean contains(int[] sortedIds, int id) {
+    int index = gallop(sortedIds, 0, id);
+    return index < sortedIds.length && sortedIds[index] == id;
+  }
+
+  /**
+   * This method writes the ids as a size followed by the differences between consecutive ids, which are small
+   * for the dense ids of our data sets
+   * @param writer
+   * @param sortedIds sorted ids without duplicates
+   */
+  public static void writeTo(VarIntWriter writer, int[] sortedIds) {
+    writer.writeVarInt(sortedIds.length);
+    int previous = 0;
+    for (int id : sortedIds) {
+      // the difference wraps around for ids that are far apart, which the reader undoes with the same wrap around
+      writer.writeZigZagInt(id - previous);
+      previous = id;
+    }
+  }
+
+  /**
+   * This method reads ids written by {@link #writeTo}
+   * @param reader
+   * @return the sorted ids
+   */
+  public static int[] readFrom(VarIntReader reader) {
+    int size = reader.readVarInt();
+    if (size == 0) {
+      return EMPTY;
+    }
+    int[] sortedIds = new int[size];
+    int previous = 0;
+    for (int i = 0; i < size; i++) {
+      previous += reader.readZigZagInt();
+      sortedIds[i] = previous;
+    }
+    return sortedIds;
+  }
+
+  /**
+   * This method writes the ids in containers of 65536 ids, see the layout above
+   * @param writer
+   * @param sortedIds sorted ids without duplicates
+   */
+  public static void writeCompressedTo(VarIntWriter writer, int[] sortedIds) {
+    writer.writeVarInt(sortedIds.length);
+    int previousHigh = 0;
+    int from = 0;
+    while (from < sortedIds.length) {
+      int high = sortedIds[from] >> 16;
+      // the sizes of the array and runs forms decide which one is written
+      int to = from;
+      int arrayBytes = 0;
+      int runs = 0;
+      int runBytes = 0;
+      int previousLow = -1;
+      int runStart = -1;
+      while (to < sortedIds.length && sortedIds[to] >> 16 == high) {
+        int low = sortedIds[to] & 0xFFFF;
+        arrayBytes += varIntSize(low - previousLow - 1);
+        if (low != previousLow + 1 || runStart < 0) {
+          if (runStart >= 0) {
+            runBytes += varIntSize(previousLow - runStart);
+          }
+          runBytes += varIntSize(low - previousLow - 1);
+          runStart = low;
+          runs++;
+        }
+        previousLow = low;
+        to++;
+      }
+      runBytes += varIntSize(previousLow - runStart) + varIntSize(runs);
+
+      writer.writeZigZagInt(high - previousHigh);
+      writer.writeVarInt(to - from);
+      if (arrayBytes <= runBytes && arrayBytes <= CONTAINER_BITMAP_WORDS * 8) {
+        writer.writeByte(CONTAINER_ARRAY);
+        writeArrayContainer(writer, sortedIds, from, to);
+      } else if (runBytes <= CONTAINER_BITMAP_WORDS * 8) {
+        writer.writeByte(CONTAINER_RUNS);
+        writer.writeVarInt(runs);
+        writeRunContainer(writer, sortedIds, from, to);
+      } else {
+        writer.writeByte(CONTAINER_BITMAP);
+        writeBitmapContainer(writer, sortedIds, from, to);
+      }
+      previousHigh = high;
+      from = to;
+    }
+  }
+
+  /**
+   * This method reads ids written by {@link #writeCompressedTo}
+   * @param reader
+   * @return the sorted ids
+   */
+  public static int[] readCompressedFrom(VarIntReader reader) {
+    int size = reader.readVarInt();
+    if (size == 0) {
+      return EMPTY;
+    }
+    int[] sortedIds = new int[size];
+    int next = 0;
+    int high = 0;
+    while (next < size) {
+      high += reader.readZigZagInt();
+      int base = high << 16;
+      int count = reader.readVarInt();
+      int kind = reader.readByte();
+      switch (kind) {
+        case CONTAINER_ARRAY:
+          int previousLow = -1;
+          for (int i = 0; i < count; i++) {
+            previousLow += reader.readVarInt() + 1;
+            sortedIds[next++] = base | previousLow;
+          }
+          break;
+        case CONTAINER_RUNS:
+          int runs = reader.readVarInt();
+          int runEnd = -1;
+          for (int run = 0; run < runs; run++) {
+            int start = runEnd + reader.readVarInt() + 1;
+            runEnd = start + reader.readVarInt();
+            for (int low = start; low <= runEnd; low++) {
+              sortedIds[next++] = base | low;
+            }
+          }
+          break;
+        case CONTAINER_BITMAP:
+          for (int word = 0; word < CONTAINER_BITMAP_WORDS; word++) {
+            long bits = 0;
+            for (int shift = 0; shift < 64; shift += 8) {
+              bits |= (long) reader.readByte() << shift;
+            }
+            while (bits != 0) {
+              sortedIds[next++] = base | (word << 6) + Long.numberOfTrailingZeros(bits);
+              bits &= bits - 1;
+            }
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown id set container kind " + kind);
+      }
+    }
+    return sortedIds;
+  }
+
+  private static void writeArrayContainer(VarIntWriter writer, int[] sortedIds, int from, int to) {
+    int previousLow = -1;
+    for (int i = from; i < to; i++) {
+      int low = sortedIds[i] & 0xFFFF;
+      writer.writeVarInt(low - previousLow - 1);
+      previousLow = low;
+    }
+  }
+
+  private static void writeRunContainer(VarIntWriter writer, int[] sortedIds, int from, int to) {
+    int runEnd = -1;
+    int i = from;
+    while (i < to) {
+      int start = sortedIds[i] & 0xFFFF;
+      int end = start;
+      while (++i < to && (sortedIds[i] & 0xFFFF) == end + 1) {
+        end++;
+      }
+      writer.writeVarInt(start - runEnd - 1);
+      writer.writeVarInt(end - start);
+      runEnd = end;
+    }
+  }
+
+  private static void writeBitmapContainer(VarIntWriter writer, int[] sortedIds, int from, int to) {
+    long[] bitmap = new long[CONTAINER_BITMAP_WORDS];
+    for (int i = from; i < to; i++) {
+      int low = sortedIds[i] & 0xFFFF;
+      bitmap[low >>> 6] |= 1L << low;
+    }
+    for (long word : bitmap) {
+      for (int shift = 0; shift < 64; shift += 8) {
+        writer.writeByte((int) (word >>> shift));
+      }
+    }
+  }
+
+  private static int varIntSize(int value) {
+    return value < 0 ? 5 : (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+  }
+
+  private static void mergeIntersect(int[] first, int[] second, IntConsumer consumer) {
+    int i = 0;
+    int j = 0;
+    while (i < first.length && j < second.length) {
+      if (first[i] < second[j]) {
+        i++;
+      } else if (first[i] > second[j]) {
+        j++;
+      } else {
+        consumer.accept(first[i]);
+        i++;
+        j++;
+      }
+    }
+  }
+
+  private static void gallopIntersect(int[] smaller, int[] larger, IntConsumer consumer) {
+    int from = 0;
+    for (int id : smaller) {
+      from = gallop(larger, from, id);
+      if (from == larger.length) {
+        return;
+      }
+      if (larger[from] == id) {
+        consumer.accept(id);
+        from++;
+      }
+    }
+  }
+
+  /**
+   * This method finds the first index at or after from whose id is not smaller than the given id, by doubling the
+   * step until it passes the id and then binary searching within the last step
+   */
+  private static int gallop(int[] sortedIds, int from, int id) {
+    int low = from;
+    int high = from;
+    int step = 1;
+    while (high < sortedIds.length && sortedIds[high] < id) {
+      low = high + 1;
+      high += step;
+      step <<= 1;
+    }
+    high = Math.min(high, sortedIds.length);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sortedIds[mid] < id) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
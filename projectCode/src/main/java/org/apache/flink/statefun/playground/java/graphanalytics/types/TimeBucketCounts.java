@@ -0,0 +1,195 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.Arrays;
+
+/**
+ * This class counts the edges of a neighbor list per time bucket, so that the number of edges in a window that starts
+ * and ends on bucket boundaries can be answered with two binary searches over the prefix sums of the buckets, without
+ * reading the edges themselves.
+ *
+ * Only buckets that hold at least one edge are kept. A window of hours, days or months covers a run of consecutive
+ * buckets, so hour buckets answer the coarser windows as well. The counts also remember how many edges they cover,
+ * which lets the owner tell whether they are still current.
+ *
+ * The binary layout is
+ * <pre>
+ *   [varint bucket_seconds][varlong covered_edges][varint buckets]([zig-zag varlong bucket delta][varlong count])*
+ * </pre>
+ */
+public final class TimeBucketCounts {
+
+  private final int bucketSeconds;
+  private long coveredEdges;
+  // bucket numbers (timestamp / bucketSeconds) in ascending order
+  private long[] buckets;
+  // prefix[i] is the number of edges in buckets[0..i]
+  private long[] prefix;
+  private int size;
+
+  /**
+   * @param bucketSeconds length of a bucket in seconds
+   */
+  public TimeBucketCounts(int bucketSeconds) {
+    this(bucketSeconds, 0);
+  }
+
+  /**
+   * @param bucketSeconds length of a bucket in seconds
+   * @param coveredEdges edges that the counts account for without counting them in a bucket, such as edges that
+   *                     were dropped before the counts were built
+   */
+  public TimeBucketCounts(int bucketSeconds, long coveredEdges) {
+    this(bucketSeconds, coveredEdges, new long[8], new long[8], 0);
+  }
+
+  private TimeBucketCounts(int bucketSeconds, long coveredEdges, long[] buckets, long[] prefix, int size) {
+    this.bucketSeconds = bucketSeconds;
+    this.coveredEdges = coveredEdges;
+    this.buckets = buckets;
+    this.prefix = prefix;
+    this.size = size;
+  }
+
+  public int getBucketSeconds() { return bucketSeconds; }
+
+  /**
+   * @return the number of edges that the counts account for
+   */
+  public long getCoveredEdges() { return coveredEdges; }
+
+  /**
+   * @param bucketSeconds length of a bucket in seconds
+   * @param startTime
+   * @param endTime
+   * @return true if [startTime, endTime] starts and ends on bucket boundaries, so that {@link #count} is exact
+   */
+  public static boolean isAligned(int bucketSeconds, long startTime, long endTime) {
+    return startTime <= endTime && Math.floorMod(startTime, bucketSeconds) == 0
+        && Math.floorMod(endTime + 1, bucketSeconds) == 0;
+  }
+
+  /**
+   * This method counts the edges of the buckets that overlap [startTime, endTime], which is the exact number of
+   * edges in the window if the window is aligned
+   * @param startTime
+   * @param endTime
+   * @return the number of edges
+   */
+  public long count(long startTime, long endTime) {
+    if (startTime > endTime) {
+      return 0;
+    }
+    int from = firstAtLeast(Math.floorDiv(startTime, bucketSeconds));
+    int to = firstAtLeast(Math.floorDiv(endTime, bucketSeconds) + 1);
+    if (from >= to) {
+      return 0;
+    }
+    return prefix[to - 1] - (from == 0 ? 0 : prefix[from - 1]);
+  }
+
+  /**
+   * This method adds a run of edges to the counts
+   * @param sortedRun edges sorted by timestamp
+   */
+  public void addAll(NeighborList sortedRun) {
+    if (sortedRun.isEmpty()) {
+      return;
+    }
+    // the counts of the run per bucket, the run is sorted so every bucket is one stretch of it
+    long[] runBuckets = new long[Math.min(sortedRun.size(), 16)];
+    long[] runCounts = new long[runBuckets.length];
+    int runSize = 0;
+    for (int i = 0; i < sortedRun.size(); i++) {
+      long bucket = Math.floorDiv(sortedRun.timestampAt(i), bucketSeconds);
+      if (runSize > 0 && runBuckets[runSize - 1] == bucket) {
+        runCounts[runSize - 1]++;
+        continue;
+      }
+      if (runSize == runBuckets.length) {
+        runBuckets = Arrays.copyOf(runBuckets, runSize * 2);
+        runCounts = Arrays.copyOf(runCounts, runSize * 2);
+      }
+      runBuckets[runSize] = bucket;
+      runCounts[runSize++] = 1;
+    }
+
+    // merge the two sorted bucket lists, rebuilding the prefix sums on the way
+    long[] mergedBuckets = new long[size + runSize];
+    long[] mergedPrefix = new long[size + runSize];
+    int merged = 0;
+    int i = 0;
+    int j = 0;
+    long total = 0;
+    while (i < size || j < runSize) {
+      long bucket;
+      long count = 0;
+      if (j == runSize || (i < size && buckets[i] < runBuckets[j])) {
+        bucket = buckets[i];
+      } else {
+        bucket = runBuckets[j];
+      }
+      if (i < size && buckets[i] == bucket) {
+        count += prefix[i] - (i == 0 ? 0 : prefix[i - 1]);
+        i++;
+      }
+      if (j < runSize && runBuckets[j] == bucket) {
+        count += runCounts[j++];
+      }
+      total += count;
+      mergedBuckets[merged] = bucket;
+      mergedPrefix[merged++] = total;
+    }
+    buckets = mergedBuckets;
+    prefix = mergedPrefix;
+    size = merged;
+    coveredEdges += sortedRun.size();
+  }
+
+  private int firstAtLeast(long bucket) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (buckets[mid] < bucket) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  static byte[] serialize(TimeBucketCounts counts) {
+    VarIntWriter writer = new VarIntWriter(16 + counts.size * 4);
+    writer.writeVarInt(counts.bucketSeconds);
+    writer.writeVarLong(counts.coveredEdges);
+    writer.writeVarInt(counts.size);
+    long previousBucket = 0;
+    long previousPrefix = 0;
+    for (int i = 0; i < counts.size; i++) {
+      writer.writeZigZagLong(counts.buckets[i] - previousBucket);
+      writer.writeVarLong(counts.prefix[i] - previousPrefix);
+      previousBucket = counts.buckets[i];
+      previousPrefix = counts.prefix[i];
+    }
+    return writer.toByteArray();
+  }
+
+  static TimeBucketCounts deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int bucketSeconds = reader.readVarInt();
+    long coveredEdges = reader.readVarLong();
+    int size = reader.readVarInt();
+    long[] buckets = new long[size];
+    long[] prefix = new long[size];
+    long bucket = 0;
+    long total = 0;
+    for (int i = 0; i < size; i++) {
+      bucket += reader.readZigZagLong();
+      total += reader.readVarLong();
+      buckets[i] = bucket;
+      prefix[i] = total;
+    }
+    return new TimeBucketCounts(bucketSeconds, coveredEdges, buckets, prefix, size);
+  }
+}
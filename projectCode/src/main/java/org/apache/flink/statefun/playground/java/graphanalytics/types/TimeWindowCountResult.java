@@ -0,0 +1,88 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class defines the result record of the COUNT_TIME_WINDOW query: the number of outgoing edges of a vertex
+ * with a timestamp in [start_time, end_time].
+ *
+ * The binary layout after the {@link ResultRecord} header is
+ * <pre>
+ *   [zig-zag varint vertex_id][zig-zag varint start_time][zig-zag varint end_time][varint count]
+ * </pre>
+ */
+@JsonPropertyOrder({"vertex_id", "start_time", "end_time", "count"})
+public class TimeWindowCountResult implements ResultRecord {
+
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+  @JsonProperty("vertex_id")
+  private int vertexId;
+
+  @JsonProperty("start_time")
+  private long startTime;
+
+  @JsonProperty("end_time")
+  private long endTime;
+
+  @JsonProperty("count")
+  private long count;
+
+  public TimeWindowCountResult() {}
+
+  /**
+   * overloaded constructor
+   * @param vertexId
+   * @param startTime
+   * @param endTime
+   * @param count
+   */
+  private TimeWindowCountResult(int vertexId, long startTime, long endTime, long count) {
+    this.vertexId = vertexId;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.count = count;
+  }
+
+  /**
+   * This method creates the result record of a COUNT_TIME_WINDOW query
+   *
+   * @param vertexId
+   * @param startTime
+   * @param endTime
+   * @param count the number of edges within the time window
+   * @return TimeWindowCountResult
+   */
+  public static TimeWindowCountResult of(int vertexId, long startTime, long endTime, long count) {
+    return new TimeWindowCountResult(vertexId, startTime, endTime, count);
+  }
+
+  @Override
+  public int getVertexId() { return vertexId; }
+
+  public long getCount() { return count; }
+
+  @Override
+  public byte[] toJsonBytes() {
+    try {
+      return JSON_MAPPER.writeValueAsBytes(this);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize the time window count of vertex " + vertexId, e);
+    }
+  }
+
+  @Override
+  public byte[] toBinary() {
+    VarIntWriter writer = new VarIntWriter(32);
+    writer.writeByte(BINARY_VERSION_1);
+    writer.writeByte(KIND_TIME_WINDOW_COUNT);
+    writer.writeZigZagInt(vertexId);
+    writer.writeZigZagLong(startTime);
+    writer.writeZigZagLong(endTime);
+    writer.writeVarLong(count);
+    return writer.toByteArray();
+  }
+}
@@ -1,12 +1,13 @@
 package org.apache.flink.statefun.playground.java.graphanalytics.types;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * This class defines the type of the query for counting the number of outgoing
  * edges of a node within a time frame
  * The function that is responsible for dispatching queries should send a
- * message of this type to the TimeWindowQueryFn.
+ * message of this type to the OutEdgesQueryFn.
  */
 public class TimeWindowQuery {
     @JsonProperty("src")
@@ -18,6 +19,11 @@ public class TimeWindowQuery {
     @JsonProperty("endTime")
     private long end;
 
+    // only set for a GET_TIME_WINDOW_EDGES query that asks for a page of the edges
+    @JsonProperty("page")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PageRequest page;
+
     public TimeWindowQuery() {
     }
 
@@ -46,6 +52,13 @@ public class TimeWindowQuery {
         return end;
     }
 
+    /**
+     * @return the page of the edges in the window to return, null for all of them
+     */
+    public PageRequest getPage() {
+        return page;
+    }
+
     /**
      * This method is used for creating a new TimeWindowQuery, please call
      * TimeWindowQuery.create(src, start, end) to create an object of this class
@@ -58,4 +71,19 @@ public class TimeWindowQuery {
     public static TimeWindowQuery create(int src, long start, long end) {
         return new TimeWindowQuery(src, start, end);
     }
+
+    /**
+     * This method creates a new TimeWindowQuery for a page of the edges in the window
+     *
+     * @param src
+     * @param start
+     * @param end
+     * @param page null for all edges in the window
+     * @return TimeWindowQuery
+     */
+    public static TimeWindowQuery create(int src, long start, long end, PageRequest page) {
+        TimeWindowQuery query = new TimeWindowQuery(src, start, end);
+        query.page = page;
+        return query;
+    }
 }
@@ -1,12 +1,28 @@
 package org.apache.flink.statefun.playground.java.graphanalytics.types;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.ArrayList;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * This class is used to trigger the next pass of the triangle search.
+ * The trace holds the distinct neighbor ids of the root vertex in ascending order, so that the next pass can
+ * intersect it with its own sorted neighbors. It is serialized in the compressed id set layout of
+ * {@link SortedIntSets#writeCompressedTo}, since the root vertex sends its whole trace to each of its neighbors.
  */
 public class TriangleQueryPass {
+    private static final int VERSION_1 = 1;
+    // adds the query id
+    private static final int VERSION_2 = 2;
+    // writes the trace in containers
+    private static final int VERSION_3 = 3;
+    private static final ObjectMapper LEGACY_JSON_MAPPER = new ObjectMapper();
+
+    @JsonProperty("query_id")
+    private String queryId;
+
     @JsonProperty("vertex_id")
     private int vertexId;
 
@@ -14,39 +30,84 @@ public class TriangleQueryPass {
     private int currentId;
 
     @JsonProperty("trace")
-    private ArrayList<Integer> trace;
+    private int[] trace;
 
 
     public TriangleQueryPass() {}
 
     /**
      * overloaded constructor
+     * @param queryId
      * @param vertexId
      * @param currentId
      * @param trace
      */
-    private TriangleQueryPass(int vertexId, int currentId, ArrayList<Integer> trace) {
+    private TriangleQueryPass(String queryId, int vertexId, int currentId, int[] trace) {
+        this.queryId = queryId;
         this.vertexId = vertexId;
         this.currentId = currentId;
         this.trace = trace;
     }
 
+    /**
+     * @return the id of the query, null for passes sent before queries had ids
+     */
+    public String getQueryId() { return queryId; }
+
     public int getVertexId() { return vertexId; }
 
     public int getCurrentId() { return currentId; }
 
-    public ArrayList<Integer> getTrace() { return trace; }
+    /**
+     * @return the distinct neighbor ids of the root vertex, in ascending order
+     */
+    public int[] getTrace() { return trace; }
 
     /**
-     * This method is used for creating a new TriangleQueryPass, please call TriangleQueryPass.create(vertex_id, current_id, trace, start)
+     * This method is used for creating a new TriangleQueryPass, please call TriangleQueryPass.create(query_id, vertex_id, current_id, trace)
      * to create an object of this class
      *
+     * @param queryId
      * @param vertexId
      * @param currentId
-     * @param trace
+     * @param trace distinct neighbor ids of the root vertex, in ascending order
      * @return TriangleQueryPass
      */
-    public static TriangleQueryPass create(int vertexId, int currentId, ArrayList<Integer> trace) {
-        return new TriangleQueryPass(vertexId, currentId, trace);
+    public static TriangleQueryPass create(String queryId, int vertexId, int currentId, int[] trace) {
+        return new TriangleQueryPass(queryId, vertexId, currentId, trace);
+    }
+
+    static byte[] serialize(TriangleQueryPass pass) {
+        VarIntWriter writer = new VarIntWriter(16 + pass.trace.length * 2);
+        writer.writeByte(VERSION_3);
+        writer.writeUtf8(pass.queryId == null ? "" : pass.queryId);
+        writer.writeZigZagInt(pass.vertexId);
+        writer.writeZigZagInt(pass.currentId);
+        SortedIntSets.writeCompressedTo(writer, pass.trace);
+        return writer.toByteArray();
+    }
+
+    static TriangleQueryPass deserialize(byte[] bytes) throws IOException {
+        if (bytes.length > 0 && bytes[0] == '{') {
+            // passes sent before the binary format, their trace is in the order of the root's neighbor list
+            TriangleQueryPass pass = LEGACY_JSON_MAPPER.readValue(bytes, TriangleQueryPass.class);
+            int[] trace = pass.trace == null ? SortedIntSets.EMPTY : pass.trace.clone();
+            Arrays.sort(trace);
+            return new TriangleQueryPass(pass.queryId, pass.vertexId, pass.currentId, trace);
+        }
+        VarIntReader reader = new VarIntReader(bytes);
+        int version = reader.readByte();
+        if (version != VERSION_1 && version != VERSION_2 && version != VERSION_3) {
+            throw new IllegalStateException("Unsupported triangle query pass format version " + version);
+        }
+        String queryId = null;
+        if (version >= VERSION_2) {
+            queryId = reader.readUtf8();
+            queryId = queryId.isEmpty() ? null : queryId;
+        }
+        int vertexId = reader.readZigZagInt();
+        int currentId = reader.readZigZagInt();
+        int[] trace = version == VERSION_3 ? SortedIntSets.readCompressedFrom(reader) : SortedIntSets.readFrom(reader);
+        return new TriangleQueryPass(queryId, vertexId, currentId, trace);
     }
 }
@@ -6,6 +6,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * THis class is used to trigger the computation of the triangle search.
  */
 public class TriangleQueryTrigger {
+    @JsonProperty("query_id")
+    private String queryId;
+
     @JsonProperty("vertex_id")
     private int vertexId;
 
@@ -13,23 +16,28 @@ public class TriangleQueryTrigger {
 
     /**
      * overloaded constructor
+     * @param queryId
      * @param vertexId
      */
-    private TriangleQueryTrigger(int vertexId) {
+    private TriangleQueryTrigger(String queryId, int vertexId) {
+        this.queryId = queryId;
         this.vertexId = vertexId;
     }
 
+    public String getQueryId() { return queryId; }
+
     public int getVertexId() { return vertexId; }
 
     
     /**
-     * This method is used for creating a new TriangleQueryTrigger, please call TriangleQueryTrigger.create(vertex_id, start)
+     * This method is used for creating a new TriangleQueryTrigger, please call TriangleQueryTrigger.create(query_id, vertex_id)
      * to create an object of this class
      *
+     * @param queryId
      * @param vertexId
      * @return TriangleQueryTrigger
      */
-    public static TriangleQueryTrigger create(int vertexId) {
-        return new TriangleQueryTrigger(vertexId);
+    public static TriangleQueryTrigger create(String queryId, int vertexId) {
+        return new TriangleQueryTrigger(queryId, vertexId);
     }
 }
@@ -1,9 +1,7 @@
 package org.apache.flink.statefun.playground.java.graphanalytics.types;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.util.List;
 import java.util.Set;
 
 import org.apache.flink.statefun.sdk.java.TypeName;
@@ -36,13 +34,43 @@ public final class Types {
 
         public static final Type<Vertex> Add_OUT_EDGE_TYPE = VERTEX_INIT_TYPE;
 
-        public static final Type<List<CustomTuple2<Integer, Long>>> IN_NEIGHBORS_TYPE = SimpleType
+        /**
+         * Neighbor lists are written on every edge add, so they use the compact binary
+         * {@link NeighborListCodec} instead of JSON. State in the old JSON format is still readable.
+         */
+        public static final Type<NeighborList> IN_NEIGHBORS_TYPE = SimpleType
                         .simpleImmutableTypeFrom(
                                         TypeName.typeNameOf(TYPES_NAMESPACE, "inNeighbors"),
-                                        JSON_OBJ_MAPPER::writeValueAsBytes,
-                                        bytes -> JSON_OBJ_MAPPER.readValue(bytes,
-                                                        new TypeReference<List<CustomTuple2<Integer, Long>>>() {
-                                                        }));
+                                        NeighborListCodec::serialize,
+                                        NeighborListCodec::deserialize);
+
+        /**
+         * types for the messages that add a batch of edges to a single vertex, the address of the message
+         * identifies the vertex and the list holds the (neighbor id, timestamp) of every new edge
+         */
+        public static final Type<NeighborList> Add_IN_EDGE_BATCH_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "addInEdgeBatch"),
+                        NeighborListCodec::serialize,
+                        NeighborListCodec::deserialize);
+
+        public static final Type<NeighborList> Add_OUT_EDGE_BATCH_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "addOutEdgeBatch"),
+                        NeighborListCodec::serialize,
+                        NeighborListCodec::deserialize);
+
+        /**
+         * types for the messages that install a block of a graph snapshot, holding the edges of a single vertex
+         * sorted by timestamp, see GraphBootstrapApp. The block is installed with a single state write.
+         */
+        public static final Type<NeighborList> LOAD_IN_NEIGHBORS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "loadInNeighbors"),
+                        NeighborListCodec::serialize,
+                        NeighborListCodec::deserialize);
+
+        public static final Type<NeighborList> LOAD_OUT_NEIGHBORS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "loadOutNeighbors"),
+                        NeighborListCodec::serialize,
+                        NeighborListCodec::deserialize);
 
         public static final Type<RecommendQuery> RECOMMEND_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "recommendQuery"),
@@ -55,34 +83,88 @@ public final class Types {
                         JSON_OBJ_MAPPER::writeValueAsBytes,
                         bytes -> JSON_OBJ_MAPPER.readValue(bytes, Set.class));
 
+        public static final Type<RecommendScores> RECOMMEND_SCORES_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "recommendScores"),
+                        RecommendScores::serialize,
+                        RecommendScores::deserialize);
+
+        /**
+         * type for a batch of recommendation candidates sent to a single RecommendationFn instance,
+         * holding the (candidate id, timestamp) of every candidate
+         */
+        public static final Type<NeighborList> RECOMMEND_CANDIDATE_BATCH_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "recommendCandidateBatch"),
+                        NeighborListCodec::serialize,
+                        NeighborListCodec::deserialize);
+
         public static final Type<InEdgesQuery> IN_EDGES_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "inEdgesQuery"),
                         JSON_OBJ_MAPPER::writeValueAsBytes,
                         bytes -> JSON_OBJ_MAPPER.readValue(bytes, InEdgesQuery.class));
 
-        public static final Type<List<CustomTuple2<Integer, Long>>> OUT_NEIGHBORS_TYPE = SimpleType
+        public static final Type<NeighborList> OUT_NEIGHBORS_TYPE = SimpleType
                         .simpleImmutableTypeFrom(
                                         TypeName.typeNameOf(TYPES_NAMESPACE, "outNeighbors"),
-                                        JSON_OBJ_MAPPER::writeValueAsBytes,
-                                        bytes -> JSON_OBJ_MAPPER.readValue(bytes,
-                                                        new TypeReference<List<CustomTuple2<Integer, Long>>>() {
-                                                        }));
+                                        NeighborListCodec::serialize,
+                                        NeighborListCodec::deserialize);
 
         public static final Type<OutEdgesQuery> OUT_EDGES_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "outEdgesQuery"),
                         JSON_OBJ_MAPPER::writeValueAsBytes,
                         bytes -> JSON_OBJ_MAPPER.readValue(bytes, OutEdgesQuery.class));
 
+        /**
+         * the IN_DEGREE query carries the same fields as the incoming edges query, but is answered with the degree
+         * counters of the vertex only
+         */
+        public static final Type<InEdgesQuery> IN_DEGREE_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "inDegreeQuery"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, InEdgesQuery.class));
+
+        /**
+         * the OUT_DEGREE query carries the same fields as the outgoing edges query, but is answered with the degree
+         * counters of the vertex only
+         */
+        public static final Type<OutEdgesQuery> OUT_DEGREE_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "outDegreeQuery"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, OutEdgesQuery.class));
+
+        public static final Type<VertexDegree> VERTEX_DEGREE_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "vertexDegree"),
+                        VertexDegree::serialize,
+                        VertexDegree::deserialize);
+
         public static final Type<TimeWindowQuery> TIME_WINDOW_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "timeWindowQuery"),
                         JSON_OBJ_MAPPER::writeValueAsBytes,
                         bytes -> JSON_OBJ_MAPPER.readValue(bytes, TimeWindowQuery.class));
 
+        /**
+         * the COUNT_TIME_WINDOW query carries the same fields as the time window query, but is answered with the
+         * number of edges in the window only
+         */
+        public static final Type<TimeWindowQuery> COUNT_TIME_WINDOW_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "countTimeWindowQuery"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, TimeWindowQuery.class));
+
         public static final Type<KHopQuery> K_HOP_QUERY_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "kHopQuery"),
                         JSON_OBJ_MAPPER::writeValueAsBytes,
                         bytes -> JSON_OBJ_MAPPER.readValue(bytes, KHopQuery.class));
 
+        public static final Type<KHopExpand> K_HOP_EXPAND_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "kHopExpand"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, KHopExpand.class));
+
+        public static final Type<KHopProgress> K_HOP_PROGRESS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "kHopProgress"),
+                        KHopProgress::serialize,
+                        KHopProgress::deserialize);
+
         public static final Type<TriangleQueryTrigger> TRIANGLE_QUERY_TRIGGER_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "triangleQueryTrigger"),
                         JSON_OBJ_MAPPER::writeValueAsBytes,
@@ -90,8 +172,88 @@ public final class Types {
 
         public static final Type<TriangleQueryPass> TRIANGLE_QUERY_PASS_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "triangleQueryPass"),
+                        TriangleQueryPass::serialize,
+                        TriangleQueryPass::deserialize);
+
+        public static final Type<DistinctNeighbors> DISTINCT_NEIGHBORS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "distinctNeighbors"),
+                        DistinctNeighbors::serialize,
+                        DistinctNeighbors::deserialize);
+
+        public static final Type<KHopNeighbors> K_HOP_NEIGHBORS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "kHopNeighbors"),
+                        KHopNeighbors::serialize,
+                        KHopNeighbors::deserialize);
+
+        public static final Type<QueryResultPart> QUERY_RESULT_PART_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "queryResultPart"),
+                        QueryResultPart::serialize,
+                        QueryResultPart::deserialize);
+
+        public static final Type<QueryAggregate> QUERY_AGGREGATE_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "queryAggregate"),
+                        QueryAggregate::serialize,
+                        QueryAggregate::deserialize);
+
+        public static final Type<QueryTimeout> QUERY_TIMEOUT_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "queryTimeout"),
                         JSON_OBJ_MAPPER::writeValueAsBytes,
-                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, TriangleQueryPass.class));
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, QueryTimeout.class));
+
+        public static final Type<CachedQueryResult> CACHED_QUERY_RESULT_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "cachedQueryResult"),
+                        CachedQueryResult::serialize,
+                        CachedQueryResult::deserialize);
+
+        public static final Type<CachedQueryResults> CACHED_QUERY_RESULTS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "cachedQueryResults"),
+                        CachedQueryResults::serialize,
+                        CachedQueryResults::deserialize);
+
+        public static final Type<CacheValidations> CACHE_VALIDATIONS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "cacheValidations"),
+                        CacheValidations::serialize,
+                        CacheValidations::deserialize);
+
+        public static final Type<VersionCheck> VERSION_CHECK_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "versionCheck"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, VersionCheck.class));
+
+        public static final Type<VersionCheckResult> VERSION_CHECK_RESULT_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "versionCheckResult"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, VersionCheckResult.class));
+
+        public static final Type<SegmentCompaction> SEGMENT_COMPACTION_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "segmentCompaction"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, SegmentCompaction.class));
+
+        public static final Type<TimeBucketCounts> TIME_BUCKET_COUNTS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "timeBucketCounts"),
+                        TimeBucketCounts::serialize,
+                        TimeBucketCounts::deserialize);
+
+        public static final Type<ShardScanRequest> SHARD_SCAN_REQUEST_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "shardScanRequest"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, ShardScanRequest.class));
+
+        public static final Type<ShardScanResult> SHARD_SCAN_RESULT_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "shardScanResult"),
+                        ShardScanResult::serialize,
+                        ShardScanResult::deserialize);
+
+        public static final Type<ShardExpiry> SHARD_EXPIRY_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "shardExpiry"),
+                        JSON_OBJ_MAPPER::writeValueAsBytes,
+                        bytes -> JSON_OBJ_MAPPER.readValue(bytes, ShardExpiry.class));
+
+        public static final Type<PendingShardScans> PENDING_SHARD_SCANS_TYPE = SimpleType.simpleImmutableTypeFrom(
+                        TypeName.typeNameOf(TYPES_NAMESPACE, "pendingShardScans"),
+                        PendingShardScans::serialize,
+                        PendingShardScans::deserialize);
 
         public static final Type<Execute> EXECUTE_TYPE = SimpleType.simpleImmutableTypeFrom(
                         TypeName.typeNameOf(TYPES_NAMESPACE, "execute"),
@@ -0,0 +1,84 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the variable-length integers written by {@link VarIntWriter} from a byte array.
+ */
+public final class VarIntReader {
+
+  private final byte[] buffer;
+  private final int limit;
+  private int position;
+
+  public VarIntReader(byte[] buffer) {
+    this(buffer, 0, buffer.length);
+  }
+
+  public VarIntReader(byte[] buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  public int readByte() {
+    checkAvailable();
+    return buffer[position++] & 0xFF;
+  }
+
+  public long readVarLong() {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      checkAvailable();
+      byte b = buffer[position++];
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IllegalStateException("Malformed varint at position " + position);
+  }
+
+  public int readVarInt() {
+    return (int) readVarLong();
+  }
+
+  public long readZigZagLong() {
+    long raw = readVarLong();
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  public int readZigZagInt() {
+    int raw = (int) readVarLong();
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  public byte[] readBytes() {
+    int length = readVarInt();
+    if (length < 0 || position + length > limit) {
+      throw new IllegalStateException("Invalid length " + length + " at position " + position);
+    }
+    byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+    position += length;
+    return bytes;
+  }
+
+  public String readUtf8() {
+    return new String(readBytes(), StandardCharsets.UTF_8);
+  }
+
+  public boolean hasRemaining() {
+    return position < limit;
+  }
+
+  public int position() {
+    return position;
+  }
+
+  private void checkAvailable() {
+    if (position >= limit) {
+      throw new IllegalStateException("Unexpected end of buffer at position " + position);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer for writing LEB128 variable-length integers.
+ * Small values (such as the deltas between consecutive, time-sorted edges) take a single byte
+ * instead of the fixed 4 or 8 bytes of their primitive width.
+ */
+public final class VarIntWriter {
+
+  private byte[] buffer;
+  private int position;
+
+  public VarIntWriter(int initialCapacity) {
+    this.buffer = new byte[Math.max(initialCapacity, 16)];
+  }
+
+  public void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[position++] = (byte) value;
+  }
+
+  /**
+   * Writes an unsigned varint, 7 bits per byte with the high bit as continuation flag
+   * @param value
+   */
+  public void writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+  }
+
+  public void writeVarInt(int value) {
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Writes a signed value with zig-zag encoding, so that small negative numbers stay small
+   * @param value
+   */
+  public void writeZigZagLong(long value) {
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+
+  public void writeZigZagInt(int value) {
+    writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Writes a length prefixed byte array
+   * @param bytes
+   */
+  public void writeBytes(byte[] bytes) {
+    writeVarInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+    position += bytes.length;
+  }
+
+  public void writeUtf8(String value) {
+    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public int size() {
+    return position;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, position);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (position + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + extra));
+    }
+  }
+}
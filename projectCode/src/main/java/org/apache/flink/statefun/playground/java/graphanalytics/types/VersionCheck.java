@@ -0,0 +1,54 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the question of a vertex with a cached query result to one of the other vertices the result
+ * depends on, whether it still has the version the result was computed from. The InEdgesQueryFn/OutEdgesQueryFn
+ * answers it with a {@link VersionCheckResult} to the asking vertex.
+ */
+public class VersionCheck {
+
+  @JsonProperty("query_id")
+  private String queryId;
+
+  // the vertex with the cached result, which gets the answer
+  @JsonProperty("vertex_id")
+  private int vertexId;
+
+  @JsonProperty("version")
+  private long version;
+
+  public VersionCheck() {}
+
+  /**
+   * overloaded constructor
+   * @param queryId
+   * @param vertexId
+   * @param version
+   */
+  private VersionCheck(String queryId, int vertexId, long version) {
+    this.queryId = queryId;
+    this.vertexId = vertexId;
+    this.version = version;
+  }
+
+  public String getQueryId() { return queryId; }
+
+  public int getVertexId() { return vertexId; }
+
+  public long getVersion() { return version; }
+
+  /**
+   * This method is used for creating a new VersionCheck, please call VersionCheck.create(query_id, vertex_id, version)
+   * to create an object of this class
+   *
+   * @param queryId
+   * @param vertexId
+   * @param version
+   * @return VersionCheck
+   */
+  public static VersionCheck create(String queryId, int vertexId, long version) {
+    return new VersionCheck(queryId, vertexId, version);
+  }
+}
@@ -0,0 +1,44 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class defines the answer to a {@link VersionCheck}: whether the vertex still has the version that the cached
+ * query result was computed from.
+ */
+public class VersionCheckResult {
+
+  @JsonProperty("query_id")
+  private String queryId;
+
+  @JsonProperty("fresh")
+  private boolean fresh;
+
+  public VersionCheckResult() {}
+
+  /**
+   * overloaded constructor
+   * @param queryId
+   * @param fresh
+   */
+  private VersionCheckResult(String queryId, boolean fresh) {
+    this.queryId = queryId;
+    this.fresh = fresh;
+  }
+
+  public String getQueryId() { return queryId; }
+
+  public boolean isFresh() { return fresh; }
+
+  /**
+   * This method is used for creating a new VersionCheckResult, please call VersionCheckResult.create(query_id, fresh)
+   * to create an object of this class
+   *
+   * @param queryId
+   * @param fresh
+   * @return VersionCheckResult
+   */
+  public static VersionCheckResult create(String queryId, boolean fresh) {
+    return new VersionCheckResult(queryId, fresh);
+  }
+}
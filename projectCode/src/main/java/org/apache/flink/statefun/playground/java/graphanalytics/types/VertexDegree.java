@@ -0,0 +1,250 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.Arrays;
+
+/**
+ * This class counts the edges that were added to a vertex, so that its degree queries are answered without reading
+ * its neighbor list: the number of added edges, the number of distinct neighbors, and the first and last timestamp.
+ *
+ * The counters can also account for edges they did not count, which are in the number of added edges but not in the
+ * other counters: edges that were dropped by the retention before the counters were built, and edges whose neighbors
+ * are not known, which make the distinct neighbors inexact. Edges that are dropped by the retention after they were
+ * counted cannot be taken out of the distinct neighbors either, see {@link #expire}.
+ *
+ * The distinct neighbors are counted exactly as long as there are at most EXACT_LIMIT of them, by keeping their ids.
+ * Beyond that the ids are replaced by a HyperLogLog sketch of 1024 registers, which estimates the count with a
+ * standard error of about 3% in a fixed 1 KB.
+ *
+ * The binary layout is
+ * <pre>
+ *   [version byte][varlong added_edges][flags byte][zig-zag varlong first_timestamp][zig-zag varlong last_timestamp]
+ *   [kind byte]([compressed id set] | [1024 register bytes])
+ * </pre>
+ * where flag 1 is set while the distinct neighbors are complete, and the id set is written with
+ * {@link SortedIntSets#writeCompressedTo}.
+ */
+public final class VertexDegree {
+
+  private static final int VERSION_1 = 1;
+  private static final int KIND_EXACT = 0;
+  private static final int KIND_SKETCH = 1;
+  private static final int FLAG_COMPLETE = 1;
+
+  private static final int EXACT_LIMIT = 64;
+  private static final int REGISTER_BITS = 10;
+  private static final int REGISTERS = 1 << REGISTER_BITS;
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+  private long addedEdges;
+  // false once the distinct neighbors may miss the neighbors of uncounted edges or count neighbors of dropped edges
+  private boolean complete;
+  private long firstTimestamp;
+  private long lastTimestamp;
+  // sorted distinct neighbor ids, null once the sketch is used
+  private int[] exactIds;
+  private byte[] registers;
+
+  public VertexDegree() {
+    this(0);
+  }
+
+  /**
+   * @param uncountedEdges edges that the counters account for without counting their neighbors and timestamps, which
+   * makes the distinct neighbors inexact
+   */
+  public VertexDegree(long uncountedEdges) {
+    this(uncountedEdges, uncountedEdges == 0, Long.MAX_VALUE, Long.MIN_VALUE, SortedIntSets.EMPTY, null);
+  }
+
+  private VertexDegree(long addedEdges, boolean complete, long firstTimestamp, long lastTimestamp, int[] exactIds,
+                       byte[] registers) {
+    this.addedEdges = addedEdges;
+    this.complete = complete;
+    this.firstTimestamp = firstTimestamp;
+    this.lastTimestamp = lastTimestamp;
+    this.exactIds = exactIds;
+    this.registers = registers;
+  }
+
+  /**
+   * @return the number of edges that the counters account for
+   */
+  public long getAddedEdges() { return addedEdges; }
+
+  /**
+   * This method creates the counters of the edges that are left after the retention has dropped some, which are
+   * counted as added but leave the distinct neighbors exact
+   * @param expiredEdges
+   * @return VertexDegree
+   */
+  public static VertexDegree afterExpiry(long expiredEdges) {
+    return new VertexDegree(expiredEdges, true, Long.MAX_VALUE, Long.MIN_VALUE, SortedIntSets.EMPTY, null);
+  }
+
+  /**
+   * @return true if no counted edge is left, so that there are no timestamps
+   */
+  public boolean isEmpty() { return firstTimestamp > lastTimestamp; }
+
+  /**
+   * @return the smallest timestamp of the counted edges, only meaningful if the counters are not empty. After
+   * {@link #expire} it is the horizon if that is later than the oldest counted edge.
+   */
+  public long getFirstTimestamp() { return firstTimestamp; }
+
+  /**
+   * @return the largest timestamp of the counted edges, only meaningful if the counters are not empty
+   */
+  public long getLastTimestamp() { return lastTimestamp; }
+
+  /**
+   * @return true if {@link #distinctNeighbors} is exact, rather than estimated, missing the neighbors of uncounted
+   * edges or counting the neighbors of dropped edges
+   */
+  public boolean isDistinctExact() { return exactIds != null && complete; }
+
+  /**
+   * @return the number of distinct neighbors of the counted edges
+   */
+  public long distinctNeighbors() {
+    if (exactIds != null) {
+      return exactIds.length;
+    }
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+    if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+      // few neighbors for the number of registers, counting the empty registers is more accurate
+      estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * This method adds an edge to the counters
+   * @param id
+   * @param timestamp
+   */
+  public void add(int id, long timestamp) {
+    addedEdges++;
+    firstTimestamp = Math.min(firstTimestamp, timestamp);
+    lastTimestamp = Math.max(lastTimestamp, timestamp);
+    if (exactIds == null) {
+      addToSketch(id);
+      return;
+    }
+    int index = Arrays.binarySearch(exactIds, id);
+    if (index >= 0) {
+      return;
+    }
+    if (exactIds.length == EXACT_LIMIT) {
+      registers = new byte[REGISTERS];
+      for (int exactId : exactIds) {
+        addToSketch(exactId);
+      }
+      addToSketch(id);
+      exactIds = null;
+      return;
+    }
+    int insertAt = -index - 1;
+    int[] ids = new int[exactIds.length + 1];
+    System.arraycopy(exactIds, 0, ids, 0, insertAt);
+    ids[insertAt] = id;
+    System.arraycopy(exactIds, insertAt, ids, insertAt + 1, exactIds.length - insertAt);
+    exactIds = ids;
+  }
+
+  /**
+   * This method accounts for counted edges that the retention has dropped somewhere the counters cannot see, such as
+   * in the shards of a vertex. Their neighbors stay in the distinct neighbors, which are inexact from then on, and the
+   * first timestamp moves up to the horizon.
+   * @param horizon the edges with a smaller timestamp were dropped
+   */
+  public void expire(long horizon) {
+    complete = false;
+    if (horizon > lastTimestamp) {
+      firstTimestamp = Long.MAX_VALUE;
+      lastTimestamp = Long.MIN_VALUE;
+    } else {
+      firstTimestamp = Math.max(firstTimestamp, horizon);
+    }
+  }
+
+  /**
+   * This method adds a batch of edges to the counters
+   * @param edges
+   */
+  public void addAll(NeighborList edges) {
+    for (int i = 0; i < edges.size(); i++) {
+      add(edges.idAt(i), edges.timestampAt(i));
+    }
+  }
+
+  private void addToSketch(int id) {
+    long hash = mix(id);
+    int register = (int) (hash >>> (64 - REGISTER_BITS));
+    // the position of the first one bit of the remaining bits, the sentinel bit caps it
+    int rank = Long.numberOfLeadingZeros((hash << REGISTER_BITS) | (1L << (REGISTER_BITS - 1))) + 1;
+    if (rank > registers[register]) {
+      registers[register] = (byte) rank;
+    }
+  }
+
+  private static long mix(int id) {
+    // the finalizer of MurmurHash3, consecutive ids must end up in unrelated registers
+    long hash = id * 0x9E3779B97F4A7C15L;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  static byte[] serialize(VertexDegree degree) {
+    VarIntWriter writer =
+        new VarIntWriter(degree.exactIds != null ? 32 + degree.exactIds.length * 2 : 32 + REGISTERS);
+    writer.writeByte(VERSION_1);
+    writer.writeVarLong(degree.addedEdges);
+    writer.writeByte(degree.complete ? FLAG_COMPLETE : 0);
+    writer.writeZigZagLong(degree.firstTimestamp);
+    writer.writeZigZagLong(degree.lastTimestamp);
+    if (degree.exactIds != null) {
+      writer.writeByte(KIND_EXACT);
+      SortedIntSets.writeCompressedTo(writer, degree.exactIds);
+    } else {
+      writer.writeByte(KIND_SKETCH);
+      for (byte register : degree.registers) {
+        writer.writeByte(register);
+      }
+    }
+    return writer.toByteArray();
+  }
+
+  static VertexDegree deserialize(byte[] bytes) {
+    VarIntReader reader = new VarIntReader(bytes);
+    int version = reader.readByte();
+    if (version != VERSION_1) {
+      throw new IllegalStateException("Unsupported vertex degree format version " + version);
+    }
+    long addedEdges = reader.readVarLong();
+    boolean complete = (reader.readByte() & FLAG_COMPLETE) != 0;
+    long firstTimestamp = reader.readZigZagLong();
+    long lastTimestamp = reader.readZigZagLong();
+    if (reader.readByte() == KIND_EXACT) {
+      return new VertexDegree(addedEdges, complete, firstTimestamp, lastTimestamp,
+          SortedIntSets.readCompressedFrom(reader), null);
+    }
+    byte[] registers = new byte[REGISTERS];
+    for (int i = 0; i < REGISTERS; i++) {
+      registers[i] = (byte) reader.readByte();
+    }
+    return new VertexDegree(addedEdges, complete, firstTimestamp, lastTimestamp, null, registers);
+  }
+}
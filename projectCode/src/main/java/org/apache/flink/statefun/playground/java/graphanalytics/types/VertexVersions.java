@@ -0,0 +1,173 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the adjacency versions of the vertices that the result of a k-hop or triangle query was computed
+ * from, sorted by vertex id. The version of a vertex (in the direction of the query) goes up with every edge that is
+ * added to it or dropped by the retention, so a vertex whose version is still the same has the same neighbors.
+ *
+ * The binary layout is
+ * <pre>
+ *   [varint size]([zig-zag varint vertex id delta][varlong version])*
+ * </pre>
+ */
+public final class VertexVersions {
+
+  private int size;
+  // the first sortedSize vertices are sorted by id and distinct, the vertices after them are added in any order
+  private int sortedSize;
+  private int[] ids;
+  private long[] versions;
+
+  public VertexVersions() {
+    this(0, new int[4], new long[4]);
+  }
+
+  private VertexVersions(int size, int[] ids, long[] versions) {
+    this.size = size;
+    this.sortedSize = size;
+    this.ids = ids;
+    this.versions = versions;
+  }
+
+  /**
+   * @param vertexId
+   * @param version
+   * @return the versions of a single vertex
+   */
+  public static VertexVersions of(int vertexId, long version) {
+    VertexVersions single = new VertexVersions();
+    single.add(vertexId, version);
+    return single;
+  }
+
+  public int size() {
+    sort();
+    return size;
+  }
+
+  public int idAt(int index) {
+    sort();
+    return ids[index];
+  }
+
+  public long versionAt(int index) {
+    sort();
+    return versions[index];
+  }
+
+  /**
+   * @param vertexId
+   * @return the version of the vertex, -1 if the vertex is not in the versions
+   */
+  public long versionOf(int vertexId) {
+    sort();
+    int index = Arrays.binarySearch(ids, 0, size, vertexId);
+    return index < 0 ? -1 : versions[index];
+  }
+
+  /**
+   * This method adds the version of a vertex. A vertex that is added twice keeps the smaller version, since it
+   * changed while the query was running and the result may have seen either.
+   * @param vertexId
+   * @param version
+   */
+  public void add(int vertexId, long version) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+      versions = Arrays.copyOf(versions, size * 2);
+    }
+    ids[size] = vertexId;
+    versions[size] = version;
+    size++;
+  }
+
+  /**
+   * This method adds the versions of other vertices
+   * @param other
+   */
+  public void addAll(VertexVersions other) {
+    for (int i = 0; i < other.size; i++) {
+      add(other.ids[i], other.versions[i]);
+    }
+  }
+
+  /**
+   * This method sorts the vertices added since the last sort and merges them into the sorted ones, so adding a few
+   * vertices at a time costs a merge rather than a sort of all of them
+   */
+  private void sort() {
+    if (sortedSize == size) {
+      return;
+    }
+    int added = size - sortedSize;
+    // the id in the high and the position in the low bits, so sorting the keys sorts the added vertices by id
+    long[] keys = new long[added];
+    for (int i = 0; i < added; i++) {
+      keys[i] = ((long) ids[sortedSize + i] << 32) | i;
+    }
+    Arrays.sort(keys);
+    int[] mergedIds = new int[Math.max(4, size)];
+    long[] mergedVersions = new long[mergedIds.length];
+    int merged = 0;
+    int i = 0;
+    int j = 0;
+    while (i < sortedSize || j < added) {
+      int id;
+      long version;
+      if (j == added || (i < sortedSize && ids[i] <= (int) (keys[j] >> 32))) {
+        id = ids[i];
+        version = versions[i++];
+      } else {
+        int position = sortedSize + (int) keys[j++];
+        id = ids[position];
+        version = versions[position];
+      }
+      if (merged > 0 && mergedIds[merged - 1] == id) {
+        mergedVersions[merged - 1] = Math.min(mergedVersions[merged - 1], version);
+      } else {
+        mergedIds[merged] = id;
+        mergedVersions[merged++] = version;
+      }
+    }
+    ids = mergedIds;
+    versions = mergedVersions;
+    size = merged;
+    sortedSize = merged;
+  }
+
+  /**
+   * This method writes the versions without a version byte, so that other binary types can embed them
+   * @param writer
+   * @param vertexVersions
+   */
+  public static void writeTo(VarIntWriter writer, VertexVersions vertexVersions) {
+    vertexVersions.sort();
+    writer.writeVarInt(vertexVersions.size);
+    int previous = 0;
+    for (int i = 0; i < vertexVersions.size; i++) {
+      writer.writeZigZagInt(vertexVersions.ids[i] - previous);
+      writer.writeVarLong(vertexVersions.versions[i]);
+      previous = vertexVersions.ids[i];
+    }
+  }
+
+  /**
+   * This method reads versions written by {@link #writeTo}
+   * @param reader
+   * @return the versions
+   */
+  public static VertexVersions readFrom(VarIntReader reader) {
+    int size = reader.readVarInt();
+    int[] ids = new int[Math.max(size, 4)];
+    long[] versions = new long[ids.length];
+    int previous = 0;
+    for (int i = 0; i < size; i++) {
+      previous += reader.readZigZagInt();
+      ids[i] = previous;
+      versions[i] = reader.readVarLong();
+    }
+    return new VertexVersions(size, ids, versions);
+  }
+}
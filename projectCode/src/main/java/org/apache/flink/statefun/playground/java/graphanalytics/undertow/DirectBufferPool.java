@@ -0,0 +1,89 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.undertow;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Counter;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Metrics;
+
+/**
+ * This class keeps the direct buffers the request bodies of the StateFun runtime are read into, so that they can be
+ * reused by the following requests instead of allocating a new array for every request.
+ *
+ * A request carries the state of all the addresses of its batch, so the bodies are large and their sizes vary a lot.
+ * The buffers are therefore kept in size classes of powers of two, and a request gets a buffer of the smallest class
+ * it fits into. At most maxRetainedBytes of free buffers are kept, further released buffers are left to the garbage
+ * collector.
+ */
+final class DirectBufferPool {
+
+  private static final Counter ALLOCATIONS = Metrics.counter("graph_http_request_buffer_allocations_total",
+      "Direct buffers allocated for request bodies because no pooled buffer of their size was free.");
+
+  // 64 KB, smaller requests share the smallest class
+  private static final int MIN_CLASS = 16;
+
+  // free buffers by size class, starting with MIN_CLASS
+  private final List<ConcurrentLinkedQueue<ByteBuffer>> free;
+  private final long maxRetainedBytes;
+  private final AtomicLong retainedBytes = new AtomicLong();
+
+  /**
+   * @param maxRetainedBytes the most bytes of free buffers that are kept for reuse
+   */
+  DirectBufferPool(long maxRetainedBytes) {
+    this.maxRetainedBytes = maxRetainedBytes;
+    this.free = new ArrayList<>(31 - MIN_CLASS);
+    for (int sizeClass = MIN_CLASS; sizeClass < 31; sizeClass++) {
+      free.add(new ConcurrentLinkedQueue<>());
+    }
+  }
+
+  /**
+   * @return the size of the largest request that is read into a pooled buffer
+   */
+  int maxPooledSize() {
+    // a single request should not take more than a quarter of the pool
+    return (int) Math.min(1 << 30, maxRetainedBytes / 4);
+  }
+
+  /**
+   * This method returns a buffer whose position is 0 and whose limit is the given size, it should be released once
+   * the bytes in it are no longer used
+   * @param size at most {@link #maxPooledSize()}
+   * @return the buffer
+   */
+  ByteBuffer acquire(int size) {
+    int sizeClass = sizeClassOf(size);
+    ByteBuffer buffer = free.get(sizeClass - MIN_CLASS).poll();
+    if (buffer == null) {
+      ALLOCATIONS.increment();
+      buffer = ByteBuffer.allocateDirect(1 << sizeClass);
+    } else {
+      retainedBytes.addAndGet(-buffer.capacity());
+    }
+    buffer.clear();
+    buffer.limit(size);
+    return buffer;
+  }
+
+  /**
+   * This method gives a buffer back to the pool
+   * @param buffer a buffer returned by {@link #acquire}
+   */
+  void release(ByteBuffer buffer) {
+    int capacity = buffer.capacity();
+    if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+      retainedBytes.addAndGet(-capacity);
+      return;
+    }
+    free.get(Integer.numberOfTrailingZeros(capacity) - MIN_CLASS).offer(buffer);
+  }
+
+  private static int sizeClassOf(int size) {
+    int sizeClass = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+    return Math.max(MIN_CLASS, sizeClass);
+  }
+}
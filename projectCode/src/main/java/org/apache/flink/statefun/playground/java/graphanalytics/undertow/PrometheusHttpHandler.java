@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.statefun.playground.java.graphanalytics.undertow;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Metrics;
+
+/**
+ * An Undertow {@link HttpHandler} that serves all the {@link Metrics} of the function server in the Prometheus
+ * text format, on its own listener so that scrapes never queue behind StateFun requests.
+ */
+public final class PrometheusHttpHandler implements HttpHandler {
+
+  @Override
+  public void handleRequest(HttpServerExchange exchange) {
+    StringBuilder body = new StringBuilder(16 * 1024);
+    Metrics.writePrometheus(body);
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8");
+    exchange.getResponseSender().send(body.toString());
+  }
+}
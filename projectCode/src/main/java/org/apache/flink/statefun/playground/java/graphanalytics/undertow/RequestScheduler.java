@@ -0,0 +1,246 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.undertow;
+
+import io.undertow.util.SameThreadExecutor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Counter;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Histogram;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Metrics;
+import org.apache.flink.statefun.sdk.shaded.com.google.protobuf.CodedInputStream;
+import org.apache.flink.statefun.sdk.shaded.com.google.protobuf.WireFormat;
+
+/**
+ * This class decides on which threads the requests of the StateFun runtime are handled.
+ *
+ * <p>A request is a batch of invocations of a single address. A batch with a message of one of the query types, such
+ * as a triangle pass or a k-hop expansion, is handled on the query lane, every other batch on the update lane, so that
+ * CPU-heavy queries do not hold up the edge adds. The runtime sends at most one batch per address at a time, so
+ * handling the batches of different addresses on different lanes does not reorder the messages of an address.
+ * Each lane admits at most queueLimit requests that are queued or running, further requests are rejected right away
+ * so that the runtime retries them later, instead of piling up behind a backlog that only grows.
+ *
+ * <p>The executors are
+ * <ul>
+ *   <li>io: the request is handled on the IO thread that read it, there is a single lane without a limit</li>
+ *   <li>bounded: a fixed number of threads per lane</li>
+ *   <li>work-stealing: a fork/join pool per lane</li>
+ *   <li>virtual: a virtual thread per request, which needs Java 21 at runtime</li>
+ * </ul>
+ */
+public final class RequestScheduler {
+
+  public static final String EXECUTOR_IO = "io";
+  public static final String EXECUTOR_BOUNDED = "bounded";
+  public static final String EXECUTOR_WORK_STEALING = "work-stealing";
+  public static final String EXECUTOR_VIRTUAL = "virtual";
+
+  private static final Counter REJECTED_UPDATES = Metrics.counter("graph_http_requests_rejected_total",
+      "Requests of the StateFun runtime rejected because their lane was full.", "lane", "update");
+  private static final Counter REJECTED_QUERIES = Metrics.counter("graph_http_requests_rejected_total",
+      "Requests of the StateFun runtime rejected because their lane was full.", "lane", "query");
+  private static final Histogram UPDATE_QUEUE_TIME = Metrics.histogram("graph_http_request_queue_seconds",
+      "Time a request of the StateFun runtime waited for a thread of its lane.", Histogram.LATENCY_NANOS, 1e-9,
+      "lane", "update");
+  private static final Histogram QUERY_QUEUE_TIME = Metrics.histogram("graph_http_request_queue_seconds",
+      "Time a request of the StateFun runtime waited for a thread of its lane.", Histogram.LATENCY_NANOS, 1e-9,
+      "lane", "query");
+
+  private static final int INVOCATION_FIELD = 100;
+  private static final int BATCH_INVOCATIONS_FIELD = 3;
+  private static final int INVOCATION_ARGUMENT_FIELD = 2;
+  private static final int TYPED_VALUE_TYPENAME_FIELD = 1;
+
+  private final Lane updates;
+  // the same lane as updates if the requests are not told apart
+  private final Lane queries;
+  private final Set<String> queryTypeNames;
+
+  private RequestScheduler(Lane updates, Lane queries, Set<String> queryTypeNames) {
+    this.updates = updates;
+    this.queries = queries;
+    this.queryTypeNames = queryTypeNames;
+  }
+
+  /**
+   * @return a scheduler that handles every request on the IO thread that read it
+   */
+  public static RequestScheduler sameThread() {
+    Lane lane = new Lane(SameThreadExecutor.INSTANCE, Integer.MAX_VALUE, REJECTED_UPDATES, UPDATE_QUEUE_TIME);
+    return new RequestScheduler(lane, lane, Collections.emptySet());
+  }
+
+  /**
+   * This method creates a scheduler
+   * @param executor one of the EXECUTOR_ names
+   * @param updateThreads threads of the update lane, ignored by the io and virtual executors
+   * @param queryThreads threads of the query lane, ignored by the io and virtual executors
+   * @param queueLimit the most requests of a lane that are queued or running
+   * @param queryTypeNames the type names (namespace/name) of the messages that send a batch to the query lane
+   * @return the scheduler
+   */
+  public static RequestScheduler create(
+      String executor, int updateThreads, int queryThreads, int queueLimit, Set<String> queryTypeNames) {
+    String kind = executor.toLowerCase(Locale.ROOT);
+    if (EXECUTOR_IO.equals(kind)) {
+      return sameThread();
+    }
+    Lane updates = new Lane(newExecutor(kind, updateThreads, "graph-update"), queueLimit, REJECTED_UPDATES,
+        UPDATE_QUEUE_TIME);
+    Lane queries = new Lane(newExecutor(kind, queryThreads, "graph-query"), queueLimit, REJECTED_QUERIES,
+        QUERY_QUEUE_TIME);
+    return new RequestScheduler(updates, queries, new HashSet<>(queryTypeNames));
+  }
+
+  /**
+   * @param body the body of a request, its position is not changed
+   * @return the lane the request is handled on
+   */
+  Lane laneOf(ByteBuffer body) {
+    if (queries == updates) {
+      return updates;
+    }
+    return hasQueryMessage(CodedInputStream.newInstance(body.duplicate())) ? queries : updates;
+  }
+
+  /**
+   * @param body the body of a request
+   * @return the lane the request is handled on
+   */
+  Lane laneOf(byte[] body) {
+    if (queries == updates) {
+      return updates;
+    }
+    return hasQueryMessage(CodedInputStream.newInstance(body)) ? queries : updates;
+  }
+
+  /**
+   * This method looks for a message of a query type among the invocations of a request, without parsing the state
+   * and the message payloads, which are skipped. A request that cannot be read is left to the update lane, where the
+   * SDK reports it.
+   */
+  private boolean hasQueryMessage(CodedInputStream in) {
+    try {
+      if (!seekField(in, INVOCATION_FIELD)) {
+        return false;
+      }
+      in.pushLimit(in.readRawVarint32());
+      while (seekField(in, BATCH_INVOCATIONS_FIELD)) {
+        int invocationLimit = in.pushLimit(in.readRawVarint32());
+        if (seekField(in, INVOCATION_ARGUMENT_FIELD)) {
+          int argumentLimit = in.pushLimit(in.readRawVarint32());
+          if (seekField(in, TYPED_VALUE_TYPENAME_FIELD) && queryTypeNames.contains(in.readStringRequireUtf8())) {
+            return true;
+          }
+          in.skipRawBytes(in.getBytesUntilLimit());
+          in.popLimit(argumentLimit);
+        }
+        in.skipRawBytes(in.getBytesUntilLimit());
+        in.popLimit(invocationLimit);
+      }
+      return false;
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * This method skips the fields of the current message up to the given length delimited field
+   * @return false if the message has no such field
+   */
+  private static boolean seekField(CodedInputStream in, int fieldNumber) throws IOException {
+    while (true) {
+      int tag = in.readTag();
+      if (tag == 0) {
+        return false;
+      }
+      if (WireFormat.getTagFieldNumber(tag) == fieldNumber
+          && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        return true;
+      }
+      in.skipField(tag);
+    }
+  }
+
+  private static ExecutorService newExecutor(String kind, int threads, String threadName) {
+    switch (kind) {
+      case EXECUTOR_BOUNDED:
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+          Thread thread = new Thread(runnable, threadName + "-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+      case EXECUTOR_WORK_STEALING:
+        return Executors.newWorkStealingPool(threads);
+      case EXECUTOR_VIRTUAL:
+        try {
+          // only available from Java 21 on, while the application is built for Java 8
+          return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+          throw new IllegalStateException("The virtual executor needs Java 21 or later, this is Java "
+              + System.getProperty("java.version"), e);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown executor " + kind + ", expected one of " + EXECUTOR_IO + ", "
+            + EXECUTOR_BOUNDED + ", " + EXECUTOR_WORK_STEALING + " or " + EXECUTOR_VIRTUAL);
+    }
+  }
+
+  /**
+   * A lane has an executor and admits a limited number of requests.
+   */
+  static final class Lane {
+    private final Executor executor;
+    private final int limit;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final Counter rejected;
+    private final Histogram queueTime;
+
+    private Lane(Executor executor, int limit, Counter rejected, Histogram queueTime) {
+      this.executor = executor;
+      this.limit = limit;
+      this.rejected = rejected;
+      this.queueTime = queueTime;
+    }
+
+    Executor executor() {
+      return executor;
+    }
+
+    /**
+     * This method admits a request, which must be followed by a call to {@link #release} once it is handled
+     * @return false if the lane is full and the request should be rejected
+     */
+    boolean tryAdmit() {
+      if (admitted.incrementAndGet() > limit) {
+        admitted.decrementAndGet();
+        rejected.increment();
+        return false;
+      }
+      return true;
+    }
+
+    void release() {
+      admitted.decrementAndGet();
+    }
+
+    /**
+     * @param admittedAt System.nanoTime() when the request was admitted
+     */
+    void recordQueueTime(long admittedAt) {
+      if (executor != SameThreadExecutor.INSTANCE) {
+        queueTime.record(System.nanoTime() - admittedAt);
+      }
+    }
+  }
+}
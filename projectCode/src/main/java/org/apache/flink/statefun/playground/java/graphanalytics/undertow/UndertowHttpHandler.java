@@ -18,47 +18,192 @@
 
 package org.apache.flink.statefun.playground.java.graphanalytics.undertow;
 
+import io.undertow.server.Connectors;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import org.apache.flink.statefun.playground.java.graphanalytics.GraphLogger;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Counter;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Histogram;
+import org.apache.flink.statefun.playground.java.graphanalytics.metrics.Metrics;
 import org.apache.flink.statefun.sdk.java.handler.RequestReplyHandler;
 import org.apache.flink.statefun.sdk.java.slice.Slice;
 import org.apache.flink.statefun.sdk.java.slice.Slices;
+import org.xnio.channels.StreamSourceChannel;
 
 /**
  * A simple Undertow {@link HttpHandler} that delegates requests from StateFun runtime processes to
  * a StateFun {@link RequestReplyHandler}.
+ *
+ * <p>A request carries the state of every address of its batch, so its body can be large. A body whose length is
+ * known is read from the channel into a pooled direct buffer, which is handed to the {@link RequestReplyHandler}
+ * without copying it into an array and given back to the pool once the response is complete. The SDK parses the
+ * request without copying the state values out of the buffer, which is fine because the response is serialized
+ * before the handler's future completes and the functions do not keep the bytes of their state or messages.
+ *
+ * <p>The requests are handled on the threads chosen by a {@link RequestScheduler}.
  */
 public final class UndertowHttpHandler implements HttpHandler {
+  private static final GraphLogger LOG = GraphLogger.get(UndertowHttpHandler.class);
+
+  // a request is a batch of invocations, comparing its time with the apply() times of the functions shows how much
+  // of it is spent outside of our handlers
+  private static final Histogram REQUEST_TIME = Metrics.histogram("graph_http_request_seconds",
+      "Time from receiving a request of the StateFun runtime to completing its response.",
+      Histogram.LATENCY_NANOS, 1e-9);
+  private static final Counter REQUEST_BYTES = Metrics.counter("graph_http_request_bytes_total",
+      "Bytes of the requests of the StateFun runtime.");
+  private static final Counter RESPONSE_BYTES = Metrics.counter("graph_http_response_bytes_total",
+      "Bytes of the responses to the StateFun runtime.");
+  private static final Counter REQUEST_ERRORS = Metrics.counter("graph_http_request_errors_total",
+      "Requests of the StateFun runtime that failed.");
+
+  public static final long DEFAULT_BUFFER_POOL_BYTES = 64L << 20;
+
   private final RequestReplyHandler handler;
+  // null if the bodies are read into arrays
+  private final DirectBufferPool buffers;
+  private final RequestScheduler scheduler;
 
   public UndertowHttpHandler(RequestReplyHandler handler) {
+    this(handler, DEFAULT_BUFFER_POOL_BYTES, RequestScheduler.sameThread());
+  }
+
+  /**
+   * @param handler
+   * @param bufferPoolBytes the most bytes of free request buffers that are kept for reuse, 0 reads every body
+   *     into a new array
+   * @param scheduler decides on which threads the requests are handled
+   */
+  public UndertowHttpHandler(RequestReplyHandler handler, long bufferPoolBytes, RequestScheduler scheduler) {
     this.handler = Objects.requireNonNull(handler);
+    this.buffers = bufferPoolBytes > 0 ? new DirectBufferPool(bufferPoolBytes) : null;
+    this.scheduler = Objects.requireNonNull(scheduler);
   }
 
   @Override
   public void handleRequest(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes(this::onRequestBody);
+    long length = exchange.getRequestContentLength();
+    if (buffers == null || length < 0 || length > buffers.maxPooledSize()) {
+      exchange.getRequestReceiver().receiveFullBytes(this::onRequestBody);
+      return;
+    }
+    StreamSourceChannel channel = exchange.getRequestChannel();
+    ByteBuffer buffer = buffers.acquire((int) length);
+    try {
+      if (readAvailable(channel, buffer)) {
+        onRequestBody(exchange, buffer);
+        return;
+      }
+    } catch (IOException e) {
+      buffers.release(buffer);
+      fail(exchange, e);
+      return;
+    }
+    // the rest of the body is read by the IO thread as it arrives, and the request is then handled in a new call
+    // of the exchange, like the request receiver does it
+    channel.getReadSetter().set(ignored -> {
+      try {
+        if (!readAvailable(channel, buffer)) {
+          return;
+        }
+        channel.getReadSetter().set(null);
+        channel.suspendReads();
+        Connectors.executeRootHandler(ex -> onRequestBody(ex, buffer), exchange);
+      } catch (IOException e) {
+        channel.getReadSetter().set(null);
+        channel.suspendReads();
+        buffers.release(buffer);
+        Connectors.executeRootHandler(ex -> fail(ex, e), exchange);
+      }
+    });
+    channel.resumeReads();
   }
 
-  private void onRequestBody(HttpServerExchange exchange, byte[] requestBytes) {
-    exchange.dispatch();
+  /**
+   * This method reads the bytes of the body that are available without blocking. Like the request receiver, it
+   * reads until the end of the body has been seen, which terminates the request for the exchange.
+   * @param channel
+   * @param buffer a pooled buffer whose limit is the length of the body
+   * @return true once the whole body has been read
+   * @throws IOException if the body does not have the announced length
+   */
+  private static boolean readAvailable(StreamSourceChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer);
+      if (read == 0) {
+        return false;
+      }
+      if (read < 0) {
+        throw new IOException("the request body ended after " + buffer.position() + " of " + buffer.limit()
+            + " bytes");
+      }
+    }
+    int read = channel.read(ByteBuffer.allocate(1));
+    if (read > 0) {
+      throw new IOException("the request body is longer than " + buffer.limit() + " bytes");
+    }
+    return read < 0;
+  }
 
+  private void onRequestBody(HttpServerExchange exchange, ByteBuffer buffer) {
+    buffer.flip();
+    dispatch(exchange, scheduler.laneOf(buffer), Slices.wrap(buffer), () -> buffers.release(buffer));
+  }
 
-    CompletableFuture<Slice> future = handler.handle(Slices.wrap(requestBytes));
-    future.whenComplete((response, exception) -> onComplete(exchange, response, exception));
+  private void onRequestBody(HttpServerExchange exchange, byte[] requestBytes) {
+    dispatch(exchange, scheduler.laneOf(requestBytes), Slices.wrap(requestBytes), () -> {});
   }
 
-  private void onComplete(HttpServerExchange exchange, Slice responseBytes, Throwable ex) {
-    if (ex != null) {
-      ex.printStackTrace(System.out);
-      exchange.getResponseHeaders().put(Headers.STATUS, 500);
+  /**
+   * This method handles the request on the executor of its lane, once the current call of the exchange has
+   * returned so that a response that cannot be written at once may resume the writes of the exchange. If the lane
+   * is full the request is rejected with 503, which the StateFun runtime retries.
+   * @param exchange
+   * @param lane
+   * @param request
+   * @param release called once the request bytes are no longer used
+   */
+  private void dispatch(HttpServerExchange exchange, RequestScheduler.Lane lane, Slice request, Runnable release) {
+    REQUEST_BYTES.add(request.readableBytes());
+    if (!lane.tryAdmit()) {
+      release.run();
+      exchange.setStatusCode(503);
       exchange.endExchange();
       return;
     }
+    long admittedAt = System.nanoTime();
+    exchange.dispatch(lane.executor(), () -> {
+      lane.recordQueueTime(admittedAt);
+      long start = System.nanoTime();
+      CompletableFuture<Slice> future = handler.handle(request);
+      future.whenComplete((response, exception) -> {
+        onComplete(exchange, start, response, exception);
+        lane.release();
+        release.run();
+      });
+    });
+  }
+
+  private void onComplete(HttpServerExchange exchange, long start, Slice responseBytes, Throwable ex) {
+    REQUEST_TIME.record(System.nanoTime() - start);
+    if (ex != null) {
+      fail(exchange, ex);
+      return;
+    }
+    RESPONSE_BYTES.add(responseBytes.readableBytes());
     exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/octet-stream");
     exchange.getResponseSender().send(responseBytes.asReadOnlyByteBuffer());
   }
+
+  private static void fail(HttpServerExchange exchange, Throwable ex) {
+    REQUEST_ERRORS.increment();
+    LOG.error(ex, "failed to handle a request of the StateFun runtime");
+    exchange.setStatusCode(500);
+    exchange.endExchange();
+  }
 }
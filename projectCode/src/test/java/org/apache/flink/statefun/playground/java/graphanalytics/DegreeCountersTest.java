@@ -0,0 +1,100 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.DegreeResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.ShardExpiry;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.testing.TestContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DegreeCountersTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final TypeName FUNCTION_TYPE = TypeName.typeNameOf("graph-analytics.test", "degree");
+  private static final String RETENTION_SETTING = "GRAPH_TEST_DEGREE_RETENTION_DAYS";
+  private static final long DAY = 24 * 3600;
+
+  private SegmentedNeighborStore store;
+  private VertexShards shards;
+  private DegreeCounters counters;
+  private TestContext context;
+
+  @Before
+  public void setUp() {
+    System.setProperty(RETENTION_SETTING, "10");
+    store = new SegmentedNeighborStore("testNeighbors", Types.OUT_NEIGHBORS_TYPE, false,
+        EdgeRetention.fromSetting(RETENTION_SETTING));
+    shards = new VertexShards(FUNCTION_TYPE, store, Types.Add_OUT_EDGE_BATCH_TYPE);
+    counters = new DegreeCounters(store, shards);
+    context = TestContext.forTarget(new Address(FUNCTION_TYPE, "1"));
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(RETENTION_SETTING);
+  }
+
+  @Test
+  public void degreeOnlyCountsTheEdgesThatAreKept() throws Exception {
+    for (int day = 0; day < 40; day++) {
+      for (int i = 0; i < 4; i++) {
+        // a neighbor per day, so that the dropped days take their neighbors with them
+        addEdge(day, day * DAY + i * 60);
+      }
+      // as the functions do on a SegmentCompaction
+      counters.expire(context, shards.compact(context));
+    }
+    NeighborList kept = store.read(context);
+    assertTrue(store.expiredEdges(context) > 0);
+
+    JsonNode result = degreeResult();
+    assertEquals(kept.size(), result.get("degree").asInt());
+    assertEquals(kept.distinctIds().length, result.get("distinct_neighbors").asInt());
+    assertTrue(result.get("distinct_exact").asBoolean());
+    assertEquals(kept.timestampAt(0), result.get("first_timestamp").asLong());
+    assertEquals(39 * DAY + 180, result.get("last_timestamp").asLong());
+
+    // the rebuilt counters go on counting new edges
+    addEdge(1000, 40 * DAY);
+    result = degreeResult();
+    assertEquals(kept.size() + 1, result.get("degree").asInt());
+    assertEquals(kept.distinctIds().length + 1, result.get("distinct_neighbors").asInt());
+    assertTrue(result.get("distinct_exact").asBoolean());
+  }
+
+  @Test
+  public void edgesDroppedByTheShardsMakeTheDistinctNeighborsInexact() throws Exception {
+    for (int day = 0; day < 5; day++) {
+      addEdge(day, day * DAY);
+    }
+    // the counters of a sharded vertex see the edges its shards drop only as a count and a horizon
+    ShardExpiry expiry = ShardExpiry.create(2, 2 * DAY);
+    shards.expire(context, expiry);
+    counters.expire(context, expiry);
+
+    JsonNode result = degreeResult();
+    assertEquals(3, result.get("degree").asInt());
+    assertFalse(result.get("distinct_exact").asBoolean());
+    assertEquals(2 * DAY, result.get("first_timestamp").asLong());
+    assertEquals(4 * DAY, result.get("last_timestamp").asLong());
+  }
+
+  private void addEdge(int id, long timestamp) {
+    store.append(context, id, timestamp);
+    counters.add(context, id, timestamp);
+  }
+
+  private JsonNode degreeResult() throws Exception {
+    return MAPPER.readTree(DegreeResult.of(1, shards.degree(context), counters.get(context)).toJsonBytes());
+  }
+}
@@ -0,0 +1,167 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Execute;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.egress.generated.KafkaProducerRecord;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.StatefulFunction;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+import org.apache.flink.statefun.sdk.java.testing.TestContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * These tests run the functions in process, so that a repeated query is answered from the query cache of the vertex
+ * and an edge that is added to a vertex the result depends on makes the query compute again.
+ */
+public class QueryResultCacheTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Map<TypeName, StatefulFunction> functions = new HashMap<>();
+  private final Map<Address, TestContext> contexts = new HashMap<>();
+  private final List<JsonNode> results = new ArrayList<>();
+  // true once a query has expanded a vertex or run a triangle pass, rather than being answered from the cache
+  private boolean computed;
+  private long timestamp = 1000;
+
+  @Before
+  public void setUp() {
+    functions.put(EventsFilterFn.TYPE_NAME, new EventsFilterFn());
+    functions.put(InEdgesQueryFn.TYPE_NAME, new InEdgesQueryFn());
+    functions.put(OutEdgesQueryFn.TYPE_NAME, new OutEdgesQueryFn());
+    functions.put(KHopCoordinatorFn.TYPE_NAME, new KHopCoordinatorFn());
+    functions.put(QueryResultAggregatorFn.TYPE_NAME, new QueryResultAggregatorFn());
+  }
+
+  @Test
+  public void kHopQueryIsCachedUntilAnExpandedVertexChanges() throws Throwable {
+    addEdge(1, 2);
+    addEdge(2, 3);
+    addEdge(3, 4);
+
+    assertEquals("[3]", query("OUT_K_HOP", 1, 2));
+    assertTrue(computed);
+
+    assertEquals("[3]", query("OUT_K_HOP", 1, 2));
+    assertFalse("answered from the cache", computed);
+
+    // vertex 2 is not the queried vertex, but the result depends on its neighbors
+    addEdge(2, 5);
+    assertEquals("[3, 5]", query("OUT_K_HOP", 1, 2));
+    assertTrue(computed);
+
+    addEdge(1, 6);
+    assertEquals("[3, 5]", query("OUT_K_HOP", 1, 2));
+    assertTrue("the queried vertex changed", computed);
+
+    assertEquals("[3, 5]", query("OUT_K_HOP", 1, 2));
+    assertFalse(computed);
+  }
+
+  @Test
+  public void edgeOfAnUnrelatedVertexKeepsTheCachedResult() throws Throwable {
+    addEdge(1, 2);
+    addEdge(2, 3);
+    assertEquals("[3]", query("OUT_K_HOP", 1, 2));
+
+    addEdge(3, 4);
+    addEdge(7, 1);
+    assertEquals("[3]", query("OUT_K_HOP", 1, 2));
+    assertFalse(computed);
+  }
+
+  @Test
+  public void triangleQueryIsCachedUntilANeighborChanges() throws Throwable {
+    addEdge(1, 2);
+    addEdge(1, 3);
+    addEdge(2, 4);
+
+    assertEquals("[]", query("OUT_TRIANGLES", 1, 0));
+    assertTrue(computed);
+    assertEquals("[]", query("OUT_TRIANGLES", 1, 0));
+    assertFalse("answered from the cache", computed);
+
+    addEdge(2, 3);
+    assertEquals("[2-3]", query("OUT_TRIANGLES", 1, 0));
+    assertTrue(computed);
+    assertEquals("[2-3]", query("OUT_TRIANGLES", 1, 0));
+    assertFalse(computed);
+  }
+
+  private void addEdge(int src, int dst) throws Throwable {
+    send("{\"task\":\"ADD\",\"src\":" + src + ",\"dst\":" + dst + ",\"t\":" + (timestamp++) + "}");
+  }
+
+  /**
+   * @return the sorted k-hop neighbors, or the sorted triangles as second-third, of the single result record
+   */
+  private String query(String task, int vertexId, int k) throws Throwable {
+    results.clear();
+    computed = false;
+    send("{\"query_id\":\"q\",\"task\":\"" + task + "\",\"src\":" + vertexId + ",\"k\":" + k + "}");
+    assertEquals(1, results.size());
+    JsonNode result = results.get(0);
+    assertEquals("q", result.get("query_id").asText());
+    assertTrue(result.get("complete").asBoolean());
+    TreeSet<String> sorted = new TreeSet<>();
+    if (result.has("nodes")) {
+      result.get("nodes").forEach(node -> sorted.add(node.asText()));
+    } else {
+      result.get("triangles").forEach(triangle -> sorted.add(triangle.get(1).asInt() + "-" + triangle.get(2).asInt()));
+    }
+    return sorted.toString();
+  }
+
+  private void send(String execute) throws Throwable {
+    Deque<Message> pending = new ArrayDeque<>();
+    pending.add(MessageBuilder.forAddress(EventsFilterFn.TYPE_NAME, "0")
+        .withCustomType(Types.EXECUTE_TYPE, MAPPER.readValue(execute, Execute.class))
+        .build());
+    while (!pending.isEmpty()) {
+      Message message = pending.poll();
+      Address target = message.targetAddress();
+      StatefulFunction function = functions.get(target.type());
+      if (function == null) {
+        // e.g. the recommendations, which the queries do not depend on
+        continue;
+      }
+      computed |= message.is(Types.K_HOP_EXPAND_TYPE) || message.is(Types.TRIANGLE_QUERY_PASS_TYPE);
+      TestContext context = contexts.computeIfAbsent(target, TestContext::forTarget);
+      int sent = context.getSentMessages().size();
+      int delayed = context.getSentDelayedMessages().size();
+      int egress = context.getSentEgressMessages().size();
+      function.apply(context, message);
+      for (int i = sent; i < context.getSentMessages().size(); i++) {
+        pending.add(context.getSentMessages().get(i).message());
+      }
+      for (int i = delayed; i < context.getSentDelayedMessages().size(); i++) {
+        Message delayedMessage = context.getSentDelayedMessages().get(i).message();
+        // the queries complete before they time out
+        if (!delayedMessage.is(Types.QUERY_TIMEOUT_TYPE)) {
+          pending.add(delayedMessage);
+        }
+      }
+      for (int i = egress; i < context.getSentEgressMessages().size(); i++) {
+        KafkaProducerRecord record = KafkaProducerRecord.parseFrom(
+            context.getSentEgressMessages().get(i).message().egressMessageValueBytes().toByteArray());
+        results.add(MAPPER.readTree(record.getValueBytes().toByteArray()));
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.RecommendScores;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+import org.apache.flink.statefun.sdk.java.message.MessageBuilder;
+import org.apache.flink.statefun.sdk.java.slice.Slices;
+import org.apache.flink.statefun.sdk.java.testing.TestContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * These tests start from the candidate set that an earlier version of the function has stored, and check that it is
+ * moved into the scored candidates.
+ */
+public class RecommendationFnTest {
+
+  // the state of the earlier version, under its own name and type
+  private static final ValueSpec<Set<Integer>> LEGACY_SET =
+      ValueSpec.named("recommendSet").withCustomType(Types.RECOMMEND_SET_TYPE);
+  private static final ValueSpec<RecommendScores> SCORES =
+      ValueSpec.named("recommendScores").withCustomType(Types.RECOMMEND_SCORES_TYPE);
+
+  private final RecommendationFn function = new RecommendationFn();
+  private TestContext context;
+
+  @Before
+  public void setUp() {
+    context = TestContext.forTarget(new Address(RecommendationFn.TYPE_NAME, "1"));
+    // the set is read back from its JSON bytes, the way the earlier version has written it
+    byte[] json = "[3,5,7]".getBytes(StandardCharsets.UTF_8);
+    context.storage().set(LEGACY_SET, Types.RECOMMEND_SET_TYPE.typeSerializer().deserialize(Slices.wrap(json)));
+  }
+
+  @Test
+  public void legacySetIsMigratedOnRead() {
+    RecommendScores scores = function.getRecommendationSet(context);
+
+    assertEquals(new HashSet<>(Arrays.asList(3, 5, 7)), ids(scores));
+    assertFalse(context.storage().get(LEGACY_SET).isPresent());
+    assertEquals(ids(scores), ids(context.storage().get(SCORES).get()));
+  }
+
+  @Test
+  public void candidateBatchKeepsTheLegacyCandidates() throws Throwable {
+    NeighborList candidates = new NeighborList();
+    candidates.append(9, 1000);
+    candidates.append(5, 1000);
+    function.apply(context, MessageBuilder.forAddress(RecommendationFn.TYPE_NAME, "1")
+        .withCustomType(Types.RECOMMEND_CANDIDATE_BATCH_TYPE, candidates)
+        .build());
+
+    assertFalse(context.storage().get(LEGACY_SET).isPresent());
+    RecommendScores scores = context.storage().get(SCORES).get();
+    assertEquals(new HashSet<>(Arrays.asList(3, 5, 7, 9)), ids(scores));
+    // the legacy candidates have no timestamp, so the candidate that was suggested again ranks first
+    assertEquals(5, scores.idAt(0));
+  }
+
+  @Test
+  public void migratedStateIsNotMigratedAgain() {
+    function.getRecommendationSet(context);
+    function.updateRecommendSet(context, 11);
+    assertTrue(context.storage().get(SCORES).isPresent());
+
+    assertEquals(new HashSet<>(Arrays.asList(3, 5, 7, 11)), ids(function.getRecommendationSet(context)));
+  }
+
+  private static Set<Integer> ids(RecommendScores scores) {
+    Set<Integer> ids = new HashSet<>();
+    for (int rank = 0; rank < scores.size(); rank++) {
+      ids.add(scores.idAt(rank));
+    }
+    return ids;
+  }
+}
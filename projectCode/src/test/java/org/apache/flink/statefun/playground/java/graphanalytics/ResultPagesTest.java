@@ -0,0 +1,139 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborsResult;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.PageRequest;
+import org.apache.flink.statefun.sdk.egress.generated.KafkaProducerRecord;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.testing.TestContext;
+import org.junit.Test;
+
+/**
+ * These tests send pages that do not fit into one invocation, so that ResultPages hands the rest of the page to the
+ * continuation after CHUNKS_PER_STEP chunks.
+ */
+public class ResultPagesTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String TOPIC = "outgoing-edges";
+  private static final int STEP_EDGES = ResultPages.CHUNK_EDGES * ResultPages.CHUNKS_PER_STEP;
+  private static final int VERTEX = 1;
+
+  private final TestContext context =
+      TestContext.forTarget(new Address(TypeName.typeNameOf("graph-analytics.test", "pages"), "1"));
+  private final List<PageRequest> continuations = new ArrayList<>();
+  private final List<JsonNode> chunks = new ArrayList<>();
+
+  @Test
+  public void allEdgesContinueAfterChunksPerStep() throws Exception {
+    NeighborList edges = edgesWithTies(STEP_EDGES + ResultPages.CHUNK_EDGES / 2);
+
+    send(edges, null);
+    assertEquals(ResultPages.CHUNKS_PER_STEP, chunks.size());
+    assertEquals(1, continuations.size());
+    PageRequest rest = continuations.get(0);
+    assertEquals("no limit", 0, rest.getLimit());
+    assertFalse(rest.isDescending());
+    assertEquals(last(chunks).get("next_cursor").asText(), rest.getCursor().toToken());
+    for (JsonNode chunk : chunks) {
+      assertFalse(chunk.get("last_chunk").asBoolean());
+    }
+
+    send(edges, rest);
+    assertEquals(ResultPages.CHUNKS_PER_STEP + 1, chunks.size());
+    assertEquals("no second continuation", 1, continuations.size());
+    assertTrue(last(chunks).get("last_chunk").asBoolean());
+    assertNull(last(chunks).get("next_cursor"));
+    assertEquals(ids(edges), sentIds());
+  }
+
+  @Test
+  public void continuationKeepsTheRemainingLimit() throws Exception {
+    NeighborList edges = edgesWithTies(2 * STEP_EDGES);
+    int limit = STEP_EDGES + ResultPages.CHUNK_EDGES / 3;
+
+    send(edges, PageRequest.create(limit, null, PageRequest.ORDER_DESC));
+    assertEquals(1, continuations.size());
+    PageRequest rest = continuations.get(0);
+    assertEquals(limit - STEP_EDGES, rest.getLimit());
+    assertTrue(rest.isDescending());
+
+    send(edges, rest);
+    assertEquals(1, continuations.size());
+    JsonNode lastChunk = last(chunks);
+    assertEquals(limit - STEP_EDGES, lastChunk.get("count").asInt());
+    assertTrue(lastChunk.get("last_chunk").asBoolean());
+    // the page ends before the edges do, so the client can ask for the next page
+    assertNotNull(lastChunk.get("next_cursor"));
+
+    List<Integer> expected = ids(edges.copyOfRange(edges.size() - limit, edges.size()));
+    Collections.reverse(expected);
+    assertEquals(expected, sentIds());
+  }
+
+  @Test
+  public void limitOfOneStepDoesNotContinue() throws Exception {
+    NeighborList edges = edgesWithTies(STEP_EDGES + 1);
+
+    send(edges, PageRequest.create(STEP_EDGES, null, null));
+    assertEquals(ResultPages.CHUNKS_PER_STEP, chunks.size());
+    assertTrue(continuations.isEmpty());
+    assertTrue(last(chunks).get("last_chunk").asBoolean());
+    assertEquals(ids(edges.copyOfRange(0, STEP_EDGES)), sentIds());
+  }
+
+  private void send(NeighborList edges, PageRequest page) throws Exception {
+    int egress = context.getSentEgressMessages().size();
+    ResultPages.send(context, TOPIC, edges, page, result -> NeighborsResult.of(VERTEX, result), continuations::add);
+    for (int i = egress; i < context.getSentEgressMessages().size(); i++) {
+      KafkaProducerRecord record = KafkaProducerRecord.parseFrom(
+          context.getSentEgressMessages().get(i).message().egressMessageValueBytes().toByteArray());
+      chunks.add(MAPPER.readTree(record.getValueBytes().toByteArray()));
+    }
+  }
+
+  private List<Integer> sentIds() {
+    List<Integer> ids = new ArrayList<>();
+    for (JsonNode chunk : chunks) {
+      for (JsonNode id : chunk.get("neighbors")) {
+        ids.add(id.asInt());
+      }
+    }
+    return ids;
+  }
+
+  private static JsonNode last(List<JsonNode> chunks) {
+    return chunks.get(chunks.size() - 1);
+  }
+
+  private static List<Integer> ids(NeighborList edges) {
+    List<Integer> ids = new ArrayList<>(edges.size());
+    for (int i = 0; i < edges.size(); i++) {
+      ids.add(edges.idAt(i));
+    }
+    return ids;
+  }
+
+  /**
+   * Three edges share each timestamp, so that the chunks also end between edges with an equal timestamp
+   */
+  private static NeighborList edgesWithTies(int count) {
+    NeighborList edges = new NeighborList(count);
+    for (int i = 0; i < count; i++) {
+      edges.append(i, i / 3);
+    }
+    return edges;
+  }
+}
@@ -0,0 +1,184 @@
+package org.apache.flink.statefun.playground.java.graphanalytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.NeighborList;
+import org.apache.flink.statefun.playground.java.graphanalytics.types.Types;
+import org.apache.flink.statefun.sdk.java.Address;
+import org.apache.flink.statefun.sdk.java.TypeName;
+import org.apache.flink.statefun.sdk.java.ValueSpec;
+import org.apache.flink.statefun.sdk.java.message.Message;
+import org.apache.flink.statefun.sdk.java.testing.TestContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * These tests look at the segments of the store in the state of a test context, to check how the tail is sealed
+ * and merged into the levels, and that the merged edges read the same as the edges that were added.
+ */
+public class SegmentedNeighborStoreTest {
+
+  private static final String NAME = "testNeighbors";
+  // the fanout of the store, level i holds at most TAIL_CAPACITY * LEVEL_FANOUT^(i + 1) edges
+  private static final int LEVEL_FANOUT = 8;
+  private static final int SEALED_LEVELS = 3;
+
+  private final SegmentedNeighborStore store = new SegmentedNeighborStore(NAME, Types.OUT_NEIGHBORS_TYPE);
+  private final ValueSpec<NeighborList> tail = segment(NAME + "Tail");
+  private final List<ValueSpec<NeighborList>> levels = new ArrayList<>();
+  private final ValueSpec<NeighborList> base = segment(NAME);
+  private TestContext context;
+
+  @Before
+  public void setUp() {
+    for (int i = 0; i < SEALED_LEVELS; i++) {
+      levels.add(segment(NAME + "Segment" + i));
+    }
+    context = TestContext.forTarget(new Address(TypeName.typeNameOf("graph-analytics.test", "store"), "1"));
+  }
+
+  @Test
+  public void fullTailSchedulesOneCompaction() {
+    for (int i = 0; i < SegmentedNeighborStore.TAIL_CAPACITY - 1; i++) {
+      store.append(context, i, i);
+    }
+    assertTrue(context.getSentDelayedMessages().isEmpty());
+
+    store.append(context, 100, 100);
+    store.append(context, 101, 101);
+    assertEquals("scheduled once", 1, context.getSentDelayedMessages().size());
+    Message message = context.getSentDelayedMessages().get(0).message();
+    assertTrue(message.is(Types.SEGMENT_COMPACTION_TYPE));
+    assertEquals(NAME, message.as(Types.SEGMENT_COMPACTION_TYPE).getStore());
+  }
+
+  @Test
+  public void compactionSealsTheTail() {
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i <= SegmentedNeighborStore.TAIL_CAPACITY; i++) {
+      store.append(context, i, i);
+      expected.add(i + "@" + i);
+    }
+
+    store.compact(context);
+    assertFalse(context.storage().get(tail).isPresent());
+    assertEquals(SegmentedNeighborStore.TAIL_CAPACITY + 1, context.storage().get(levels.get(0)).get().size());
+    assertEquals(expected, describe(store.read(context)));
+
+    // the next full tail schedules a compaction again
+    for (int i = 0; i < SegmentedNeighborStore.TAIL_CAPACITY; i++) {
+      store.append(context, 1000 + i, 1000 + i);
+    }
+    assertEquals(2, context.getSentDelayedMessages().size());
+  }
+
+  @Test
+  public void compactionsCascadeThroughTheLevels() {
+    Random random = new Random(23);
+    List<Long> timestamps = new ArrayList<>();
+    int capacity = SegmentedNeighborStore.TAIL_CAPACITY;
+    for (int i = 0; i < SEALED_LEVELS; i++) {
+      capacity *= LEVEL_FANOUT;
+    }
+    // the first levels hold less than the last one, so twice its capacity overflows it
+    int rounds = 2 * capacity / SegmentedNeighborStore.TAIL_CAPACITY;
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < SegmentedNeighborStore.TAIL_CAPACITY; i++) {
+        // distinct timestamps in any order, so that the read order does not depend on the order of ties
+        long timestamp = (long) random.nextInt(1 << 20) * rounds * SegmentedNeighborStore.TAIL_CAPACITY
+            + timestamps.size();
+        store.append(context, timestamps.size(), timestamp);
+        timestamps.add(timestamp);
+      }
+      store.compact(context);
+      assertLevelsWithinCapacity();
+      if (round == LEVEL_FANOUT) {
+        // the first level overflows and moves into the second one
+        assertFalse(context.storage().get(levels.get(0)).isPresent());
+        assertEquals((LEVEL_FANOUT + 1) * SegmentedNeighborStore.TAIL_CAPACITY,
+            context.storage().get(levels.get(1)).get().size());
+      }
+    }
+    assertTrue("the last level has overflowed into the base", context.storage().get(base).isPresent());
+    assertEquals(timestamps.size(), store.size(context));
+
+    NeighborList edges = store.read(context);
+    assertEquals(timestamps.size(), edges.size());
+    for (int i = 0; i < edges.size(); i++) {
+      assertEquals(timestamps.get(edges.idAt(i)).longValue(), edges.timestampAt(i));
+      if (i > 0) {
+        assertTrue(edges.timestampAt(i - 1) < edges.timestampAt(i));
+      }
+    }
+  }
+
+  @Test
+  public void readMergesTheTailWithTheSealedSegments() {
+    for (int i = 0; i < SegmentedNeighborStore.TAIL_CAPACITY; i++) {
+      store.append(context, i, 10 * i);
+    }
+    store.compact(context);
+    // newer and older edges than the sealed ones, and one that ties with a sealed edge
+    store.append(context, 1000, 5000);
+    store.append(context, 1001, -5);
+    store.append(context, 1002, 30);
+
+    NeighborList edges = store.read(context);
+    assertEquals(SegmentedNeighborStore.TAIL_CAPACITY + 3, edges.size());
+    assertEquals("1001@-5", describe(edges).get(0));
+    assertEquals("1000@5000", describe(edges).get(edges.size() - 1));
+    // the sealed edge is older than the tail, so it comes first among the edges with its timestamp
+    assertEquals(describe(edges).indexOf("3@30") + 1, describe(edges).indexOf("1002@30"));
+  }
+
+  @Test
+  public void legacySingleListIsReadUnderTheOldName() {
+    NeighborList legacy = new NeighborList();
+    legacy.append(7, 10);
+    legacy.append(3, 20);
+    legacy.append(9, 30);
+    context.storage().set(base, legacy);
+
+    assertEquals(3, store.size(context));
+    assertEquals(describe(legacy), describe(store.read(context)));
+
+    store.append(context, 5, 15);
+    assertEquals(4, store.size(context));
+    List<String> expected = new ArrayList<>();
+    expected.add("7@10");
+    expected.add("5@15");
+    expected.add("3@20");
+    expected.add("9@30");
+    assertEquals(expected, describe(store.read(context)));
+
+    // the sealed tail stays apart from the old list until the levels overflow into it
+    store.compact(context);
+    assertEquals(describe(legacy), describe(context.storage().get(base).get()));
+    assertEquals(expected, describe(store.read(context)));
+  }
+
+  private void assertLevelsWithinCapacity() {
+    int capacity = SegmentedNeighborStore.TAIL_CAPACITY;
+    for (ValueSpec<NeighborList> level : levels) {
+      capacity *= LEVEL_FANOUT;
+      assertTrue(context.storage().get(level).orElseGet(NeighborList::new).size() <= capacity);
+    }
+  }
+
+  private static ValueSpec<NeighborList> segment(String name) {
+    return ValueSpec.named(name).withCustomType(Types.OUT_NEIGHBORS_TYPE);
+  }
+
+  private static List<String> describe(NeighborList edges) {
+    List<String> described = new ArrayList<>(edges.size());
+    for (int i = 0; i < edges.size(); i++) {
+      described.add(edges.idAt(i) + "@" + edges.timestampAt(i));
+    }
+    return described;
+  }
+}
@@ -0,0 +1,80 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CachedQueryResultsTest {
+
+  @Test
+  public void leastRecentlyUsedResultsAreEvicted() {
+    CachedQueryResults results = new CachedQueryResults();
+    results.put(cached(1, 1), 3);
+    results.put(cached(1, 2), 3);
+    results.put(cached(1, 3), 3);
+    results.touch(results.find(QueryResult.TASK_OUT_K_HOP, 1));
+    results.put(cached(1, 4), 3);
+
+    assertNotNull(results.find(QueryResult.TASK_OUT_K_HOP, 1));
+    assertNull(results.find(QueryResult.TASK_OUT_K_HOP, 2));
+    assertNotNull(results.find(QueryResult.TASK_OUT_K_HOP, 3));
+    assertNotNull(results.find(QueryResult.TASK_OUT_K_HOP, 4));
+  }
+
+  @Test
+  public void newResultReplacesTheResultOfTheSameQuery() {
+    CachedQueryResults results = new CachedQueryResults();
+    results.put(cached(1, 2), 3);
+    CachedQueryResult newer = cached(5, 2);
+    results.put(newer, 3);
+    assertSame(newer, results.find(QueryResult.TASK_OUT_K_HOP, 2));
+
+    results.remove(newer);
+    assertTrue(results.isEmpty());
+  }
+
+  @Test
+  public void cachedResultsRoundTrip() {
+    CachedQueryResults results = new CachedQueryResults();
+    results.put(cached(1, 1), 3);
+    results.put(cached(Long.MAX_VALUE, 2), 3);
+    CachedQueryResults decoded = CachedQueryResults.deserialize(CachedQueryResults.serialize(results));
+
+    CachedQueryResult entry = decoded.find(QueryResult.TASK_OUT_K_HOP, 2);
+    assertEquals(7, entry.getVertexId());
+    assertArrayEquals(new long[] {-3, 4, 9}, entry.getResults());
+    assertEquals(Long.MAX_VALUE, entry.getVersions().versionOf(7));
+    assertEquals(0, entry.getVersions().versionOf(Integer.MIN_VALUE));
+    assertEquals(-1, entry.getVersions().versionOf(8));
+
+    // the use counter is kept, so the decoded results evict the same result
+    decoded.put(cached(1, 3), 2);
+    assertNull(decoded.find(QueryResult.TASK_OUT_K_HOP, 1));
+    assertNotNull(decoded.find(QueryResult.TASK_OUT_K_HOP, 2));
+  }
+
+  @Test
+  public void vertexAddedTwiceKeepsTheSmallerVersion() {
+    VertexVersions versions = VertexVersions.of(5, 10);
+    versions.add(3, 7);
+    versions.add(5, 8);
+    assertEquals(8, versions.versionOf(5));
+    versions.add(5, 12);
+    assertEquals(8, versions.versionOf(5));
+    assertEquals(7, versions.versionOf(3));
+    assertEquals(2, versions.size());
+  }
+
+  private static CachedQueryResult cached(long rootVersion, int k) {
+    VertexVersions versions = VertexVersions.of(7, rootVersion);
+    versions.add(Integer.MIN_VALUE, 0);
+    QueryAggregate aggregate = QueryAggregate.create();
+    aggregate.add(QueryResultPart.root(QueryResult.TASK_OUT_K_HOP, 7, k, 0, new long[] {9, -3, 4}, versions));
+    return CachedQueryResult.of(aggregate);
+  }
+}
@@ -0,0 +1,111 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+
+public class NeighborListCodecTest {
+
+  @Test
+  public void emptyListRoundTrips() throws Exception {
+    byte[] bytes = NeighborListCodec.serialize(new NeighborList());
+    assertEquals(2, bytes.length);
+    assertTrue(NeighborListCodec.deserialize(bytes).isEmpty());
+  }
+
+  @Test
+  public void sortedListRoundTrips() throws Exception {
+    Random random = new Random(7);
+    NeighborList neighbors = new NeighborList();
+    long timestamp = 1254000000L;
+    for (int i = 0; i < 1000; i++) {
+      timestamp += random.nextInt(3600);
+      neighbors.append(random.nextInt(100000), timestamp);
+    }
+    assertSameEdges(neighbors, roundTrip(neighbors));
+  }
+
+  @Test
+  public void extremeIdsAndTimestampsRoundTrip() throws Exception {
+    NeighborList neighbors = new NeighborList();
+    neighbors.append(Integer.MIN_VALUE, Long.MIN_VALUE);
+    neighbors.append(Integer.MAX_VALUE, Long.MIN_VALUE + 1);
+    neighbors.append(-1, -1L);
+    neighbors.append(0, 0L);
+    neighbors.append(Integer.MIN_VALUE, Long.MAX_VALUE - 1);
+    neighbors.append(Integer.MAX_VALUE, Long.MAX_VALUE);
+    assertSameEdges(neighbors, roundTrip(neighbors));
+  }
+
+  @Test
+  public void negativeDeltasRoundTrip() throws Exception {
+    // the deltas of an unsorted list are negative, and overflow between the extremes
+    NeighborList neighbors = new NeighborList();
+    neighbors.append(5, Long.MAX_VALUE);
+    neighbors.append(3, Long.MIN_VALUE);
+    neighbors.append(9, 1000L);
+    neighbors.append(1, 999L);
+    neighbors.append(2, -5L);
+    assertSameEdges(neighbors, roundTrip(neighbors));
+  }
+
+  @Test
+  public void embeddedListRoundTrips() {
+    NeighborList neighbors = new NeighborList();
+    neighbors.append(42, 1254000000L);
+    neighbors.append(7, 1254000001L);
+    VarIntWriter writer = new VarIntWriter(8);
+    writer.writeVarInt(99);
+    NeighborListCodec.writeTo(writer, neighbors);
+    writer.writeVarInt(100);
+
+    VarIntReader reader = new VarIntReader(writer.toByteArray());
+    assertEquals(99, reader.readVarInt());
+    assertSameEdges(neighbors, NeighborListCodec.readFrom(reader));
+    assertEquals(100, reader.readVarInt());
+  }
+
+  @Test
+  public void readsLegacyJson() throws Exception {
+    byte[] json = " [{\"f0\":3,\"f1\":1254000000},{\"f0\":-1,\"f1\":-7}]".getBytes(StandardCharsets.UTF_8);
+    assertTrue(NeighborListCodec.isLegacyJson(json));
+    NeighborList neighbors = NeighborListCodec.deserialize(json);
+    assertEquals(2, neighbors.size());
+    assertEquals(3, neighbors.idAt(0));
+    assertEquals(1254000000L, neighbors.timestampAt(0));
+    assertEquals(-1, neighbors.idAt(1));
+    assertEquals(-7L, neighbors.timestampAt(1));
+  }
+
+  @Test
+  public void readsEmptyLegacyJson() throws Exception {
+    assertTrue(NeighborListCodec.deserialize("[]".getBytes(StandardCharsets.UTF_8)).isEmpty());
+  }
+
+  @Test
+  public void binaryFormatIsNotTakenForJson() {
+    assertFalse(NeighborListCodec.isLegacyJson(NeighborListCodec.serialize(new NeighborList())));
+    assertFalse(NeighborListCodec.isLegacyJson(new byte[0]));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsUnknownVersion() throws Exception {
+    NeighborListCodec.deserialize(new byte[] {(byte) (NeighborListCodec.VERSION_1 + 1), 0});
+  }
+
+  private static NeighborList roundTrip(NeighborList neighbors) throws Exception {
+    return NeighborListCodec.deserialize(NeighborListCodec.serialize(neighbors));
+  }
+
+  static void assertSameEdges(NeighborList expected, NeighborList actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals("id at " + i, expected.idAt(i), actual.idAt(i));
+      assertEquals("timestamp at " + i, expected.timestampAt(i), actual.timestampAt(i));
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class NeighborPageTest {
+
+  @Test
+  public void ascendingPagesResumeAtTheCursor() {
+    NeighborList edges = edgesWithTies(new Random(17), 300);
+    List<String> expected = sortedEdges(edges);
+    for (int limit = 1; limit <= 9; limit++) {
+      assertEquals("limit " + limit, expected, readAllPages(edges, false, limit));
+    }
+  }
+
+  @Test
+  public void descendingPagesResumeAtTheCursor() {
+    NeighborList edges = edgesWithTies(new Random(19), 300);
+    List<String> expected = sortedEdges(edges);
+    Collections.reverse(expected);
+    for (int limit = 1; limit <= 9; limit++) {
+      assertEquals("limit " + limit, expected, readAllPages(edges, true, limit));
+    }
+  }
+
+  @Test
+  public void emptyEdgesHaveOneEmptyPage() {
+    NeighborPage page = NeighborPage.of(new NeighborList(), null, false, 10);
+    assertEquals(0, page.getEdges().size());
+    assertNull(page.getNext());
+    page = NeighborPage.of(new NeighborList(), new EdgeCursor(5, 1), true, 10);
+    assertEquals(0, page.getEdges().size());
+    assertNull(page.getNext());
+  }
+
+  @Test
+  public void cursorStaysValidWhileEdgesAreAddedAndExpire() {
+    NeighborList edges = new NeighborList();
+    edges.append(7, 5);
+    edges.append(3, 10);
+    edges.append(1, 10);
+    edges.append(2, 10);
+    edges.append(4, 20);
+
+    NeighborPage first = NeighborPage.of(edges, null, false, 2);
+    assertEquals("7@5, 1@10", describe(first.getEdges()));
+    assertEquals("10:1", first.getNext().toToken());
+
+    // the retention drops the edges before a timestamp, and a newer edge is added before the next page is read
+    NeighborList changed = edges.copyOfRange(1, edges.size());
+    changed.append(5, 30);
+
+    NeighborPage second = NeighborPage.of(changed, EdgeCursor.parse(first.getNext().toToken()), false, 2);
+    assertEquals("2@10, 3@10", describe(second.getEdges()));
+    assertEquals("10:3", second.getNext().toToken());
+
+    // once the timestamp of the cursor has expired as well, the next page starts at the oldest edge left
+    NeighborList expired = changed.copyOfRange(3, changed.size());
+    NeighborPage third = NeighborPage.of(expired, second.getNext(), false, 2);
+    assertEquals("4@20, 5@30", describe(third.getEdges()));
+    assertNull(third.getNext());
+  }
+
+  @Test
+  public void cursorTokenRoundTrip() {
+    for (EdgeCursor cursor : new EdgeCursor[] {
+        new EdgeCursor(0, 0), new EdgeCursor(-5, 3), new EdgeCursor(Long.MIN_VALUE, Integer.MAX_VALUE),
+        new EdgeCursor(Long.MAX_VALUE, 1)}) {
+      EdgeCursor parsed = EdgeCursor.parse(cursor.toToken());
+      assertEquals(cursor.getTimestamp(), parsed.getTimestamp());
+      assertEquals(cursor.getOffset(), parsed.getOffset());
+    }
+  }
+
+  @Test
+  public void malformedCursorsAreRejected() {
+    for (String token : new String[] {"", ":", "12", ":3", "12:", "12:-1", "a:1", "12:b", "12:1:x"}) {
+      try {
+        EdgeCursor.parse(token);
+        fail("accepted cursor '" + token + "'");
+      } catch (IllegalArgumentException expected) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void pageRequestsAreValidated() {
+    PageRequest request = PageRequest.create(5, "", "DESC");
+    assertEquals(5, request.getLimit());
+    assertNull(request.getCursor());
+    assertTrue(request.isDescending());
+    assertFalse(PageRequest.create(0, null, null).isDescending());
+
+    PageRequest rest = request.continueAt(new EdgeCursor(7, 2), 3);
+    assertEquals(2, rest.getLimit());
+    assertEquals("7:2", rest.getCursor().toToken());
+    assertTrue(rest.isDescending());
+    assertEquals(0, PageRequest.create(0, null, null).continueAt(new EdgeCursor(7, 2), 3).getLimit());
+
+    assertRejected(-1, null, null);
+    assertRejected(1, "7", null);
+    assertRejected(1, null, "newest");
+  }
+
+  private static void assertRejected(int limit, String cursor, String order) {
+    try {
+      PageRequest.create(limit, cursor, order);
+      fail(String.format("accepted limit %d, cursor %s, order %s", limit, cursor, order));
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  /**
+   * @return edges with few distinct timestamps, so that most pages start and end within a run of equal timestamps
+   */
+  private static NeighborList edgesWithTies(Random random, int size) {
+    NeighborList edges = new NeighborList();
+    for (int i = 0; i < size; i++) {
+      edges.insert(random.nextInt(1000) - 500, random.nextInt(20) - 10);
+    }
+    return edges;
+  }
+
+  private static List<String> readAllPages(NeighborList edges, boolean descending, int limit) {
+    List<String> read = new ArrayList<>();
+    EdgeCursor cursor = null;
+    do {
+      NeighborPage page = NeighborPage.of(edges, cursor, descending, limit);
+      assertTrue(page.getEdges().size() <= limit);
+      List<String> pageEdges = toList(page.getEdges());
+      if (descending) {
+        Collections.reverse(pageEdges);
+      }
+      read.addAll(pageEdges);
+      cursor = page.getNext() == null ? null : EdgeCursor.parse(page.getNext().toToken());
+      assertTrue("paging does not end", read.size() <= edges.size());
+    } while (cursor != null);
+    return read;
+  }
+
+  private static List<String> sortedEdges(NeighborList edges) {
+    NeighborList sorted = edges.copyOfRange(0, edges.size());
+    sorted.sortTiesById();
+    return toList(sorted);
+  }
+
+  private static List<String> toList(NeighborList edges) {
+    List<String> list = new ArrayList<>(edges.size());
+    for (int i = 0; i < edges.size(); i++) {
+      list.add(edges.idAt(i) + "@" + edges.timestampAt(i));
+    }
+    return list;
+  }
+
+  private static String describe(NeighborList edges) {
+    return String.join(", ", toList(edges));
+  }
+}
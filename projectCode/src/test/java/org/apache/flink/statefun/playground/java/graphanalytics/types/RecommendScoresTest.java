@@ -0,0 +1,101 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RecommendScoresTest {
+
+  private static final int CAPACITY = 3;
+  private static final long HALF_LIFE = 100;
+
+  @Test
+  public void emptyScoresRoundTrip() {
+    RecommendScores scores = RecommendScores.deserialize(RecommendScores.serialize(new RecommendScores()));
+    assertTrue(scores.isEmpty());
+
+    // the reference time is still unknown, so the first suggestion does not decay anything
+    scores.add(7, 1000, CAPACITY, HALF_LIFE);
+    assertEquals(1, scores.size());
+    assertEquals(1f, scores.scoreAt(0), 0f);
+  }
+
+  @Test
+  public void scoresRoundTrip() {
+    RecommendScores scores = new RecommendScores();
+    scores.add(-5, Long.MIN_VALUE, CAPACITY, HALF_LIFE);
+    scores.add(Integer.MAX_VALUE, 100, CAPACITY, HALF_LIFE);
+    scores.add(Integer.MAX_VALUE, 200, CAPACITY, HALF_LIFE);
+    scores.add(Integer.MIN_VALUE, 150, CAPACITY, HALF_LIFE);
+
+    RecommendScores decoded = RecommendScores.deserialize(RecommendScores.serialize(scores));
+    assertEquals(scores.size(), decoded.size());
+    for (int rank = 0; rank < scores.size(); rank++) {
+      assertEquals(scores.idAt(rank), decoded.idAt(rank));
+      assertEquals(scores.scoreAt(rank), decoded.scoreAt(rank), 0f);
+    }
+
+    // the decoded scores keep the reference time, so a later suggestion decays them the same way
+    scores.add(-5, 300, CAPACITY, HALF_LIFE);
+    decoded.add(-5, 300, CAPACITY, HALF_LIFE);
+    for (int rank = 0; rank < scores.size(); rank++) {
+      assertEquals(scores.idAt(rank), decoded.idAt(rank));
+      assertEquals(scores.scoreAt(rank), decoded.scoreAt(rank), 0f);
+    }
+  }
+
+  @Test
+  public void olderSuggestionsCountLess() {
+    RecommendScores scores = new RecommendScores();
+    scores.add(1, 0, CAPACITY, HALF_LIFE);
+    scores.add(2, HALF_LIFE, CAPACITY, HALF_LIFE);
+    assertEquals(2, scores.idAt(0));
+    assertEquals(1f, scores.scoreAt(0), 1e-6f);
+    assertEquals(0.5f, scores.scoreAt(1), 1e-6f);
+
+    // a late suggestion is weighted as if it had been decayed since
+    scores.add(3, 0, CAPACITY, HALF_LIFE);
+    assertEquals(3, scores.idAt(2));
+    assertEquals(0.5f, scores.scoreAt(2), 1e-6f);
+  }
+
+  @Test
+  public void newCandidateTakesThePlaceOfTheLowestRanked() {
+    RecommendScores scores = new RecommendScores();
+    for (int i = 0; i < 3; i++) {
+      scores.add(1, Long.MIN_VALUE, CAPACITY, 0);
+    }
+    scores.add(2, Long.MIN_VALUE, CAPACITY, 0);
+    scores.add(2, Long.MIN_VALUE, CAPACITY, 0);
+    scores.add(3, Long.MIN_VALUE, CAPACITY, 0);
+    scores.add(4, Long.MIN_VALUE, CAPACITY, 0);
+
+    assertEquals(CAPACITY, scores.size());
+    assertEquals(1, scores.idAt(0));
+    assertEquals(2, scores.idAt(1));
+    assertEquals(4, scores.idAt(2));
+    // the new candidate starts from the score of the one it replaced
+    assertEquals(2f, scores.scoreAt(2), 0f);
+  }
+
+  @Test
+  public void loweredCapacityDropsTheLowestRanked() {
+    RecommendScores scores = new RecommendScores();
+    for (int candidate = 1; candidate <= 10; candidate++) {
+      for (int i = 0; i < candidate; i++) {
+        scores.add(candidate, Long.MIN_VALUE, 10, 0);
+      }
+    }
+    RecommendScores decoded = RecommendScores.deserialize(RecommendScores.serialize(scores));
+    assertEquals(10, decoded.size());
+
+    decoded.add(10, Long.MIN_VALUE, 2, 0);
+    assertEquals(2, decoded.size());
+    assertEquals(10, decoded.idAt(0));
+    assertEquals(9, decoded.idAt(1));
+
+    decoded.add(10, Long.MIN_VALUE, 0, 0);
+    assertTrue(decoded.isEmpty());
+  }
+}
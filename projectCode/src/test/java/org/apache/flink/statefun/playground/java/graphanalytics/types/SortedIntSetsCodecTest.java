@@ -0,0 +1,102 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class SortedIntSetsCodecTest {
+
+  @Test
+  public void emptySetRoundTrip() {
+    assertSame(SortedIntSets.EMPTY, roundTrip(SortedIntSets.EMPTY));
+  }
+
+  @Test
+  public void sparseIdsRoundTrip() {
+    Random random = new Random(3);
+    TreeSet<Integer> ids = new TreeSet<>();
+    while (ids.size() < 5000) {
+      ids.add(random.nextInt());
+    }
+    assertRoundTrip(toArray(ids));
+  }
+
+  @Test
+  public void denseRunsRoundTrip() {
+    int[] ids = new int[70000];
+    for (int i = 0; i < ids.length; i++) {
+      // crosses a container boundary
+      ids[i] = 30000 + i;
+    }
+    assertRoundTrip(ids);
+  }
+
+  @Test
+  public void bitmapContainerRoundTrip() {
+    // every other id of a container, too many for an array and too fragmented for runs
+    int[] ids = new int[32768];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = (5 << 16) + 2 * i + 1;
+    }
+    assertRoundTrip(ids);
+  }
+
+  @Test
+  public void mixedContainersRoundTrip() {
+    Random random = new Random(5);
+    TreeSet<Integer> ids = new TreeSet<>();
+    for (int i = 0; i < 1000; i++) {
+      ids.add(random.nextInt(1 << 16));
+    }
+    for (int i = 0; i < 3000; i++) {
+      ids.add((1 << 16) + i);
+    }
+    for (int i = 0; i < 40000; i++) {
+      ids.add((2 << 16) + random.nextInt(1 << 16));
+    }
+    assertRoundTrip(toArray(ids));
+  }
+
+  @Test
+  public void negativeAndExtremeIdsRoundTrip() {
+    assertRoundTrip(new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -65537, -65536, -1, 0, 1, 65535, 65536,
+        Integer.MAX_VALUE - 1, Integer.MAX_VALUE});
+    assertRoundTrip(new int[] {Integer.MIN_VALUE});
+    assertRoundTrip(new int[] {Integer.MAX_VALUE});
+  }
+
+  @Test
+  public void compressedSetIsEmbedded() {
+    int[] first = {-3, 4, 100000};
+    int[] second = {Integer.MAX_VALUE};
+    VarIntWriter writer = new VarIntWriter(16);
+    writer.writeVarInt(7);
+    SortedIntSets.writeCompressedTo(writer, first);
+    SortedIntSets.writeCompressedTo(writer, second);
+    writer.writeVarInt(9);
+
+    VarIntReader reader = new VarIntReader(writer.toByteArray());
+    assertEquals(7, reader.readVarInt());
+    assertArrayEquals(first, SortedIntSets.readCompressedFrom(reader));
+    assertArrayEquals(second, SortedIntSets.readCompressedFrom(reader));
+    assertEquals(9, reader.readVarInt());
+  }
+
+  private static void assertRoundTrip(int[] sortedIds) {
+    assertArrayEquals(sortedIds, roundTrip(sortedIds));
+  }
+
+  private static int[] roundTrip(int[] sortedIds) {
+    VarIntWriter writer = new VarIntWriter(16);
+    SortedIntSets.writeCompressedTo(writer, sortedIds);
+    return SortedIntSets.readCompressedFrom(new VarIntReader(writer.toByteArray()));
+  }
+
+  private static int[] toArray(TreeSet<Integer> ids) {
+    return ids.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
@@ -0,0 +1,81 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class TimeBucketCountsTest {
+
+  private static final int HOUR = 3600;
+
+  @Test
+  public void emptyCountsRoundTrip() {
+    TimeBucketCounts counts = TimeBucketCounts.deserialize(TimeBucketCounts.serialize(new TimeBucketCounts(HOUR, 5)));
+    assertEquals(HOUR, counts.getBucketSeconds());
+    assertEquals(5, counts.getCoveredEdges());
+    assertEquals(0, counts.count(Long.MIN_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void alignedWindowsCountExactly() {
+    Random random = new Random(11);
+    NeighborList edges = new NeighborList();
+    for (int i = 0; i < 2000; i++) {
+      // timestamps around zero, so that negative buckets are counted as well
+      edges.insert(i, random.nextInt(200 * HOUR) - 100L * HOUR);
+    }
+    TimeBucketCounts counts = new TimeBucketCounts(HOUR);
+    counts.addAll(edges.copyOfRange(0, 700));
+    counts.addAll(edges.copyOfRange(700, edges.size()));
+    assertEquals(edges.size(), counts.getCoveredEdges());
+
+    TimeBucketCounts decoded = TimeBucketCounts.deserialize(TimeBucketCounts.serialize(counts));
+    for (int window = 0; window < 500; window++) {
+      long startTime = (random.nextInt(220) - 110L) * HOUR;
+      long endTime = startTime + (random.nextInt(48) + 1L) * HOUR - 1;
+      assertTrue(TimeBucketCounts.isAligned(HOUR, startTime, endTime));
+      assertEquals(edges.countRange(startTime, endTime), counts.count(startTime, endTime));
+      assertEquals(edges.countRange(startTime, endTime), decoded.count(startTime, endTime));
+    }
+  }
+
+  @Test
+  public void extremeTimestampsRoundTrip() {
+    NeighborList edges = new NeighborList();
+    edges.append(1, Long.MIN_VALUE);
+    edges.append(2, -1L);
+    edges.append(3, 0L);
+    edges.append(4, Long.MAX_VALUE);
+    TimeBucketCounts counts = new TimeBucketCounts(HOUR);
+    counts.addAll(edges);
+
+    TimeBucketCounts decoded = TimeBucketCounts.deserialize(TimeBucketCounts.serialize(counts));
+    assertEquals(4, decoded.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    assertEquals(1, decoded.count(Long.MIN_VALUE, Long.MIN_VALUE));
+    assertEquals(1, decoded.count(-HOUR, -1));
+    assertEquals(1, decoded.count(0, HOUR - 1));
+    assertEquals(1, decoded.count(Long.MAX_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void emptyOrReversedWindowCountsNothing() {
+    TimeBucketCounts counts = new TimeBucketCounts(HOUR);
+    NeighborList edges = new NeighborList();
+    edges.append(1, 10L * HOUR);
+    counts.addAll(edges);
+    assertEquals(0, counts.count(11L * HOUR, 10L * HOUR));
+    assertEquals(0, counts.count(0, 10L * HOUR - 1));
+  }
+
+  @Test
+  public void onlyWindowsOnBucketBoundariesAreAligned() {
+    assertTrue(TimeBucketCounts.isAligned(HOUR, 0, HOUR - 1));
+    assertTrue(TimeBucketCounts.isAligned(HOUR, -HOUR, -1));
+    assertFalse(TimeBucketCounts.isAligned(HOUR, 1, HOUR - 1));
+    assertFalse(TimeBucketCounts.isAligned(HOUR, 0, HOUR));
+    assertFalse(TimeBucketCounts.isAligned(HOUR, HOUR, HOUR - 1));
+  }
+}
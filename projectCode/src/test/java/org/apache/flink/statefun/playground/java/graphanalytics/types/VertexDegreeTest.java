@@ -0,0 +1,130 @@
+package org.apache.flink.statefun.playground.java.graphanalytics.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VertexDegreeTest {
+
+  @Test
+  public void emptyCountersRoundTrip() {
+    VertexDegree degree = VertexDegree.deserialize(VertexDegree.serialize(new VertexDegree()));
+    assertTrue(degree.isEmpty());
+    assertEquals(0, degree.getAddedEdges());
+    assertEquals(0, degree.distinctNeighbors());
+    assertTrue(degree.isDistinctExact());
+  }
+
+  @Test
+  public void exactCountersRoundTrip() {
+    VertexDegree degree = new VertexDegree();
+    degree.add(Integer.MAX_VALUE, 5);
+    degree.add(-1, Long.MIN_VALUE);
+    degree.add(Integer.MAX_VALUE, Long.MAX_VALUE);
+    degree.add(Integer.MIN_VALUE, 0);
+
+    VertexDegree decoded = VertexDegree.deserialize(VertexDegree.serialize(degree));
+    assertFalse(decoded.isEmpty());
+    assertEquals(4, decoded.getAddedEdges());
+    assertEquals(3, decoded.distinctNeighbors());
+    assertTrue(decoded.isDistinctExact());
+    assertEquals(Long.MIN_VALUE, decoded.getFirstTimestamp());
+    assertEquals(Long.MAX_VALUE, decoded.getLastTimestamp());
+
+    // the decoded ids still recognize repeated neighbors
+    decoded.add(-1, 7);
+    assertEquals(3, decoded.distinctNeighbors());
+  }
+
+  @Test
+  public void countsStayExactUpToTheLimit() {
+    VertexDegree degree = new VertexDegree();
+    for (int id = 0; id < 64; id++) {
+      degree.add(id, id);
+      degree.add(id, id);
+    }
+    assertTrue(degree.isDistinctExact());
+    assertEquals(64, degree.distinctNeighbors());
+    assertEquals(128, degree.getAddedEdges());
+
+    degree.add(64, 64);
+    assertFalse(degree.isDistinctExact());
+    assertEquals(65, degree.distinctNeighbors(), 2);
+  }
+
+  @Test
+  public void sketchEstimatesManyNeighborsRoundTrip() {
+    VertexDegree degree = new VertexDegree();
+    NeighborList edges = new NeighborList();
+    for (int id = 0; id < 100000; id++) {
+      edges.append(id * 7 - 300000, id);
+    }
+    degree.addAll(edges);
+    degree.addAll(edges.copyOfRange(0, 1000));
+
+    VertexDegree decoded = VertexDegree.deserialize(VertexDegree.serialize(degree));
+    assertFalse(decoded.isDistinctExact());
+    assertEquals(101000, decoded.getAddedEdges());
+    assertEquals(degree.distinctNeighbors(), decoded.distinctNeighbors());
+    // a standard error of about 3%, the bound leaves room for more than three of them
+    assertEquals(100000, decoded.distinctNeighbors(), 10000);
+    assertEquals(0, decoded.getFirstTimestamp());
+    assertEquals(99999, decoded.getLastTimestamp());
+  }
+
+  @Test
+  public void uncountedEdgesAreOnlyInTheAddedEdges() {
+    VertexDegree degree = new VertexDegree(10);
+    assertTrue(degree.isEmpty());
+    assertEquals(10, degree.getAddedEdges());
+    assertFalse(degree.isDistinctExact());
+
+    degree.add(3, -20);
+    VertexDegree decoded = VertexDegree.deserialize(VertexDegree.serialize(degree));
+    assertFalse(decoded.isEmpty());
+    assertEquals(11, decoded.getAddedEdges());
+    assertEquals(1, decoded.distinctNeighbors());
+    assertEquals(-20, decoded.getFirstTimestamp());
+    assertEquals(-20, decoded.getLastTimestamp());
+  }
+
+  @Test
+  public void edgesDroppedBeforeCountingKeepTheCountsExact() {
+    VertexDegree degree = VertexDegree.afterExpiry(7);
+    assertTrue(degree.isEmpty());
+    degree.add(4, 100);
+    degree.add(5, 200);
+
+    VertexDegree decoded = VertexDegree.deserialize(VertexDegree.serialize(degree));
+    assertEquals(9, decoded.getAddedEdges());
+    assertEquals(2, decoded.distinctNeighbors());
+    assertTrue(decoded.isDistinctExact());
+    assertEquals(100, decoded.getFirstTimestamp());
+  }
+
+  @Test
+  public void expiryMovesTheFirstTimestampAndMakesTheCountsInexact() {
+    VertexDegree degree = new VertexDegree();
+    degree.add(1, 100);
+    degree.add(2, 300);
+    degree.expire(50);
+    assertFalse(degree.isDistinctExact());
+    assertEquals(100, degree.getFirstTimestamp());
+
+    degree.expire(200);
+    VertexDegree decoded = VertexDegree.deserialize(VertexDegree.serialize(degree));
+    assertFalse(decoded.isDistinctExact());
+    assertEquals(2, decoded.getAddedEdges());
+    assertEquals(200, decoded.getFirstTimestamp());
+    assertEquals(300, decoded.getLastTimestamp());
+
+    // once every counted edge is behind the horizon there are no timestamps, until the next edge
+    decoded.expire(301);
+    assertTrue(decoded.isEmpty());
+    decoded.add(3, 400);
+    assertEquals(400, decoded.getFirstTimestamp());
+    assertEquals(400, decoded.getLastTimestamp());
+  }
+}